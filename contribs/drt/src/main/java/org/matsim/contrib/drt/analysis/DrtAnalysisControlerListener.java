@@ -36,6 +36,7 @@ import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
 
 import com.google.inject.Inject;
 
@@ -55,10 +56,13 @@ public class DrtAnalysisControlerListener implements IterationEndsListener {
 	Network network;
 	@Inject
 	DrtRequestAnalyzer drtRequestAnalyzer;
+	@Inject
+	DrtTaskTypeStatsCollector taskTypeStatsCollector;
 	private final DrtConfigGroup drtgroup;
 	private boolean headerWritten = false;
 	private boolean vheaderWritten = false;
 	private final String runId;
+	private final double mobsimEndTime;
 	private final DecimalFormat format = new DecimalFormat();
 
 	/**
@@ -68,6 +72,8 @@ public class DrtAnalysisControlerListener implements IterationEndsListener {
 	public DrtAnalysisControlerListener(Config config) {
 		drtgroup = (DrtConfigGroup)config.getModules().get(DrtConfigGroup.GROUP_NAME);
 		runId = config.controler().getRunId();
+		// if undefined, the mobsim runs until all vehicles have completed their schedules (no tasks left to account for)
+		mobsimEndTime = config.qsim().getEndTime() == Time.UNDEFINED_TIME ? 0 : config.qsim().getEndTime();
 		
 		format.setDecimalFormatSymbols(new DecimalFormatSymbols(Locale.US));
 		format.setMinimumIntegerDigits(1);
@@ -116,6 +122,11 @@ public class DrtAnalysisControlerListener implements IterationEndsListener {
 				matsimServices.getControlerIO().getIterationFilename(event.getIteration(), "drt_detours"));
 		DynModeTripsAnalyser.analyseWaitTimes(
 				matsimServices.getControlerIO().getIterationFilename(event.getIteration(), "waitStats"), trips, 1800);
+		taskTypeStatsCollector.finish(mobsimEndTime);
+		taskTypeStatsCollector.writeTimeProfile(matsimServices.getControlerIO()
+				.getIterationFilename(event.getIteration(), "drt_task_type_time_profiles.csv"));
+		taskTypeStatsCollector.writeDurationHistograms(matsimServices.getControlerIO()
+				.getIterationFilename(event.getIteration(), "drt_task_durations.csv"));
 	}
 
 	/**
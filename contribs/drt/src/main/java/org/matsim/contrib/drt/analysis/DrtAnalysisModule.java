@@ -40,6 +40,8 @@ public class DrtAnalysisModule extends AbstractModule {
 		bind(DrtVehicleOccupancyEvaluator.class).asEagerSingleton();
 		bind(DynModePassengerStats.class).asEagerSingleton();
 		bind(DrtRequestAnalyzer.class).asEagerSingleton();
+		bind(DrtTaskTypeStatsCollector.class).asEagerSingleton();
+		addEventHandlerBinding().to(DrtTaskTypeStatsCollector.class);
 		addControlerListenerBinding().to(DrtAnalysisControlerListener.class).asEagerSingleton();
 	}
 
@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.analysis;
+
+import org.matsim.contrib.drt.schedule.DrtTask;
+import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
+import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.util.TaskTypeStatsCollector;
+
+public class DrtTaskTypeStatsCollector extends TaskTypeStatsCollector<DrtTaskType> {
+	// 5-minute time bins over 30 hours; 1-minute duration bins up to 2 hours
+	public DrtTaskTypeStatsCollector() {
+		super(DrtTaskType.class, 300, 30 * 12, 60, 120);
+	}
+
+	@Override
+	protected DrtTaskType getTaskType(Task task) {
+		return ((DrtTask)task).getDrtTaskType();
+	}
+}
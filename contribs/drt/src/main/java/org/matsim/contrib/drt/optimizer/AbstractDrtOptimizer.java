@@ -45,7 +45,7 @@ public abstract class AbstractDrtOptimizer implements DrtOptimizer {
 
 	@Override
 	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
-		if (requiresReoptimization) {
+		if (requiresReoptimization && isReoptimizationDue(e.getSimulationTime())) {
 			for (Vehicle v : optimContext.fleet.getVehicles().values()) {
 				optimContext.scheduler.updateTimeline(v);
 			}
@@ -57,6 +57,13 @@ public abstract class AbstractDrtOptimizer implements DrtOptimizer {
 
 	protected abstract void scheduleUnplannedRequests();
 
+	/**
+	 * Allows for postponing reoptimization, e.g. for collecting requests in batches.
+	 */
+	protected boolean isReoptimizationDue(double time) {
+		return true;
+	}
+
 	@Override
 	public void requestSubmitted(Request request) {
 		DrtRequest drtRequest = (DrtRequest)request;
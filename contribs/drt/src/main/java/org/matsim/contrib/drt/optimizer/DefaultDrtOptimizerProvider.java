@@ -26,6 +26,7 @@ import org.matsim.contrib.drt.optimizer.insertion.filter.*;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
 import org.matsim.contrib.drt.scheduler.*;
 import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.*;
 import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
 import org.matsim.contrib.dvrp.run.DvrpModule;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
@@ -52,6 +53,9 @@ public class DefaultDrtOptimizerProvider implements Provider<DrtOptimizer> {
 	@Inject(optional = true)
 	private @Named(DRT_OPTIMIZER) TravelDisutilityFactory travelDisutilityFactory;
 
+	@Inject(optional = true)
+	private ZonalDemandAggregator demandAggregator;// bound only if rebalancing is on
+
 	@Inject
 	public DefaultDrtOptimizerProvider(DrtConfigGroup drtCfg, @Named(DvrpModule.DVRP_ROUTING) Network network,
 			Fleet fleet, @Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, QSim qSim,
@@ -75,8 +79,11 @@ public class DefaultDrtOptimizerProvider implements Provider<DrtOptimizer> {
 		TravelDisutility travelDisutility = travelDisutilityFactory == null ? new TimeAsTravelDisutility(travelTime)
 				: travelDisutilityFactory.createTravelDisutility(travelTime);
 
+		MinCostFlowRebalancingStrategy rebalancingStrategy = demandAggregator == null ? null
+				: new MinCostFlowRebalancingStrategy(demandAggregator, network);
+
 		DrtOptimizerContext optimContext = new DrtOptimizerContext(fleet, network, qSim.getSimTimer(), travelTime,
-				travelDisutility, scheduler, qSim.getEventsManager(), filter, requestValidator);
+				travelDisutility, scheduler, qSim.getEventsManager(), filter, requestValidator, rebalancingStrategy);
 
 		return drtCfg.getIdleVehiclesReturnToDepots() ? new InsertionDrtOptimizerWithDepots(optimContext, drtCfg)
 				: new InsertionDrtOptimizer(optimContext, drtCfg);
@@ -5,6 +5,7 @@ import org.matsim.contrib.drt.data.validator.DrtRequestValidator;
 import org.matsim.contrib.drt.optimizer.insertion.filter.DrtVehicleFilter;
 import org.matsim.contrib.drt.scheduler.DrtScheduler;
 import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.MinCostFlowRebalancingStrategy;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.router.util.*;
@@ -22,10 +23,11 @@ public class DrtOptimizerContext {
 	public final EventsManager eventsManager;
 	public final DrtVehicleFilter vehicleFilter;
 	public final DrtRequestValidator requestValidator;
+	public final MinCostFlowRebalancingStrategy rebalancingStrategy;// null if no rebalancing
 
 	public DrtOptimizerContext(Fleet fleet, Network network, MobsimTimer timer, TravelTime travelTime,
 			TravelDisutility travelDisutility, DrtScheduler scheduler, EventsManager eventsManager,
-			DrtVehicleFilter filter, DrtRequestValidator validator) {
+			DrtVehicleFilter filter, DrtRequestValidator validator, MinCostFlowRebalancingStrategy rebalancingStrategy) {
 		this.fleet = fleet;
 		this.network = network;
 		this.timer = timer;
@@ -35,5 +37,6 @@ public class DrtOptimizerContext {
 		this.eventsManager = eventsManager;
 		this.vehicleFilter = filter;
 		this.requestValidator = validator;
+		this.rebalancingStrategy = rebalancingStrategy;
 	}
 }
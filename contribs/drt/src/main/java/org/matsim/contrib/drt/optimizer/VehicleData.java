@@ -53,11 +53,16 @@ public class VehicleData {
 		public final int occupancyChange;// diff in pickups and dropoffs
 		public int outputOccupancy;
 
+		// how much the stop can be delayed without violating maxArrivalTime or maxDepartureTime
+		public final double slackTime;
+		public double minSlackTimeOfRemainingStops;// min slackTime of this and all following stops
+
 		public Stop(DrtStopTask task) {
 			this.task = task;
 			maxArrivalTime = calcMaxArrivalTime();
 			maxDepartureTime = calcMaxDepartureTime();
 			occupancyChange = task.getPickupRequests().size() - task.getDropoffRequests().size();
+			slackTime = Math.min(maxArrivalTime - task.getBeginTime(), maxDepartureTime - task.getEndTime());
 		}
 
 		private double calcMaxArrivalTime() {
@@ -159,10 +164,14 @@ public class VehicleData {
 		}
 
 		int outputOccupancy = 0;
+		double minSlackTime = Double.MAX_VALUE;
 		for (int i = data.stops.size() - 1; i >= 0; i--) {
 			Stop s = data.stops.get(i);
 			s.outputOccupancy = outputOccupancy;
 			outputOccupancy -= s.occupancyChange;
+
+			minSlackTime = Math.min(minSlackTime, s.slackTime);
+			s.minSlackTimeOfRemainingStops = minSlackTime;
 		}
 		data.startOccupancy = outputOccupancy;
 
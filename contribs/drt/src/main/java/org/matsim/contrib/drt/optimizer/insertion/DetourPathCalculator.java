@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearchPool;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearchPool.Query;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+
+/**
+ * Calculates the paths of all possible detours (to/from the pickup and dropoff of a request) for a set of vehicles at
+ * once, i.e. each of the 4 one-to-many searches is run only once for all the vehicles, instead of once per vehicle.
+ * <p>
+ * The search times (and thus the paths) do not depend on the vehicle, so the paths are the same as if calculated
+ * separately for each vehicle. Only the stops after which the pickup/dropoff can be inserted without violating the
+ * request's time windows (see {@link InsertionCostCalculator#calcPickupIdxLimit}) are searched for.
+ */
+public class DetourPathCalculator {
+	public static class DetourData {
+		private final Map<Link, PathData> pathsToPickup;
+		private final Map<Link, PathData> pathsFromPickup;
+		private final Map<Link, PathData> pathsToDropoff;
+		private final Map<Link, PathData> pathsFromDropoff;
+
+		private DetourData(Map<Link, PathData> pathsToPickup, Map<Link, PathData> pathsFromPickup,
+				Map<Link, PathData> pathsToDropoff, Map<Link, PathData> pathsFromDropoff) {
+			this.pathsToPickup = pathsToPickup;
+			this.pathsFromPickup = pathsFromPickup;
+			this.pathsToDropoff = pathsToDropoff;
+			this.pathsFromDropoff = pathsFromDropoff;
+		}
+
+		public PathData getPathToPickup(Link fromLink) {
+			return pathsToPickup.get(fromLink);
+		}
+
+		public PathData getPathFromPickup(Link toLink) {
+			return pathsFromPickup.get(toLink);
+		}
+
+		public PathData getPathToDropoff(Link fromLink) {
+			return pathsToDropoff.get(fromLink);
+		}
+
+		public PathData getPathFromDropoff(Link toLink) {
+			return pathsFromDropoff.get(toLink);
+		}
+
+		/**
+		 * Adds paths calculated for the same request (e.g. for vehicles whose schedules have changed since this
+		 * DetourData was created)
+		 */
+		public void addAll(DetourData detourData) {
+			pathsToPickup.putAll(detourData.pathsToPickup);
+			pathsFromPickup.putAll(detourData.pathsFromPickup);
+			pathsToDropoff.putAll(detourData.pathsToDropoff);
+			pathsFromDropoff.putAll(detourData.pathsFromDropoff);
+		}
+	}
+
+	private final OneToManyPathSearchPool pathSearchPool;
+	private final double stopDuration;
+	private final MobsimTimer timer;
+	private final InsertionCostCalculator costCalculator;
+
+	public DetourPathCalculator(OneToManyPathSearchPool pathSearchPool, double stopDuration, double maxWaitTime,
+			MobsimTimer timer) {
+		this.pathSearchPool = pathSearchPool;
+		this.stopDuration = stopDuration;
+		this.timer = timer;
+		costCalculator = new InsertionCostCalculator(stopDuration, maxWaitTime);
+	}
+
+	public DetourData calculatePaths(DrtRequest drtRequest, Collection<Entry> vEntries) {
+		// node 0 is 'start', node i > 0 is stop i-1 (as in SingleVehicleInsertionProblem)
+		Set<Link> toPickupLinkSet = new LinkedHashSet<>();// ends of nodes i < pickupIdxLimit
+		Set<Link> fromPickupLinkSet = new LinkedHashSet<>();// beginnings of nodes 0 < i <= pickupIdxLimit
+		Set<Link> toDropoffLinkSet = new LinkedHashSet<>();// ends of nodes 0 < j < dropoffIdxLimit
+		Set<Link> fromDropoffLinkSet = new LinkedHashSet<>();// beginnings of nodes 0 < j <= dropoffIdxLimit
+
+		fromPickupLinkSet.add(drtRequest.getToLink());
+		for (Entry vEntry : vEntries) {
+			int stopCount = vEntry.stops.size();
+			int pickupIdxLimit = costCalculator.calcPickupIdxLimit(drtRequest, vEntry);
+			if (pickupIdxLimit == 0) {
+				continue;// the vehicle is too late
+			}
+
+			int dropoffIdxLimit = costCalculator.calcDropoffIdxLimit(drtRequest, vEntry);
+			toPickupLinkSet.add(vEntry.start.link);
+			for (int i = 1; i <= stopCount; i++) {
+				Link stopLink = vEntry.stops.get(i - 1).task.getLink();
+				if (i < pickupIdxLimit) {
+					toPickupLinkSet.add(stopLink);
+				}
+				if (i <= pickupIdxLimit) {
+					fromPickupLinkSet.add(stopLink);
+				}
+				if (i < dropoffIdxLimit) {
+					toDropoffLinkSet.add(stopLink);
+				}
+				if (i <= dropoffIdxLimit) {
+					fromDropoffLinkSet.add(stopLink);
+				}
+			}
+		}
+
+		if (toPickupLinkSet.isEmpty()) {// no vehicle can serve the request
+			return new DetourData(new HashMap<Link, PathData>(), new HashMap<Link, PathData>(),
+					new HashMap<Link, PathData>(), new HashMap<Link, PathData>());
+		}
+
+		// requests collected in a batch were submitted before now; over-optimistic
+		double minPickupTime = Math.max(drtRequest.getEarliestStartTime(), timer.getTimeOfDay());
+
+		// backward dijkstra from pickup to ends of stops + starts
+		List<Link> toPickupLinks = new ArrayList<>(toPickupLinkSet);
+
+		// forward dijkstra from pickup to beginnings of stops + dropoff
+		List<Link> fromPickupLinks = new ArrayList<>(fromPickupLinkSet);
+
+		PathData[][] pickupPaths = pathSearchPool.calcPaths(Arrays.asList(//
+				Query.createBackwardQuery(drtRequest.getFromLink(), toPickupLinks, minPickupTime),
+				Query.createForwardQuery(drtRequest.getFromLink(), fromPickupLinks, minPickupTime)));
+		Map<Link, PathData> pathsToPickup = createPathDataMap(toPickupLinks, pickupPaths[0]);
+		Map<Link, PathData> pathsFromPickup = createPathDataMap(fromPickupLinks, pickupPaths[1]);
+
+		PathData pickupToDropoffPath = pickupPaths[1][0];// only if no other passengers on board (optimistic)
+		double minTravelTime = pickupToDropoffPath.path.travelTime + pickupToDropoffPath.firstAndLastLinkTT;
+		double minDropoffTime = minPickupTime + minTravelTime + stopDuration; // uses (over-)optimistic components
+
+		// backward dijkstra from dropoff to ends of stops
+		List<Link> toDropoffLinks = new ArrayList<>(toDropoffLinkSet);
+
+		// forward dijkstra from dropoff to beginnings of stops
+		List<Link> fromDropoffLinks = new ArrayList<>(fromDropoffLinkSet);
+
+		PathData[][] dropoffPaths = pathSearchPool.calcPaths(Arrays.asList(//
+				Query.createBackwardQuery(drtRequest.getToLink(), toDropoffLinks, minDropoffTime),
+				Query.createForwardQuery(drtRequest.getToLink(), fromDropoffLinks, minDropoffTime)));
+		Map<Link, PathData> pathsToDropoff = createPathDataMap(toDropoffLinks, dropoffPaths[0]);
+		Map<Link, PathData> pathsFromDropoff = createPathDataMap(fromDropoffLinks, dropoffPaths[1]);
+
+		return new DetourData(pathsToPickup, pathsFromPickup, pathsToDropoff, pathsFromDropoff);
+	}
+
+	private static Map<Link, PathData> createPathDataMap(List<Link> links, PathData[] paths) {
+		Map<Link, PathData> pathDataMap = new HashMap<>(2 * links.size());
+		for (int i = 0; i < paths.length; i++) {
+			pathDataMap.put(links.get(i), paths[i]);
+		}
+		return pathDataMap;
+	}
+}
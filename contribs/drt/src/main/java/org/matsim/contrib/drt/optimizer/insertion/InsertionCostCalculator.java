@@ -21,10 +21,10 @@ package org.matsim.contrib.drt.optimizer.insertion;
 
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
-import org.matsim.contrib.drt.optimizer.VehicleData.Stop;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.Insertion;
 import org.matsim.contrib.drt.schedule.*;
 import org.matsim.contrib.drt.schedule.DrtTask.DrtTaskType;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
 import org.matsim.contrib.dvrp.schedule.Schedules;
 
 /**
@@ -48,58 +48,100 @@ public class InsertionCostCalculator {
 	// ==> checks if all the constraints are satisfied for all passengers/requests ==> if not ==>
 	// INFEASIBLE_SOLUTION_COST is returned
 	public double calculate(DrtRequest drtRequest, VehicleData.Entry vEntry, Insertion insertion, double currentTime) {
-		double pickupDetourTimeLoss = calculatePickupDetourTimeLoss(drtRequest, vEntry, insertion);
-		double dropoffDetourTimeLoss = calculateDropoffDetourTimeLoss(drtRequest, vEntry, insertion);
+		return calculate(drtRequest, vEntry, insertion.pickupIdx, insertion.dropoffIdx, insertion.pathToPickup,
+				insertion.pathFromPickup, insertion.pathToDropoff, insertion.pathFromDropoff, currentTime);
+	}
+
+	// same as above, but does not require creating an Insertion for each evaluated combination of pickupIdx and
+	// dropoffIdx (see SingleVehicleInsertionProblem)
+	public double calculate(DrtRequest drtRequest, VehicleData.Entry vEntry, int pickupIdx, int dropoffIdx,
+			PathData pathToPickup, PathData pathFromPickup, PathData pathToDropoff, PathData pathFromDropoff,
+			double currentTime) {
+		double pickupDetourTimeLoss = calculatePickupDetourTimeLoss(drtRequest, vEntry, pickupIdx, dropoffIdx,
+				pathToPickup, pathFromPickup);
+		double dropoffDetourTimeLoss = calculateDropoffDetourTimeLoss(drtRequest, vEntry, pickupIdx, dropoffIdx,
+				pathToDropoff, pathFromDropoff);
 
 		// this is what we want to minimise
 		double totalTimeLoss = pickupDetourTimeLoss + dropoffDetourTimeLoss;
 
-		boolean constraintsSatisfied = areConstraintsSatisfied(drtRequest, vEntry, insertion, pickupDetourTimeLoss,
-				totalTimeLoss, currentTime);
+		boolean constraintsSatisfied = areConstraintsSatisfied(drtRequest, vEntry, pickupIdx, dropoffIdx,
+				pathToPickup, pathFromPickup, pathToDropoff, pickupDetourTimeLoss, totalTimeLoss, currentTime);
 		return constraintsSatisfied ? totalTimeLoss : INFEASIBLE_SOLUTION_COST;
 	}
 
-	private double calculatePickupDetourTimeLoss(DrtRequest drtRequest, VehicleData.Entry vEntry, Insertion insertion) {
+	/**
+	 * Pickup cannot be inserted after node i >= limit (node 0 is 'start', node i > 0 is stop i-1): the vehicle
+	 * leaves node i too late to pick up the passenger within maxWaitTime, even if no drive to the pickup is needed.
+	 * The departure times are non-decreasing, so all the following nodes are excluded as well.
+	 */
+	public int calcPickupIdxLimit(DrtRequest drtRequest, VehicleData.Entry vEntry) {
+		double latestPickupEndTime = drtRequest.getEarliestStartTime() + maxWaitTime;
+		if (vEntry.start.time + stopDuration > latestPickupEndTime) {
+			return 0;
+		}
+
+		for (int i = 1; i <= vEntry.stops.size(); i++) {
+			if (vEntry.stops.get(i - 1).task.getEndTime() + stopDuration > latestPickupEndTime) {
+				return i;
+			}
+		}
+		return vEntry.stops.size() + 1;
+	}
+
+	/**
+	 * Dropoff cannot be inserted after node j >= limit (node j > 0 is stop j-1): the vehicle leaves node j too late to
+	 * meet the latest arrival time of the request.
+	 */
+	public int calcDropoffIdxLimit(DrtRequest drtRequest, VehicleData.Entry vEntry) {
+		for (int j = 1; j <= vEntry.stops.size(); j++) {
+			if (vEntry.stops.get(j - 1).task.getEndTime() > drtRequest.getLatestArrivalTime()) {
+				return j;
+			}
+		}
+		return vEntry.stops.size() + 1;
+	}
+
+	private double calculatePickupDetourTimeLoss(DrtRequest drtRequest, VehicleData.Entry vEntry, int pickupIdx,
+			int dropoffIdx, PathData pathToPickup, PathData pathFromPickup) {
 		// 'no detour' is also possible now for pickupIdx==0 if the currentTask is STOP
-		boolean ongoingStopTask = insertion.pickupIdx == 0
+		boolean ongoingStopTask = pickupIdx == 0
 				&& ((DrtTask)vEntry.vehicle.getSchedule().getCurrentTask()).getDrtTaskType() == DrtTaskType.STOP;
 
 		if ((ongoingStopTask && drtRequest.getFromLink() == vEntry.start.link) //
-				|| (insertion.pickupIdx > 0 //
-						&& drtRequest.getFromLink() == vEntry.stops.get(insertion.pickupIdx - 1).task.getLink())) {
-			if (insertion.pickupIdx != insertion.dropoffIdx) {// PICKUP->DROPOFF
+				|| (pickupIdx > 0 //
+						&& drtRequest.getFromLink() == vEntry.stops.get(pickupIdx - 1).task.getLink())) {
+			if (pickupIdx != dropoffIdx) {// PICKUP->DROPOFF
 				return 0;// no detour
 			}
 
 			// no extra drive to pickup and stop (==> toPickupTT == 0 and stopDuration == 0)
-			double fromPickupTT = insertion.pathFromPickup.path.travelTime
-					+ insertion.pathFromPickup.firstAndLastLinkTT;
-			double replacedDriveTT = calculateReplacedDriveDuration(vEntry, insertion.pickupIdx);
+			double fromPickupTT = pathFromPickup.path.travelTime + pathFromPickup.firstAndLastLinkTT;
+			double replacedDriveTT = calculateReplacedDriveDuration(vEntry, pickupIdx);
 			return fromPickupTT - replacedDriveTT;
 		}
 
-		double toPickupTT = insertion.pathToPickup.path.travelTime + insertion.pathToPickup.firstAndLastLinkTT;
-		double fromPickupTT = insertion.pathFromPickup.path.travelTime + insertion.pathFromPickup.firstAndLastLinkTT;
-		double replacedDriveTT = calculateReplacedDriveDuration(vEntry, insertion.pickupIdx);
+		double toPickupTT = pathToPickup.path.travelTime + pathToPickup.firstAndLastLinkTT;
+		double fromPickupTT = pathFromPickup.path.travelTime + pathFromPickup.firstAndLastLinkTT;
+		double replacedDriveTT = calculateReplacedDriveDuration(vEntry, pickupIdx);
 		return toPickupTT + stopDuration + fromPickupTT - replacedDriveTT;
 	}
 
-	private double calculateDropoffDetourTimeLoss(DrtRequest drtRequest, VehicleData.Entry vEntry,
-			Insertion insertion) {
-		if (insertion.dropoffIdx > 0
-				&& drtRequest.getToLink() == vEntry.stops.get(insertion.dropoffIdx - 1).task.getLink()) {
+	private double calculateDropoffDetourTimeLoss(DrtRequest drtRequest, VehicleData.Entry vEntry, int pickupIdx,
+			int dropoffIdx, PathData pathToDropoff, PathData pathFromDropoff) {
+		if (dropoffIdx > 0 && drtRequest.getToLink() == vEntry.stops.get(dropoffIdx - 1).task.getLink()) {
 			return 0; // no detour
 		}
 
-		double toDropoffTT = insertion.dropoffIdx == insertion.pickupIdx ? // PICKUP->DROPOFF ?
+		double toDropoffTT = dropoffIdx == pickupIdx ? // PICKUP->DROPOFF ?
 				0 // PICKUP->DROPOFF taken into account as fromPickupTT
-				: insertion.pathToDropoff.path.travelTime + insertion.pathToDropoff.firstAndLastLinkTT;
-		double fromDropoffTT = insertion.dropoffIdx == vEntry.stops.size() ? // DROPOFF->STAY ?
+				: pathToDropoff.path.travelTime + pathToDropoff.firstAndLastLinkTT;
+		double fromDropoffTT = dropoffIdx == vEntry.stops.size() ? // DROPOFF->STAY ?
 				0 //
-				: insertion.pathFromDropoff.path.travelTime + insertion.pathFromDropoff.firstAndLastLinkTT;
-		double replacedDriveTT = insertion.dropoffIdx == insertion.pickupIdx ? // PICKUP->DROPOFF ?
+				: pathFromDropoff.path.travelTime + pathFromDropoff.firstAndLastLinkTT;
+		double replacedDriveTT = dropoffIdx == pickupIdx ? // PICKUP->DROPOFF ?
 				0 // replacedDriveTT already taken into account in pickupDetourTimeLoss
-				: calculateReplacedDriveDuration(vEntry, insertion.dropoffIdx);
+				: calculateReplacedDriveDuration(vEntry, dropoffIdx);
 		return toDropoffTT + stopDuration + fromDropoffTT - replacedDriveTT;
 	}
 
@@ -114,44 +156,44 @@ public class InsertionCostCalculator {
 		return replacedDriveEndTime - replacedDriveStartTime;
 	}
 
-	private boolean areConstraintsSatisfied(DrtRequest drtRequest, VehicleData.Entry vEntry, Insertion insertion,
+	private boolean areConstraintsSatisfied(DrtRequest drtRequest, VehicleData.Entry vEntry, int pickupIdx,
+			int dropoffIdx, PathData pathToPickup, PathData pathFromPickup, PathData pathToDropoff,
 			double pickupDetourTimeLoss, double totalTimeLoss, double currentTime) {
 		// this is what we cannot violate
-		for (int s = insertion.pickupIdx; s < insertion.dropoffIdx; s++) {
-			Stop stop = vEntry.stops.get(s);
-			// all stops after pickup are delayed by pickupDetourTimeLoss
-			if (stop.task.getBeginTime() + pickupDetourTimeLoss > stop.maxArrivalTime //
-					|| stop.task.getEndTime() + pickupDetourTimeLoss > stop.maxDepartureTime) {
-				return false;
-			}
+		// all stops after dropoff are delayed by totalTimeLoss
+		if (dropoffIdx < vEntry.stops.size()
+				&& totalTimeLoss > vEntry.stops.get(dropoffIdx).minSlackTimeOfRemainingStops) {
+			return false;
 		}
 
 		// this is what we cannot violate
-		for (int s = insertion.dropoffIdx; s < vEntry.stops.size(); s++) {
-			Stop stop = vEntry.stops.get(s);
-			// all stops after dropoff are delayed by totalTimeLoss
-			if (stop.task.getBeginTime() + totalTimeLoss > stop.maxArrivalTime //
-					|| stop.task.getEndTime() + totalTimeLoss > stop.maxDepartureTime) {
-				return false;
+		// all stops after pickup (and before dropoff) are delayed by pickupDetourTimeLoss
+		// (no need to check them one by one if even the min slack time of all stops after pickup is sufficient)
+		if (pickupIdx < dropoffIdx
+				&& pickupDetourTimeLoss > vEntry.stops.get(pickupIdx).minSlackTimeOfRemainingStops) {
+			for (int s = pickupIdx; s < dropoffIdx; s++) {
+				if (pickupDetourTimeLoss > vEntry.stops.get(s).slackTime) {
+					return false;
+				}
 			}
 		}
 
 		// reject solutions when maxWaitTime for the new request is violated
-		double driveToPickupStartTime = (insertion.pickupIdx == 0) ? vEntry.start.time //
-				: vEntry.stops.get(insertion.pickupIdx - 1).task.getEndTime();
+		double driveToPickupStartTime = (pickupIdx == 0) ? vEntry.start.time //
+				: vEntry.stops.get(pickupIdx - 1).task.getEndTime();
 
-		double pickupEndTime = driveToPickupStartTime + insertion.pathToPickup.path.travelTime
-				+ insertion.pathToPickup.firstAndLastLinkTT + stopDuration;
+		double pickupEndTime = driveToPickupStartTime + pathToPickup.path.travelTime + pathToPickup.firstAndLastLinkTT
+				+ stopDuration;
 
 		if (pickupEndTime > drtRequest.getEarliestStartTime() + maxWaitTime) {
 			return false;
 		}
 
 		// reject solutions when latestArrivalTime for the new request is violated
-		double dropoffStartTime = insertion.pickupIdx == insertion.dropoffIdx
-				? pickupEndTime + insertion.pathFromPickup.path.travelTime + insertion.pathFromPickup.firstAndLastLinkTT
-				: vEntry.stops.get(insertion.dropoffIdx - 1).task.getEndTime() + insertion.pathToDropoff.path.travelTime
-						+ insertion.pathToDropoff.firstAndLastLinkTT;
+		double dropoffStartTime = pickupIdx == dropoffIdx
+				? pickupEndTime + pathFromPickup.path.travelTime + pathFromPickup.firstAndLastLinkTT
+				: vEntry.stops.get(dropoffIdx - 1).task.getEndTime() + pathToDropoff.path.travelTime
+						+ pathToDropoff.firstAndLastLinkTT;
 
 		if (dropoffStartTime > drtRequest.getLatestArrivalTime()) {
 			return false;
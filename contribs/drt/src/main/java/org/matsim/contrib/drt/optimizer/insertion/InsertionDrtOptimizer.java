@@ -22,62 +22,103 @@ package org.matsim.contrib.drt.optimizer.insertion;
 import java.util.*;
 
 import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.*;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
 import org.matsim.contrib.drt.passenger.events.*;
 import org.matsim.contrib.drt.run.DrtConfigGroup;
-import org.matsim.contrib.dvrp.data.Requests;
-import org.matsim.contrib.locationchoice.router.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.MinCostFlowRebalancingStrategy.VehicleRelocator;
+import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
 import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.*;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
-import org.matsim.core.router.*;
-import org.matsim.core.router.util.*;
 import org.matsim.core.utils.misc.Time;
 
 /**
  * @author michalm
  */
 public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements MobsimBeforeCleanupListener {
+	private final OneToManyPathSearchPool pathSearchPool;
+	private final DetourPathCalculator detourPathCalculator;
 	private final ParallelMultiVehicleInsertionProblem insertionProblem;
 	private final EventsManager eventsManager;
 	private final boolean printWarnings;
+	private final int rebalancingInterval;
+	private final double rebalancingHorizon;
+	private final int requestBatchingInterval;
+	private double lastSimStepTime = Double.NEGATIVE_INFINITY;
 
 	public InsertionDrtOptimizer(DrtOptimizerContext optimContext, DrtConfigGroup drtCfg) {
 		super(optimContext, new TreeSet<DrtRequest>(Requests.ABSOLUTE_COMPARATOR));
 		this.eventsManager = optimContext.eventsManager;
 		printWarnings = drtCfg.isPrintDetailedWarnings();
+		rebalancingInterval = drtCfg.getRebalancingInterval();
+		rebalancingHorizon = drtCfg.getRebalancingHorizon();
+		requestBatchingInterval = drtCfg.getRequestBatchingInterval();
 
-		// TODO bug: cannot cast ImaginaryNode to RoutingNetworkNode
-		// PreProcessDijkstra preProcessDijkstra = new PreProcessDijkstra();
-		// preProcessDijkstra.run(optimContext.network);
-		PreProcessDijkstra preProcessDijkstra = null;
-		FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
-		RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(preProcessDijkstra)
-				.createRoutingNetwork(optimContext.network);
-		RoutingNetwork inverseRoutingNetwork = new InverseArrayRoutingNetworkFactory(preProcessDijkstra)
-				.createRoutingNetwork(optimContext.network);
+		// at most two searches (one forward and one backward) are run at the same time
+		pathSearchPool = new OneToManyPathSearchPool(optimContext.network, optimContext.travelDisutility,
+				optimContext.travelTime, Math.min(2, drtCfg.getNumberOfThreads()));
+		double stopDuration = optimContext.scheduler.getParams().stopDuration;
 
 		SingleVehicleInsertionProblem[] singleVehicleInsertionProblems = new SingleVehicleInsertionProblem[drtCfg
 				.getNumberOfThreads()];
 		for (int i = 0; i < singleVehicleInsertionProblems.length; i++) {
-			FastMultiNodeDijkstra router = new FastMultiNodeDijkstra(routingNetwork, optimContext.travelDisutility,
-					optimContext.travelTime, preProcessDijkstra, fastRouterFactory, true);
-			BackwardFastMultiNodeDijkstra backwardRouter = new BackwardFastMultiNodeDijkstra(inverseRoutingNetwork,
-					optimContext.travelDisutility, optimContext.travelTime, preProcessDijkstra, fastRouterFactory,
-					true);
-			singleVehicleInsertionProblems[i] = new SingleVehicleInsertionProblem(router, backwardRouter,
-					optimContext.scheduler.getParams().stopDuration, drtCfg.getMaxWaitTime(), optimContext.timer);
+			singleVehicleInsertionProblems[i] = new SingleVehicleInsertionProblem(stopDuration,
+					drtCfg.getMaxWaitTime(), optimContext.timer);
 		}
 
+		detourPathCalculator = new DetourPathCalculator(pathSearchPool, stopDuration, drtCfg.getMaxWaitTime(),
+				optimContext.timer);
 		insertionProblem = new ParallelMultiVehicleInsertionProblem(singleVehicleInsertionProblems,
-				optimContext.vehicleFilter);
+				optimContext.vehicleFilter, detourPathCalculator);
 	}
 
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
 		insertionProblem.shutdown();
+		pathSearchPool.shutdown();
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		super.notifyMobsimBeforeSimStep(e);
+
+		if (getOptimContext().rebalancingStrategy != null && e.getSimulationTime() % rebalancingInterval == 0) {
+			rebalanceFleet();
+		}
+
+		lastSimStepTime = e.getSimulationTime();
+	}
+
+	private void rebalanceFleet() {
+		final DrtOptimizerContext optimContext = getOptimContext();
+		optimContext.rebalancingStrategy.rebalanceFleet(optimContext.fleet, optimContext.scheduler,
+				optimContext.timer.getTimeOfDay(), rebalancingHorizon, new VehicleRelocator() {
+					@Override
+					public void relocate(Vehicle vehicle, Link fromLink, Link toLink, double time) {
+						// search of the mobsim thread, released by pathSearchPool.shutdown()
+						PathData pathData = pathSearchPool.getForwardSearch().calcPaths(fromLink,
+								Collections.singletonList(toLink), time)[0];
+						optimContext.scheduler.relocateEmptyVehicle(vehicle,
+								VrpPaths.createPath(fromLink, toLink, time, pathData.path, optimContext.travelTime));
+					}
+				});
+	}
+
+	/**
+	 * With batching, requests are scheduled in the first time step at (or after) each multiple of the batching
+	 * interval. This works also if the interval is not a multiple of the time step size (or some steps are skipped),
+	 * in which case {@code time % requestBatchingInterval == 0} could never hold.
+	 */
+	@Override
+	protected boolean isReoptimizationDue(double time) {
+		return requestBatchingInterval <= 0 || Math.floor(time / requestBatchingInterval) > Math
+				.floor(lastSimStepTime / requestBatchingInterval);
 	}
 
 	@Override
@@ -88,28 +129,125 @@ public class InsertionDrtOptimizer extends AbstractDrtOptimizer implements Mobsi
 
 		VehicleData vData = new VehicleData(getOptimContext(), getOptimContext().fleet.getVehicles().values());
 
+		if (requestBatchingInterval > 0) {
+			scheduleRequestBatch(vData);
+			return;
+		}
+
 		Iterator<DrtRequest> reqIter = getUnplannedRequests().iterator();
 		while (reqIter.hasNext()) {
-
 			DrtRequest req = reqIter.next();
 			BestInsertion best = insertionProblem.findBestInsertion(req, vData);
 			if (best == null) {
-				eventsManager
-						.processEvent(new DrtRequestRejectedEvent(getOptimContext().timer.getTimeOfDay(), req.getId()));
-				if (printWarnings) {
-					Logger.getLogger(getClass())
-							.warn("No vehicle found for drt request from passenger \t" + req.getPassenger().getId()
-									+ "\tat\t" + Time.writeTime(req.getSubmissionTime()) + "\tfrom Link\t"
-									+ req.getFromLink().getId());
-				}
+				rejectRequest(req);
 			} else {
-				getOptimContext().scheduler.insertRequest(best.vehicleEntry, req, best.insertion);
-				vData.updateEntry(best.vehicleEntry);
-				eventsManager.processEvent(new DrtRequestScheduledEvent(getOptimContext().timer.getTimeOfDay(),
-						req.getId(), best.vehicleEntry.vehicle.getId(), req.getPickupTask().getEndTime(),
-						req.getDropoffTask().getBeginTime()));
+				scheduleRequest(req, best, vData);
 			}
 			reqIter.remove();
 		}
 	}
+
+	private static class BatchEntry {
+		private final DrtRequest request;
+		private final Set<VehicleData.Entry> coveredVehicles = new HashSet<>();// paths included in detourData
+		private DetourData detourData;
+		private BestInsertion best;
+
+		private BatchEntry(DrtRequest request) {
+			this.request = request;
+		}
+	}
+
+	// lower cost first; for equal costs, the original (absolute) order of requests is kept (stable sort)
+	private static final Comparator<BatchEntry> BATCH_ENTRY_COMPARATOR = new Comparator<BatchEntry>() {
+		public int compare(BatchEntry e1, BatchEntry e2) {
+			return Double.compare(e1.best.cost, e2.best.cost);
+		}
+	};
+
+	/**
+	 * All requests of a batch are evaluated against the same vehicle data. Then the insertions are applied in the
+	 * order of increasing cost; a request whose vehicle has already been assigned another request in this round is
+	 * re-evaluated in the next round (only the paths for vehicles with changed schedules are calculated). Each round
+	 * schedules at least one request, and the outcome does not depend on the number of threads.
+	 */
+	private void scheduleRequestBatch(VehicleData vData) {
+		List<BatchEntry> pendingEntries = new ArrayList<>();
+		for (DrtRequest req : getUnplannedRequests()) {
+			pendingEntries.add(new BatchEntry(req));
+		}
+		getUnplannedRequests().clear();
+
+		while (!pendingEntries.isEmpty()) {
+			List<BatchEntry> feasibleEntries = new ArrayList<>();
+			for (BatchEntry entry : pendingEntries) {
+				updateBatchEntry(entry, vData);
+				if (entry.best == null) {
+					rejectRequest(entry.request);
+				} else {
+					feasibleEntries.add(entry);
+				}
+			}
+
+			Collections.sort(feasibleEntries, BATCH_ENTRY_COMPARATOR);
+			pendingEntries.clear();
+
+			Set<Vehicle> updatedVehicles = new HashSet<>();
+			for (BatchEntry entry : feasibleEntries) {
+				if (updatedVehicles.add(entry.best.vehicleEntry.vehicle)) {
+					scheduleRequest(entry.request, entry.best, vData);
+				} else {
+					pendingEntries.add(entry);// conflict ==> next round
+				}
+			}
+
+			// keep the absolute order of requests in the next round
+			Collections.sort(pendingEntries, new Comparator<BatchEntry>() {
+				public int compare(BatchEntry e1, BatchEntry e2) {
+					return Requests.ABSOLUTE_COMPARATOR.compare(e1.request, e2.request);
+				}
+			});
+		}
+	}
+
+	private void updateBatchEntry(BatchEntry entry, VehicleData vData) {
+		List<VehicleData.Entry> filteredVehicles = getOptimContext().vehicleFilter.applyFilter(entry.request, vData);
+
+		// paths are calculated only for vehicles not covered so far (or with modified schedules)
+		List<VehicleData.Entry> uncoveredVehicles = new ArrayList<>();
+		for (VehicleData.Entry vEntry : filteredVehicles) {
+			if (!entry.coveredVehicles.contains(vEntry)) {
+				uncoveredVehicles.add(vEntry);
+			}
+		}
+
+		if (!uncoveredVehicles.isEmpty()) {
+			DetourData detourData = detourPathCalculator.calculatePaths(entry.request, uncoveredVehicles);
+			if (entry.detourData == null) {
+				entry.detourData = detourData;
+			} else {
+				entry.detourData.addAll(detourData);
+			}
+			entry.coveredVehicles.addAll(uncoveredVehicles);
+		}
+
+		entry.best = insertionProblem.findBestInsertion(entry.request, filteredVehicles, entry.detourData);
+	}
+
+	private void rejectRequest(DrtRequest req) {
+		eventsManager.processEvent(new DrtRequestRejectedEvent(getOptimContext().timer.getTimeOfDay(), req.getId()));
+		if (printWarnings) {
+			Logger.getLogger(getClass())
+					.warn("No vehicle found for drt request from passenger \t" + req.getPassenger().getId() + "\tat\t"
+							+ Time.writeTime(req.getSubmissionTime()) + "\tfrom Link\t" + req.getFromLink().getId());
+		}
+	}
+
+	private void scheduleRequest(DrtRequest req, BestInsertion best, VehicleData vData) {
+		getOptimContext().scheduler.insertRequest(best.vehicleEntry, req, best.insertion);
+		vData.updateEntry(best.vehicleEntry);
+		eventsManager.processEvent(new DrtRequestScheduledEvent(getOptimContext().timer.getTimeOfDay(), req.getId(),
+				best.vehicleEntry.vehicle.getId(), req.getPickupTask().getEndTime(),
+				req.getDropoffTask().getBeginTime()));
+	}
 }
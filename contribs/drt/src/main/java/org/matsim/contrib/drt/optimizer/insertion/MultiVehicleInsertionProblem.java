@@ -20,8 +20,8 @@
 package org.matsim.contrib.drt.optimizer.insertion;
 
 import org.matsim.contrib.drt.data.DrtRequest;
-import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
 
 /**
@@ -34,16 +34,11 @@ public class MultiVehicleInsertionProblem {
 		this.insertionProblem = insertionProblem;
 	}
 
-	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData vData) {
-		return findBestInsertion(drtRequest, vData.getEntries());
-	}
-
-	// TODO run Dijkstra once for all vehicles instead of running it separately for each one
-	public BestInsertion findBestInsertion(DrtRequest drtRequest, Iterable<Entry> vEntries) {
+	public BestInsertion findBestInsertion(DrtRequest drtRequest, Iterable<Entry> vEntries, DetourData detourData) {
 		double minCost = Double.MAX_VALUE;
 		BestInsertion fleetBestInsertion = null;
 		for (Entry vEntry : vEntries) {
-			BestInsertion bestInsertion = insertionProblem.findBestInsertion(drtRequest, vEntry);
+			BestInsertion bestInsertion = insertionProblem.findBestInsertion(drtRequest, vEntry, detourData);
 			if (bestInsertion.cost < minCost) {
 				fleetBestInsertion = bestInsertion;
 				minCost = bestInsertion.cost;
@@ -25,6 +25,7 @@ import java.util.concurrent.*;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
 import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
 import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
 import org.matsim.contrib.drt.optimizer.insertion.filter.DrtVehicleFilter;
 
@@ -40,8 +41,8 @@ public class ParallelMultiVehicleInsertionProblem {
 			this.multiInsertionProblem = new MultiVehicleInsertionProblem(singleInsertionProblem);
 		}
 
-		private BestInsertion findBestInsertion(DrtRequest drtRequest) {
-			BestInsertion bestInsertion = multiInsertionProblem.findBestInsertion(drtRequest, vEntries);
+		private BestInsertion findBestInsertion(DrtRequest drtRequest, DetourData detourData) {
+			BestInsertion bestInsertion = multiInsertionProblem.findBestInsertion(drtRequest, vEntries, detourData);
 			vEntries.clear();
 			return bestInsertion;
 		}
@@ -51,10 +52,13 @@ public class ParallelMultiVehicleInsertionProblem {
 	private final TaskGroup[] taskGroups;
 	private final ExecutorService executorService;
 	private final DrtVehicleFilter filter;
+	private final DetourPathCalculator detourPathCalculator;
 
-	public ParallelMultiVehicleInsertionProblem(SingleVehicleInsertionProblem[] singleInsertionProblems, DrtVehicleFilter filter) {
+	public ParallelMultiVehicleInsertionProblem(SingleVehicleInsertionProblem[] singleInsertionProblems,
+			DrtVehicleFilter filter, DetourPathCalculator detourPathCalculator) {
 		threads = singleInsertionProblems.length;
 		this.filter = filter;
+		this.detourPathCalculator = detourPathCalculator;
 		this.taskGroups = new TaskGroup[threads];
 		for (int i = 0; i < threads; i++) {
 			taskGroups[i] = new TaskGroup(singleInsertionProblems[i]);
@@ -64,8 +68,28 @@ public class ParallelMultiVehicleInsertionProblem {
 
 	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData vData) {
 		List<Entry> filteredVehicles = filter.applyFilter(drtRequest, vData);
+		if (filteredVehicles.isEmpty()) {
+			return null;
+		}
+
+		// paths for all filtered vehicles at once, then insertions are evaluated in parallel
+		DetourData detourData = detourPathCalculator.calculatePaths(drtRequest, filteredVehicles);
+		return findBestInsertion(drtRequest, filteredVehicles, detourData);
+	}
+
+	/**
+	 * @param detourData
+	 *            paths calculated (by {@link DetourPathCalculator}) for a set of vehicles that includes
+	 *            filteredVehicles
+	 */
+	public BestInsertion findBestInsertion(DrtRequest drtRequest, List<Entry> filteredVehicles,
+			DetourData detourData) {
+		if (filteredVehicles.isEmpty()) {
+			return null;
+		}
+
 		divideTasksIntoGroups(filteredVehicles);
-		return findBestInsertion(submitTasks(drtRequest));
+		return findBestInsertion(submitTasks(drtRequest, detourData));
 	}
 
 	
@@ -86,13 +110,13 @@ public class ParallelMultiVehicleInsertionProblem {
 		}
 	}
 
-	private List<Future<BestInsertion>> submitTasks(final DrtRequest drtRequest) {
+	private List<Future<BestInsertion>> submitTasks(final DrtRequest drtRequest, final DetourData detourData) {
 		List<Future<BestInsertion>> bestInsertionFutures = new ArrayList<>();
 		for (int i = 0; i < threads; i++) {
 			final TaskGroup taskGroup = taskGroups[i];
 			bestInsertionFutures.add(executorService.submit(new Callable<BestInsertion>() {
 				public BestInsertion call() {
-					return taskGroup.findBestInsertion(drtRequest);
+					return taskGroup.findBestInsertion(drtRequest, detourData);
 				}
 			}));
 		}
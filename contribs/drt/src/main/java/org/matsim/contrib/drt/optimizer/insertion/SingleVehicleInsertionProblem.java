@@ -19,16 +19,12 @@
 
 package org.matsim.contrib.drt.optimizer.insertion;
 
-import java.util.*;
-
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.drt.data.DrtRequest;
 import org.matsim.contrib.drt.optimizer.VehicleData;
-import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
-import org.matsim.contrib.locationchoice.router.BackwardMultiNodePathCalculator;
 import org.matsim.core.mobsim.framework.MobsimTimer;
-import org.matsim.core.router.MultiNodePathCalculator;
 
 /**
  * @author michalm
@@ -70,22 +66,25 @@ public class SingleVehicleInsertionProblem {
 		}
 	}
 
-	private final OneToManyPathSearch forwardPathSearch;
-	private final OneToManyPathSearch backwardPathSearch;
-	private final double stopDuration;
 	private final MobsimTimer timer;
 	private final InsertionCostCalculator costCalculator;
 
 	///
 
-	private List<Insertion> insertions;
 	private int stopCount;
+	private double currentTime;
 
 	// path[0] is a special entry; path[i] corresponds to stop i-1, for 1 <= i <= stopCount
-	private PathData[] pathsToPickup;
-	private PathData[] pathsFromPickup;
-	private PathData[] pathsToDropoff;
-	private PathData[] pathsFromDropoff;
+	// (the arrays are reused, only the first stopCount+1 entries are valid)
+	private PathData[] pathsToPickup = new PathData[0];
+	private PathData[] pathsFromPickup = new PathData[0];
+	private PathData[] pathsToDropoff = new PathData[0];
+	private PathData[] pathsFromDropoff = new PathData[0];
+
+	// the best insertion found so far
+	private int bestPickupIdx;
+	private int bestDropoffIdx;
+	private double minCost;
 
 	// TODO filter out duplicated insertion when pickup/dropoff is at one of existing stops
 	// filter out stops located too far away (e.g. straight-line distance); with the exception for the last stop???
@@ -93,68 +92,59 @@ public class SingleVehicleInsertionProblem {
 	// filter out dropoffs at stops with incomingOccupancy equal to the vehicle capacity
 	// (but still we need to check the capacity constraints on all drives between the pickup and dropoff)
 	//
-	// TODO maxWaitTime
-	// filter out stops which are visited too late
-	//
 	// private boolean[] considerPickupInsertion;
 	// private boolean[] considerDropoffInsertion;
 
-	public SingleVehicleInsertionProblem(MultiNodePathCalculator router, BackwardMultiNodePathCalculator backwardRouter,
-			double stopDuration, double maxWaitTime, MobsimTimer timer) {
-		forwardPathSearch = OneToManyPathSearch.createForwardSearch(router);
-		backwardPathSearch = OneToManyPathSearch.createBackwardSearch(backwardRouter);
-
-		this.stopDuration = stopDuration;
+	public SingleVehicleInsertionProblem(double stopDuration, double maxWaitTime, MobsimTimer timer) {
 		this.timer = timer;
 		costCalculator = new InsertionCostCalculator(stopDuration, maxWaitTime);
 	}
 
-	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry) {
-		initPathData(drtRequest, vEntry);
+	/**
+	 * @param detourData
+	 *            paths calculated (by {@link DetourPathCalculator}) for a set of vehicles that includes vEntry
+	 */
+	public BestInsertion findBestInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry, DetourData detourData) {
+		initPathData(drtRequest, vEntry, detourData);
 		findPickupDropoffInsertions(drtRequest, vEntry);
-		return selectBestInsertion(drtRequest, vEntry);
+		return createBestInsertion(vEntry);
 	}
 
-	private void initPathData(DrtRequest drtRequest, VehicleData.Entry vEntry) {
+	private void initPathData(DrtRequest drtRequest, VehicleData.Entry vEntry, DetourData detourData) {
 		stopCount = vEntry.stops.size();
-
-		ArrayList<Link> links = new ArrayList<>(stopCount + 1);
-		links.add(null);// special link
-		for (int i = 0; i < stopCount; i++) {
-			links.add(vEntry.stops.get(i).task.getLink());
+		if (pathsToPickup.length < stopCount + 1) {
+			int length = Math.max(stopCount + 1, 2 * pathsToPickup.length);
+			pathsToPickup = new PathData[length];
+			pathsFromPickup = new PathData[length];
+			pathsToDropoff = new PathData[length];
+			pathsFromDropoff = new PathData[length];
 		}
 
-		double minPickupTime = drtRequest.getEarliestStartTime();// == now (for immediate requests); over-optimistic
-
-		// calc backward dijkstra from pickup to ends of all stop + start
+		// special entries (see the comment on the path arrays)
 		// TODO exclude inserting pickup after fully occupied stops
-		links.set(0, vEntry.start.link);
-		pathsToPickup = backwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime);
-
-		// calc forward dijkstra from pickup to beginnings of all stops + dropoff
-		// TODO exclude inserting before fully occupied stops (unless the new request's dropoff is located there)
-		links.set(0, drtRequest.getToLink());
-		pathsFromPickup = forwardPathSearch.calcPaths(drtRequest.getFromLink(), links, minPickupTime);
-
-		PathData pickupToDropoffPath = pathsFromPickup[0];// only if no other passengers on board (optimistic)
-		double minTravelTime = pickupToDropoffPath.path.travelTime + pickupToDropoffPath.firstAndLastLinkTT;
-		double minDropoffTime = minPickupTime + minTravelTime + stopDuration; // uses (over-)optimistic components
-
-		// calc backward dijkstra from dropoff to ends of all stops
-		// TODO exclude inserting dropoff after fully occupied stops (unless the new request's dropoff is located there)
-		links.set(0, drtRequest.getFromLink());
-		// TODO change the above line into the following one (after nulls are supported by OneToManyPathSearch)
-		// links.set(0, null);
-		pathsToDropoff = backwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime);
-
-		// calc forward dijkstra from dropoff to beginnings of all stops
-		// TODO exclude inserting dropoff before fully occupied stops
-		pathsFromDropoff = forwardPathSearch.calcPaths(drtRequest.getToLink(), links, minDropoffTime);
+		pathsToPickup[0] = detourData.getPathToPickup(vEntry.start.link);
+		pathsFromPickup[0] = detourData.getPathFromPickup(drtRequest.getToLink());
+
+		for (int i = 1; i <= stopCount; i++) {
+			Link stopLink = vEntry.stops.get(i - 1).task.getLink();
+			pathsToPickup[i] = detourData.getPathToPickup(stopLink);
+			pathsFromPickup[i] = detourData.getPathFromPickup(stopLink);
+			pathsToDropoff[i] = detourData.getPathToDropoff(stopLink);
+			pathsFromDropoff[i] = detourData.getPathFromDropoff(stopLink);
+		}
 	}
 
 	private void findPickupDropoffInsertions(DrtRequest drtRequest, VehicleData.Entry vEntry) {
-		insertions = new ArrayList<>();
-		for (int i = 0; i <= stopCount; i++) {
+		currentTime = timer.getTimeOfDay();
+		bestPickupIdx = -1;
+		bestDropoffIdx = -1;
+		minCost = Double.MAX_VALUE;
+
+		// the remaining insertions would violate maxWaitTime or latestArrivalTime anyway
+		int pickupIdxLimit = costCalculator.calcPickupIdxLimit(drtRequest, vEntry);
+		int dropoffIdxLimit = costCalculator.calcDropoffIdxLimit(drtRequest, vEntry);
+
+		for (int i = 0; i < pickupIdxLimit; i++) {
 			// pickup is inserted after node i, where
 			// node 0 is 'start' (current position/immediate diversion point)
 			// node i > 0 is (i-1)th 'stop task'
@@ -178,12 +168,13 @@ public class SingleVehicleInsertionProblem {
 				continue;
 			}
 
-			iterateDropoffInsertions(drtRequest, vEntry, i);
+			iterateDropoffInsertions(drtRequest, vEntry, i, dropoffIdxLimit);
 		}
 	}
 
-	private void iterateDropoffInsertions(DrtRequest drtRequest, VehicleData.Entry vEntry, int i) {
-		for (int j = i; j <= stopCount; j++) {
+	private void iterateDropoffInsertions(DrtRequest drtRequest, VehicleData.Entry vEntry, int i,
+			int dropoffIdxLimit) {
+		for (int j = i; j < dropoffIdxLimit; j++) {
 			// dropoff is inserted after node j, where
 			// node j=i is 'pickup'
 			// node j>i is (j-1)th 'stop task'
@@ -204,11 +195,11 @@ public class SingleVehicleInsertionProblem {
 				continue;
 			}
 
-			addInsertion(drtRequest, vEntry, i, j);
+			evaluateInsertion(drtRequest, vEntry, i, j);
 		}
 	}
 
-	private void addInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry, int i, int j) {
+	private void evaluateInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry, int i, int j) {
 		// i -> pickup
 		PathData toPickup = pathsToPickup[i]; // i -> pickup
 		PathData fromPickup = pathsFromPickup[i == j ? 0 : i + 1]; // pickup -> (dropoff | i+1)
@@ -217,19 +208,24 @@ public class SingleVehicleInsertionProblem {
 		PathData fromDropoff = j == stopCount ? null // dropoff inserted at the end
 				: pathsFromDropoff[j + 1];
 
-		insertions.add(new Insertion(i, j, toPickup, fromPickup, toDropoff, fromDropoff));
+		double cost = costCalculator.calculate(drtRequest, vEntry, i, j, toPickup, fromPickup, toDropoff,
+				fromDropoff, currentTime);
+		if (cost < minCost) {
+			bestPickupIdx = i;
+			bestDropoffIdx = j;
+			minCost = cost;
+		}
 	}
 
-	private BestInsertion selectBestInsertion(DrtRequest drtRequest, VehicleData.Entry vEntry) {
-		double minCost = Double.MAX_VALUE;
-		Insertion bestInsertion = null;
-		for (Insertion insertion : insertions) {
-			double cost = costCalculator.calculate(drtRequest, vEntry, insertion, timer.getTimeOfDay());
-			if (cost < minCost) {
-				bestInsertion = insertion;
-				minCost = cost;
-			}
+	private BestInsertion createBestInsertion(VehicleData.Entry vEntry) {
+		if (bestPickupIdx == -1) {
+			return new BestInsertion(null, vEntry, minCost);
 		}
+
+		int i = bestPickupIdx;
+		int j = bestDropoffIdx;
+		Insertion bestInsertion = new Insertion(i, j, pathsToPickup[i], pathsFromPickup[i == j ? 0 : i + 1],
+				i == j ? null : pathsToDropoff[j], j == stopCount ? null : pathsFromDropoff[j + 1]);
 		return new BestInsertion(bestInsertion, vEntry, minCost);
 	}
 }
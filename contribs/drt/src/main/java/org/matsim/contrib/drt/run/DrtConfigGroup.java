@@ -54,6 +54,10 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 	private static final String PRINT_WARNINGS = "plotDetailedWarnings";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String K_NEAREST_VEHICLES = "kNearestVehiclesToFilter";
+	private static final String REBALANCING_INTERVAL = "rebalancingInterval";
+	private static final String REBALANCING_HORIZON = "rebalancingHorizon";
+	private static final String REBALANCING_CELL_SIZE = "rebalancingCellSize";
+	private static final String REQUEST_BATCHING_INTERVAL = "requestBatchingInterval";
 
 	private double stopDuration = Double.NaN;// seconds
 	private double maxWaitTime = Double.NaN;// seconds
@@ -83,6 +87,11 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
 
 	private int kNearestVehicles = 0;
+
+	private int rebalancingInterval = 0;// [s]; 0 - no rebalancing
+	private double rebalancingHorizon = 900;// [s]
+	private double rebalancingCellSize = 1000;// [m]
+	private int requestBatchingInterval = 0;// [s]; 0 - no batching
 	
 	public enum OperationalScheme {
 		stationbased, door2door
@@ -136,6 +145,18 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 		map.put(PRINT_WARNINGS,
 				"Prints detailed warnings for DRT customers that cannot be served or routed. Default is false.");
 		map.put(K_NEAREST_VEHICLES, "Filters the k nearest vehicles to the request. Speeds up simulation with big fleets, but could lead to a worse solution. Default: k==0 (no filtering used)");
+		map.put(REBALANCING_INTERVAL,
+				"Idle vehicles are rebalanced every rebalancingInterval seconds, based on the demand observed "
+						+ "in the previous iterations. Default is 0 (no rebalancing).");
+		map.put(REBALANCING_HORIZON,
+				"Idle vehicles are sent to the zones where demand is expected within the next rebalancingHorizon "
+						+ "seconds. Default is 900.");
+		map.put(REBALANCING_CELL_SIZE,
+				"Size (in meters) of the square zones used for demand forecasting and rebalancing. Default is 1000.");
+		map.put(REQUEST_BATCHING_INTERVAL,
+				"If positive, requests are collected and jointly inserted into schedules every requestBatchingInterval "
+						+ "seconds (e.g. 30), which improves throughput and pooling at peak demand, at the cost of longer "
+						+ "response times. Default is 0 (each request is inserted in the time step it is submitted).");
 		return map;
 	}
 
@@ -334,4 +355,44 @@ public class DrtConfigGroup extends ReflectiveConfigGroup {
 	public void setPrintDetailedWarnings(boolean printDetailedWarnings) {
 		this.printDetailedWarnings = printDetailedWarnings;
 	}
+
+	@StringGetter(REBALANCING_INTERVAL)
+	public int getRebalancingInterval() {
+		return rebalancingInterval;
+	}
+
+	@StringSetter(REBALANCING_INTERVAL)
+	public void setRebalancingInterval(int rebalancingInterval) {
+		this.rebalancingInterval = rebalancingInterval;
+	}
+
+	@StringGetter(REBALANCING_HORIZON)
+	public double getRebalancingHorizon() {
+		return rebalancingHorizon;
+	}
+
+	@StringSetter(REBALANCING_HORIZON)
+	public void setRebalancingHorizon(double rebalancingHorizon) {
+		this.rebalancingHorizon = rebalancingHorizon;
+	}
+
+	@StringGetter(REBALANCING_CELL_SIZE)
+	public double getRebalancingCellSize() {
+		return rebalancingCellSize;
+	}
+
+	@StringSetter(REBALANCING_CELL_SIZE)
+	public void setRebalancingCellSize(double rebalancingCellSize) {
+		this.rebalancingCellSize = rebalancingCellSize;
+	}
+
+	@StringGetter(REQUEST_BATCHING_INTERVAL)
+	public int getRequestBatchingInterval() {
+		return requestBatchingInterval;
+	}
+
+	@StringSetter(REQUEST_BATCHING_INTERVAL)
+	public void setRequestBatchingInterval(int requestBatchingInterval) {
+		this.requestBatchingInterval = requestBatchingInterval;
+	}
 }
@@ -6,6 +6,7 @@ import org.matsim.contrib.drt.data.validator.*;
 import org.matsim.contrib.drt.routing.*;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.data.file.VehicleReader;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.*;
 import org.matsim.contrib.dvrp.run.DvrpModule;
 import org.matsim.core.config.*;
 import org.matsim.core.controler.AbstractModule;
@@ -24,6 +25,13 @@ public final class DrtModule extends AbstractModule {
 		bind(Fleet.class).toProvider(DefaultDrtFleetProvider.class).asEagerSingleton();
 		bind(DrtRequestValidator.class).to(DefaultDrtRequestValidator.class);
 
+		if (drtCfg.getRebalancingInterval() > 0) {
+			bind(ZonalDemandAggregator.class).toProvider(
+					new ZonalDemandAggregatorProvider(DrtConfigGroup.DRT_MODE, drtCfg.getRebalancingCellSize()))
+					.asEagerSingleton();
+			addEventHandlerBinding().to(ZonalDemandAggregator.class);
+		}
+
 		switch (drtCfg.getOperationalScheme()) {
 			case door2door:
 				addRoutingModuleBinding(DrtConfigGroup.DRT_MODE).to(DrtRoutingModule.class).asEagerSingleton();
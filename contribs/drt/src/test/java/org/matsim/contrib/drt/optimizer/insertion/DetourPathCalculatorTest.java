@@ -0,0 +1,132 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData.*;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
+import org.matsim.contrib.drt.schedule.DrtStopTask;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.*;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * The paths calculated by {@link DetourPathCalculator} (one-to-many searches shared by all vehicles) are the same as
+ * the ones calculated separately for each vehicle (as was done by {@link SingleVehicleInsertionProblem} before).
+ */
+public class DetourPathCalculatorTest {
+	private static final int GRID_SIZE = 6;
+	private static final double STOP_DURATION = 60;
+	private static final double MAX_WAIT_TIME = 600;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> links = PerVehicleDetourPaths.createGrid(network, GRID_SIZE);
+	private final TravelTime travelTime = new FreeSpeedTravelTime();
+	private final TravelDisutility travelDisutility = new TimeAsTravelDisutility(travelTime);
+	private final MobsimTimer timer = new MobsimTimer();
+
+	@Test
+	public void testSameDetoursAsPerVehicleSearches() {
+		timer.setTime(100);
+		DrtRequest request = new DrtRequest(Id.create("r", Request.class), null, links.get(17), links.get(84), 100,
+				100 + MAX_WAIT_TIME, 3000, 100, null);
+
+		List<Entry> vEntries = new ArrayList<>();
+		vEntries.add(createEntry(0, 100));// idle
+		vEntries.add(createEntry(30, 120, 41, 200, 5, 400, 98, 700));
+		vEntries.add(createEntry(12, 150, 17, 300, 84, 500));// stops at the pickup and dropoff links
+		vEntries.add(createEntry(60, 200, 77, 650, 9, 2990, 33, 3500));// pickup and dropoff limits
+		vEntries.add(createEntry(44, 700, 2, 900));// too late for pickup
+
+		for (int threads : new int[] { 1, 2 }) {
+			OneToManyPathSearchPool pool = new OneToManyPathSearchPool(network, travelDisutility, travelTime, threads);
+			DetourData detourData = new DetourPathCalculator(pool, STOP_DURATION, MAX_WAIT_TIME, timer)
+					.calculatePaths(request, vEntries);
+			pool.shutdown();
+
+			for (Entry vEntry : vEntries) {
+				assertSamePaths(request, vEntry, detourData);
+			}
+		}
+	}
+
+	// start link and time, followed by stop link and begin time pairs
+	private Entry createEntry(int startLinkIdx, double startTime, double... stops) {
+		Vehicle vehicle = new VehicleImpl(Id.create("v" + startLinkIdx, Vehicle.class), links.get(startLinkIdx), 4,
+				0, 10000);
+		Entry vEntry = new Entry(vehicle, new LinkTimePair(links.get(startLinkIdx), startTime));
+		for (int i = 0; i < stops.length; i += 2) {
+			vEntry.stops.add(new Stop(new DrtStopTask(stops[i + 1], stops[i + 1] + STOP_DURATION,
+					links.get((int)stops[i]))));
+		}
+		return vEntry;
+	}
+
+	private void assertSamePaths(DrtRequest request, Entry vEntry, DetourData detourData) {
+		InsertionCostCalculator costCalculator = new InsertionCostCalculator(STOP_DURATION, MAX_WAIT_TIME);
+		int pickupIdxLimit = costCalculator.calcPickupIdxLimit(request, vEntry);
+		if (pickupIdxLimit == 0) {
+			return;// not searched
+		}
+		int dropoffIdxLimit = costCalculator.calcDropoffIdxLimit(request, vEntry);
+
+		PerVehicleDetourPaths paths = new PerVehicleDetourPaths(network, travelTime, travelDisutility,
+				STOP_DURATION, request, vEntry);
+		assertSamePath(paths.pathsToPickup[0], detourData.getPathToPickup(vEntry.start.link));
+		assertSamePath(paths.pathsFromPickup[0], detourData.getPathFromPickup(request.getToLink()));
+		for (int i = 1; i <= vEntry.stops.size(); i++) {
+			Link link = vEntry.stops.get(i - 1).task.getLink();
+			if (i < pickupIdxLimit) {
+				assertSamePath(paths.pathsToPickup[i], detourData.getPathToPickup(link));
+			}
+			if (i <= pickupIdxLimit) {
+				assertSamePath(paths.pathsFromPickup[i], detourData.getPathFromPickup(link));
+			}
+			if (i < dropoffIdxLimit) {
+				assertSamePath(paths.pathsToDropoff[i], detourData.getPathToDropoff(link));
+			}
+			if (i <= dropoffIdxLimit) {
+				assertSamePath(paths.pathsFromDropoff[i], detourData.getPathFromDropoff(link));
+			}
+		}
+	}
+
+	private static void assertSamePath(PathData expected, PathData actual) {
+		assertNotNull(actual);
+		assertEquals(expected.firstAndLastLinkTT, actual.firstAndLastLinkTT, 0);
+		assertEquals(expected.path.travelTime, actual.path.travelTime, 0);
+		assertEquals(expected.path.travelCost, actual.path.travelCost, 0);
+		assertEquals(expected.path.links, actual.path.links);
+		assertEquals(expected.path.nodes, actual.path.nodes);
+	}
+}
@@ -0,0 +1,280 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.data.validator.DrtRequestValidator;
+import org.matsim.contrib.drt.optimizer.DrtOptimizerContext;
+import org.matsim.contrib.drt.optimizer.insertion.filter.NoFilter;
+import org.matsim.contrib.drt.passenger.events.*;
+import org.matsim.contrib.drt.run.DrtConfigGroup;
+import org.matsim.contrib.drt.schedule.*;
+import org.matsim.contrib.drt.scheduler.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * Request batching (see {@link DrtConfigGroup#getRequestBatchingInterval()}) on a line of links in both directions
+ * (100 m, 10 m/s).
+ */
+public class InsertionDrtOptimizerTest {
+	private static final int LINK_COUNT = 20;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> forwardLinks = new ArrayList<>();
+	private final MobsimTimer timer = new MobsimTimer();
+	private final List<String> scheduledEvents = new ArrayList<>();
+	private final List<Id<Request>> rejectedRequests = new ArrayList<>();
+
+	private FleetImpl fleet;
+	private InsertionDrtOptimizer optimizer;
+
+	public InsertionDrtOptimizerTest() {
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i <= LINK_COUNT; i++) {
+			nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(100 * i, 0)));
+		}
+		for (int i = 0; i < LINK_COUNT; i++) {
+			forwardLinks.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes.get(i),
+					nodes.get(i + 1), 100, 10, 1000, 1));
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i + "_r"), nodes.get(i + 1), nodes.get(i), 100, 10,
+					1000, 1);
+		}
+	}
+
+	@After
+	public void shutdown() {
+		if (optimizer != null) {
+			optimizer.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(null));
+		}
+	}
+
+	@Test
+	public void testBatchResultsAreReproducible() {
+		List<String> expectedEvents = null;
+		for (int threads : new int[] { 1, 4, 1, 4 }) {
+			initOptimizer(threads, 60, new FreeSpeedTravelTime(), 0, 5, 10, 15);
+			timer.setTime(10);
+			for (int i = 0; i < LINK_COUNT - 2; i += 2) {
+				submitRequest("r" + i, i + 1, LINK_COUNT - 1 - i / 2, 10);
+			}
+			simStep(60);
+
+			assertTrue(rejectedRequests.isEmpty());
+			assertEquals((LINK_COUNT - 2) / 2, scheduledEvents.size());
+			if (expectedEvents == null) {
+				expectedEvents = new ArrayList<>(scheduledEvents);
+			} else {
+				assertEquals(expectedEvents, scheduledEvents);
+			}
+			assertValidSchedules();
+			shutdown();
+		}
+	}
+
+	@Test
+	public void testRequestsCompetingForSameVehicle() {
+		// v0 is next to both requests, v1 is far away
+		initOptimizer(2, 60, new FreeSpeedTravelTime(), 0, LINK_COUNT - 1);
+		timer.setTime(10);
+		DrtRequest r1 = submitRequest("r1", 1, 6, 10);
+		DrtRequest r2 = submitRequest("r2", 2, 5, 10);
+		simStep(60);
+
+		assertTrue(rejectedRequests.isEmpty());
+		assertEquals(2, scheduledEvents.size());
+
+		// both requests are served by v0, the second one inserted into the schedule updated for the first one
+		Schedule schedule = fleet.getVehicles().get(vehicleId(0)).getSchedule();
+		assertSame(schedule, getSchedule(r1.getPickupTask()));
+		assertSame(schedule, getSchedule(r2.getPickupTask()));
+		assertValidSchedules();
+		assertTrue(r1.getPickupTask().getTaskIdx() <= r2.getPickupTask().getTaskIdx());
+		assertTrue(r2.getDropoffTask().getTaskIdx() <= r1.getDropoffTask().getTaskIdx());
+	}
+
+	@Test
+	public void testBatchingIntervalNotMultipleOfTimeStep() {
+		initOptimizer(1, 10, new FreeSpeedTravelTime(), 0);
+		// time step: 3 s
+		simStep(0);
+		simStep(3);
+		DrtRequest request = submitRequest("r", 1, 5, 3);
+		simStep(6);
+		simStep(9);
+		assertNull(request.getPickupTask());
+
+		simStep(12);// first step after 10
+		assertNotNull(request.getPickupTask());
+		assertEquals(1, scheduledEvents.size());
+		assertValidSchedules();
+	}
+
+	@Test
+	public void testPathSearchStartsAtBatchTime() {
+		// very slow until 30 s, so paths searched from the request submission time (i.e. from the past) would make
+		// the request infeasible (max travel time exceeded)
+		TravelTime travelTime = new TravelTime() {
+			@Override
+			public double getLinkTravelTime(Link link, double time, Person person,
+					org.matsim.vehicles.Vehicle vehicle) {
+				return time < 30 ? 5000 : 10;
+			}
+		};
+		initOptimizer(1, 30, travelTime, 3);
+		simStep(0);
+		DrtRequest request = submitRequest("r", 3, 5, 0);
+		simStep(30);
+
+		assertTrue(rejectedRequests.isEmpty());
+		assertEquals(30, request.getPickupTask().getBeginTime(), 0);
+		assertEquals(30 + 60 + 1 + 10 + 10, request.getDropoffTask().getBeginTime(), 0);
+		assertValidSchedules();
+	}
+
+	private void initOptimizer(int threads, int batchingInterval, TravelTime travelTime, int... vehicleLinkIdxs) {
+		DrtConfigGroup drtCfg = new DrtConfigGroup();
+		drtCfg.setStopDuration(60);
+		drtCfg.setMaxWaitTime(600);
+		drtCfg.setNumberOfThreads(threads);
+		drtCfg.setRequestBatchingInterval(batchingInterval);
+
+		fleet = new FleetImpl();
+		for (int i = 0; i < vehicleLinkIdxs.length; i++) {
+			fleet.addVehicle(new VehicleImpl(vehicleId(i), forwardLinks.get(vehicleLinkIdxs[i]), 4, -1, 10000));
+		}
+
+		timer.setTime(0);
+		scheduledEvents.clear();
+		rejectedRequests.clear();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		eventsManager.addHandler(new DrtRequestScheduledEventHandler() {
+			@Override
+			public void handleEvent(DrtRequestScheduledEvent event) {
+				scheduledEvents.add(event.getRequestId() + "->" + event.getVehicleId() + " " + event.getPickupTime()
+						+ " " + event.getDropoffTime());
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		eventsManager.addHandler(new DrtRequestRejectedEventHandler() {
+			@Override
+			public void handleEvent(DrtRequestRejectedEvent event) {
+				rejectedRequests.add(event.getRequestId());
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+
+		DrtScheduler scheduler = new DrtScheduler(drtCfg, fleet, timer, new DrtSchedulerParams(drtCfg), travelTime);
+		for (Vehicle v : fleet.getVehicles().values()) {
+			v.getSchedule().nextTask();// start STAY
+		}
+
+		DrtRequestValidator validator = new DrtRequestValidator() {
+			@Override
+			public boolean validateDrtRequest(DrtRequest request) {
+				return true;
+			}
+		};
+		DrtOptimizerContext optimContext = new DrtOptimizerContext(fleet, network, timer, travelTime,
+				new TimeAsTravelDisutility(travelTime), scheduler, eventsManager, new NoFilter(), validator, null);
+		optimizer = new InsertionDrtOptimizer(optimContext, drtCfg);
+	}
+
+	private static Id<Vehicle> vehicleId(int idx) {
+		return Id.create("v" + idx, Vehicle.class);
+	}
+
+	private DrtRequest submitRequest(String id, int fromLinkIdx, int toLinkIdx, double submissionTime) {
+		DrtRequest request = new DrtRequest(Id.create(id, Request.class), null, forwardLinks.get(fromLinkIdx),
+				forwardLinks.get(toLinkIdx), submissionTime, submissionTime + 600, submissionTime + 3600,
+				submissionTime, null);
+		optimizer.requestSubmitted(request);
+		return request;
+	}
+
+	private void simStep(double time) {
+		timer.setTime(time);
+		optimizer.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(null, time));
+	}
+
+	private Schedule getSchedule(DrtStopTask task) {
+		for (Vehicle v : fleet.getVehicles().values()) {
+			if (v.getSchedule().getTasks().contains(task)) {
+				return v.getSchedule();
+			}
+		}
+		return null;
+	}
+
+	// tasks are contiguous in time and space, each pickup precedes its dropoff
+	private void assertValidSchedules() {
+		for (Vehicle v : fleet.getVehicles().values()) {
+			List<? extends Task> tasks = v.getSchedule().getTasks();
+			Link link = v.getStartLink();
+			for (int i = 0; i < tasks.size(); i++) {
+				DrtTask task = (DrtTask)tasks.get(i);
+				if (i > 0) {
+					assertEquals(tasks.get(i - 1).getEndTime(), task.getBeginTime(), 1e-9);
+				}
+
+				if (task.getDrtTaskType() == DrtTask.DrtTaskType.DRIVE) {
+					DrtDriveTask driveTask = (DrtDriveTask)task;
+					assertSame(link, driveTask.getPath().getFromLink());
+					link = driveTask.getPath().getToLink();
+				} else {
+					assertSame(link, ((StayTask)task).getLink());
+				}
+
+				if (task.getDrtTaskType() == DrtTask.DrtTaskType.STOP) {
+					DrtStopTask stopTask = (DrtStopTask)task;
+					for (DrtRequest r : stopTask.getPickupRequests()) {
+						assertSame(stopTask, r.getPickupTask());
+						assertTrue(tasks.indexOf(r.getDropoffTask()) > i);
+					}
+					for (DrtRequest r : stopTask.getDropoffRequests()) {
+						assertSame(stopTask, r.getDropoffTask());
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData.Entry;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.contrib.locationchoice.router.*;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.*;
+import org.matsim.core.router.util.*;
+
+/**
+ * Detour paths of a single vehicle calculated for all its stops (no pruning) with new searches, as was done by
+ * {@link SingleVehicleInsertionProblem} before the paths were calculated by {@link DetourPathCalculator}. Path[0] is a
+ * special entry, path[i] corresponds to stop i-1.
+ */
+class PerVehicleDetourPaths {
+	final PathData[] pathsToPickup;
+	final PathData[] pathsFromPickup;
+	final PathData[] pathsToDropoff;
+	final PathData[] pathsFromDropoff;
+
+	PerVehicleDetourPaths(Network network, TravelTime travelTime, TravelDisutility travelDisutility,
+			double stopDuration, DrtRequest request, Entry vEntry) {
+		OneToManyPathSearch forwardSearch = OneToManyPathSearch.createForwardSearch(new FastMultiNodeDijkstra(
+				new ArrayRoutingNetworkFactory(null).createRoutingNetwork(network), travelDisutility, travelTime, null,
+				new ArrayFastRouterDelegateFactory(), true));
+		OneToManyPathSearch backwardSearch = OneToManyPathSearch.createBackwardSearch(new BackwardFastMultiNodeDijkstra(
+				new InverseArrayRoutingNetworkFactory(null).createRoutingNetwork(network), travelDisutility,
+				travelTime, null, new ArrayFastRouterDelegateFactory(), true));
+
+		int stopCount = vEntry.stops.size();
+		List<Link> links = new ArrayList<>(stopCount + 1);
+		links.add(null);// special link
+		for (int i = 0; i < stopCount; i++) {
+			links.add(vEntry.stops.get(i).task.getLink());
+		}
+
+		double minPickupTime = request.getEarliestStartTime();
+		links.set(0, vEntry.start.link);
+		pathsToPickup = backwardSearch.calcPaths(request.getFromLink(), links, minPickupTime);
+		links.set(0, request.getToLink());
+		pathsFromPickup = forwardSearch.calcPaths(request.getFromLink(), links, minPickupTime);
+
+		PathData pickupToDropoffPath = pathsFromPickup[0];
+		double minTravelTime = pickupToDropoffPath.path.travelTime + pickupToDropoffPath.firstAndLastLinkTT;
+		double minDropoffTime = minPickupTime + minTravelTime + stopDuration;
+		links.set(0, request.getFromLink());
+		pathsToDropoff = backwardSearch.calcPaths(request.getToLink(), links, minDropoffTime);
+		pathsFromDropoff = forwardSearch.calcPaths(request.getToLink(), links, minDropoffTime);
+	}
+
+	/**
+	 * Grid of size x size nodes (100 m apart) with links in both directions; the lengths vary to avoid equally short
+	 * paths.
+	 */
+	static List<Link> createGrid(Network network, int size) {
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y),
+						new Coord(100 * x, 100 * y));
+			}
+		}
+
+		List<Link> links = new ArrayList<>();
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				if (x + 1 < size) {
+					addLinks(network, links, nodes[x][y], nodes[x + 1][y], 100 + (7 * x + 13 * y) % 50);
+				}
+				if (y + 1 < size) {
+					addLinks(network, links, nodes[x][y], nodes[x][y + 1], 100 + (11 * x + 5 * y) % 50);
+				}
+			}
+		}
+		return links;
+	}
+
+	private static void addLinks(Network network, List<Link> links, Node n1, Node n2, double length) {
+		links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(n1.getId() + "-" + n2.getId()), n1, n2,
+				length, 10, 1000, 1));
+		links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(n2.getId() + "-" + n1.getId()), n2, n1,
+				length + 3, 10, 1000, 1));
+	}
+}
@@ -0,0 +1,222 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.drt.optimizer.insertion;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.drt.data.DrtRequest;
+import org.matsim.contrib.drt.optimizer.VehicleData.*;
+import org.matsim.contrib.drt.optimizer.insertion.DetourPathCalculator.DetourData;
+import org.matsim.contrib.drt.optimizer.insertion.SingleVehicleInsertionProblem.BestInsertion;
+import org.matsim.contrib.drt.schedule.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearchPool;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.*;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * The best insertion found with pruning (see {@link InsertionCostCalculator#calcPickupIdxLimit} and
+ * {@link InsertionCostCalculator#calcDropoffIdxLimit}) is the same as the one found by evaluating all insertions with
+ * unpruned paths, also if a stop is exactly at one of the limits or has no slack time.
+ */
+public class SingleVehicleInsertionProblemTest {
+	private static final double STOP_DURATION = 60;
+	private static final double MAX_WAIT_TIME = 600;
+	private static final double NOW = 100;
+	private static final double LATEST_PICKUP_END_TIME = NOW + MAX_WAIT_TIME;
+	private static final double LATEST_ARRIVAL_TIME = 1500;
+	private static final double NO_DROPOFF = -1;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> links = PerVehicleDetourPaths.createGrid(network, 6);
+	private final TravelTime travelTime = new FreeSpeedTravelTime();
+	private final TravelDisutility travelDisutility = new TimeAsTravelDisutility(travelTime);
+	private final MobsimTimer timer = new MobsimTimer();
+	private final InsertionCostCalculator costCalculator = new InsertionCostCalculator(STOP_DURATION,
+			MAX_WAIT_TIME);
+
+	private final DrtRequest request = createRequest(17, 84, LATEST_ARRIVAL_TIME);
+
+	@Test
+	public void testNoStops() {
+		assertSameBestInsertion(createEntry(0, NOW));
+		assertSameBestInsertion(createEntry(17, NOW));// at the pickup link
+	}
+
+	@Test
+	public void testPickupIdxLimit() {
+		// stop 0 (at the pickup link) ends exactly at the limit: the passenger can be picked up there
+		double limit = LATEST_PICKUP_END_TIME - STOP_DURATION;
+		Entry vEntry = createEntry(3, NOW, 17, limit, NO_DROPOFF, 40, limit + 100, NO_DROPOFF);
+		assertEquals(2, costCalculator.calcPickupIdxLimit(request, vEntry));
+		assertEquals(1, assertSameBestInsertion(vEntry).insertion.pickupIdx);
+
+		vEntry = createEntry(3, NOW, 17, limit + 1, NO_DROPOFF, 40, limit + 100, NO_DROPOFF);
+		assertEquals(1, costCalculator.calcPickupIdxLimit(request, vEntry));
+		assertNull(assertSameBestInsertion(vEntry).insertion);
+
+		// the vehicle (at the pickup link) starts exactly at the limit
+		vEntry = createEntry(17, limit, 40, limit + 100, NO_DROPOFF);
+		assertEquals(1, costCalculator.calcPickupIdxLimit(request, vEntry));
+		assertEquals(0, assertSameBestInsertion(vEntry).insertion.pickupIdx);
+
+		vEntry = createEntry(17, limit + 1, 40, limit + 100, NO_DROPOFF);
+		assertEquals(0, costCalculator.calcPickupIdxLimit(request, vEntry));
+		assertNull(assertSameBestInsertion(vEntry).insertion);
+	}
+
+	@Test
+	public void testDropoffIdxLimit() {
+		// stop 1 (at the dropoff link) ends exactly at the latest arrival time
+		Entry vEntry = createEntry(17, NOW, 50, 300, NO_DROPOFF, 84, LATEST_ARRIVAL_TIME, NO_DROPOFF, 20,
+				LATEST_ARRIVAL_TIME + 200, NO_DROPOFF);
+		assertEquals(3, costCalculator.calcDropoffIdxLimit(request, vEntry));
+		assertSameBestInsertion(vEntry);
+
+		vEntry = createEntry(17, NOW, 50, 300, NO_DROPOFF, 84, LATEST_ARRIVAL_TIME + 1, NO_DROPOFF, 20,
+				LATEST_ARRIVAL_TIME + 200, NO_DROPOFF);
+		assertEquals(2, costCalculator.calcDropoffIdxLimit(request, vEntry));
+		assertSameBestInsertion(vEntry);
+	}
+
+	@Test
+	public void testZeroSlack() {
+		// stop 0 cannot be delayed
+		assertSameBestInsertion(createEntry(0, NOW, 30, 200, 0, 60, 600, NO_DROPOFF));
+		// no stop can be delayed
+		assertSameBestInsertion(createEntry(0, NOW, 30, 200, 0, 60, 600, 0));
+		// stops at the pickup and dropoff links (insertions without detours)
+		assertNotNull(assertSameBestInsertion(createEntry(5, NOW, 17, 200, 0, 84, 600, 0)).insertion);
+		// combined with the limits
+		Entry vEntry = createEntry(5, NOW, 17, LATEST_PICKUP_END_TIME - STOP_DURATION, 0, 84, LATEST_ARRIVAL_TIME,
+				0);
+		assertEquals(2, costCalculator.calcPickupIdxLimit(request, vEntry));
+		assertEquals(3, costCalculator.calcDropoffIdxLimit(request, vEntry));
+		assertNotNull(assertSameBestInsertion(vEntry).insertion);
+	}
+
+	private BestInsertion assertSameBestInsertion(Entry vEntry) {
+		timer.setTime(NOW);
+		OneToManyPathSearchPool pool = new OneToManyPathSearchPool(network, travelDisutility, travelTime, 1);
+		DetourData detourData = new DetourPathCalculator(pool, STOP_DURATION, MAX_WAIT_TIME, timer)
+				.calculatePaths(request, Collections.singletonList(vEntry));
+		pool.shutdown();
+
+		BestInsertion best = new SingleVehicleInsertionProblem(STOP_DURATION, MAX_WAIT_TIME, timer)
+				.findBestInsertion(request, vEntry, detourData);
+		BestInsertion expected = findBestInsertionWithoutPruning(vEntry);
+
+		assertEquals(expected.cost, best.cost, 0);
+		if (expected.insertion == null) {
+			assertNull(best.insertion);
+		} else {
+			assertEquals(expected.insertion.pickupIdx, best.insertion.pickupIdx);
+			assertEquals(expected.insertion.dropoffIdx, best.insertion.dropoffIdx);
+		}
+		return best;
+	}
+
+	// all insertions (as in SingleVehicleInsertionProblem, but without the index limits)
+	private BestInsertion findBestInsertionWithoutPruning(Entry vEntry) {
+		PerVehicleDetourPaths paths = new PerVehicleDetourPaths(network, travelTime, travelDisutility, STOP_DURATION,
+				request, vEntry);
+		int stopCount = vEntry.stops.size();
+		double minCost = Double.MAX_VALUE;
+		int bestI = -1;
+		int bestJ = -1;
+		for (int i = 0; i <= stopCount; i++) {
+			int occupancy = (i == 0) ? vEntry.startOccupancy : vEntry.stops.get(i - 1).outputOccupancy;
+			if (occupancy == vEntry.vehicle.getCapacity()
+					|| (i < stopCount && request.getFromLink() == vEntry.stops.get(i).task.getLink())) {
+				continue;
+			}
+
+			for (int j = i; j <= stopCount; j++) {
+				if (j > i && vEntry.stops.get(j - 1).outputOccupancy == vEntry.vehicle.getCapacity()) {
+					break;
+				}
+				if (j < stopCount && request.getToLink() == vEntry.stops.get(j).task.getLink()) {
+					continue;
+				}
+
+				double cost = costCalculator.calculate(request, vEntry, i, j, paths.pathsToPickup[i],
+						paths.pathsFromPickup[i == j ? 0 : i + 1], i == j ? null : paths.pathsToDropoff[j],
+						j == stopCount ? null : paths.pathsFromDropoff[j + 1], NOW);
+				if (cost < minCost) {
+					minCost = cost;
+					bestI = i;
+					bestJ = j;
+				}
+			}
+		}
+
+		return new BestInsertion(bestI == -1 ? null
+				: new SingleVehicleInsertionProblem.Insertion(bestI, bestJ, null, null, null, null), vEntry, minCost);
+	}
+
+	private DrtRequest createRequest(int fromLinkIdx, int toLinkIdx, double latestArrivalTime) {
+		return new DrtRequest(Id.create("r" + fromLinkIdx + "_" + toLinkIdx, Request.class), null,
+				links.get(fromLinkIdx), links.get(toLinkIdx), NOW, NOW + MAX_WAIT_TIME, latestArrivalTime, NOW, null);
+	}
+
+	/**
+	 * @param stops
+	 *            triples: link index, end time and the slack time of a passenger dropped off there (NO_DROPOFF if
+	 *            none); stops take STOP_DURATION
+	 */
+	private Entry createEntry(int startLinkIdx, double startTime, double... stops) {
+		Link startLink = links.get(startLinkIdx);
+		Vehicle vehicle = new VehicleImpl(Id.create("v", Vehicle.class), startLink, 4, 0, 10000);
+		vehicle.getSchedule().addTask(new DrtStayTask(0, 10000, startLink));
+		vehicle.getSchedule().nextTask();
+
+		Entry vEntry = new Entry(vehicle, new LinkTimePair(startLink, startTime));
+		for (int i = 0; i < stops.length; i += 3) {
+			double endTime = stops[i + 1];
+			DrtStopTask stopTask = new DrtStopTask(endTime - STOP_DURATION, endTime, links.get((int)stops[i]));
+			if (stops[i + 2] != NO_DROPOFF) {
+				stopTask.addDropoffRequest(createRequest(0, (int)stops[i], stopTask.getBeginTime() + stops[i + 2]));
+			}
+			vEntry.stops.add(new Stop(stopTask));
+		}
+
+		// as in VehicleData
+		int outputOccupancy = 0;
+		double minSlackTime = Double.MAX_VALUE;
+		for (int i = vEntry.stops.size() - 1; i >= 0; i--) {
+			Stop s = vEntry.stops.get(i);
+			s.outputOccupancy = outputOccupancy;
+			outputOccupancy -= s.occupancyChange;
+			minSlackTime = Math.min(minSlackTime, s.slackTime);
+			s.minSlackTimeOfRemainingStops = minSlackTime;
+		}
+		vEntry.startOccupancy = outputOccupancy;
+		return vEntry;
+	}
+}
@@ -0,0 +1,212 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.util.distance.DistanceUtils;
+import org.matsim.contrib.zone.*;
+
+/**
+ * Moves idle vehicles ahead of the forecast demand. The target number of idle vehicles in a zone is the demand expected
+ * there within the given time horizon (see {@link ZonalDemandAggregator}). Zones with more idle vehicles than
+ * their target send the surplus to zones with fewer, so that the total (beeline) distance between zone centroids is
+ * minimal ({@link TransportProblem}). Vehicles driving to their final STAY task (e.g. relocated in the previous
+ * rebalancing) are counted as (not movable) supply of the zone they are driving to.
+ * <p>
+ * A relocated vehicle is sent to the link whose to-node is the closest one to the centroid of the destination zone.
+ */
+public class MinCostFlowRebalancingStrategy {
+	public static class Relocation {
+		public final Vehicle vehicle;
+		public final Link link;
+
+		public Relocation(Vehicle vehicle, Link link) {
+			this.vehicle = vehicle;
+			this.link = link;
+		}
+	}
+
+	public interface VehicleRelocator {
+		/**
+		 * Sends the idle vehicle (currently staying at fromLink) to toLink.
+		 */
+		void relocate(Vehicle vehicle, Link fromLink, Link toLink, double time);
+	}
+
+	private final ZonalDemandAggregator demandAggregator;
+	private final Map<Id<Zone>, Link> targetLinks = new HashMap<>();
+
+	public MinCostFlowRebalancingStrategy(ZonalDemandAggregator demandAggregator, Network network) {
+		this.demandAggregator = demandAggregator;
+
+		ZonalSystem zonalSystem = demandAggregator.getZonalSystem();
+		Map<Id<Zone>, Double> minDistances = new HashMap<>();
+		for (Link link : network.getLinks().values()) {
+			Zone zone = zonalSystem.getZone(link.getToNode());
+			if (zone == null) {
+				continue;
+			}
+
+			double distance = DistanceUtils.calculateSquaredDistance(zone.getCoord(), link.getToNode().getCoord());
+			Double minDistance = minDistances.get(zone.getId());
+			if (minDistance == null || distance < minDistance) {
+				minDistances.put(zone.getId(), distance);
+				targetLinks.put(zone.getId(), link);
+			}
+		}
+	}
+
+	/**
+	 * Sends the idle vehicles of the fleet according to {@link #calcRelocations}. Vehicles that are already on the
+	 * target link are not relocated.
+	 */
+	public void rebalanceFleet(Fleet fleet, ScheduleInquiry scheduleInquiry, double time, double horizon,
+			VehicleRelocator relocator) {
+		for (Relocation r : calcRelocations(fleet.getVehicles().values(), scheduleInquiry, time, horizon)) {
+			Link currentLink = ((StayTask)r.vehicle.getSchedule().getCurrentTask()).getLink();
+			if (currentLink != r.link) {
+				relocator.relocate(r.vehicle, currentLink, r.link, time);
+			}
+		}
+	}
+
+	/**
+	 * @param vehicles
+	 *            idle vehicles (see {@link ScheduleInquiry#isIdle(Vehicle)}) may be relocated; vehicles driving to
+	 *            their final STAY task are counted as supply of the destination zone; all others are ignored
+	 * @param horizon
+	 *            only the demand expected within [time, time + horizon) is taken into account
+	 */
+	public List<Relocation> calcRelocations(Iterable<? extends Vehicle> vehicles, ScheduleInquiry scheduleInquiry,
+			double time, double horizon) {
+		if (!demandAggregator.hasForecast()) {
+			return Collections.emptyList();
+		}
+
+		ZonalSystem zonalSystem = demandAggregator.getZonalSystem();
+		Map<Id<Zone>, List<Vehicle>> idleVehiclesByZone = new HashMap<>();
+		Map<Id<Zone>, Integer> arrivingCounts = new HashMap<>();
+		for (Vehicle v : vehicles) {
+			if (scheduleInquiry.isIdle(v)) {
+				Zone zone = getZone(((StayTask)v.getSchedule().getCurrentTask()).getLink());
+				if (zone != null) {
+					List<Vehicle> zoneVehicles = idleVehiclesByZone.get(zone.getId());
+					if (zoneVehicles == null) {
+						zoneVehicles = new ArrayList<>();
+						idleVehiclesByZone.put(zone.getId(), zoneVehicles);
+					}
+					zoneVehicles.add(v);
+				}
+			} else {
+				Link destination = getFinalStayLinkIfDriving(v.getSchedule());
+				Zone zone = destination == null ? null : getZone(destination);
+				if (zone != null) {
+					Integer count = arrivingCounts.get(zone.getId());
+					arrivingCounts.put(zone.getId(), count == null ? 1 : count + 1);
+				}
+			}
+		}
+
+		if (idleVehiclesByZone.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<Zone> supplyZones = new ArrayList<>();
+		List<Integer> supplies = new ArrayList<>();
+		List<Zone> demandZones = new ArrayList<>();
+		List<Integer> demands = new ArrayList<>();
+		for (Zone zone : zonalSystem.getZones().values()) {
+			List<Vehicle> zoneVehicles = idleVehiclesByZone.get(zone.getId());
+			int idleCount = zoneVehicles == null ? 0 : zoneVehicles.size();
+			Integer arrivingCount = arrivingCounts.get(zone.getId());
+			int vehicleCount = idleCount + (arrivingCount == null ? 0 : arrivingCount);
+			int target = (int)Math.round(demandAggregator.getExpectedDemand(zone, time, time + horizon));
+
+			if (vehicleCount > target) {
+				if (idleCount > 0) {// only idle vehicles can be sent
+					supplyZones.add(zone);
+					supplies.add(Math.min(idleCount, vehicleCount - target));
+				}
+			} else if (vehicleCount < target && targetLinks.containsKey(zone.getId())) {
+				demandZones.add(zone);
+				demands.add(target - vehicleCount);
+			}
+		}
+
+		if (supplyZones.isEmpty() || demandZones.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		double[][] costs = new double[supplyZones.size()][demandZones.size()];
+		for (int i = 0; i < supplyZones.size(); i++) {
+			for (int j = 0; j < demandZones.size(); j++) {
+				costs[i][j] = DistanceUtils.calculateDistance(supplyZones.get(i).getCoord(),
+						demandZones.get(j).getCoord());
+			}
+		}
+
+		int[][] flows = new TransportProblem(toIntArray(supplies), toIntArray(demands), costs).solve();
+
+		List<Relocation> relocations = new ArrayList<>();
+		for (int i = 0; i < supplyZones.size(); i++) {
+			Iterator<Vehicle> vehicleIter = idleVehiclesByZone.get(supplyZones.get(i).getId()).iterator();
+			for (int j = 0; j < demandZones.size(); j++) {
+				Link targetLink = targetLinks.get(demandZones.get(j).getId());
+				for (int k = 0; k < flows[i][j]; k++) {
+					relocations.add(new Relocation(vehicleIter.next(), targetLink));
+				}
+			}
+		}
+		return relocations;
+	}
+
+	private Zone getZone(Link link) {
+		return demandAggregator.getZonalSystem().getZone(link.getToNode());
+	}
+
+	// the current task is a drive and the only task left is the final STAY
+	private static Link getFinalStayLinkIfDriving(Schedule schedule) {
+		if (schedule.getStatus() != Schedule.ScheduleStatus.STARTED
+				|| !(schedule.getCurrentTask() instanceof DriveTask)) {
+			return null;
+		}
+
+		int nextTaskIdx = schedule.getCurrentTask().getTaskIdx() + 1;
+		if (nextTaskIdx != schedule.getTaskCount() - 1) {
+			return null;
+		}
+
+		Task nextTask = schedule.getTasks().get(nextTaskIdx);
+		return nextTask instanceof StayTask ? ((StayTask)nextTask).getLink() : null;
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+}
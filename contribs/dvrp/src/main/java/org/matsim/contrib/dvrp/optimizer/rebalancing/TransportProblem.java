@@ -0,0 +1,166 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.*;
+
+/**
+ * Transport problem: ship units from supply nodes to demand nodes at the minimum total cost. If the total supply and
+ * the total demand differ, the maximum possible amount (i.e. the smaller of the two) is shipped.
+ * <p>
+ * Solved as min-cost flow (source -> supply nodes -> demand nodes -> sink) with successive shortest paths; the
+ * shortest paths in the residual network are found with a queue-based Bellman-Ford (SPFA), since backward arcs have
+ * negative costs. Each augmentation ships as much as the path allows, so the number of iterations is usually much
+ * smaller than the amount shipped.
+ * <p>
+ * Costs are usually non-integer (e.g. distances), so a label is improved only by more than a small relative
+ * tolerance. Otherwise, rounding errors could make a zero-cost cycle of the residual network look negative and the
+ * search would not terminate.
+ */
+public class TransportProblem {
+	private static final double EPSILON = 1e-9;
+
+	private final int[] supplies;
+	private final int[] demands;
+	private final double[][] costs;
+
+	// residual network
+	private final int nodeCount;
+	private final int source;
+	private final int sink;
+	private final int[] firstArcs;// outgoing arcs of each node form a linked list (-1 terminates)
+	private final int[] nextArcs;
+	private final int[] arcHeads;
+	private final int[] arcCapacities;
+	private final double[] arcCosts;
+	private int arcCount = 0;
+
+	/**
+	 * @param costs
+	 *            costs[i][j] is the cost of shipping one unit from supply node i to demand node j
+	 */
+	public TransportProblem(int[] supplies, int[] demands, double[][] costs) {
+		this.supplies = supplies;
+		this.demands = demands;
+		this.costs = costs;
+
+		nodeCount = supplies.length + demands.length + 2;
+		source = nodeCount - 2;
+		sink = nodeCount - 1;
+		firstArcs = new int[nodeCount];
+		Arrays.fill(firstArcs, -1);
+
+		int maxArcCount = 2 * (supplies.length + supplies.length * demands.length + demands.length);
+		nextArcs = new int[maxArcCount];
+		arcHeads = new int[maxArcCount];
+		arcCapacities = new int[maxArcCount];
+		arcCosts = new double[maxArcCount];
+	}
+
+	/**
+	 * @return flows[i][j] - the amount shipped from supply node i to demand node j
+	 */
+	public int[][] solve() {
+		int[][] flows = new int[supplies.length][demands.length];
+		if (supplies.length == 0 || demands.length == 0) {
+			return flows;
+		}
+
+		for (int i = 0; i < supplies.length; i++) {
+			addArc(source, i, supplies[i], 0);
+		}
+		int[][] transportArcs = new int[supplies.length][demands.length];
+		for (int i = 0; i < supplies.length; i++) {
+			for (int j = 0; j < demands.length; j++) {
+				transportArcs[i][j] = addArc(i, supplies.length + j, Integer.MAX_VALUE, costs[i][j]);
+			}
+		}
+		for (int j = 0; j < demands.length; j++) {
+			addArc(supplies.length + j, sink, demands[j], 0);
+		}
+
+		int[] predecessorArcs = new int[nodeCount];
+		while (findShortestPath(predecessorArcs)) {
+			int amount = Integer.MAX_VALUE;
+			for (int n = sink; n != source; n = arcHeads[predecessorArcs[n] ^ 1]) {
+				amount = Math.min(amount, arcCapacities[predecessorArcs[n]]);
+			}
+			for (int n = sink; n != source; n = arcHeads[predecessorArcs[n] ^ 1]) {
+				arcCapacities[predecessorArcs[n]] -= amount;
+				arcCapacities[predecessorArcs[n] ^ 1] += amount;
+			}
+		}
+
+		for (int i = 0; i < supplies.length; i++) {
+			for (int j = 0; j < demands.length; j++) {
+				flows[i][j] = arcCapacities[transportArcs[i][j] ^ 1];// flow == capacity of the backward arc
+			}
+		}
+		return flows;
+	}
+
+	// SPFA; returns false if the sink cannot be reached
+	private boolean findShortestPath(int[] predecessorArcs) {
+		double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		boolean[] queued = new boolean[nodeCount];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+		distances[source] = 0;
+		queue.add(source);
+		queued[source] = true;
+		while (!queue.isEmpty()) {
+			int n = queue.poll();
+			queued[n] = false;
+			for (int a = firstArcs[n]; a >= 0; a = nextArcs[a]) {
+				if (arcCapacities[a] > 0) {
+					int head = arcHeads[a];
+					double distance = distances[n] + arcCosts[a];
+					if (distance + EPSILON * (1 + Math.abs(distance)) < distances[head]) {
+						distances[head] = distance;
+						predecessorArcs[head] = a;
+						if (!queued[head]) {
+							queue.add(head);
+							queued[head] = true;
+						}
+					}
+				}
+			}
+		}
+		return distances[sink] != Double.POSITIVE_INFINITY;
+	}
+
+	// forward arc: a (even), backward arc: a ^ 1
+	private int addArc(int from, int to, int capacity, double cost) {
+		int a = arcCount;
+		initArc(a, from, to, capacity, cost);
+		initArc(a + 1, to, from, 0, -cost);
+		arcCount += 2;
+		return a;
+	}
+
+	private void initArc(int a, int tail, int head, int capacity, double cost) {
+		arcHeads[a] = head;
+		arcCapacities[a] = capacity;
+		arcCosts[a] = cost;
+		nextArcs[a] = firstArcs[tail];
+		firstArcs[tail] = a;
+	}
+}
@@ -0,0 +1,165 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.zone.*;
+
+/**
+ * Demand forecast per zone and time bin, based on the departures (of the given mode) in the previous iterations.
+ * <p>
+ * Departures are counted while the iteration runs; at the beginning of the next iteration ({@link #reset(int)}) the
+ * counts are merged into the forecast by exponential smoothing (the first iteration with departures replaces the
+ * forecast entirely). Within an iteration the forecast does not change, so it can be read by the optimizer while the
+ * events are being handled.
+ * <p>
+ * A departure is assigned to the zone of the to-node of the departure link (i.e. where a vehicle serving the request
+ * would stand).
+ */
+public class ZonalDemandAggregator implements PersonDepartureEventHandler {
+	private final Network network;
+	private final ZonalSystem zonalSystem;
+	private final String mode;
+	private final double timeBinSize;
+	private final double smoothingFactor;// weight of the most recent iteration
+
+	private final Map<Id<Zone>, int[]> currentCounts = new HashMap<>();
+	private int currentCountSum = 0;
+
+	private final Map<Id<Zone>, double[]> forecast = new HashMap<>();
+	private boolean hasForecast = false;
+
+	public ZonalDemandAggregator(Network network, ZonalSystem zonalSystem, String mode, double timeBinSize) {
+		this(network, zonalSystem, mode, timeBinSize, 0.5);
+	}
+
+	/**
+	 * @param smoothingFactor
+	 *            weight (0, 1] of the most recent iteration in the forecast; 1 means: forecast == last iteration
+	 */
+	public ZonalDemandAggregator(Network network, ZonalSystem zonalSystem, String mode, double timeBinSize,
+			double smoothingFactor) {
+		if (timeBinSize <= 0) {
+			throw new IllegalArgumentException("timeBinSize must be positive: " + timeBinSize);
+		}
+		if (smoothingFactor <= 0 || smoothingFactor > 1) {
+			throw new IllegalArgumentException("smoothingFactor must be in (0, 1]: " + smoothingFactor);
+		}
+
+		this.network = network;
+		this.zonalSystem = zonalSystem;
+		this.mode = mode;
+		this.timeBinSize = timeBinSize;
+		this.smoothingFactor = smoothingFactor;
+	}
+
+	@Override
+	public void handleEvent(PersonDepartureEvent event) {
+		if (!event.getLegMode().equals(mode)) {
+			return;
+		}
+
+		Link link = network.getLinks().get(event.getLinkId());
+		Zone zone = link == null ? null : zonalSystem.getZone(link.getToNode());
+		if (zone == null) {
+			return;
+		}
+
+		int bin = getBin(event.getTime());
+		int[] counts = currentCounts.get(zone.getId());
+		if (counts == null) {
+			counts = new int[bin + 1];
+			currentCounts.put(zone.getId(), counts);
+		} else if (bin >= counts.length) {
+			counts = Arrays.copyOf(counts, bin + 1);
+			currentCounts.put(zone.getId(), counts);
+		}
+		counts[bin]++;
+		currentCountSum++;
+	}
+
+	@Override
+	public void reset(int iteration) {
+		if (currentCountSum == 0) {
+			return;// nothing has been simulated yet (or no demand at all)
+		}
+
+		double weight = hasForecast ? smoothingFactor : 1;
+
+		Set<Id<Zone>> zoneIds = new HashSet<>(forecast.keySet());
+		zoneIds.addAll(currentCounts.keySet());
+		for (Id<Zone> zoneId : zoneIds) {
+			int[] counts = currentCounts.get(zoneId);
+			double[] oldForecast = forecast.get(zoneId);
+			int length = Math.max(counts == null ? 0 : counts.length, oldForecast == null ? 0 : oldForecast.length);
+
+			double[] newForecast = new double[length];
+			for (int i = 0; i < length; i++) {
+				double count = counts == null || i >= counts.length ? 0 : counts[i];
+				double old = oldForecast == null || i >= oldForecast.length ? 0 : oldForecast[i];
+				newForecast[i] = weight * count + (1 - weight) * old;
+			}
+			forecast.put(zoneId, newForecast);
+		}
+
+		hasForecast = true;
+		currentCounts.clear();
+		currentCountSum = 0;
+	}
+
+	public boolean hasForecast() {
+		return hasForecast;
+	}
+
+	/**
+	 * @return expected number of departures in the zone within [fromTime, toTime); time bins partially overlapping
+	 *         with the interval contribute proportionally
+	 */
+	public double getExpectedDemand(Zone zone, double fromTime, double toTime) {
+		double[] zoneForecast = forecast.get(zone.getId());
+		if (zoneForecast == null || toTime <= fromTime) {
+			return 0;
+		}
+
+		double demand = 0;
+		int lastBin = Math.min(getBin(toTime), zoneForecast.length - 1);
+		for (int bin = getBin(fromTime); bin <= lastBin; bin++) {
+			double binStart = bin * timeBinSize;
+			double overlap = Math.min(toTime, binStart + timeBinSize) - Math.max(fromTime, binStart);
+			if (overlap > 0) {
+				demand += zoneForecast[bin] * overlap / timeBinSize;
+			}
+		}
+		return demand;
+	}
+
+	public ZonalSystem getZonalSystem() {
+		return zonalSystem;
+	}
+
+	private int getBin(double time) {
+		return Math.max(0, (int)(time / timeBinSize));
+	}
+}
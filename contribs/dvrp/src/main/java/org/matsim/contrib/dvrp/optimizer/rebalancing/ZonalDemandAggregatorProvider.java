@@ -0,0 +1,57 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.contrib.dvrp.run.DvrpModule;
+import org.matsim.contrib.zone.SquareGridSystem;
+
+import com.google.inject.*;
+import com.google.inject.name.Named;
+
+/**
+ * Demand aggregated over square zones covering the DVRP routing network, in 15-minute time bins. To be bound
+ * together with the aggregator as an event handler, e.g.:
+ * 
+ * <pre>
+ * bind(ZonalDemandAggregator.class).toProvider(new ZonalDemandAggregatorProvider(mode, cellSize)).asEagerSingleton();
+ * addEventHandlerBinding().to(ZonalDemandAggregator.class);
+ * </pre>
+ */
+public class ZonalDemandAggregatorProvider implements Provider<ZonalDemandAggregator> {
+	private static final double TIME_BIN_SIZE = 900;// [s]
+
+	private final String mode;
+	private final double cellSize;
+
+	@Inject
+	@Named(DvrpModule.DVRP_ROUTING)
+	private Network network;
+
+	public ZonalDemandAggregatorProvider(String mode, double cellSize) {
+		this.mode = mode;
+		this.cellSize = cellSize;
+	}
+
+	@Override
+	public ZonalDemandAggregator get() {
+		return new ZonalDemandAggregator(network, new SquareGridSystem(network, cellSize), mode, TIME_BIN_SIZE);
+	}
+}
@@ -27,8 +27,15 @@ import org.matsim.contrib.locationchoice.router.BackwardMultiNodePathCalculator;
 import org.matsim.core.router.*;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 
-import com.google.common.collect.Maps;
-
+/**
+ * One-to-many search (forward: from one link to many links; backward: from many links to one link) that runs a single
+ * multi-node Dijkstra for all the target links.
+ * <p>
+ * The objects representing the target nodes are created once and reused by the following searches (the ones belonging
+ * to the current search are identified by the search id), so repeated searches do not produce garbage apart from the
+ * resulting paths. Consequently, an instance must not be used by more than one thread at a time; see
+ * {@link OneToManyPathSearchPool} for running searches in parallel.
+ */
 public class OneToManyPathSearch {
 	public static OneToManyPathSearch createForwardSearch(MultiNodePathCalculator forwardMultiNodeDijkstra) {
 		return new OneToManyPathSearch(forwardMultiNodeDijkstra, true);
@@ -50,6 +57,7 @@ public class OneToManyPathSearch {
 
 	private static class ToNode extends InitialNode {
 		private Path path;
+		private int searchId;// the last search this node was a target of
 
 		private ToNode(Node node, double initialCost, double initialTime) {
 			super(node, initialCost, initialTime);
@@ -59,6 +67,11 @@ public class OneToManyPathSearch {
 	private final MultiNodePathCalculator multiNodeDijkstra;// forward or backward
 	private final boolean forward;
 
+	// reused between searches
+	private final Map<Id<Node>, ToNode> toNodeCache = new HashMap<>();
+	private final List<ToNode> currentToNodes = new ArrayList<>();
+	private int currentSearchId = 0;
+
 	private OneToManyPathSearch(MultiNodePathCalculator multiNodeDijkstra, boolean forward) {
 		this.multiNodeDijkstra = multiNodeDijkstra;
 		this.forward = forward;
@@ -66,40 +79,48 @@ public class OneToManyPathSearch {
 
 	public PathData[] calcPaths(Link fromLink, List<Link> toLinks, double startTime) {
 		Node fromNode = getFromNode(fromLink);
-		Map<Id<Node>, ToNode> toNodes = createToNodes(fromLink, toLinks);
-		calculatePaths(fromNode, toNodes, startTime);
-		return createPathDataArray(fromLink, toLinks, startTime, toNodes);
+		collectToNodes(fromLink, toLinks);
+		if (!currentToNodes.isEmpty()) {
+			calculatePaths(fromNode, startTime);
+		}
+		return createPathDataArray(fromLink, toLinks, startTime);
 	}
 
-	private Map<Id<Node>, ToNode> createToNodes(Link fromLink, List<Link> toLinks) {
-		Map<Id<Node>, ToNode> toNodes = Maps.newHashMapWithExpectedSize(toLinks.size());
+	private void collectToNodes(Link fromLink, List<Link> toLinks) {
+		currentSearchId++;
+		currentToNodes.clear();
 
 		for (int i = 0; i < toLinks.size(); i++) {
 			Link toLink = toLinks.get(i);
 			if (toLink != fromLink) {
 				Node toNode = getToNode(toLink);
-				if (!toNodes.containsKey(toNode.getId())) {
-					toNodes.put(toNode.getId(), new ToNode(toNode, 0, 0));
+				ToNode cachedToNode = toNodeCache.get(toNode.getId());
+				if (cachedToNode == null) {
+					cachedToNode = new ToNode(toNode, 0, 0);
+					toNodeCache.put(toNode.getId(), cachedToNode);
+				}
+
+				if (cachedToNode.searchId != currentSearchId) {
+					cachedToNode.searchId = currentSearchId;
+					cachedToNode.path = null;
+					currentToNodes.add(cachedToNode);
 				}
 			}
 		}
-
-		return toNodes;
 	}
 
-	private void calculatePaths(Node fromNode, Map<Id<Node>, ToNode> toNodes, double startTime) {
-		ImaginaryNode imaginaryNode = MultiNodeDijkstra.createImaginaryNode(toNodes.values());
+	private void calculatePaths(Node fromNode, double startTime) {
+		ImaginaryNode imaginaryNode = MultiNodeDijkstra.createImaginaryNode(currentToNodes);
 		multiNodeDijkstra.setSearchAllEndNodes(true);
 		multiNodeDijkstra.calcLeastCostPath(fromNode, imaginaryNode, startTime, null, null);
 
 		// get path for each ToNode
-		for (ToNode toNode : toNodes.values()) {
+		for (ToNode toNode : currentToNodes) {
 			toNode.path = multiNodeDijkstra.constructPath(fromNode, toNode.node, startTime);
 		}
 	}
 
-	private PathData[] createPathDataArray(Link fromLink, List<Link> toLinks, double startTime,
-			Map<Id<Node>, ToNode> toNodes) {
+	private PathData[] createPathDataArray(Link fromLink, List<Link> toLinks, double startTime) {
 		PathData[] pathDataArray = new PathData[toLinks.size()];
 
 		for (int i = 0; i < pathDataArray.length; i++) {
@@ -107,7 +128,7 @@ public class OneToManyPathSearch {
 			if (toLink == fromLink) {
 				pathDataArray[i] = createZeroPath(fromLink);
 			} else {
-				ToNode toNode = toNodes.get(getToNode(toLink).getId());
+				ToNode toNode = toNodeCache.get(getToNode(toLink).getId());
 				pathDataArray[i] = new PathData(toNode.path,
 						getFirstAndLastLinkTT(fromLink, toLink, toNode.path, startTime));
 			}
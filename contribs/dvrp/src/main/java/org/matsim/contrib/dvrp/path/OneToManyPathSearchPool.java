@@ -0,0 +1,170 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.contrib.locationchoice.router.*;
+import org.matsim.core.router.*;
+import org.matsim.core.router.util.*;
+
+/**
+ * Forward and backward {@link OneToManyPathSearch}es, one pair per thread. Each search (together with its Dijkstra
+ * node data) is created on first use in a given thread and then reused by all the following searches in that thread.
+ * The routing networks are created once and shared.
+ * <p>
+ * Batches of searches (e.g. from the pickup and dropoff links of a request, or from the locations of all requests) are
+ * run with {@link #calcPaths(List)}, in parallel if the pool has more than one thread.
+ */
+public class OneToManyPathSearchPool {
+	public static class Query {
+		public static Query createForwardQuery(Link fromLink, List<Link> toLinks, double startTime) {
+			return new Query(true, fromLink, toLinks, startTime);
+		}
+
+		public static Query createBackwardQuery(Link fromLink, List<Link> toLinks, double startTime) {
+			return new Query(false, fromLink, toLinks, startTime);
+		}
+
+		private final boolean forward;
+		private final Link fromLink;
+		private final List<Link> toLinks;
+		private final double startTime;
+
+		private Query(boolean forward, Link fromLink, List<Link> toLinks, double startTime) {
+			this.forward = forward;
+			this.fromLink = fromLink;
+			this.toLinks = toLinks;
+			this.startTime = startTime;
+		}
+	}
+
+	private final ThreadLocal<OneToManyPathSearch> forwardSearch;
+	private final ThreadLocal<OneToManyPathSearch> backwardSearch;
+
+	private final int threads;
+	private final ExecutorService executorService;// null if single-threaded
+
+	public OneToManyPathSearchPool(Network network, final TravelDisutility travelDisutility,
+			final TravelTime travelTime, int threads) {
+		// no dead-end pruning (PreProcessDijkstra): multi-node searches start from imaginary (non-routing) nodes
+		final PreProcessDijkstra preProcessDijkstra = null;
+		final FastRouterDelegateFactory fastRouterFactory = new ArrayFastRouterDelegateFactory();
+
+		final RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(preProcessDijkstra)
+				.createRoutingNetwork(network);
+		final RoutingNetwork inverseRoutingNetwork = new InverseArrayRoutingNetworkFactory(preProcessDijkstra)
+				.createRoutingNetwork(network);
+
+		forwardSearch = new ThreadLocal<OneToManyPathSearch>() {
+			@Override
+			protected OneToManyPathSearch initialValue() {
+				return OneToManyPathSearch.createForwardSearch(new FastMultiNodeDijkstra(routingNetwork,
+						travelDisutility, travelTime, preProcessDijkstra, fastRouterFactory, true));
+			}
+		};
+
+		backwardSearch = new ThreadLocal<OneToManyPathSearch>() {
+			@Override
+			protected OneToManyPathSearch initialValue() {
+				return OneToManyPathSearch.createBackwardSearch(new BackwardFastMultiNodeDijkstra(
+						inverseRoutingNetwork, travelDisutility, travelTime, preProcessDijkstra, fastRouterFactory,
+						true));
+			}
+		};
+
+		this.threads = threads;
+		executorService = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+	}
+
+	/**
+	 * @return forward search to be used only by the calling thread (released in {@link #shutdown()} if this is the
+	 *         thread calling shutdown())
+	 */
+	public OneToManyPathSearch getForwardSearch() {
+		return forwardSearch.get();
+	}
+
+	/**
+	 * @return backward search to be used only by the calling thread
+	 */
+	public OneToManyPathSearch getBackwardSearch() {
+		return backwardSearch.get();
+	}
+
+	/**
+	 * @return PathData arrays in the order of queries (each array in the order of the query's toLinks)
+	 */
+	public PathData[][] calcPaths(final List<Query> queries) {
+		final PathData[][] paths = new PathData[queries.size()][];
+		if (executorService == null || queries.size() == 1) {
+			for (int i = 0; i < queries.size(); i++) {
+				paths[i] = calcPaths(queries.get(i));
+			}
+			return paths;
+		}
+
+		// queries may differ a lot in size, so each worker takes the next pending query
+		final AtomicInteger nextQuery = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>(threads);
+		for (int t = 0; t < Math.min(threads, queries.size()); t++) {
+			futures.add(executorService.submit(new Runnable() {
+				public void run() {
+					int i;
+					while ((i = nextQuery.getAndIncrement()) < queries.size()) {
+						paths[i] = calcPaths(queries.get(i));
+					}
+				}
+			}));
+		}
+
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return paths;
+	}
+
+	private PathData[] calcPaths(Query query) {
+		OneToManyPathSearch search = query.forward ? getForwardSearch() : getBackwardSearch();
+		return search.calcPaths(query.fromLink, query.toLinks, query.startTime);
+	}
+
+	/**
+	 * Terminates the worker threads (together with their searches) and releases the searches created for the calling
+	 * thread (e.g. the mobsim thread, which runs the queries if single-threaded). Otherwise, the network-sized Dijkstra
+	 * data would be kept by that thread after the pool is discarded.
+	 */
+	public void shutdown() {
+		if (executorService != null) {
+			executorService.shutdown();
+		}
+
+		forwardSearch.remove();
+		backwardSearch.remove();
+	}
+}
@@ -0,0 +1,111 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.dvrp.path;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * A VrpPath consisting of fromLink, the links of a least-cost path and toLink. The list of links is shared (not
+ * copied), so it must not be modified once the path is created; in particular, the same list may be shared by many
+ * paths (e.g. when created from a cached or one-to-many search result, see {@link Path}). The path itself accesses it
+ * only through an unmodifiable view. Only the (time-dependent) link travel times are stored per path.
+ */
+public class SharedLinksVrpPath implements VrpPathWithTravelData {
+	private final double departureTime;
+	private final double travelTime;
+	private final Link fromLink;
+	private final List<Link> links;// between fromLink and toLink
+	private final Link toLink;
+	private final double[] linkTTs;// incl. fromLink and toLink
+
+	public SharedLinksVrpPath(double departureTime, double travelTime, Link fromLink, List<Link> links, Link toLink,
+			double[] linkTTs) {
+		if (links.size() + 2 != linkTTs.length) {
+			throw new IllegalArgumentException();
+		}
+
+		this.departureTime = departureTime;
+		this.travelTime = travelTime;
+		this.fromLink = fromLink;
+		this.links = Collections.unmodifiableList(links);
+		this.toLink = toLink;
+		this.linkTTs = linkTTs;
+	}
+
+	@Override
+	public double getDepartureTime() {
+		return departureTime;
+	}
+
+	@Override
+	public double getTravelTime() {
+		return travelTime;
+	}
+
+	@Override
+	public double getArrivalTime() {
+		return departureTime + travelTime;
+	}
+
+	@Override
+	public int getLinkCount() {
+		return linkTTs.length;
+	}
+
+	@Override
+	public Link getLink(int idx) {
+		if (idx == 0) {
+			return fromLink;
+		}
+		return idx == linkTTs.length - 1 ? toLink : links.get(idx - 1);
+	}
+
+	@Override
+	public Link getFromLink() {
+		return fromLink;
+	}
+
+	@Override
+	public Link getToLink() {
+		return toLink;
+	}
+
+	@Override
+	public double getLinkTravelTime(int idx) {
+		return linkTTs[idx];
+	}
+
+	@Override
+	public void setLinkTravelTime(int idx, double linkTT) {
+		linkTTs[idx] = linkTT;
+	}
+
+	@Override
+	public Iterator<Link> iterator() {
+		return Iterators.concat(Iterators.singletonIterator(fromLink), links.iterator(),
+				Iterators.singletonIterator(toLink));
+	}
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeEstimator;
 import org.matsim.core.population.routes.*;
 import org.matsim.core.router.util.*;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
@@ -64,7 +65,7 @@ public class VrpPaths {
 			}
 		}
 
-		Link[] links = new Link[count + 2];
+		// the links are not copied; the path shares path.links (see SharedLinksVrpPath)
 		double[] linkTTs = new double[count + 2];
 
 		// we start at the end of fromLink
@@ -72,26 +73,27 @@ public class VrpPaths {
 		// (when INSERTING_WAITING_VEHICLES_BEFORE_DRIVING_VEHICLES is ON;
 		// otherwise it can take much longer)
 		double currentTime = departureTime;
-		links[0] = fromLink;
 		double linkTT = FIRST_LINK_TT;
 		linkTTs[0] = linkTT;
 		currentTime += linkTT;
 
-		for (int i = 1; i <= count; i++) {
-			Link link = path.links.get(i - 1);
-			links[i] = link;
-			linkTT = travelTime.getLinkTravelTime(link, currentTime, null, null);
-			linkTTs[i] = linkTT;
-			currentTime += linkTT;
+		if (travelTime instanceof DvrpTravelTimeEstimator) {// whole path in one call
+			currentTime = ((DvrpTravelTimeEstimator)travelTime).calcLinkTravelTimes(path.links, currentTime,
+					linkTTs, 1);
+		} else {
+			for (int i = 1; i <= count; i++) {
+				linkTT = travelTime.getLinkTravelTime(path.links.get(i - 1), currentTime, null, null);
+				linkTTs[i] = linkTT;
+				currentTime += linkTT;
+			}
 		}
 
 		// there is no extra time spent on queuing at the end of the last link
-		links[count + 1] = toLink;
 		linkTT = getLastLinkTT(toLink, currentTime);// as long as we cannot divert from the last link this is okay
 		linkTTs[count + 1] = linkTT;
 		double totalTT = 1 + path.travelTime + linkTT;
 
-		return new VrpPathWithTravelDataImpl(departureTime, totalTT, links, linkTTs);
+		return new SharedLinksVrpPath(departureTime, totalTT, fromLink, path.links, toLink, linkTTs);
 	}
 
 	public static final double FIRST_LINK_TT = 1;
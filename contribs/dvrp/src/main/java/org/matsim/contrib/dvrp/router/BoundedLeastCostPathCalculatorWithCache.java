@@ -0,0 +1,176 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.vehicles.Vehicle;
+
+import com.google.common.cache.*;
+
+/**
+ * Like {@link DefaultLeastCostPathCalculatorWithCache}, but the cache has a memory budget. When the budget is exceeded,
+ * the least recently used paths are evicted first. Paths are stored as arrays of link indices and turned into
+ * {@link Path}s again on every hit.
+ * <p>
+ * Cached paths can be read from several threads at the same time. The underlying calculator is usually not
+ * thread-safe, so cache misses are computed one after the other.
+ */
+public class BoundedLeastCostPathCalculatorWithCache implements LeastCostPathCalculatorWithCache {
+	public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+	// rough estimate of the memory used by one entry apart from the link indices (key, entry, references in the cache)
+	private static final int ENTRY_OVERHEAD = 160;
+
+	private final LeastCostPathCalculator calculator;
+	private final TimeDiscretizer timeDiscretizer;
+	private final Link[] links;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final Cache<PathKey, CachedPath> pathCache;
+
+	private final CacheStats cacheStats = new CacheStats();
+
+	public BoundedLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer,
+			Network network) {
+		this(calculator, timeDiscretizer, network, DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            approximate upper limit for the memory used by the cached paths, in bytes
+	 */
+	public BoundedLeastCostPathCalculatorWithCache(LeastCostPathCalculator calculator, TimeDiscretizer timeDiscretizer,
+			Network network, long memoryBudget) {
+		this.calculator = calculator;
+		this.timeDiscretizer = timeDiscretizer;
+
+		links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+		linkIndices = new HashMap<>(links.length * 2);
+		for (int i = 0; i < links.length; i++) {
+			linkIndices.put(links[i].getId(), i);
+		}
+
+		pathCache = CacheBuilder.newBuilder()//
+				.maximumWeight(memoryBudget)//
+				.weigher(new Weigher<PathKey, CachedPath>() {
+					@Override
+					public int weigh(PathKey key, CachedPath path) {
+						return ENTRY_OVERHEAD + 4 * path.linkIndices.length;
+					}
+				})//
+				.removalListener(new RemovalListener<PathKey, CachedPath>() {
+					@Override
+					public void onRemoval(RemovalNotification<PathKey, CachedPath> notification) {
+						if (notification.wasEvicted()) {
+							cacheStats.incEvictions();
+						}
+					}
+				})//
+				.build();
+	}
+
+	@Override
+	public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person, Vehicle vehicle) {
+		PathKey key = new PathKey(timeDiscretizer.getIdx(startTime), fromNode.getId(), toNode.getId());
+		CachedPath cachedPath = pathCache.getIfPresent(key);
+		if (cachedPath != null) {
+			cacheStats.incHits();
+			return cachedPath.toPath(fromNode, links);
+		}
+
+		cacheStats.incMisses();
+		Path path;
+		synchronized (calculator) {
+			path = calculator.calcLeastCostPath(fromNode, toNode, timeDiscretizer.discretize(startTime), person,
+					vehicle);
+		}
+		if (path != null) {
+			pathCache.put(key, new CachedPath(path, linkIndices));
+		}
+		return path;
+	}
+
+	@Override
+	public CacheStats getCacheStats() {
+		return cacheStats;
+	}
+
+	public long getCachedPathCount() {
+		return pathCache.size();
+	}
+
+	private static class PathKey {
+		private final int timeIdx;
+		private final Id<Node> fromNodeId;
+		private final Id<Node> toNodeId;
+
+		private PathKey(int timeIdx, Id<Node> fromNodeId, Id<Node> toNodeId) {
+			this.timeIdx = timeIdx;
+			this.fromNodeId = fromNodeId;
+			this.toNodeId = toNodeId;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * timeIdx + fromNodeId.hashCode()) * 31 + toNodeId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PathKey)) {
+				return false;
+			}
+			PathKey other = (PathKey)obj;
+			return timeIdx == other.timeIdx && fromNodeId.equals(other.fromNodeId) && toNodeId.equals(other.toNodeId);
+		}
+	}
+
+	private static class CachedPath {
+		private final int[] linkIndices;
+		private final double travelTime;
+		private final double travelCost;
+
+		private CachedPath(Path path, Map<Id<Link>, Integer> linkIndexMap) {
+			linkIndices = new int[path.links.size()];
+			for (int i = 0; i < linkIndices.length; i++) {
+				linkIndices[i] = linkIndexMap.get(path.links.get(i).getId());
+			}
+			travelTime = path.travelTime;
+			travelCost = path.travelCost;
+		}
+
+		private Path toPath(Node fromNode, Link[] links) {
+			List<Node> nodes = new ArrayList<>(linkIndices.length + 1);
+			List<Link> pathLinks = new ArrayList<>(linkIndices.length);
+			nodes.add(fromNode);
+			for (int idx : linkIndices) {
+				Link link = links[idx];
+				pathLinks.add(link);
+				nodes.add(link.getToNode());
+			}
+			return new Path(nodes, pathLinks, travelTime, travelCost);
+		}
+	}
+}
@@ -34,11 +34,15 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 	public static final String MODE = "mode";
 	public static final String NETWORK_MODE = "networkMode";
 	public static final String TRAVEL_TIME_ESTIMATION_ALPHA = "travelTimeEstimationAlpha";
+	public static final String ONLINE_TRAVEL_TIME_ESTIMATION_ALPHA = "onlineTravelTimeEstimationAlpha";
+	public static final String ONLINE_TRAVEL_TIME_ESTIMATION_INTERVAL = "onlineTravelTimeEstimationInterval";
 
 	private String mode = null; // travel mode (passengers'/customers' perspective)
 	private String networkMode = null; // used for building routes, calculating travel times, etc.
 										// (dispatcher's perspective)
 	private double travelTimeEstimationAlpha = 0.05; // between 0 and 1; 0=> no averaging, only the initial time is used
+	private double onlineTravelTimeEstimationAlpha = 0; // between 0 and 1; 0=> no online estimation
+	private int onlineTravelTimeEstimationInterval = 60; // [s]
 
 	public DvrpConfigGroup() {
 		super(GROUP_NAME);
@@ -60,6 +64,13 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 						+ " The averaging starts from the initial travel time estimates. If not provided,"
 						+ " the free-speed TTs is used as the initial estimates"
 						+ " For more info see comments in: VrpTravelTimeEstimator, VrpTravelTimeModules, DvrpModule.");
+		map.put(ONLINE_TRAVEL_TIME_ESTIMATION_ALPHA,
+				"Used for online estimation of travel times (during the simulation) by means of the exponential"
+						+ " moving average of the link travel times observed from LinkEnter/LinkLeave events."
+						+ " Must be in [0,1]. The default value is 0 (no online estimation).");
+		map.put(ONLINE_TRAVEL_TIME_ESTIMATION_INTERVAL,
+				"The observed link travel times are added to the online estimates in batches, every"
+						+ " onlineTravelTimeEstimationInterval seconds. The default value is 60.");
 		return map;
 	}
 
@@ -92,4 +103,24 @@ public class DvrpConfigGroup extends ReflectiveConfigGroup {
 	public void setTravelTimeEstimationAlpha(double travelTimeEstimationAlpha) {
 		this.travelTimeEstimationAlpha = travelTimeEstimationAlpha;
 	}
+
+	@StringGetter(ONLINE_TRAVEL_TIME_ESTIMATION_ALPHA)
+	public double getOnlineTravelTimeEstimationAlpha() {
+		return onlineTravelTimeEstimationAlpha;
+	}
+
+	@StringSetter(ONLINE_TRAVEL_TIME_ESTIMATION_ALPHA)
+	public void setOnlineTravelTimeEstimationAlpha(double onlineTravelTimeEstimationAlpha) {
+		this.onlineTravelTimeEstimationAlpha = onlineTravelTimeEstimationAlpha;
+	}
+
+	@StringGetter(ONLINE_TRAVEL_TIME_ESTIMATION_INTERVAL)
+	public int getOnlineTravelTimeEstimationInterval() {
+		return onlineTravelTimeEstimationInterval;
+	}
+
+	@StringSetter(ONLINE_TRAVEL_TIME_ESTIMATION_INTERVAL)
+	public void setOnlineTravelTimeEstimationInterval(int onlineTravelTimeEstimationInterval) {
+		this.onlineTravelTimeEstimationInterval = onlineTravelTimeEstimationInterval;
+	}
 }
@@ -19,6 +19,9 @@
 
 package org.matsim.contrib.dvrp.trafficmonitoring;
 
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.router.util.TravelTime;
 
@@ -26,4 +29,22 @@ import org.matsim.core.router.util.TravelTime;
  * @author michalm
  */
 public interface DvrpTravelTimeEstimator extends TravelTime, MobsimListener {
+	/**
+	 * Calculates the travel times of consecutive links, the first one entered at startTime, i.e. the same as calling
+	 * {@link #getLinkTravelTime} for each link in a loop. Implementations may override it to avoid per-link calls and
+	 * lookups.
+	 * 
+	 * @param linkTTs
+	 *            the travel time of links.get(i) is stored at linkTTs[offset + i]
+	 * @return the time of leaving the last link
+	 */
+	default double calcLinkTravelTimes(List<Link> links, double startTime, double[] linkTTs, int offset) {
+		double time = startTime;
+		for (int i = 0; i < links.size(); i++) {
+			double linkTT = getLinkTravelTime(links.get(i), time, null, null);
+			linkTTs[offset + i] = linkTT;
+			time += linkTT;
+		}
+		return time;
+	}
 }
@@ -19,15 +19,17 @@
 
 package org.matsim.contrib.dvrp.trafficmonitoring;
 
-import java.util.Map;
+import java.util.*;
 
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.events.handler.*;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.contrib.dvrp.run.*;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
-import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
-import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.mobsim.framework.listeners.*;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.TimeBinUtils;
 import org.matsim.vehicles.Vehicle;
@@ -36,25 +38,63 @@ import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
-public class DvrpTravelTimeEstimatorImpl implements DvrpTravelTimeEstimator, MobsimBeforeCleanupListener {
+/**
+ * Link travel times are kept in a flat array indexed by [linkIdx * intervalCount + timeBin], so that estimating
+ * a whole path (see {@link #calcLinkTravelTimes}) requires only one link index lookup per link and no per-link
+ * arrays.
+ * <p>
+ * Offline estimation: after each mobsim, the estimates are updated with the travel times observed in that iteration.
+ * <p>
+ * Online estimation (optional, onlineAlpha > 0): travel times observed from LinkEnter/LinkLeave events are collected
+ * in batches and, every onlineInterval seconds, the batch means are blended into the estimates used during the
+ * current mobsim. At the end of the mobsim, the online estimates are discarded and replaced with the offline ones.
+ * Only link traversals without a stop are observed: a vehicle that leaves or enters traffic on a link (arrival,
+ * departure) is not timed on that link, so that dwell times are not taken as travel times. Each observation goes to
+ * the time bin of its link leave time.
+ * <p>
+ * Events may be handled by a different thread than the mobsim (parallel events handling), so the batch is written
+ * (events thread) and applied (mobsim thread) under a lock. An observation handled after the batch has been applied
+ * goes to the next batch.
+ */
+public class DvrpTravelTimeEstimatorImpl implements DvrpTravelTimeEstimator, MobsimBeforeCleanupListener,
+		MobsimBeforeSimStepListener, LinkEnterEventHandler, LinkLeaveEventHandler, VehicleEntersTrafficEventHandler,
+		VehicleLeavesTrafficEventHandler {
 	private final TravelTime observedTT;
 	private final Network network;
 
 	private final int interval;
 	private final int intervalCount;
-	private final Map<Id<Link>, double[]> linkTTs;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final double[] linkTTs;// offline estimates
+	private final double[] currentLinkTTs;// estimates used in the current mobsim (== linkTTs if online is off)
 	private final double alpha;
 
+	private final double onlineAlpha;
+	private final int onlineInterval;
+	private final Map<Id<Vehicle>, double[]> linkEntries = new HashMap<>();// [linkIdx, enterTime]; events thread only
+	private final Object batchLock = new Object();
+	private final double[] batchTTSums;// indexed as linkTTs
+	private final int[] batchTTCounts;
+	private final List<Integer> batchTTIndices = new ArrayList<>();
+	private double batchStartTime = Double.NaN;// mobsim thread only
+
 	@Inject
 	public DvrpTravelTimeEstimatorImpl(@Named(DvrpTravelTimeModule.DVRP_INITIAL) TravelTime initialTT,
 			@Named(DvrpTravelTimeModule.DVRP_OBSERVED) TravelTime observedTT,
 			@Named(DvrpModule.DVRP_ROUTING) Network network, TravelTimeCalculatorConfigGroup ttCalcConfig,
 			DvrpConfigGroup dvrpConfig) {
-		this(initialTT, observedTT, network, ttCalcConfig, dvrpConfig.getTravelTimeEstimationAlpha());
+		this(initialTT, observedTT, network, ttCalcConfig, dvrpConfig.getTravelTimeEstimationAlpha(),
+				dvrpConfig.getOnlineTravelTimeEstimationAlpha(), dvrpConfig.getOnlineTravelTimeEstimationInterval());
 	}
 
 	public DvrpTravelTimeEstimatorImpl(TravelTime initialTT, TravelTime observedTT, Network network,
 			TravelTimeCalculatorConfigGroup ttCalcConfig, double travelTimeEstimationAlpha) {
+		this(initialTT, observedTT, network, ttCalcConfig, travelTimeEstimationAlpha, 0, 0);
+	}
+
+	public DvrpTravelTimeEstimatorImpl(TravelTime initialTT, TravelTime observedTT, Network network,
+			TravelTimeCalculatorConfigGroup ttCalcConfig, double travelTimeEstimationAlpha,
+			double onlineTravelTimeEstimationAlpha, int onlineTravelTimeEstimationInterval) {
 		this.observedTT = observedTT;
 		this.network = network;
 
@@ -63,18 +103,41 @@ public class DvrpTravelTimeEstimatorImpl implements DvrpTravelTimeEstimator, Mob
 			throw new RuntimeException("travelTimeEstimationAlpha must be in (0,1]");
 		}
 
+		onlineAlpha = onlineTravelTimeEstimationAlpha;
+		if (onlineAlpha > 1 || onlineAlpha < 0) {
+			throw new RuntimeException("onlineTravelTimeEstimationAlpha must be in [0,1]");
+		}
+
+		onlineInterval = onlineTravelTimeEstimationInterval;
+		if (onlineAlpha > 0 && onlineInterval <= 0) {
+			throw new RuntimeException("onlineTravelTimeEstimationInterval must be positive");
+		}
+
 		interval = ttCalcConfig.getTraveltimeBinSize();
 		intervalCount = TimeBinUtils.getTimeBinCount(ttCalcConfig.getMaxTime(), interval);
 
-		linkTTs = Maps.newHashMapWithExpectedSize(network.getLinks().size());
+		int linkCount = network.getLinks().size();
+		linkIndices = Maps.newHashMapWithExpectedSize(linkCount);
+		linkTTs = new double[linkCount * intervalCount];
 		init(initialTT);
+
+		if (onlineAlpha > 0) {
+			currentLinkTTs = linkTTs.clone();
+			batchTTSums = new double[linkTTs.length];
+			batchTTCounts = new int[linkTTs.length];
+		} else {
+			currentLinkTTs = linkTTs;
+			batchTTSums = null;
+			batchTTCounts = null;
+		}
 	}
 
 	private void init(TravelTime initialTT) {
+		int linkIdx = 0;
 		for (Link link : network.getLinks().values()) {
-			double[] tt = new double[intervalCount];
-			updateTTs(link, tt, initialTT, 1.);
-			linkTTs.put(link.getId(), tt);
+			linkIndices.put(link.getId(), linkIdx);
+			updateTTs(link, linkIdx * intervalCount, initialTT, 1.);
+			linkIdx++;
 		}
 	}
 
@@ -82,21 +145,138 @@ public class DvrpTravelTimeEstimatorImpl implements DvrpTravelTimeEstimator, Mob
 	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
 		// TODO TTC is more flexible (simple averaging vs linear interpolation, etc.)
 		int idx = TimeBinUtils.getTimeBinIndex(time, interval, intervalCount);
-		return linkTTs.get(link.getId())[idx];
+		return currentLinkTTs[linkIndices.get(link.getId()) * intervalCount + idx];
+	}
+
+	@Override
+	public double calcLinkTravelTimes(List<Link> links, double startTime, double[] linkTTs, int offset) {
+		double[] ttArray = currentLinkTTs;
+		double time = startTime;
+		for (int i = 0; i < links.size(); i++) {
+			int idx = TimeBinUtils.getTimeBinIndex(time, interval, intervalCount);
+			double linkTT = ttArray[linkIndices.get(links.get(i).getId()) * intervalCount + idx];
+			linkTTs[offset + i] = linkTT;
+			time += linkTT;
+		}
+		return time;
 	}
 
 	@Override
 	public void notifyMobsimBeforeCleanup(@SuppressWarnings("rawtypes") MobsimBeforeCleanupEvent e) {
+		int linkIdx = 0;
 		for (Link link : network.getLinks().values()) {
-			updateTTs(link, linkTTs.get(link.getId()), observedTT, alpha);
+			updateTTs(link, linkIdx * intervalCount, observedTT, alpha);
+			linkIdx++;
+		}
+
+		if (onlineAlpha > 0) {
+			// online estimates are valid only within one mobsim
+			System.arraycopy(linkTTs, 0, currentLinkTTs, 0, linkTTs.length);
+			synchronized (batchLock) {
+				clearBatch();
+			}
+			batchStartTime = Double.NaN;
 		}
 	}
 
-	private void updateTTs(Link link, double[] tt, TravelTime travelTime, double alpha) {
+	private void updateTTs(Link link, int offset, TravelTime travelTime, double alpha) {
 		for (int i = 0; i < intervalCount; i++) {
-			double oldEstimatedTT = tt[i];
+			double oldEstimatedTT = linkTTs[offset + i];
 			double experiencedTT = travelTime.getLinkTravelTime(link, i * interval, null, null);
-			tt[i] = alpha * experiencedTT + (1 - alpha) * oldEstimatedTT;
+			linkTTs[offset + i] = alpha * experiencedTT + (1 - alpha) * oldEstimatedTT;
+		}
+	}
+
+	@Override
+	public void notifyMobsimBeforeSimStep(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e) {
+		if (onlineAlpha == 0) {
+			return;
+		}
+
+		double time = e.getSimulationTime();
+		if (Double.isNaN(batchStartTime)) {
+			batchStartTime = time;
+		} else if (time >= batchStartTime + onlineInterval) {
+			applyBatch();
+			batchStartTime = time;
+		}
+	}
+
+	private void applyBatch() {
+		synchronized (batchLock) {
+			for (int ttIdx : batchTTIndices) {
+				double meanTT = batchTTSums[ttIdx] / batchTTCounts[ttIdx];
+				currentLinkTTs[ttIdx] = onlineAlpha * meanTT + (1 - onlineAlpha) * currentLinkTTs[ttIdx];
+			}
+			clearBatch();
+		}
+	}
+
+	// guarded by batchLock
+	private void clearBatch() {
+		for (int ttIdx : batchTTIndices) {
+			batchTTSums[ttIdx] = 0;
+			batchTTCounts[ttIdx] = 0;
+		}
+		batchTTIndices.clear();
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		Integer linkIdx = linkIndices.get(event.getLinkId());
+		if (linkIdx == null) {
+			return;// not in the dvrp routing network
+		}
+
+		double[] entry = linkEntries.get(event.getVehicleId());
+		if (entry == null) {
+			linkEntries.put(event.getVehicleId(), entry = new double[2]);
+		}
+		entry[0] = linkIdx;
+		entry[1] = event.getTime();
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent event) {
+		double[] entry = linkEntries.get(event.getVehicleId());
+		if (entry == null || Double.isNaN(entry[1])) {
+			return;// e.g. departure link (entered from a parking spot) or a link outside the dvrp routing network
+		}
+
+		int linkIdx = (int)entry[0];
+		Integer leftLinkIdx = linkIndices.get(event.getLinkId());
+		if (leftLinkIdx != null && leftLinkIdx == linkIdx) {
+			int ttIdx = linkIdx * intervalCount + TimeBinUtils.getTimeBinIndex(event.getTime(), interval, intervalCount);
+			synchronized (batchLock) {
+				if (batchTTCounts[ttIdx] == 0) {
+					batchTTIndices.add(ttIdx);
+				}
+				batchTTSums[ttIdx] += event.getTime() - entry[1];
+				batchTTCounts[ttIdx]++;
+			}
 		}
+		entry[1] = Double.NaN;
+	}
+
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		resetLinkEntry(event.getVehicleId());// arrival: the vehicle stops on the current link
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		resetLinkEntry(event.getVehicleId());// departure: the time spent on the current link includes the dwell time
+	}
+
+	private void resetLinkEntry(Id<Vehicle> vehicleId) {
+		double[] entry = linkEntries.get(vehicleId);
+		if (entry != null) {
+			entry[1] = Double.NaN;
+		}
+	}
+
+	@Override
+	public void reset(int iteration) {
+		linkEntries.clear();
 	}
 }
@@ -20,6 +20,7 @@
 package org.matsim.contrib.dvrp.trafficmonitoring;
 
 import org.matsim.api.core.v01.TransportMode;
+import org.matsim.contrib.dvrp.run.DvrpConfigGroup;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
@@ -39,9 +40,14 @@ public class DvrpTravelTimeModule extends AbstractModule {
 	public void install() {
 		bind(TravelTime.class).annotatedWith(Names.named(DvrpTravelTimeModule.DVRP_INITIAL))
 				.toInstance(new FreeSpeedTravelTime());
-		bind(DvrpTravelTimeEstimator.class).to(DvrpTravelTimeEstimatorImpl.class).asEagerSingleton();
+		bind(DvrpTravelTimeEstimatorImpl.class).asEagerSingleton();
+		bind(DvrpTravelTimeEstimator.class).to(DvrpTravelTimeEstimatorImpl.class);
 		addTravelTimeBinding(DVRP_ESTIMATED).to(DvrpTravelTimeEstimator.class);
 		addMobsimListenerBinding().to(DvrpTravelTimeEstimator.class);
+
+		if (DvrpConfigGroup.get(getConfig()).getOnlineTravelTimeEstimationAlpha() > 0) {
+			addEventHandlerBinding().to(DvrpTravelTimeEstimatorImpl.class);
+		}
 	}
 
 	@Provides
@@ -0,0 +1,199 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.util;
+
+import java.util.Arrays;
+
+import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.vrpagent.*;
+import org.matsim.contrib.util.CompactCSVWriter;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * Fleet statistics by task type, updated incrementally from {@link TaskStartedEvent}s and {@link TaskEndedEvent}s, so
+ * that the cost does not depend on the fleet size nor on how often the statistics are read:
+ * <ul>
+ * <li>the current number of vehicles performing each type of task,</li>
+ * <li>the time profile: the average number of vehicles performing each type of task in each time bin,</li>
+ * <li>the histogram of task durations for each type of task.</li>
+ * </ul>
+ * All the buffers are allocated once (their sizes are fixed) and cleared on {@link #reset(int)}. Time beyond the last
+ * time bin and durations beyond the last histogram bin are added to the last bin.
+ * <p>
+ * The collector is updated by the events manager. Reading the current counts during the simulation (e.g. from a
+ * mobsim listener) is consistent only if the events are handled synchronously with the mobsim steps.
+ */
+public abstract class TaskTypeStatsCollector<E extends Enum<E>>
+		implements TaskStartedEventHandler, TaskEndedEventHandler {
+	private final E[] taskTypes;
+	private final double timeBinSize;
+	private final double durationBinSize;
+
+	private final long[] currentCounts;
+	private final double[] vehicleSeconds;// [timeBin * taskTypes.length + typeIdx]
+	private final long[] durationHistogram;// [typeIdx * durationBinCount + durationBin]
+	private final int timeBinCount;
+	private final int durationBinCount;
+
+	private double lastUpdateTime = 0;
+
+	public TaskTypeStatsCollector(Class<E> taskTypeClass, double timeBinSize, int timeBinCount,
+			double durationBinSize, int durationBinCount) {
+		this.taskTypes = taskTypeClass.getEnumConstants();
+		this.timeBinSize = timeBinSize;
+		this.timeBinCount = timeBinCount;
+		this.durationBinSize = durationBinSize;
+		this.durationBinCount = durationBinCount;
+
+		currentCounts = new long[taskTypes.length];
+		vehicleSeconds = new double[timeBinCount * taskTypes.length];
+		durationHistogram = new long[taskTypes.length * durationBinCount];
+	}
+
+	/**
+	 * @return type of the task, or null if the task is not to be counted
+	 */
+	protected abstract E getTaskType(Task task);
+
+	@Override
+	public void handleEvent(TaskStartedEvent event) {
+		E type = getTaskType(event.getTask());
+		if (type != null) {
+			advanceTo(event.getTime());
+			currentCounts[type.ordinal()]++;
+		}
+	}
+
+	@Override
+	public void handleEvent(TaskEndedEvent event) {
+		E type = getTaskType(event.getTask());
+		if (type != null) {
+			advanceTo(event.getTime());
+			currentCounts[type.ordinal()]--;
+
+			double duration = event.getTime() - event.getTask().getBeginTime();
+			int bin = Math.min(Math.max(0, (int)(duration / durationBinSize)), durationBinCount - 1);
+			durationHistogram[type.ordinal() * durationBinCount + bin]++;
+		}
+	}
+
+	// adds currentCounts * (time - lastUpdateTime) to the time bins in between
+	private void advanceTo(double time) {
+		while (lastUpdateTime < time) {
+			int bin = getTimeBin(lastUpdateTime);
+			double binEnd = bin == timeBinCount - 1 ? time : Math.min(time, (bin + 1) * timeBinSize);
+			double duration = binEnd - lastUpdateTime;
+			int offset = bin * taskTypes.length;
+			for (int i = 0; i < taskTypes.length; i++) {
+				vehicleSeconds[offset + i] += currentCounts[i] * duration;
+			}
+			lastUpdateTime = binEnd;
+		}
+	}
+
+	@Override
+	public void reset(int iteration) {
+		Arrays.fill(currentCounts, 0);
+		Arrays.fill(vehicleSeconds, 0);
+		Arrays.fill(durationHistogram, 0);
+		lastUpdateTime = 0;
+	}
+
+	public E[] getTaskTypes() {
+		return taskTypes.clone();
+	}
+
+	public long getCurrentCount(E type) {
+		return currentCounts[type.ordinal()];
+	}
+
+	/**
+	 * Time bins are complete only up to the time of the last handled event (see {@link #finish(double)}).
+	 */
+	public double getAverageCount(int timeBin, E type) {
+		return vehicleSeconds[timeBin * taskTypes.length + type.ordinal()] / timeBinSize;
+	}
+
+	public long getDurationCount(E type, int durationBin) {
+		return durationHistogram[type.ordinal() * durationBinCount + durationBin];
+	}
+
+	/**
+	 * Accounts for the tasks still being performed until the given time (e.g. the end of simulation).
+	 */
+	public void finish(double time) {
+		advanceTo(time);
+	}
+
+	public int getTimeBinCount() {
+		return timeBinCount;
+	}
+
+	public double getTimeBinSize() {
+		return timeBinSize;
+	}
+
+	public int getDurationBinCount() {
+		return durationBinCount;
+	}
+
+	public double getDurationBinSize() {
+		return durationBinSize;
+	}
+
+	public void writeTimeProfile(String file) {
+		try (CompactCSVWriter writer = new CompactCSVWriter(IOUtils.getBufferedWriter(file))) {
+			writer.writeNext("time", getTaskTypeNames());
+			for (int bin = 0; bin < timeBinCount; bin++) {
+				String[] values = new String[taskTypes.length];
+				for (E type : taskTypes) {
+					values[type.ordinal()] = getAverageCount(bin, type) + "";
+				}
+				writer.writeNext(Time.writeTime(bin * timeBinSize), values);
+			}
+		}
+	}
+
+	public void writeDurationHistograms(String file) {
+		try (CompactCSVWriter writer = new CompactCSVWriter(IOUtils.getBufferedWriter(file))) {
+			writer.writeNext("durationFrom", getTaskTypeNames());
+			for (int bin = 0; bin < durationBinCount; bin++) {
+				String[] values = new String[taskTypes.length];
+				for (E type : taskTypes) {
+					values[type.ordinal()] = getDurationCount(type, bin) + "";
+				}
+				writer.writeNext(bin * durationBinSize + "", values);
+			}
+		}
+	}
+
+	private String[] getTaskTypeNames() {
+		String[] names = new String[taskTypes.length];
+		for (E type : taskTypes) {
+			names[type.ordinal()] = type.name();
+		}
+		return names;
+	}
+
+	private int getTimeBin(double time) {
+		return Math.min((int)(time / timeBinSize), timeBinCount - 1);
+	}
+}
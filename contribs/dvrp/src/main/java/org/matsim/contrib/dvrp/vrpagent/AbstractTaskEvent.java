@@ -0,0 +1,62 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.vrpagent;
+
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.schedule.Task;
+
+/**
+ * Base class for events thrown by {@link VrpAgentLogic} when a vehicle switches between tasks. The task itself is
+ * available to handlers running in the same JVM (e.g. for task type specific statistics), but only the vehicle and
+ * the task index are written out.
+ */
+public abstract class AbstractTaskEvent extends Event {
+	public static final String ATTRIBUTE_VEHICLE = "vehicle";
+	public static final String ATTRIBUTE_TASK_INDEX = "taskIndex";
+
+	private final Id<Vehicle> vehicleId;
+	private final Task task;
+
+	public AbstractTaskEvent(double time, Id<Vehicle> vehicleId, Task task) {
+		super(time);
+		this.vehicleId = vehicleId;
+		this.task = task;
+	}
+
+	public Id<Vehicle> getVehicleId() {
+		return vehicleId;
+	}
+
+	public Task getTask() {
+		return task;
+	}
+
+	@Override
+	public Map<String, String> getAttributes() {
+		Map<String, String> attr = super.getAttributes();
+		attr.put(ATTRIBUTE_VEHICLE, vehicleId + "");
+		attr.put(ATTRIBUTE_TASK_INDEX, task.getTaskIdx() + "");
+		return attr;
+	}
+}
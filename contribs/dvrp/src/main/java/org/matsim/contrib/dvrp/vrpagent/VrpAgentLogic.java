@@ -24,6 +24,7 @@ import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
 import org.matsim.contrib.dvrp.schedule.Schedule;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.dynagent.*;
+import org.matsim.core.api.experimental.events.EventsManager;
 
 /**
  * @author michalm
@@ -39,12 +40,15 @@ public class VrpAgentLogic implements DynAgentLogic {
 	private final VrpOptimizer optimizer;
 	private final DynActionCreator dynActionCreator;
 	private final Vehicle vehicle;
+	private final EventsManager eventsManager;
 	private DynAgent agent;
 
-	public VrpAgentLogic(VrpOptimizer optimizer, DynActionCreator dynActionCreator, Vehicle vehicle) {
+	public VrpAgentLogic(VrpOptimizer optimizer, DynActionCreator dynActionCreator, Vehicle vehicle,
+			EventsManager eventsManager) {
 		this.optimizer = optimizer;
 		this.dynActionCreator = dynActionCreator;
 		this.vehicle = vehicle;
+		this.eventsManager = eventsManager;
 	}
 
 	@Override
@@ -67,6 +71,10 @@ public class VrpAgentLogic implements DynAgentLogic {
 		}
 		// else: PLANNED or STARTED
 
+		if (schedule.getStatus() == ScheduleStatus.STARTED) {
+			eventsManager.processEvent(new TaskEndedEvent(now, vehicle.getId(), schedule.getCurrentTask()));
+		}
+
 		optimizer.nextTask(vehicle);
 		// remember to REFRESH status (after nextTask -> now it can be COMPLETED)!!!
 
@@ -74,6 +82,8 @@ public class VrpAgentLogic implements DynAgentLogic {
 			return createAfterScheduleActivity();// FINAL ACTIVITY (deactivate the agent in QSim)
 		}
 
+		eventsManager.processEvent(new TaskStartedEvent(now, vehicle.getId(), schedule.getCurrentTask()));
+
 		DynAction action = dynActionCreator.createAction(agent, vehicle, now);
 
 		return action;
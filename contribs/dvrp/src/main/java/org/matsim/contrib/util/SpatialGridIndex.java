@@ -0,0 +1,237 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.util;
+
+import java.util.*;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.util.distance.DistanceUtils;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+/**
+ * Uniform grid over objects with (fixed) coordinates, e.g. idle vehicles or unplanned requests. Objects are added and
+ * removed one by one, so the index can be kept up to date while the simulation runs, instead of being rebuilt for each
+ * query.
+ * <p>
+ * Nearest-neighbour queries visit the cells in rings around the query point and stop as soon as no unvisited cell can
+ * contain anything closer, so the answers are exact (in terms of the straight-line distance), and the cost depends on
+ * the local density rather than on the total number of objects. The cell size should be roughly the distance that
+ * contains k objects in a typical query; e.g. 1000 m for taxis in Berlin.
+ * <p>
+ * Objects are compared by {@code equals()}; iteration over objects within one cell follows the insertion order.
+ */
+public class SpatialGridIndex<T> {
+	private static class Entry<T> {
+		private final T object;
+		private final Coord coord;
+		private final long cellKey;
+
+		private Entry(T object, Coord coord, long cellKey) {
+			this.object = object;
+			this.coord = coord;
+			this.cellKey = cellKey;
+		}
+	}
+
+	private static class Candidate<T> implements Comparable<Candidate<T>> {
+		private final T object;
+		private final double squaredDistance;
+
+		private Candidate(T object, double squaredDistance) {
+			this.object = object;
+			this.squaredDistance = squaredDistance;
+		}
+
+		@Override
+		public int compareTo(Candidate<T> o) {
+			return -Double.compare(squaredDistance, o.squaredDistance);// reversed (the furthest is the head)
+		}
+	}
+
+	private final double cellSize;
+
+	private final Map<T, Entry<T>> entries = new LinkedHashMap<>();
+	private final Map<Long, Map<T, Entry<T>>> cells = new HashMap<>();
+
+	// bounds of all cells ever used (not shrunk on removal); they limit the ring search
+	private int minCol = Integer.MAX_VALUE;
+	private int maxCol = Integer.MIN_VALUE;
+	private int minRow = Integer.MAX_VALUE;
+	private int maxRow = Integer.MIN_VALUE;
+
+	public SpatialGridIndex(double cellSize) {
+		if (cellSize <= 0) {
+			throw new IllegalArgumentException("cellSize must be positive: " + cellSize);
+		}
+		this.cellSize = cellSize;
+	}
+
+	public void add(T object, Coord coord) {
+		int col = getCol(coord);
+		int row = getRow(coord);
+		long cellKey = getCellKey(col, row);
+		Entry<T> entry = new Entry<>(object, coord, cellKey);
+
+		if (entries.put(object, entry) != null) {
+			throw new IllegalStateException(object + " is already in the index");
+		}
+
+		Map<T, Entry<T>> cell = cells.get(cellKey);
+		if (cell == null) {
+			cell = new LinkedHashMap<>();
+			cells.put(cellKey, cell);
+		}
+		cell.put(object, entry);
+
+		minCol = Math.min(minCol, col);
+		maxCol = Math.max(maxCol, col);
+		minRow = Math.min(minRow, row);
+		maxRow = Math.max(maxRow, row);
+	}
+
+	public void remove(T object) {
+		Entry<T> entry = entries.remove(object);
+		if (entry == null) {
+			throw new IllegalStateException(object + " is not in the index");
+		}
+
+		Map<T, Entry<T>> cell = cells.get(entry.cellKey);
+		cell.remove(object);
+		if (cell.isEmpty()) {
+			cells.remove(entry.cellKey);
+		}
+	}
+
+	public void move(T object, Coord newCoord) {
+		remove(object);
+		add(object, newCoord);
+	}
+
+	public boolean contains(T object) {
+		return entries.containsKey(object);
+	}
+
+	public Coord getCoord(T object) {
+		Entry<T> entry = entries.get(object);
+		return entry == null ? null : entry.coord;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public Collection<T> getObjects() {
+		return Collections.unmodifiableCollection(entries.keySet());
+	}
+
+	public List<T> findNearest(Coord coord, int k) {
+		return findNearest(coord, k, Predicates.<T> alwaysTrue());
+	}
+
+	/**
+	 * @return up to k objects accepted by the filter, sorted by their distance to coord (ascending)
+	 */
+	public List<T> findNearest(Coord coord, int k, Predicate<? super T> filter) {
+		if (k <= 0 || entries.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		int col = getCol(coord);
+		int row = getRow(coord);
+		int maxRing = Math.max(Math.max(col - minCol, maxCol - col), Math.max(row - minRow, maxRow - row));
+
+		// descending order: from the k-th nearest (head) to the nearest
+		PriorityQueue<Candidate<T>> nearest = new PriorityQueue<>(k);
+		for (int ring = 0; ring <= maxRing; ring++) {
+			if (ring == 0) {
+				visitCell(col, row, coord, k, filter, nearest);
+			} else {
+				for (int c = col - ring; c <= col + ring; c++) {
+					visitCell(c, row - ring, coord, k, filter, nearest);
+					visitCell(c, row + ring, coord, k, filter, nearest);
+				}
+				for (int r = row - ring + 1; r <= row + ring - 1; r++) {
+					visitCell(col - ring, r, coord, k, filter, nearest);
+					visitCell(col + ring, r, coord, k, filter, nearest);
+				}
+			}
+
+			// objects in the cells beyond this ring are at least (ring * cellSize) away from coord
+			double minUnvisitedDistance = ring * cellSize;
+			if (nearest.size() == k
+					&& nearest.peek().squaredDistance <= minUnvisitedDistance * minUnvisitedDistance) {
+				break;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		T[] array = (T[])new Object[nearest.size()];
+		for (int i = array.length - 1; i >= 0; i--) {
+			array[i] = nearest.poll().object;
+		}
+		return Arrays.asList(array);
+	}
+
+	private void visitCell(int c, int r, Coord coord, int k, Predicate<? super T> filter,
+			PriorityQueue<Candidate<T>> nearest) {
+		if (c < minCol || c > maxCol || r < minRow || r > maxRow) {
+			return;
+		}
+
+		Map<T, Entry<T>> cell = cells.get(getCellKey(c, r));
+		if (cell == null) {
+			return;
+		}
+
+		for (Entry<T> e : cell.values()) {
+			if (filter.apply(e.object)) {
+				double squaredDistance = DistanceUtils.calculateSquaredDistance(coord, e.coord);
+				if (nearest.size() < k) {
+					nearest.add(new Candidate<>(e.object, squaredDistance));
+				} else if (squaredDistance < nearest.peek().squaredDistance) {
+					nearest.poll();
+					nearest.add(new Candidate<>(e.object, squaredDistance));
+				}
+			}
+		}
+	}
+
+	private int getCol(Coord coord) {
+		return getCol(coord.getX());
+	}
+
+	private int getRow(Coord coord) {
+		return getRow(coord.getY());
+	}
+
+	private int getCol(double x) {
+		return (int)Math.floor(x / cellSize);
+	}
+
+	private int getRow(double y) {
+		return (int)Math.floor(y / cellSize);
+	}
+
+	private static long getCellKey(int col, int row) {
+		return ((long)col << 32) | (row & 0xffffffffL);
+	}
+}
@@ -0,0 +1,163 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.MinCostFlowRebalancingStrategy.Relocation;
+import org.matsim.contrib.dvrp.path.VrpPathWithTravelDataImpl;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.zone.SquareGridSystem;
+import org.matsim.core.network.NetworkUtils;
+
+public class MinCostFlowRebalancingStrategyTest {
+	private static final String MODE = "mode";
+
+	// nodes at x = 0, 1000, 2000 ==> one zone per node (1000 m cells)
+	private Link linkBA;// zone of A
+	private Link linkAB;// zone of B
+	private Link linkBC;// zone of C
+
+	private ZonalDemandAggregator demandAggregator;
+	private MinCostFlowRebalancingStrategy strategy;
+	private final List<Vehicle> vehicles = new ArrayList<>();
+
+	private final ScheduleInquiry scheduleInquiry = new ScheduleInquiry() {
+		@Override
+		public boolean isIdle(Vehicle vehicle) {
+			Schedule schedule = vehicle.getSchedule();
+			return schedule.getCurrentTask() instanceof StayTask
+					&& schedule.getCurrentTask().getTaskIdx() == schedule.getTaskCount() - 1;
+		}
+	};
+
+	@Before
+	public void init() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("A"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("B"), new Coord(1000, 0));
+		Node c = NetworkUtils.createAndAddNode(network, Id.createNodeId("C"), new Coord(2000, 0));
+		linkAB = NetworkUtils.createAndAddLink(network, Id.createLinkId("AB"), a, b, 1000, 10, 1000, 1);
+		linkBA = NetworkUtils.createAndAddLink(network, Id.createLinkId("BA"), b, a, 1000, 10, 1000, 1);
+		linkBC = NetworkUtils.createAndAddLink(network, Id.createLinkId("BC"), b, c, 1000, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId("CB"), c, b, 1000, 10, 1000, 1);
+
+		demandAggregator = new ZonalDemandAggregator(network, new SquareGridSystem(network, 1000), MODE, 900);
+		strategy = new MinCostFlowRebalancingStrategy(demandAggregator, network);
+	}
+
+	@Test
+	public void testNoForecast() {
+		addIdleVehicle(linkBA);
+		assertTrue(strategy.calcRelocations(vehicles, scheduleInquiry, 0, 900).isEmpty());
+	}
+
+	@Test
+	public void testIdleVehiclesSentToDemand() {
+		addDepartures(linkBC, 2);
+		addIdleVehicle(linkBA);
+		addIdleVehicle(linkBA);
+		addIdleVehicle(linkBA);
+
+		List<Relocation> relocations = strategy.calcRelocations(vehicles, scheduleInquiry, 0, 900);
+		assertEquals(2, relocations.size());
+		for (Relocation r : relocations) {
+			assertSame(linkBC, r.link);
+		}
+	}
+
+	@Test
+	public void testNearestSurplusSent() {
+		addDepartures(linkBC, 1);
+		addIdleVehicle(linkBA);// 2000 m from C
+		Vehicle nearest = addIdleVehicle(linkAB);// 1000 m from C
+
+		List<Relocation> relocations = strategy.calcRelocations(vehicles, scheduleInquiry, 0, 900);
+		assertEquals(1, relocations.size());
+		assertSame(nearest, relocations.get(0).vehicle);
+	}
+
+	@Test
+	public void testVehiclesDrivingToZoneCountedAsSupply() {
+		addDepartures(linkBC, 2);
+		addVehicleDrivingTo(linkBC);
+		addIdleVehicle(linkBA);
+		addIdleVehicle(linkBA);
+
+		List<Relocation> relocations = strategy.calcRelocations(vehicles, scheduleInquiry, 0, 900);
+		assertEquals(1, relocations.size());
+		assertSame(linkBC, relocations.get(0).link);
+	}
+
+	@Test
+	public void testNoRelocationIfDemandCovered() {
+		addDepartures(linkBC, 1);
+		addVehicleDrivingTo(linkBC);
+		addIdleVehicle(linkBA);
+
+		assertTrue(strategy.calcRelocations(vehicles, scheduleInquiry, 0, 900).isEmpty());
+	}
+
+	@Test
+	public void testDemandOutsideHorizonIgnored() {
+		addDepartures(linkBC, 2);// in [0, 900)
+		addIdleVehicle(linkBA);
+
+		assertTrue(strategy.calcRelocations(vehicles, scheduleInquiry, 900, 900).isEmpty());
+	}
+
+	// departures observed in the previous iteration
+	private void addDepartures(Link link, int count) {
+		for (int i = 0; i < count; i++) {
+			demandAggregator.handleEvent(new PersonDepartureEvent(0, Id.createPersonId(i), link.getId(), MODE));
+		}
+		demandAggregator.reset(1);
+	}
+
+	private Vehicle addIdleVehicle(Link link) {
+		Vehicle vehicle = createVehicle(link);
+		vehicle.getSchedule().addTask(new StayTaskImpl(0, 3600, link));
+		vehicle.getSchedule().nextTask();
+		return vehicle;
+	}
+
+	// DRIVE (current) followed by the final STAY
+	private Vehicle addVehicleDrivingTo(Link link) {
+		Vehicle vehicle = createVehicle(linkAB);
+		vehicle.getSchedule().addTask(new DriveTaskImpl(
+				new VrpPathWithTravelDataImpl(0, 100, new Link[] { linkAB, link }, new double[] { 0, 100 })));
+		vehicle.getSchedule().addTask(new StayTaskImpl(100, 3600, link));
+		vehicle.getSchedule().nextTask();
+		return vehicle;
+	}
+
+	private Vehicle createVehicle(Link startLink) {
+		Vehicle vehicle = new VehicleImpl(Id.create(vehicles.size(), Vehicle.class), startLink, 1, 0, 3600);
+		vehicles.add(vehicle);
+		return vehicle;
+	}
+}
@@ -0,0 +1,191 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.optimizer.rebalancing;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TransportProblemTest {
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void testBalanced() {
+		int[] supplies = { 2, 1 };
+		int[] demands = { 1, 2 };
+		double[][] costs = { { 1, 4 }, { 5, 1 } };
+
+		int[][] flows = new TransportProblem(supplies, demands, costs).solve();
+		assertFeasible(supplies, demands, flows);
+		// 1 * 1 + 1 * 4 + 1 * 1 (cheaper than sending the unit of supply 1 to demand 0)
+		assertEquals(6, calcCost(flows, costs), DELTA);
+	}
+
+	@Test
+	public void testSupplyExceedsDemand() {
+		int[] supplies = { 3, 3 };
+		int[] demands = { 2 };
+		double[][] costs = { { 5 }, { 2 } };
+
+		int[][] flows = new TransportProblem(supplies, demands, costs).solve();
+		assertFeasible(supplies, demands, flows);
+		assertEquals(0, flows[0][0]);
+		assertEquals(2, flows[1][0]);
+	}
+
+	@Test
+	public void testDemandExceedsSupply() {
+		int[] supplies = { 2 };
+		int[] demands = { 3, 1, 2 };
+		double[][] costs = { { 3, 1, 2 } };
+
+		int[][] flows = new TransportProblem(supplies, demands, costs).solve();
+		assertFeasible(supplies, demands, flows);
+		assertEquals(0, flows[0][0]);
+		assertEquals(1, flows[0][1]);
+		assertEquals(1, flows[0][2]);
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, new TransportProblem(new int[0], new int[] { 1 }, new double[0][1]).solve().length);
+		assertEquals(0, new TransportProblem(new int[] { 1 }, new int[0], new double[1][0]).solve()[0].length);
+	}
+
+	@Test
+	public void testRandomAgainstBruteForce() {
+		Random random = new Random(1234);
+		for (int n = 0; n < 200; n++) {
+			int[] supplies = randomAmounts(random, 1 + random.nextInt(3));
+			int[] demands = randomAmounts(random, 1 + random.nextInt(3));
+			double[][] costs = new double[supplies.length][demands.length];
+			for (int i = 0; i < supplies.length; i++) {
+				for (int j = 0; j < demands.length; j++) {
+					costs[i][j] = random.nextInt(100);
+				}
+			}
+
+			int[][] flows = new TransportProblem(supplies, demands, costs).solve();
+			assertFeasible(supplies, demands, flows);
+			assertEquals(bruteForceMinCost(supplies.clone(), demands.clone(), costs, 0, 0), calcCost(flows, costs),
+					DELTA);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testRandomEuclideanCosts() {
+		// non-integer costs: rounding errors must not make the solver cycle
+		Random random = new Random(4321);
+		for (int n = 0; n < 50; n++) {
+			int[] supplies = randomAmounts(random, 1 + random.nextInt(30));
+			int[] demands = randomAmounts(random, 1 + random.nextInt(30));
+			double[][] costs = new double[supplies.length][demands.length];
+			double[][] supplyCoords = randomCoords(random, supplies.length);
+			double[][] demandCoords = randomCoords(random, demands.length);
+			for (int i = 0; i < supplies.length; i++) {
+				for (int j = 0; j < demands.length; j++) {
+					costs[i][j] = Math.hypot(supplyCoords[i][0] - demandCoords[j][0],
+							supplyCoords[i][1] - demandCoords[j][1]);
+				}
+			}
+
+			assertFeasible(supplies, demands, new TransportProblem(supplies, demands, costs).solve());
+		}
+	}
+
+	private static double[][] randomCoords(Random random, int count) {
+		double[][] coords = new double[count][2];
+		for (int i = 0; i < count; i++) {
+			coords[i][0] = random.nextDouble() * 20000;
+			coords[i][1] = random.nextDouble() * 20000;
+		}
+		return coords;
+	}
+
+	private static int[] randomAmounts(Random random, int count) {
+		int[] amounts = new int[count];
+		for (int i = 0; i < count; i++) {
+			amounts[i] = random.nextInt(4);
+		}
+		return amounts;
+	}
+
+	// the maximum possible amount is shipped, with no capacity exceeded
+	private static void assertFeasible(int[] supplies, int[] demands, int[][] flows) {
+		int totalFlow = 0;
+		for (int i = 0; i < supplies.length; i++) {
+			int rowFlow = 0;
+			for (int j = 0; j < demands.length; j++) {
+				assertTrue(flows[i][j] >= 0);
+				rowFlow += flows[i][j];
+			}
+			assertTrue(rowFlow <= supplies[i]);
+			totalFlow += rowFlow;
+		}
+		for (int j = 0; j < demands.length; j++) {
+			int columnFlow = 0;
+			for (int i = 0; i < supplies.length; i++) {
+				columnFlow += flows[i][j];
+			}
+			assertTrue(columnFlow <= demands[j]);
+		}
+		assertEquals(Math.min(sum(supplies), sum(demands)), totalFlow);
+	}
+
+	private static double calcCost(int[][] flows, double[][] costs) {
+		double cost = 0;
+		for (int i = 0; i < flows.length; i++) {
+			for (int j = 0; j < flows[i].length; j++) {
+				cost += flows[i][j] * costs[i][j];
+			}
+		}
+		return cost;
+	}
+
+	// minimum cost of shipping the remaining min(supply, demand) units; tries all amounts for each (i, j) pair
+	private static double bruteForceMinCost(int[] supplies, int[] demands, double[][] costs, int i, int j) {
+		if (i == supplies.length) {
+			return sum(supplies) == 0 || sum(demands) == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		int nextI = j + 1 == demands.length ? i + 1 : i;
+		int nextJ = j + 1 == demands.length ? 0 : j + 1;
+
+		double minCost = Double.POSITIVE_INFINITY;
+		for (int amount = 0; amount <= Math.min(supplies[i], demands[j]); amount++) {
+			supplies[i] -= amount;
+			demands[j] -= amount;
+			minCost = Math.min(minCost,
+					amount * costs[i][j] + bruteForceMinCost(supplies, demands, costs, nextI, nextJ));
+			supplies[i] += amount;
+			demands[j] += amount;
+		}
+		return minCost;
+	}
+
+	private static int sum(int[] array) {
+		int sum = 0;
+		for (int a : array) {
+			sum += a;
+		}
+		return sum;
+	}
+}
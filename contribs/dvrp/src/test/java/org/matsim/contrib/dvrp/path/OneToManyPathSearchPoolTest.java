@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
+import org.matsim.contrib.dvrp.path.OneToManyPathSearchPool.Query;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+public class OneToManyPathSearchPoolTest {
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> links = new ArrayList<>();
+
+	public OneToManyPathSearchPoolTest() {
+		// a line of nodes: 0 <-> 1 <-> ... <-> 10
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i <= 10; i++) {
+			nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(100 * i, 0)));
+		}
+		for (int i = 0; i < 10; i++) {
+			links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes.get(i), nodes.get(i + 1), 100,
+					10, 1000, 1));
+			links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i + "_r"), nodes.get(i + 1), nodes.get(i),
+					100, 10, 1000, 1));
+		}
+	}
+
+	@Test
+	public void testParallelQueries() {
+		OneToManyPathSearchPool singleThreaded = createPool(1);
+		OneToManyPathSearchPool multiThreaded = createPool(3);
+
+		List<Query> queries = new ArrayList<>();
+		for (int i = 0; i < links.size(); i += 3) {
+			queries.add(Query.createForwardQuery(links.get(i), links, 0));
+			queries.add(Query.createBackwardQuery(links.get(i), links, 0));
+		}
+
+		PathData[][] expected = singleThreaded.calcPaths(queries);
+		PathData[][] actual = multiThreaded.calcPaths(queries);
+		singleThreaded.shutdown();
+		multiThreaded.shutdown();
+
+		assertEquals(queries.size(), actual.length);
+		for (int q = 0; q < queries.size(); q++) {
+			for (int i = 0; i < links.size(); i++) {
+				assertEquals(expected[q][i].path.links, actual[q][i].path.links);
+				assertEquals(expected[q][i].path.travelTime, actual[q][i].path.travelTime, 0);
+				assertEquals(expected[q][i].firstAndLastLinkTT, actual[q][i].firstAndLastLinkTT, 0);
+			}
+		}
+	}
+
+	@Test
+	public void testShutdownReleasesSearchesOfCallingThread() {
+		OneToManyPathSearchPool pool = createPool(1);
+		OneToManyPathSearch forwardSearch = pool.getForwardSearch();
+		OneToManyPathSearch backwardSearch = pool.getBackwardSearch();
+		assertSame(forwardSearch, pool.getForwardSearch());
+		assertSame(backwardSearch, pool.getBackwardSearch());
+
+		pool.shutdown();
+		assertNotSame(forwardSearch, pool.getForwardSearch());
+		assertNotSame(backwardSearch, pool.getBackwardSearch());
+		pool.shutdown();
+	}
+
+	private OneToManyPathSearchPool createPool(int threads) {
+		FreeSpeedTravelTime travelTime = new FreeSpeedTravelTime();
+		return new OneToManyPathSearchPool(network, new TimeAsTravelDisutility(travelTime), travelTime, threads);
+	}
+}
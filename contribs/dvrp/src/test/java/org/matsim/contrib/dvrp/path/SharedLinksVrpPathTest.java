@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.path;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeEstimatorImpl;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Paths created by {@link VrpPaths#createPath} (sharing the links of the least-cost path, see
+ * {@link SharedLinksVrpPath}) are the same as the ones created with copied links ({@link VrpPathWithTravelDataImpl}),
+ * as was done before.
+ */
+public class SharedLinksVrpPathTest {
+	private static final double DEPARTURE_TIME = 100;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> links = new ArrayList<>();
+
+	// time-dependent: slower on links with higher indices and after 120 s
+	private final TravelTime travelTime = new TravelTime() {
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			return 10 + links.indexOf(link) + (time < 120 ? 0 : 5);
+		}
+	};
+
+	public SharedLinksVrpPathTest() {
+		// a line of links: 0 -> 1 -> ... -> 5 (100 m, 10 m/s)
+		Node from = NetworkUtils.createAndAddNode(network, Id.createNodeId(0), new Coord(0, 0));
+		for (int i = 0; i < 6; i++) {
+			Node to = NetworkUtils.createAndAddNode(network, Id.createNodeId(i + 1), new Coord(100 * (i + 1), 0));
+			links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i), from, to, 100, 10, 1000, 1));
+			from = to;
+		}
+	}
+
+	@Test
+	public void testOneLink() {
+		// fromLink == toLink: zero-length path
+		Path path = createLeastCostPath(2, 2);
+		assertSamePath(createFormerPath(links.get(2), links.get(2), path),
+				VrpPaths.createPath(links.get(2), links.get(2), DEPARTURE_TIME, path, travelTime));
+	}
+
+	@Test
+	public void testAdjacentLinks() {
+		Path path = createLeastCostPath(2, 3);
+		assertTrue(path.links.isEmpty());
+		VrpPathWithTravelData vrpPath = VrpPaths.createPath(links.get(2), links.get(3), DEPARTURE_TIME, path,
+				travelTime);
+		assertTrue(vrpPath instanceof SharedLinksVrpPath);
+		assertEquals(2, vrpPath.getLinkCount());
+		assertSamePath(createFormerPath(links.get(2), links.get(3), path), vrpPath);
+	}
+
+	@Test
+	public void testLongerPath() {
+		Path path = createLeastCostPath(0, 5);
+		assertSamePath(createFormerPath(links.get(0), links.get(5), path),
+				VrpPaths.createPath(links.get(0), links.get(5), DEPARTURE_TIME, path, travelTime));
+	}
+
+	@Test
+	public void testLongerPath_withDvrpTravelTimeEstimator() {
+		// whole-path estimation (see DvrpTravelTimeEstimator.calcLinkTravelTimes)
+		TravelTimeCalculatorConfigGroup ttCalcConfig = new TravelTimeCalculatorConfigGroup();
+		ttCalcConfig.setTraveltimeBinSize(10);
+		DvrpTravelTimeEstimatorImpl estimator = new DvrpTravelTimeEstimatorImpl(travelTime, travelTime, network,
+				ttCalcConfig, 1);
+
+		Path path = createLeastCostPath(0, 5);
+		VrpPathWithTravelData vrpPath = VrpPaths.createPath(links.get(0), links.get(5), DEPARTURE_TIME, path,
+				estimator);
+		assertSamePath(createFormerPath(links.get(0), links.get(5), path), vrpPath);
+	}
+
+	@Test
+	public void testSharedLinks() {
+		Path path = createLeastCostPath(0, 5);
+		VrpPathWithTravelData vrpPath1 = VrpPaths.createPath(links.get(0), links.get(5), DEPARTURE_TIME, path,
+				travelTime);
+		VrpPathWithTravelData vrpPath2 = VrpPaths.createPath(links.get(0), links.get(5), DEPARTURE_TIME + 50, path,
+				travelTime);
+
+		// travel times are kept per path
+		vrpPath1.setLinkTravelTime(1, 100);
+		assertEquals(100, vrpPath1.getLinkTravelTime(1), 0);
+		assertEquals(travelTime.getLinkTravelTime(links.get(1), DEPARTURE_TIME + 50 + VrpPaths.FIRST_LINK_TT, null,
+				null), vrpPath2.getLinkTravelTime(1), 0);
+		assertSamePath(createFormerPath(links.get(0), links.get(5), path, DEPARTURE_TIME + 50), vrpPath2);
+	}
+
+	private Path createLeastCostPath(int fromLinkIdx, int toLinkIdx) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> pathLinks = new ArrayList<>();
+		double tt = 0;
+		double time = DEPARTURE_TIME + VrpPaths.FIRST_LINK_TT;
+		nodes.add(links.get(fromLinkIdx).getToNode());
+		for (int i = fromLinkIdx + 1; i < toLinkIdx; i++) {
+			Link link = links.get(i);
+			pathLinks.add(link);
+			nodes.add(link.getToNode());
+			double linkTT = travelTime.getLinkTravelTime(link, time + tt, null, null);
+			tt += linkTT;
+		}
+		return new Path(nodes, pathLinks, tt, tt);
+	}
+
+	private VrpPathWithTravelData createFormerPath(Link fromLink, Link toLink, Path path) {
+		return createFormerPath(fromLink, toLink, path, DEPARTURE_TIME);
+	}
+
+	// VrpPaths.createPath() before SharedLinksVrpPath (links copied to an array)
+	private VrpPathWithTravelData createFormerPath(Link fromLink, Link toLink, Path path, double departureTime) {
+		if (fromLink == toLink) {
+			return new VrpPathWithTravelDataImpl(departureTime, 0, new Link[] { fromLink }, new double[] { 0 });
+		}
+
+		int count = path.links.size();
+		Link[] pathLinks = new Link[count + 2];
+		double[] linkTTs = new double[count + 2];
+		double currentTime = departureTime;
+		pathLinks[0] = fromLink;
+		double linkTT = VrpPaths.FIRST_LINK_TT;
+		linkTTs[0] = linkTT;
+		currentTime += linkTT;
+
+		for (int i = 1; i <= count; i++) {
+			Link link = path.links.get(i - 1);
+			pathLinks[i] = link;
+			linkTT = travelTime.getLinkTravelTime(link, currentTime, null, null);
+			linkTTs[i] = linkTT;
+			currentTime += linkTT;
+		}
+
+		pathLinks[count + 1] = toLink;
+		linkTT = VrpPaths.getLastLinkTT(toLink, currentTime);
+		linkTTs[count + 1] = linkTT;
+		return new VrpPathWithTravelDataImpl(departureTime, 1 + path.travelTime + linkTT, pathLinks, linkTTs);
+	}
+
+	private static void assertSamePath(VrpPathWithTravelData expected, VrpPathWithTravelData actual) {
+		assertEquals(expected.getDepartureTime(), actual.getDepartureTime(), 0);
+		assertEquals(expected.getTravelTime(), actual.getTravelTime(), 0);
+		assertEquals(expected.getArrivalTime(), actual.getArrivalTime(), 0);
+		assertSame(expected.getFromLink(), actual.getFromLink());
+		assertSame(expected.getToLink(), actual.getToLink());
+
+		assertEquals(expected.getLinkCount(), actual.getLinkCount());
+		Iterator<Link> expectedIter = expected.iterator();
+		Iterator<Link> actualIter = actual.iterator();
+		for (int i = 0; i < expected.getLinkCount(); i++) {
+			assertSame(expected.getLink(i), actual.getLink(i));
+			assertEquals(expected.getLinkTravelTime(i), actual.getLinkTravelTime(i), 0);
+			assertSame(expectedIter.next(), actualIter.next());
+		}
+		assertFalse(actualIter.hasNext());
+	}
+}
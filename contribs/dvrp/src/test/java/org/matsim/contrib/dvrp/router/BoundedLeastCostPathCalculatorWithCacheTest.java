@@ -0,0 +1,248 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.dvrp.router;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.contrib.dvrp.router.LeastCostPathCalculatorWithCache.CacheStats;
+import org.matsim.contrib.dvrp.util.TimeDiscretizer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.vehicles.Vehicle;
+
+public class BoundedLeastCostPathCalculatorWithCacheTest {
+	private static final int NODE_COUNT = 21;
+	private static final int ENTRY_WEIGHT_LOWER_BOUND = 160;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Node> nodes = new ArrayList<>();
+
+	public BoundedLeastCostPathCalculatorWithCacheTest() {
+		// a line of nodes: 0 -> 1 -> ... -> 20
+		for (int i = 0; i < NODE_COUNT; i++) {
+			nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(100 * i, 0)));
+		}
+		for (int i = 1; i < NODE_COUNT; i++) {
+			NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes.get(i - 1), nodes.get(i), 100, 10, 1000,
+					1);
+		}
+	}
+
+	@Test
+	public void testHitsAndMisses() {
+		LineCalculator calculator = new LineCalculator(0);
+		BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(calculator,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, network);
+
+		Path path = cache.calcLeastCostPath(nodes.get(2), nodes.get(7), 100, null, null);
+		assertPath(2, 7, 0, path);// the start time is discretized before routing
+		assertEquals(1, calculator.calls.get());
+
+		// same time bin
+		assertPath(2, 7, 0, cache.calcLeastCostPath(nodes.get(2), nodes.get(7), 899, null, null));
+		assertEquals(1, calculator.calls.get());
+
+		// another time bin
+		assertPath(2, 7, 900, cache.calcLeastCostPath(nodes.get(2), nodes.get(7), 900, null, null));
+		// other nodes
+		assertPath(3, 7, 0, cache.calcLeastCostPath(nodes.get(3), nodes.get(7), 100, null, null));
+		assertEquals(3, calculator.calls.get());
+
+		assertStats(1, 3, 0, cache.getCacheStats());
+		assertEquals(3, cache.getCachedPathCount());
+	}
+
+	@Test
+	public void testEviction() {
+		long memoryBudget = 20 * (ENTRY_WEIGHT_LOWER_BOUND + 4 * (NODE_COUNT - 1));
+		LineCalculator calculator = new LineCalculator(0);
+		BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(calculator,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, network, memoryBudget);
+
+		int keyCount = 0;
+		for (int t = 0; t < 10; t++) {
+			for (int from = 0; from < NODE_COUNT - 1; from++) {
+				cache.calcLeastCostPath(nodes.get(from), nodes.get(NODE_COUNT - 1), t * 900, null, null);
+				keyCount++;
+			}
+		}
+
+		CacheStats stats = cache.getCacheStats();
+		assertStats(0, keyCount, keyCount - cache.getCachedPathCount(), stats);
+		assertTrue(stats.getEvictions() > 0);
+		assertTrue(cache.getCachedPathCount() <= memoryBudget / ENTRY_WEIGHT_LOWER_BOUND);
+
+		// the most recently used path has not been evicted
+		Path path = cache.calcLeastCostPath(nodes.get(NODE_COUNT - 2), nodes.get(NODE_COUNT - 1), 9 * 900, null,
+				null);
+		assertPath(NODE_COUNT - 2, NODE_COUNT - 1, 9 * 900, path);
+		assertEquals(keyCount, calculator.calls.get());
+		assertEquals(1, stats.getHits());
+
+		// the least recently used one has
+		cache.calcLeastCostPath(nodes.get(0), nodes.get(NODE_COUNT - 1), 0, null, null);
+		assertEquals(keyCount + 1, calculator.calls.get());
+	}
+
+	@Test
+	public void testConcurrentHits() throws Exception {
+		LineCalculator calculator = new LineCalculator(0);
+		final BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(calculator,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, network);
+
+		for (int from = 0; from < NODE_COUNT; from++) {
+			for (int to = from; to < NODE_COUNT; to++) {
+				cache.calcLeastCostPath(nodes.get(from), nodes.get(to), 0, null, null);
+			}
+		}
+		final int pathCount = calculator.calls.get();
+
+		final int threadCount = 8;
+		final int rounds = 50;
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int r = 0; r < rounds; r++) {
+						for (int from = 0; from < NODE_COUNT; from++) {
+							for (int to = from; to < NODE_COUNT; to++) {
+								assertPath(from, to, 0,
+										cache.calcLeastCostPath(nodes.get(from), nodes.get(to), r, null, null));
+							}
+						}
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+
+		assertEquals(pathCount, calculator.calls.get());
+		assertStats(threadCount * rounds * pathCount, pathCount, 0, cache.getCacheStats());
+	}
+
+	@Test
+	public void testConcurrentMisses() throws Exception {
+		LineCalculator calculator = new LineCalculator(1);
+		final BoundedLeastCostPathCalculatorWithCache cache = new BoundedLeastCostPathCalculatorWithCache(calculator,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, network);
+
+		final int threadCount = 8;
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int i = 0; i < threadCount; i++) {
+			final int from = i;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					// every thread asks for different paths
+					for (int to = from; to < NODE_COUNT; to++) {
+						assertPath(from, to, 0, cache.calcLeastCostPath(nodes.get(from), nodes.get(to), 0, null, null));
+					}
+					return null;
+				}
+			});
+		}
+		runAll(tasks);
+
+		// misses are computed one after the other (the underlying calculator is not thread-safe)
+		assertEquals(1, calculator.maxConcurrentCalls.get());
+		int misses = calculator.calls.get();
+		assertStats(0, misses, 0, cache.getCacheStats());
+		assertEquals(misses, cache.getCachedPathCount());
+	}
+
+	private static void runAll(List<Callable<Void>> tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();// rethrows assertion errors from the workers
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void assertPath(int from, int to, double startTime, Path path) {
+		assertEquals(to - from, path.links.size());
+		assertEquals(to - from + 1, path.nodes.size());
+		for (int i = from; i < to; i++) {
+			assertSame(nodes.get(i), path.nodes.get(i - from));
+			assertSame(nodes.get(i + 1), path.links.get(i - from).getToNode());
+		}
+		assertEquals(10. * (to - from), path.travelTime, 0);
+		assertEquals(startTime, path.travelCost, 0);
+	}
+
+	private static void assertStats(long hits, long misses, long evictions, CacheStats stats) {
+		assertEquals(hits, stats.getHits());
+		assertEquals(misses, stats.getMisses());
+		assertEquals(evictions, stats.getEvictions());
+	}
+
+	/**
+	 * Routes along the line of nodes. The travel cost is set to the (discretized) start time, so that tests can check
+	 * which time a path was calculated for. Tracks how many threads run it at the same time.
+	 */
+	private class LineCalculator implements LeastCostPathCalculator {
+		private final long sleepMillis;
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger concurrentCalls = new AtomicInteger();
+		private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+		private LineCalculator(long sleepMillis) {
+			this.sleepMillis = sleepMillis;
+		}
+
+		@Override
+		public Path calcLeastCostPath(Node fromNode, Node toNode, double startTime, Person person, Vehicle vehicle) {
+			calls.incrementAndGet();
+			maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+
+			try {
+				if (sleepMillis > 0) {
+					Thread.sleep(sleepMillis);
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+
+			int from = nodes.indexOf(fromNode);
+			int to = nodes.indexOf(toNode);
+			List<Node> pathNodes = new ArrayList<>(nodes.subList(from, to + 1));
+			List<Link> pathLinks = new ArrayList<>();
+			for (int i = from; i < to; i++) {
+				pathLinks.add(network.getLinks().get(Id.createLinkId(i + 1)));
+			}
+
+			concurrentCalls.decrementAndGet();
+			return new Path(pathNodes, pathLinks, 10. * (to - from), startTime);
+		}
+	}
+}
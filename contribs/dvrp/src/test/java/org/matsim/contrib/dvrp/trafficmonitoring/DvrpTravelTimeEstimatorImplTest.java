@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.dvrp.trafficmonitoring;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.mobsim.framework.events.*;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class DvrpTravelTimeEstimatorImplTest {
+	private static final double DELTA = 1e-9;
+
+	private final Id<Vehicle> vehicleId = Id.create("v", Vehicle.class);
+	private final Id<Person> driverId = Id.createPersonId("d");
+
+	private Link link;
+	private DvrpTravelTimeEstimatorImpl estimator;
+
+	@Before
+	public void init() {
+		Network network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(100, 0));
+		link = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 100, 10, 1000, 1);// tt = 10 s
+
+		// online: alpha = 0.5, batches of 60 s
+		estimator = new DvrpTravelTimeEstimatorImpl(new FreeSpeedTravelTime(), new FreeSpeedTravelTime(), network,
+				new TravelTimeCalculatorConfigGroup(), 1, 0.5, 60);
+	}
+
+	@Test
+	public void testLinkTraversal_observed() {
+		simStep(0);
+		estimator.handleEvent(new LinkEnterEvent(0, vehicleId, link.getId()));
+		estimator.handleEvent(new LinkLeaveEvent(30, vehicleId, link.getId()));
+		assertEquals(10, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+
+		simStep(60);// batch applied: 0.5 * 30 + 0.5 * 10
+		assertEquals(20, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+
+		estimator.notifyMobsimBeforeCleanup(new MobsimBeforeCleanupEvent<>(null));// back to the offline estimates
+		assertEquals(10, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+	}
+
+	@Test
+	public void testLinkTraversal_withStop_notObserved() {
+		simStep(0);
+		estimator.handleEvent(new LinkEnterEvent(0, vehicleId, link.getId()));
+		estimator.handleEvent(new VehicleLeavesTrafficEvent(5, driverId, link.getId(), vehicleId, TransportMode.car, 1));
+		estimator.handleEvent(new VehicleEntersTrafficEvent(45, driverId, link.getId(), vehicleId, TransportMode.car, 1));
+		estimator.handleEvent(new LinkLeaveEvent(50, vehicleId, link.getId()));
+
+		simStep(60);// empty batch
+		assertEquals(10, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+
+		// the next traversal is observed again
+		estimator.handleEvent(new LinkEnterEvent(70, vehicleId, link.getId()));
+		estimator.handleEvent(new LinkLeaveEvent(100, vehicleId, link.getId()));
+		simStep(120);// left at 100 -> time bin 0
+		assertEquals(20, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+	}
+
+	@Test
+	public void testBatchSpanningTwoTimeBins() {
+		// time bins of 900 s; the batch from 870 to 930 spans bins 0 and 1
+		simStep(870);
+		estimator.handleEvent(new LinkEnterEvent(850, vehicleId, link.getId()));
+		estimator.handleEvent(new LinkLeaveEvent(880, vehicleId, link.getId()));// 30 s in bin 0
+		estimator.handleEvent(new LinkEnterEvent(880, vehicleId, link.getId()));
+		estimator.handleEvent(new LinkLeaveEvent(930 - 1, vehicleId, link.getId()));// 49 s in bin 1
+
+		simStep(930);
+		assertEquals(0.5 * 30 + 0.5 * 10, estimator.getLinkTravelTime(link, 0, null, null), DELTA);
+		assertEquals(0.5 * 49 + 0.5 * 10, estimator.getLinkTravelTime(link, 900, null, null), DELTA);
+	}
+
+	private void simStep(double time) {
+		estimator.notifyMobsimBeforeSimStep(new MobsimBeforeSimStepEvent<>(null, time));
+	}
+}
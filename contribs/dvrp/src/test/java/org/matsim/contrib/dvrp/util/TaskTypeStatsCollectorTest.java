@@ -0,0 +1,113 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.contrib.dvrp.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.*;
+import org.matsim.api.core.v01.Id;
+import org.matsim.contrib.dvrp.data.Vehicle;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.dvrp.vrpagent.*;
+
+public class TaskTypeStatsCollectorTest {
+	private enum Type {
+		A, B
+	}
+
+	private static final double DELTA = 1e-9;
+
+	private final Id<Vehicle> vehicleId = Id.create("v", Vehicle.class);
+
+	// time bins: [0, 100), [100, 200), [200, inf); duration bins: [0, 50), ..., [150, inf)
+	private final TaskTypeStatsCollector<Type> collector = new TaskTypeStatsCollector<Type>(Type.class, 100, 3, 50, 4) {
+		@Override
+		protected Type getTaskType(Task task) {
+			return Type.valueOf(((StayTaskImpl)task).getName());
+		}
+	};
+
+	@Test
+	public void testTimeProfile_splitAtBinBoundaries() {
+		Task a = new StayTaskImpl(50, 250, null, "A");
+		Task b = new StayTaskImpl(150, 400, null, "B");
+
+		collector.handleEvent(new TaskStartedEvent(50, vehicleId, a));
+		collector.handleEvent(new TaskStartedEvent(150, vehicleId, b));
+		assertEquals(1, collector.getCurrentCount(Type.A));
+		assertEquals(1, collector.getCurrentCount(Type.B));
+
+		collector.handleEvent(new TaskEndedEvent(250, vehicleId, a));
+		collector.finish(400);// B not ended
+
+		assertEquals(0, collector.getCurrentCount(Type.A));
+		assertEquals(1, collector.getCurrentCount(Type.B));
+
+		// A: 50..100, 100..200, 200..250
+		assertEquals(0.5, collector.getAverageCount(0, Type.A), DELTA);
+		assertEquals(1.0, collector.getAverageCount(1, Type.A), DELTA);
+		assertEquals(0.5, collector.getAverageCount(2, Type.A), DELTA);
+
+		// B: 150..200, 200..400 (beyond the last bin -> added to the last bin)
+		assertEquals(0.0, collector.getAverageCount(0, Type.B), DELTA);
+		assertEquals(0.5, collector.getAverageCount(1, Type.B), DELTA);
+		assertEquals(2.0, collector.getAverageCount(2, Type.B), DELTA);
+	}
+
+	@Test
+	public void testDurationHistogram() {
+		Task a1 = new StayTaskImpl(0, 30, null, "A");
+		Task a2 = new StayTaskImpl(30, 90, null, "A");
+		Task a3 = new StayTaskImpl(90, 500, null, "A");
+
+		collector.handleEvent(new TaskStartedEvent(0, vehicleId, a1));
+		collector.handleEvent(new TaskEndedEvent(30, vehicleId, a1));
+		collector.handleEvent(new TaskStartedEvent(30, vehicleId, a2));
+		collector.handleEvent(new TaskEndedEvent(90, vehicleId, a2));
+		collector.handleEvent(new TaskStartedEvent(90, vehicleId, a3));
+		collector.handleEvent(new TaskEndedEvent(500, vehicleId, a3));
+
+		assertEquals(1, collector.getDurationCount(Type.A, 0));// 30
+		assertEquals(1, collector.getDurationCount(Type.A, 1));// 60
+		assertEquals(0, collector.getDurationCount(Type.A, 2));
+		assertEquals(1, collector.getDurationCount(Type.A, 3));// 410 -> last bin
+		assertEquals(0, collector.getDurationCount(Type.B, 0));
+	}
+
+	@Test
+	public void testReset() {
+		Task a = new StayTaskImpl(0, 150, null, "A");
+		collector.handleEvent(new TaskStartedEvent(0, vehicleId, a));
+		collector.handleEvent(new TaskEndedEvent(150, vehicleId, a));
+		collector.reset(1);
+
+		assertEquals(0, collector.getCurrentCount(Type.A));
+		assertEquals(0.0, collector.getAverageCount(0, Type.A), DELTA);
+		assertEquals(0, collector.getDurationCount(Type.A, 3));
+
+		// time starts again from 0
+		Task a2 = new StayTaskImpl(50, 100, null, "A");
+		collector.handleEvent(new TaskStartedEvent(50, vehicleId, a2));
+		collector.handleEvent(new TaskEndedEvent(100, vehicleId, a2));
+		assertEquals(0.5, collector.getAverageCount(0, Type.A), DELTA);
+		assertEquals(0.0, collector.getAverageCount(1, Type.A), DELTA);
+	}
+}
@@ -0,0 +1,149 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.util;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.contrib.util.distance.DistanceUtils;
+
+import com.google.common.base.Predicate;
+
+public class SpatialGridIndexTest {
+	@Test
+	public void testFindNearest() {
+		SpatialGridIndex<String> index = new SpatialGridIndex<>(100);
+		index.add("a", new Coord(50, 50));
+		index.add("b", new Coord(350, 50));
+		index.add("c", new Coord(-250, -250));
+
+		assertEquals(Arrays.asList("a", "b"), index.findNearest(new Coord(50, 60), 2));
+		assertEquals(Arrays.asList("a", "b", "c"), index.findNearest(new Coord(50, 60), 5));
+		assertEquals(Collections.emptyList(), index.findNearest(new Coord(50, 60), 0));
+
+		// query point outside the cells in use
+		assertEquals(Arrays.asList("b"), index.findNearest(new Coord(1000, 1000), 1));
+		assertEquals(Arrays.asList("c"), index.findNearest(new Coord(-5000, -200), 1));
+	}
+
+	@Test
+	public void testFindNearest_searchBeyondFirstRingWithObjects() {
+		SpatialGridIndex<String> index = new SpatialGridIndex<>(100);
+		index.add("ring1", new Coord(-99, 199));// cell (-1, 1), distance 248
+		index.add("ring2", new Coord(295, 50));// cell (2, 0), distance 196
+
+		// "ring1" is found first, but "ring2" (in the next ring) is closer
+		assertEquals(Arrays.asList("ring2", "ring1"), index.findNearest(new Coord(99, 50), 2));
+		assertEquals(Arrays.asList("ring2"), index.findNearest(new Coord(99, 50), 1));
+	}
+
+	@Test
+	public void testFindNearest_randomAgainstBruteForce() {
+		Random random = new Random(2017);
+		SpatialGridIndex<Integer> index = new SpatialGridIndex<>(700);
+		final Map<Integer, Coord> coords = new HashMap<>();
+		for (int i = 0; i < 500; i++) {
+			Coord coord = randomCoord(random, 5000);
+			coords.put(i, coord);
+			index.add(i, coord);
+		}
+
+		Predicate<Integer> isEven = new Predicate<Integer>() {
+			public boolean apply(Integer input) {
+				return input % 2 == 0;
+			}
+		};
+
+		for (int q = 0; q < 200; q++) {
+			Coord coord = randomCoord(random, 7000);// some queries are outside the cells in use
+			int k = 1 + random.nextInt(20);
+			boolean filtered = q % 2 == 0;
+
+			List<Integer> expected = new ArrayList<>();
+			for (Integer i : coords.keySet()) {
+				if (!filtered || isEven.apply(i)) {
+					expected.add(i);
+				}
+			}
+			sortByDistance(expected, coords, coord);
+			expected = expected.subList(0, k);
+
+			assertEquals(expected, filtered ? index.findNearest(coord, k, isEven) : index.findNearest(coord, k));
+		}
+	}
+
+	@Test
+	public void testRemoveAndMove() {
+		SpatialGridIndex<String> index = new SpatialGridIndex<>(100);
+		index.add("a", new Coord(0, 0));
+		index.add("b", new Coord(500, 0));
+		index.add("c", new Coord(1000, 0));
+		assertEquals(3, index.size());
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(index.getObjects()));
+
+		index.remove("a");
+		assertFalse(index.contains("a"));
+		assertNull(index.getCoord("a"));
+		assertEquals(2, index.size());
+		assertEquals(Arrays.asList("b"), index.findNearest(new Coord(0, 0), 1));
+
+		index.move("c", new Coord(-100, 0));
+		assertEquals(new Coord(-100, 0), index.getCoord("c"));
+		assertEquals(Arrays.asList("c", "b"), index.findNearest(new Coord(0, 0), 2));
+
+		index.remove("b");
+		index.remove("c");
+		assertEquals(0, index.size());
+		assertEquals(Collections.emptyList(), index.findNearest(new Coord(0, 0), 1));
+
+		index.add("a", new Coord(1000, 1000));
+		assertEquals(Arrays.asList("a"), index.findNearest(new Coord(0, 0), 1));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAdd_alreadyInIndex() {
+		SpatialGridIndex<String> index = new SpatialGridIndex<>(100);
+		index.add("a", new Coord(0, 0));
+		index.add("a", new Coord(500, 0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRemove_notInIndex() {
+		SpatialGridIndex<String> index = new SpatialGridIndex<>(100);
+		index.add("a", new Coord(0, 0));
+		index.remove("b");
+	}
+
+	private static Coord randomCoord(Random random, double maxAbs) {
+		return new Coord((2 * random.nextDouble() - 1) * maxAbs, (2 * random.nextDouble() - 1) * maxAbs);
+	}
+
+	private static void sortByDistance(List<Integer> objects, final Map<Integer, Coord> coords, final Coord coord) {
+		Collections.sort(objects, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare(DistanceUtils.calculateSquaredDistance(coord, coords.get(o1)),
+						DistanceUtils.calculateSquaredDistance(coord, coords.get(o2)));
+			}
+		});
+	}
+}
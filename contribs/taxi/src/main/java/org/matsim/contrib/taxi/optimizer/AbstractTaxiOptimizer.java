@@ -23,6 +23,7 @@ import java.util.*;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.MinCostFlowRebalancingStrategy.VehicleRelocator;
 import org.matsim.contrib.dvrp.schedule.Task;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.schedule.TaxiTask;
@@ -41,6 +42,8 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 	private final boolean destinationKnown;
 	private final boolean vehicleDiversion;
 	private final int reoptimizationTimeStep;
+	private final int rebalancingInterval;
+	private final double rebalancingHorizon;
 
 	private boolean requiresReoptimization = false;
 
@@ -55,6 +58,8 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 		destinationKnown = optimContext.scheduler.getParams().destinationKnown;
 		vehicleDiversion = optimContext.scheduler.getParams().vehicleDiversion;
 		reoptimizationTimeStep = params.reoptimizationTimeStep;
+		rebalancingInterval = params.rebalancingInterval;
+		rebalancingHorizon = params.rebalancingHorizon;
 	}
 
 	@Override
@@ -80,6 +85,20 @@ public abstract class AbstractTaxiOptimizer implements TaxiOptimizer {
 
 			requiresReoptimization = false;
 		}
+
+		if (optimContext.rebalancingStrategy != null && isNewDecisionEpoch(e, rebalancingInterval)) {
+			rebalanceFleet();
+		}
+	}
+
+	protected void rebalanceFleet() {
+		optimContext.rebalancingStrategy.rebalanceFleet(optimContext.fleet, optimContext.scheduler,
+				optimContext.timer.getTimeOfDay(), rebalancingHorizon, new VehicleRelocator() {
+					@Override
+					public void relocate(Vehicle vehicle, Link fromLink, Link toLink, double time) {
+						optimContext.scheduler.relocateEmptyVehicle(vehicle, toLink);
+					}
+				});
 	}
 
 	protected boolean isNewDecisionEpoch(@SuppressWarnings("rawtypes") MobsimBeforeSimStepEvent e, int epochLength) {
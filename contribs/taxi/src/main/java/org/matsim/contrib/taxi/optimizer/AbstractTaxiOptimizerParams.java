@@ -26,11 +26,21 @@ import org.apache.commons.configuration.Configuration;
  */
 public class AbstractTaxiOptimizerParams {
 	public static final String REOPTIMIZATION_TIME_STEP = "reoptimizationTimeStep";
+	public static final String REBALANCING_INTERVAL = "rebalancingInterval";
+	public static final String REBALANCING_HORIZON = "rebalancingHorizon";
+	public static final String REBALANCING_CELL_SIZE = "rebalancingCellSize";// used by TaxiModule (demand forecast)
 
 	// usually 1 s; however, the assignment strategy for TaxiBerlin used 10 s (IEEE IS paper)
 	public final int reoptimizationTimeStep;
 
+	// idle taxis are sent to where the demand (observed in the previous iterations) is expected within the horizon;
+	// interval 0 means no rebalancing
+	public final int rebalancingInterval;// [s]
+	public final double rebalancingHorizon;// [s]
+
 	protected AbstractTaxiOptimizerParams(Configuration optimizerConfig) {
 		reoptimizationTimeStep = optimizerConfig.getInt(REOPTIMIZATION_TIME_STEP, 1);
+		rebalancingInterval = optimizerConfig.getInt(REBALANCING_INTERVAL, 0);
+		rebalancingHorizon = optimizerConfig.getDouble(REBALANCING_HORIZON, 900);
 	}
 }
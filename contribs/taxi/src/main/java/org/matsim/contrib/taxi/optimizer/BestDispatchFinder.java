@@ -2,18 +2,20 @@ package org.matsim.contrib.taxi.optimizer;
 
 import java.util.*;
 
-import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.*;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.path.*;
 import org.matsim.contrib.dvrp.util.LinkTimePair;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.scheduler.TaxiScheduleInquiry;
-import org.matsim.contrib.util.LinkProvider;
+import org.matsim.contrib.util.*;
 import org.matsim.core.router.*;
 import org.matsim.core.router.util.*;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 
+import com.google.common.base.Predicate;
+
 /**
  * @author michalm
  */
@@ -65,6 +67,23 @@ public class BestDispatchFinder {
 		return findBestVehicle(req, vehicles, LinkProviders.REQUEST_TO_FROM_LINK);
 	}
 
+	public Dispatch<TaxiRequest> findBestVehicleForRequest(TaxiRequest req, SpatialGridIndex<Vehicle> vehicleIndex,
+			Predicate<? super Vehicle> vehicleFilter, int k) {
+		return findBestVehicle(req, vehicleIndex, vehicleFilter, k, LinkProviders.REQUEST_TO_FROM_LINK);
+	}
+
+	/**
+	 * Counterpart of {@link #findBestVehicle(Object, Iterable, LinkProvider)} that considers only the k vehicles
+	 * nearest (straight-line distance) to the destination, so the cost does not grow with the fleet size. Vehicles are
+	 * kept in a spatial index by the nodes they will depart from.
+	 */
+	public <D> Dispatch<D> findBestVehicle(D destination, SpatialGridIndex<Vehicle> vehicleIndex,
+			Predicate<? super Vehicle> vehicleFilter, int k, LinkProvider<D> destinationToLink) {
+		Coord toCoord = destinationToLink.apply(destination).getFromNode().getCoord();
+		List<Vehicle> nearestVehs = vehicleIndex.findNearest(toCoord, k, vehicleFilter);
+		return nearestVehs.isEmpty() ? null : findBestVehicle(destination, nearestVehs, destinationToLink);
+	}
+
 	// We use many-to-one forward search. Therefore, we cannot assess all vehicles.
 	// However, that would be possible if one-to-many backward search were used instead.
 	// TODO intuitively, many-to-one is slower, some performance tests needed before switching to
@@ -127,6 +146,23 @@ public class BestDispatchFinder {
 		return findBestDestination(veh, unplannedRequests, LinkProviders.REQUEST_TO_FROM_LINK);
 	}
 
+	public Dispatch<TaxiRequest> findBestRequestForVehicle(Vehicle veh, SpatialGridIndex<TaxiRequest> requestIndex,
+			int k) {
+		return findBestDestination(veh, requestIndex, k, LinkProviders.REQUEST_TO_FROM_LINK);
+	}
+
+	/**
+	 * Counterpart of {@link #findBestDestination(Vehicle, Iterable, LinkProvider)} that considers only the k
+	 * destinations nearest (straight-line distance) to the vehicle; see
+	 * {@link #findBestVehicle(Object, SpatialGridIndex, Predicate, int, LinkProvider)}.
+	 */
+	public <D> Dispatch<D> findBestDestination(Vehicle veh, SpatialGridIndex<D> destinationIndex, int k,
+			LinkProvider<D> destinationToLink) {
+		LinkTimePair departure = scheduleInquiry.getImmediateDiversionOrEarliestIdleness(veh);
+		List<D> nearestDests = destinationIndex.findNearest(departure.link.getToNode().getCoord(), k);
+		return nearestDests.isEmpty() ? null : findBestDestination(veh, nearestDests, destinationToLink);
+	}
+
 	public <D> Dispatch<D> findBestDestination(Vehicle veh, Iterable<D> destinations,
 			LinkProvider<D> destinationToLink) {
 		LinkTimePair departure = scheduleInquiry.getImmediateDiversionOrEarliestIdleness(veh);
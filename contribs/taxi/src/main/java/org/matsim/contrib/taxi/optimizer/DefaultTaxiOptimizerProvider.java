@@ -22,6 +22,7 @@ package org.matsim.contrib.taxi.optimizer;
 import org.apache.commons.configuration.*;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.data.Fleet;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.*;
 import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
 import org.matsim.contrib.dvrp.run.DvrpModule;
 import org.matsim.contrib.dvrp.trafficmonitoring.DvrpTravelTimeModule;
@@ -54,6 +55,9 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 	@Inject(optional = true)
 	private @Named(TAXI_OPTIMIZER) TravelDisutilityFactory travelDisutilityFactory;
 
+	@Inject(optional = true)
+	private ZonalDemandAggregator demandAggregator;// bound only if rebalancing is on
+
 	@Inject
 	public DefaultTaxiOptimizerProvider(TaxiConfigGroup taxiCfg, @Named(DvrpModule.DVRP_ROUTING) Network network,
 			Fleet fleet, @Named(DvrpTravelTimeModule.DVRP_ESTIMATED) TravelTime travelTime, QSim qSim) {
@@ -74,8 +78,11 @@ public class DefaultTaxiOptimizerProvider implements Provider<TaxiOptimizer> {
 		TaxiScheduler scheduler = new TaxiScheduler(taxiCfg, network, fleet, qSim.getSimTimer(), schedulerParams,
 				travelTime, travelDisutility);
 
+		MinCostFlowRebalancingStrategy rebalancingStrategy = demandAggregator == null ? null
+				: new MinCostFlowRebalancingStrategy(demandAggregator, network);
+
 		TaxiOptimizerContext optimContext = new TaxiOptimizerContext(fleet, network, qSim.getSimTimer(), travelTime,
-				travelDisutility, scheduler);
+				travelDisutility, scheduler, rebalancingStrategy);
 
 		Configuration optimizerConfig = new MapConfiguration(taxiCfg.getOptimizerConfigGroup().getParams());
 		OptimizerType type = OptimizerType.valueOf(optimizerConfig.getString(TYPE));
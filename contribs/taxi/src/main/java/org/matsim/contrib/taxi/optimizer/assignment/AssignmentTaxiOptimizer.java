@@ -74,7 +74,7 @@ public class AssignmentTaxiOptimizer extends AbstractTaxiOptimizer {
 				optimContext.scheduler.getParams().AStarEuclideanOverdoFactor, fastRouterFactory);
 
 		assignmentProblem = new VehicleAssignmentProblem<>(optimContext.travelTime, getRouter(), getBackwardRouter(),
-				euclideanRouter, params.nearestRequestsLimit, params.nearestVehiclesLimit);
+				euclideanRouter, params.nearestRequestsLimit, params.nearestVehiclesLimit, params.solver);
 
 		assignmentCostProvider = new TaxiToRequestAssignmentCostProvider(params);
 	}
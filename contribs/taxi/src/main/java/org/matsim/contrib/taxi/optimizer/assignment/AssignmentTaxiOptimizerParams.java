@@ -22,6 +22,7 @@ package org.matsim.contrib.taxi.optimizer.assignment;
 import org.apache.commons.configuration.Configuration;
 import org.matsim.contrib.taxi.optimizer.AbstractTaxiOptimizerParams;
 import org.matsim.contrib.taxi.optimizer.assignment.TaxiToRequestAssignmentCostProvider.Mode;
+import org.matsim.contrib.taxi.optimizer.assignment.VehicleAssignmentProblem.Solver;
 
 public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 	public static final String MODE = "mode";
@@ -34,6 +35,8 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 	public static final String NEAREST_REQUESTS_LIMIT = "nearestRequestsLimit";
 	public static final String NEAREST_VEHICLES_LIMIT = "nearestVehiclesLimit";
 
+	public static final String SOLVER = "solver";
+
 	public final Mode mode;
 	public final double nullPathCost;
 
@@ -43,6 +46,8 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 	public final int nearestRequestsLimit;
 	public final int nearestVehiclesLimit;
 
+	public final Solver solver;
+
 	public AssignmentTaxiOptimizerParams(Configuration optimizerConfig) {
 		super(optimizerConfig);
 
@@ -57,5 +62,8 @@ public class AssignmentTaxiOptimizerParams extends AbstractTaxiOptimizerParams {
 
 		nearestRequestsLimit = optimizerConfig.getInt(NEAREST_REQUESTS_LIMIT);
 		nearestVehiclesLimit = optimizerConfig.getInt(NEAREST_VEHICLES_LIMIT);
+
+		// SPARSE pays off with the nearest requests/vehicles limits, and many vehicles and requests
+		solver = Solver.valueOf(optimizerConfig.getString(SOLVER, Solver.HUNGARIAN.name()));
 	}
 }
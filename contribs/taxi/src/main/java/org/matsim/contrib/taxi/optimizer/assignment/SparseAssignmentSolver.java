@@ -0,0 +1,480 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import java.util.*;
+
+/**
+ * Solves the assignment problem on a sparse bipartite graph: each row (worker) may be assigned to one of its candidate
+ * columns (jobs), or be left unassigned at cost 0 (so only negative costs, i.e. savings, make assignments worthwhile).
+ * No column is assigned to more than one row, and the total cost is minimised.
+ * <p>
+ * Uses successive shortest augmenting paths (Dijkstra with node potentials), which takes O(n * E log E) time for n
+ * rows and E candidate pairs, instead of O(n^3) of {@link HungarianAlgorithm} on the dense matrix.
+ * <p>
+ * The assignments and the column potentials (dual prices) are kept between subsequent calls, keyed by the row and
+ * column objects. When only few rows, columns or costs have changed since the previous call, most of the previous
+ * assignments are still optimal and are taken over in the initialisation, and only the remaining rows need to be
+ * augmented. Columns that were assigned previously, but are not any more, are then released with a reverse search.
+ * <p>
+ * {@link #solveDense(List, List, double[][], boolean[][])} solves the same problem as {@link HungarianAlgorithm}, but
+ * starts with a sparse subset of pairs.
+ *
+ * @param <R>
+ *            type of row objects (e.g. vehicles); they must have stable equals()/hashCode()
+ * @param <C>
+ *            type of column objects (e.g. requests); they must have stable equals()/hashCode()
+ */
+public class SparseAssignmentSolver<R, C> {
+	private static final double EPSILON = 1e-9;
+
+	private Map<R, C> previousAssignments = new HashMap<>();
+	private Map<C, Double> previousColumnPotentials = new HashMap<>();
+
+	// potentials of the last solution (all reduced costs of the candidate pairs are non-negative)
+	private double[] rowPotentials;
+	private double[] columnPotentials;
+
+	/**
+	 * Solves the same problem as {@link HungarianAlgorithm} for the (dense) cost matrix, i.e. all rows, or all columns
+	 * (whichever are fewer), are assigned and the total cost is minimised.
+	 * <p>
+	 * First, only the candidate pairs are considered. Then, the remaining pairs with negative reduced costs (i.e. those
+	 * that may improve the solution) are added, and the problem is solved again (warm-started), until there are no such
+	 * pairs. To make all rows (columns) assigned, the costs in each row (column) are decreased by a constant that makes
+	 * them all negative, which does not change the optimal assignment.
+	 *
+	 * @param costMatrix
+	 *            costs of all pairs
+	 * @param candidates
+	 *            pairs considered at first (e.g. the pairs with calculated paths)
+	 * @return for each row, the assigned column, or -1 if the row remains unassigned
+	 */
+	public int[] solveDense(List<R> rows, List<C> columns, double[][] costMatrix, boolean[][] candidates) {
+		int rowCount = rows.size();
+		int colCount = columns.size();
+
+		boolean shiftRows = rowCount <= colCount;
+		double[] shifts = new double[shiftRows ? rowCount : colCount];
+		Arrays.fill(shifts, Double.NEGATIVE_INFINITY);
+		for (int i = 0; i < rowCount; i++) {
+			for (int j = 0; j < colCount; j++) {
+				int k = shiftRows ? i : j;
+				shifts[k] = Math.max(shifts[k], costMatrix[i][j]);
+			}
+		}
+
+		double[][] shiftedCosts = new double[rowCount][colCount];
+		boolean[][] included = new boolean[rowCount][];
+		for (int i = 0; i < rowCount; i++) {
+			for (int j = 0; j < colCount; j++) {
+				shiftedCosts[i][j] = costMatrix[i][j] - shifts[shiftRows ? i : j] - 1;
+			}
+			included[i] = candidates[i].clone();
+		}
+
+		while (true) {
+			int[][] candidateColumns = new int[rowCount][];
+			double[][] costs = new double[rowCount][];
+			for (int i = 0; i < rowCount; i++) {
+				int count = 0;
+				for (int j = 0; j < colCount; j++) {
+					if (included[i][j]) {
+						count++;
+					}
+				}
+
+				candidateColumns[i] = new int[count];
+				costs[i] = new double[count];
+				int e = 0;
+				for (int j = 0; j < colCount; j++) {
+					if (included[i][j]) {
+						candidateColumns[i][e] = j;
+						costs[i][e] = shiftedCosts[i][j];
+						e++;
+					}
+				}
+			}
+
+			int[] colByRow = solve(rows, columns, candidateColumns, costs);
+
+			boolean improvable = false;
+			for (int i = 0; i < rowCount; i++) {
+				for (int j = 0; j < colCount; j++) {
+					double reducedCost = shiftedCosts[i][j] - rowPotentials[i] - columnPotentials[j];
+					if (!included[i][j] && reducedCost < -EPSILON * (1 + Math.abs(shiftedCosts[i][j]))) {
+						included[i][j] = true;
+						improvable = true;
+					}
+				}
+			}
+
+			if (!improvable) {
+				return colByRow;
+			}
+		}
+	}
+
+	/**
+	 * Rows may remain unassigned at cost 0.
+	 *
+	 * @param rows
+	 *            objects identifying the rows (used for warm-starting the next call)
+	 * @param columns
+	 *            objects identifying the columns (used for warm-starting the next call)
+	 * @param candidateColumns
+	 *            for each row, the columns it may be assigned to
+	 * @param costs
+	 *            for each row, the costs of assigning it to the corresponding candidate columns
+	 * @return for each row, the assigned column, or -1 if the row remains unassigned
+	 */
+	public int[] solve(List<R> rows, List<C> columns, int[][] candidateColumns, double[][] costs) {
+		Problem problem = new Problem(rows.size(), columns.size(), candidateColumns, costs);
+
+		Map<C, Integer> colIndices = new HashMap<>(columns.size() * 2);
+		for (int j = 0; j < columns.size(); j++) {
+			colIndices.put(columns.get(j), j);
+			Double potential = previousColumnPotentials.get(columns.get(j));
+			problem.v[j] = potential == null ? 0 : Math.min(potential, 0);
+		}
+
+		int[] initialCols = new int[rows.size()];
+		for (int i = 0; i < rows.size(); i++) {
+			C previousColumn = previousAssignments.get(rows.get(i));
+			Integer j = previousColumn == null ? null : colIndices.get(previousColumn);
+			initialCols[i] = j == null ? -1 : j;
+		}
+
+		int[] colByRow = problem.solve(initialCols);
+		rowPotentials = problem.u;
+		columnPotentials = Arrays.copyOf(problem.v, columns.size());
+
+		Map<C, Double> potentialsByColumn = new HashMap<>(columns.size() * 2);
+		for (int j = 0; j < columns.size(); j++) {
+			potentialsByColumn.put(columns.get(j), problem.v[j]);
+		}
+		previousColumnPotentials = potentialsByColumn;
+
+		Map<R, C> assignments = new HashMap<>(rows.size() * 2);
+		for (int i = 0; i < rows.size(); i++) {
+			if (colByRow[i] != -1) {
+				assignments.put(rows.get(i), columns.get(colByRow[i]));
+			}
+		}
+		previousAssignments = assignments;
+
+		return colByRow;
+	}
+
+	/*
+	 * Column (colCount + i) is the private "unassigned" column of row i (cost 0). Invariants (after initialisation):
+	 * all reduced costs (c_ij - u_i - v_j) are non-negative, and zero for the assigned pairs; v_j <= 0 for all real
+	 * columns. At the end, all rows are assigned, and all free real columns have v_j == 0, which makes the assignment
+	 * optimal. (The "unassigned" columns need not satisfy the latter, since each of them is reachable only by one row.)
+	 */
+	private static class Problem {
+		private final int rowCount;
+		private final int colCount;
+		private final int[][] candidateColumns;
+		private final double[][] costs;
+
+		// reverse adjacency: for each real column, the rows (and their edge indices) that may be assigned to it
+		private final int[][] candidateRows;
+		private final int[][] candidateRowEdges;
+
+		private final double[] u;
+		private final double[] v;
+		private final int[] colByRow;
+		private final int[] rowByCol;
+
+		// Dijkstra data (dist is +Inf for all untouched columns between searches)
+		private final double[] dist;
+		private final int[] pred;// predecessor row (forward search) or column (reverse search)
+		private final int[] finalCols;
+		private final double[] finalDists;
+		private final List<Integer> touchedCols = new ArrayList<>();
+		private final PriorityQueue<ColumnDist> queue = new PriorityQueue<>();
+
+		private Problem(int rowCount, int colCount, int[][] candidateColumns, double[][] costs) {
+			this.rowCount = rowCount;
+			this.colCount = colCount;
+			this.candidateColumns = candidateColumns;
+			this.costs = costs;
+
+			int allColCount = colCount + rowCount;
+			u = new double[rowCount];
+			v = new double[allColCount];
+			colByRow = new int[rowCount];
+			rowByCol = new int[allColCount];
+			dist = new double[allColCount];
+			pred = new int[allColCount];
+			finalCols = new int[allColCount];
+			finalDists = new double[allColCount];
+			Arrays.fill(colByRow, -1);
+			Arrays.fill(rowByCol, -1);
+			Arrays.fill(dist, Double.POSITIVE_INFINITY);
+
+			int[] rowCounts = new int[colCount];
+			for (int i = 0; i < rowCount; i++) {
+				for (int j : candidateColumns[i]) {
+					rowCounts[j]++;
+				}
+			}
+			candidateRows = new int[colCount][];
+			candidateRowEdges = new int[colCount][];
+			for (int j = 0; j < colCount; j++) {
+				candidateRows[j] = new int[rowCounts[j]];
+				candidateRowEdges[j] = new int[rowCounts[j]];
+			}
+			Arrays.fill(rowCounts, 0);
+			for (int i = 0; i < rowCount; i++) {
+				for (int e = 0; e < candidateColumns[i].length; e++) {
+					int j = candidateColumns[i][e];
+					candidateRows[j][rowCounts[j]] = i;
+					candidateRowEdges[j][rowCounts[j]] = e;
+					rowCounts[j]++;
+				}
+			}
+		}
+
+		private int[] solve(int[] initialCols) {
+			initAssignments(initialCols);
+
+			for (int s = 0; s < rowCount; s++) {
+				if (colByRow[s] == -1) {
+					assignRow(s);
+				}
+			}
+
+			for (int j = 0; j < colCount; j++) {
+				if (rowByCol[j] == -1 && v[j] < 0) {
+					releaseColumn(j);
+				}
+			}
+
+			int[] result = colByRow.clone();
+			for (int i = 0; i < rowCount; i++) {
+				if (result[i] >= colCount) {
+					result[i] = -1;
+				}
+			}
+			return result;
+		}
+
+		// feasible row potentials; previous (or the cheapest) assignments are kept if their reduced costs are zero
+		private void initAssignments(int[] initialCols) {
+			for (int i = 0; i < rowCount; i++) {
+				int bestCol = colCount + i;
+				u[i] = -v[bestCol];
+				int initialEdge = -1;
+				for (int e = 0; e < candidateColumns[i].length; e++) {
+					int j = candidateColumns[i][e];
+					if (costs[i][e] - v[j] < u[i]) {
+						u[i] = costs[i][e] - v[j];
+						bestCol = j;
+					}
+					if (j == initialCols[i]) {
+						initialEdge = e;
+					}
+				}
+
+				int col = initialEdge != -1 && costs[i][initialEdge] - v[initialCols[i]] <= u[i] ? initialCols[i]
+						: bestCol;
+				if (rowByCol[col] == -1) {
+					rowByCol[col] = i;
+					colByRow[i] = col;
+				}
+			}
+		}
+
+		// forward search: from row s to the nearest free column
+		private void assignRow(int s) {
+			relaxRow(s, 0);
+
+			int freeCol = -1;
+			double freeColDist = 0;
+			int finalCount = 0;
+			while (!queue.isEmpty()) {
+				ColumnDist cd = queue.poll();
+				int j = cd.col;
+				if (cd.dist > dist[j]) {
+					continue;// outdated (or final) entry
+				}
+
+				if (rowByCol[j] == -1) {
+					freeCol = j;
+					freeColDist = cd.dist;
+					break;
+				}
+
+				dist[j] = Double.NEGATIVE_INFINITY;// mark as final
+				finalCols[finalCount] = j;
+				finalDists[finalCount] = cd.dist;
+				finalCount++;
+				relaxRow(rowByCol[j], cd.dist);
+			}
+
+			if (freeCol == -1) {
+				// cannot happen: each row has its own "unassigned" column
+				throw new IllegalStateException();
+			}
+
+			// keeps all reduced costs non-negative, and makes them zero along the shortest path
+			u[s] += freeColDist;
+			for (int f = 0; f < finalCount; f++) {
+				int j = finalCols[f];
+				double delta = freeColDist - finalDists[f];
+				v[j] -= delta;
+				u[rowByCol[j]] += delta;
+			}
+
+			int j = freeCol;
+			while (true) {
+				int i = pred[j];
+				int prevCol = colByRow[i];
+				rowByCol[j] = i;
+				colByRow[i] = j;
+				if (i == s) {
+					break;
+				}
+				j = prevCol;
+			}
+
+			resetSearch();
+		}
+
+		private void relaxRow(int i, double rowDist) {
+			for (int e = 0; e < candidateColumns[i].length; e++) {
+				int j = candidateColumns[i][e];
+				relax(j, rowDist + costs[i][e] - u[i] - v[j], i);
+			}
+
+			int unassignedCol = colCount + i;
+			relax(unassignedCol, rowDist - u[i] - v[unassignedCol], i);
+		}
+
+		// Reverse search: from the free column j0 (with v < 0) along the assigned pairs to the column that can be
+		// released at the lowest cost, i.e. either j0 itself (by raising v to 0), or another column (whose v reaches
+		// 0 first, or which is an "unassigned" one), while the rows on the path are shifted towards j0.
+		private void releaseColumn(int j0) {
+			relax(j0, 0, -1);
+
+			int releasedCol = j0;
+			double releaseDist = -v[j0];
+			int finalCount = 0;
+			while (!queue.isEmpty()) {
+				ColumnDist cd = queue.poll();
+				int k = cd.col;
+				if (cd.dist > dist[k]) {
+					continue;// outdated (or final) entry
+				}
+				if (cd.dist >= releaseDist) {
+					break;
+				}
+
+				dist[k] = Double.NEGATIVE_INFINITY;// mark as final
+				finalCols[finalCount] = k;
+				finalDists[finalCount] = cd.dist;
+				finalCount++;
+
+				double kReleaseDist = k >= colCount ? cd.dist : cd.dist - v[k];
+				if (kReleaseDist < releaseDist) {
+					releaseDist = kReleaseDist;
+					releasedCol = k;
+				}
+
+				if (k < colCount) {
+					for (int r = 0; r < candidateRows[k].length; r++) {
+						int i = candidateRows[k][r];
+						int iCol = colByRow[i];
+						if (iCol != k) {
+							double reducedCost = costs[i][candidateRowEdges[k][r]] - u[i] - v[k];
+							relax(iCol, cd.dist + reducedCost, k);
+						}
+					}
+				}
+			}
+
+			// keeps all reduced costs non-negative, and makes them zero along the shortest path
+			for (int f = 0; f < finalCount; f++) {
+				int k = finalCols[f];
+				double delta = releaseDist - finalDists[f];
+				v[k] += delta;
+				if (k != j0) {
+					u[rowByCol[k]] -= delta;
+				}
+			}
+
+			// the row of each column on the path moves to the preceding column
+			int k = releasedCol;
+			int i = rowByCol[k];
+			while (k != j0) {
+				int prevCol = pred[k];
+				int prevRow = rowByCol[prevCol];
+				rowByCol[prevCol] = i;
+				colByRow[i] = prevCol;
+				i = prevRow;
+				k = prevCol;
+			}
+			if (releasedCol != j0) {
+				rowByCol[releasedCol] = -1;
+				if (releasedCol < colCount) {
+					v[releasedCol] = Math.min(v[releasedCol], 0);// 0 (up to rounding errors)
+				}
+			}
+
+			resetSearch();
+		}
+
+		private void relax(int j, double newDist, int predecessor) {
+			if (newDist < dist[j]) {// final columns have dist == -Inf, so they are never relaxed again
+				if (dist[j] == Double.POSITIVE_INFINITY) {
+					touchedCols.add(j);
+				}
+				dist[j] = newDist;
+				pred[j] = predecessor;
+				queue.add(new ColumnDist(j, newDist));
+			}
+		}
+
+		private void resetSearch() {
+			for (int j : touchedCols) {
+				dist[j] = Double.POSITIVE_INFINITY;
+			}
+			touchedCols.clear();
+			queue.clear();
+		}
+	}
+
+	private static class ColumnDist implements Comparable<ColumnDist> {
+		private final int col;
+		private final double dist;
+
+		private ColumnDist(int col, double dist) {
+			this.col = col;
+			this.dist = dist;
+		}
+
+		@Override
+		public int compareTo(ColumnDist o) {
+			return Double.compare(dist, o.dist);
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.lang.reflect.Array;
 import java.util.*;
 
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.path.*;
 import org.matsim.contrib.dvrp.path.OneToManyPathSearch.PathData;
 import org.matsim.contrib.locationchoice.router.BackwardMultiNodePathCalculator;
@@ -43,6 +44,15 @@ public class VehicleAssignmentProblem<D> {
 		double calc(VehicleData.Entry departure, DestEntry<D> dest, PathData pathData);
 	}
 
+	public enum Solver {
+		// dense cost matrix, including the pairs without paths (i.e. beyond the nearest requests/vehicles limits)
+		HUNGARIAN,
+
+		// the same result as HUNGARIAN, but the pairs without paths are considered only if they may improve the
+		// solution, see SparseAssignmentSolver; warm-started from the previous call
+		SPARSE;
+	}
+
 	private final TravelTime travelTime;
 	private final FastAStarEuclidean euclideanRouter;
 
@@ -54,6 +64,8 @@ public class VehicleAssignmentProblem<D> {
 	private final StraightLineKnnFinder<VehicleData.Entry, DestEntry<D>> destinationFinder;
 	private final StraightLineKnnFinder<DestEntry<D>, VehicleData.Entry> vehicleFinder;
 
+	private final SparseAssignmentSolver<Vehicle, D> sparseSolver;
+
 	private AssignmentCost<D> assignmentCost;
 	private VehicleData vData;
 	private AssignmentDestinationData<D> dData;
@@ -61,12 +73,12 @@ public class VehicleAssignmentProblem<D> {
 	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator router,
 			BackwardMultiNodePathCalculator backwardRouter) {
 		// we do not need Euclidean router when there is not kNN filtering
-		this(travelTime, router, backwardRouter, null, -1, -1);
+		this(travelTime, router, backwardRouter, null, -1, -1, Solver.HUNGARIAN);
 	}
 
 	public VehicleAssignmentProblem(TravelTime travelTime, MultiNodePathCalculator router,
 			BackwardMultiNodePathCalculator backwardRouter, FastAStarEuclidean euclideanRouter,
-			int nearestDestinationLimit, int nearestVehicleLimit) {
+			int nearestDestinationLimit, int nearestVehicleLimit, Solver solver) {
 		this.travelTime = travelTime;
 		this.euclideanRouter = euclideanRouter;
 
@@ -79,6 +91,8 @@ public class VehicleAssignmentProblem<D> {
 				LinkProviders.VEHICLE_ENTRY_TO_LINK, linkProvider);
 		vehicleFinder = nearestVehicleLimit < 0 ? null
 				: new StraightLineKnnFinder<>(nearestVehicleLimit, linkProvider, LinkProviders.VEHICLE_ENTRY_TO_LINK);
+
+		sparseSolver = solver == Solver.SPARSE ? new SparseAssignmentSolver<Vehicle, D>() : null;
 	}
 
 	public List<Dispatch<D>> findAssignments(VehicleData vData, AssignmentDestinationData<D> dData,
@@ -88,8 +102,9 @@ public class VehicleAssignmentProblem<D> {
 		this.assignmentCost = assignmentCost;
 
 		PathData[][] pathDataMatrix = createPathDataMatrix();
-		double[][] costMatrix = createCostMatrix(pathDataMatrix);
-		int[] assignments = new HungarianAlgorithm(costMatrix).execute();
+		int[] assignments = sparseSolver == null ? //
+				new HungarianAlgorithm(createCostMatrix(pathDataMatrix)).execute() : //
+				solveSparse(pathDataMatrix);
 		return createDispatches(assignments, pathDataMatrix, travelTime);
 	}
 
@@ -164,6 +179,26 @@ public class VehicleAssignmentProblem<D> {
 		return costMatrix;
 	}
 
+	// The same problem as with the dense cost matrix, but the pairs without paths are considered only if they may
+	// improve the solution (see SparseAssignmentSolver.solveDense())
+	private int[] solveSparse(PathData[][] pathDataMatrix) {
+		List<Vehicle> vehicles = new ArrayList<>(vData.getSize());
+		boolean[][] candidates = new boolean[vData.getSize()][dData.getSize()];
+		for (int v = 0; v < vData.getSize(); v++) {
+			vehicles.add(vData.getEntry(v).vehicle);
+			for (int d = 0; d < dData.getSize(); d++) {
+				candidates[v][d] = pathDataMatrix[v][d] != null;
+			}
+		}
+
+		List<D> destinations = new ArrayList<>(dData.getSize());
+		for (DestEntry<D> dest : dData.getEntries()) {
+			destinations.add(dest.destination);
+		}
+
+		return sparseSolver.solveDense(vehicles, destinations, createCostMatrix(pathDataMatrix), candidates);
+	}
+
 	private List<Dispatch<D>> createDispatches(int[] assignments, PathData[][] pathDataMatrix, TravelTime travelTime) {
 		List<Dispatch<D>> dispatches = new ArrayList<>(Math.min(vData.getSize(), dData.getSize()));
 		for (int v = 0; v < assignments.length; v++) {
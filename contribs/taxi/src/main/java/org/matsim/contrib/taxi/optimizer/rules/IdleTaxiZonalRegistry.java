@@ -21,94 +21,51 @@ package org.matsim.contrib.taxi.optimizer.rules;
 
 import java.util.*;
 
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.network.Node;
 import org.matsim.contrib.dvrp.data.Vehicle;
 import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.taxi.schedule.TaxiStayTask;
-import org.matsim.contrib.zone.*;
+import org.matsim.contrib.util.SpatialGridIndex;
 
 import com.google.common.base.Predicate;
-import com.google.common.collect.*;
+import com.google.common.collect.Iterables;
 
 public class IdleTaxiZonalRegistry {
-	private final ZonalSystem zonalSystem;
-	private final Map<Id<Zone>, List<Zone>> zonesSortedByDistance;
-
-	private final Map<Id<Zone>, Map<Id<Vehicle>, Vehicle>> vehiclesInZones;
-	private final Map<Id<Vehicle>, Vehicle> vehicles = new LinkedHashMap<>();
-
+	private final SpatialGridIndex<Vehicle> spatialIndex;
 	private final Predicate<Vehicle> isIdle;
 
-	public IdleTaxiZonalRegistry(ZonalSystem zonalSystem, ScheduleInquiry scheduleInquiry) {
-		this.zonalSystem = zonalSystem;
-		zonesSortedByDistance = ZonalSystems.initZonesByDistance(zonalSystem.getZones());
-
+	public IdleTaxiZonalRegistry(ScheduleInquiry scheduleInquiry, double cellSize) {
+		spatialIndex = new SpatialGridIndex<>(cellSize);
 		isIdle = ScheduleInquiries.createIsIdle(scheduleInquiry);
-
-		vehiclesInZones = Maps.newHashMapWithExpectedSize(zonalSystem.getZones().size());
-		for (Id<Zone> id : zonalSystem.getZones().keySet()) {
-			vehiclesInZones.put(id, new HashMap<Id<Vehicle>, Vehicle>());
-		}
 	}
 
 	public void addVehicle(Vehicle vehicle) {
 		TaxiStayTask stayTask = (TaxiStayTask)vehicle.getSchedule().getCurrentTask();
-		Id<Zone> zoneId = getZoneId(stayTask);
-
-		if (vehiclesInZones.get(zoneId).put(vehicle.getId(), vehicle) != null) {
-			throw new IllegalStateException(vehicle + " is already in the registry");
-		}
-
-		if (vehicles.put(vehicle.getId(), vehicle) != null) {
-			throw new IllegalStateException(vehicle + " is already in the registry");
-		}
+		spatialIndex.add(vehicle, stayTask.getLink().getToNode().getCoord());
 	}
 
 	public void removeVehicle(Vehicle vehicle) {
-		TaxiStayTask stayTask = (TaxiStayTask)Schedules.getPreviousTask(vehicle.getSchedule());
-		Id<Zone> zoneId = getZoneId(stayTask);
-
-		if (vehiclesInZones.get(zoneId).remove(vehicle.getId()) == null) {
-			throw new IllegalStateException(vehicle + " is not in the registry");
-		}
-
-		if (vehicles.remove(vehicle.getId()) == null) {
-			throw new IllegalStateException(vehicle + " is not in the registry");
-		}
+		spatialIndex.remove(vehicle);
 	}
 
-	public List<Vehicle> findNearestVehicles(Node node, int minCount) {
-		if (minCount >= vehicles.size()) {
-			return getVehicles();
-		}
-
-		Zone zone = zonalSystem.getZone(node);
-		Iterable<? extends Zone> zonesByDistance = zonesSortedByDistance.get(zone.getId());
-		List<Vehicle> nearestVehs = new ArrayList<>();
-
-		for (Zone z : zonesByDistance) {
-			Iterables.addAll(nearestVehs, Iterables.filter(vehiclesInZones.get(z.getId()).values(), isIdle));
-
-			if (nearestVehs.size() >= minCount) {
-				return nearestVehs;
-			}
-		}
-
-		return nearestVehs;
+	/**
+	 * Vehicles are indexed by the to-node of the link they stay at, i.e. the node from which they will depart.
+	 * Some of the indexed vehicles may be not idle any more (see {@link #getIdlePredicate()}).
+	 */
+	public SpatialGridIndex<Vehicle> getSpatialIndex() {
+		return spatialIndex;
 	}
 
-	private Id<Zone> getZoneId(TaxiStayTask stayTask) {
-		return zonalSystem.getZone(stayTask.getLink().getToNode()).getId();
+	public Predicate<Vehicle> getIdlePredicate() {
+		return isIdle;
 	}
 
 	public List<Vehicle> getVehicles() {
 		List<Vehicle> vehs = new ArrayList<>();
-		Iterables.addAll(vehs, Iterables.filter(vehicles.values(), isIdle));
+		Iterables.addAll(vehs, Iterables.filter(spatialIndex.getObjects(), isIdle));
 		return vehs;
 	}
 
 	public int getVehicleCount() {
-		return vehicles.size();
+		return spatialIndex.size();
 	}
 }
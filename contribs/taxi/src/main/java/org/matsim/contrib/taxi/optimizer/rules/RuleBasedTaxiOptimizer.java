@@ -21,7 +21,6 @@ package org.matsim.contrib.taxi.optimizer.rules;
 
 import java.util.*;
 
-import org.matsim.api.core.v01.network.Link;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
@@ -29,7 +28,6 @@ import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.optimizer.*;
 import org.matsim.contrib.taxi.schedule.*;
 import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
-import org.matsim.contrib.zone.*;
 
 /**
  * @author michalm
@@ -43,11 +41,6 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 	private final RuleBasedTaxiOptimizerParams params;
 
 	public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext, RuleBasedTaxiOptimizerParams params) {
-		this(optimContext, params, new SquareGridSystem(optimContext.network, params.cellSize));
-	}
-
-	public RuleBasedTaxiOptimizer(TaxiOptimizerContext optimContext, RuleBasedTaxiOptimizerParams params,
-			ZonalSystem zonalSystem) {
 		super(optimContext, params, new TreeSet<TaxiRequest>(Requests.ABSOLUTE_COMPARATOR), false, false);
 
 		this.params = params;
@@ -58,8 +51,8 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		}
 
 		dispatchFinder = new BestDispatchFinder(optimContext);
-		idleTaxiRegistry = new IdleTaxiZonalRegistry(zonalSystem, optimContext.scheduler);
-		unplannedRequestRegistry = new UnplannedRequestZonalRegistry(zonalSystem);
+		idleTaxiRegistry = new IdleTaxiZonalRegistry(optimContext.scheduler, params.cellSize);
+		unplannedRequestRegistry = new UnplannedRequestZonalRegistry(params.cellSize);
 	}
 
 	@Override
@@ -102,12 +95,13 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		while (reqIter.hasNext() && idleCount > 0) {
 			TaxiRequest req = reqIter.next();
 
-			List<Vehicle> selectedVehs = idleCount > params.nearestVehiclesLimit // we do not want to visit more than a
-																					// quarter of zones
-					? idleTaxiRegistry.findNearestVehicles(req.getFromLink().getFromNode(), params.nearestVehiclesLimit)
-					: idleTaxiRegistry.getVehicles();
+			// with many idle vehicles, only the nearest ones are considered
+			BestDispatchFinder.Dispatch<TaxiRequest> best = idleCount > params.nearestVehiclesLimit
+					? dispatchFinder.findBestVehicleForRequest(req, idleTaxiRegistry.getSpatialIndex(),
+							idleTaxiRegistry.getIdlePredicate(), params.nearestVehiclesLimit)
+					: dispatchFinder.findBestVehicleForRequest(req, idleTaxiRegistry.getVehicles());
 
-			if (selectedVehs.isEmpty()) {
+			if (best == null) {
 				// no vehicle in the registry is idle ==> return
 				// Some vehicles may be not idle because they have been assigned another customer,
 				// while for others the time window ends (t1)
@@ -118,8 +112,6 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 				return;
 			}
 
-			BestDispatchFinder.Dispatch<TaxiRequest> best = dispatchFinder.findBestVehicleForRequest(req, selectedVehs);
-
 			getOptimContext().scheduler.scheduleRequest(best.vehicle, best.destination, best.path);
 
 			reqIter.remove();
@@ -134,12 +126,10 @@ public class RuleBasedTaxiOptimizer extends AbstractTaxiOptimizer {
 		while (vehIter.hasNext() && !getUnplannedRequests().isEmpty()) {
 			Vehicle veh = vehIter.next();
 
-			Link link = ((TaxiStayTask)veh.getSchedule().getCurrentTask()).getLink();
-			Iterable<TaxiRequest> selectedReqs = getUnplannedRequests().size() > params.nearestRequestsLimit
-					? unplannedRequestRegistry.findNearestRequests(link.getToNode(), params.nearestRequestsLimit)
-					: getUnplannedRequests();
-
-			BestDispatchFinder.Dispatch<TaxiRequest> best = dispatchFinder.findBestRequestForVehicle(veh, selectedReqs);
+			BestDispatchFinder.Dispatch<TaxiRequest> best = getUnplannedRequests().size() > params.nearestRequestsLimit
+					? dispatchFinder.findBestRequestForVehicle(veh, unplannedRequestRegistry.getSpatialIndex(),
+							params.nearestRequestsLimit)
+					: dispatchFinder.findBestRequestForVehicle(veh, getUnplannedRequests());
 
 			getOptimContext().scheduler.scheduleRequest(best.vehicle, best.destination, best.path);
 
@@ -19,74 +19,34 @@
 
 package org.matsim.contrib.taxi.optimizer.rules;
 
-import java.util.*;
-
-import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.network.Node;
-import org.matsim.contrib.dvrp.data.Request;
 import org.matsim.contrib.taxi.data.TaxiRequest;
-import org.matsim.contrib.zone.*;
+import org.matsim.contrib.util.SpatialGridIndex;
 
 public class UnplannedRequestZonalRegistry {
-	private final ZonalSystem zonalSystem;
-	private final Map<Id<Zone>, List<Zone>> zonesSortedByDistance;
-	private final Map<Id<Zone>, Map<Id<Request>, TaxiRequest>> requestsInZones;
-
-	private int requestCount = 0;
-
-	public UnplannedRequestZonalRegistry(ZonalSystem zonalSystem) {
-		this.zonalSystem = zonalSystem;
-		zonesSortedByDistance = ZonalSystems.initZonesByDistance(zonalSystem.getZones());
+	private final SpatialGridIndex<TaxiRequest> spatialIndex;
 
-		requestsInZones = new HashMap<>(zonalSystem.getZones().size());
-		for (Id<Zone> id : zonalSystem.getZones().keySet()) {
-			requestsInZones.put(id, new HashMap<Id<Request>, TaxiRequest>());
-		}
+	public UnplannedRequestZonalRegistry(double cellSize) {
+		spatialIndex = new SpatialGridIndex<>(cellSize);
 	}
 
 	// after submitted
 	public void addRequest(TaxiRequest request) {
-		Id<Zone> zoneId = getZoneId(request);
-
-		if (requestsInZones.get(zoneId).put(request.getId(), request) != null) {
-			throw new IllegalStateException(request + " is already in the registry");
-		}
-
-		requestCount++;
+		spatialIndex.add(request, request.getFromLink().getFromNode().getCoord());
 	}
 
 	// after scheduled
 	public void removeRequest(TaxiRequest request) {
-		Id<Zone> zoneId = getZoneId(request);
-
-		if (requestsInZones.get(zoneId).remove(request.getId()) == null) {
-			throw new IllegalStateException(request + " is not in the registry");
-		}
-
-		requestCount--;
-	}
-
-	public List<TaxiRequest> findNearestRequests(Node node, int minCount) {
-		Zone zone = zonalSystem.getZone(node);
-		Iterable<? extends Zone> zonesByDistance = zonesSortedByDistance.get(zone.getId());
-		List<TaxiRequest> nearestReqs = new ArrayList<>();
-
-		for (Zone z : zonesByDistance) {
-			nearestReqs.addAll(requestsInZones.get(z.getId()).values());
-
-			if (nearestReqs.size() >= minCount) {
-				return nearestReqs;
-			}
-		}
-
-		return nearestReqs;
+		spatialIndex.remove(request);
 	}
 
-	private Id<Zone> getZoneId(TaxiRequest request) {
-		return zonalSystem.getZone(request.getFromLink().getFromNode()).getId();
+	/**
+	 * Requests are indexed by the from-node of their from-link, i.e. the node at which the pickup trip ends.
+	 */
+	public SpatialGridIndex<TaxiRequest> getSpatialIndex() {
+		return spatialIndex;
 	}
 
 	public int getRequestCount() {
-		return requestCount;
+		return spatialIndex.size();
 	}
 }
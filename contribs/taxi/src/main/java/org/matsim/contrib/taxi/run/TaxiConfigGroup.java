@@ -39,6 +39,7 @@ public class TaxiConfigGroup extends ReflectiveConfigGroup {
 	public static final String PICKUP_DURATION = "pickupDuration";
 	public static final String DROPOFF_DURATION = "dropoffDuration";
 	public static final String A_STAR_EUCLIDEAN_OVERDO_FACTOR = "AStarEuclideanOverdoFactor";
+	public static final String PATH_CACHE_MEMORY_BUDGET = "pathCacheMemoryBudget";
 	public static final String ONLINE_VEHICLE_TRACKER = "onlineVehicleTracker";
 	public static final String CHANGE_START_LINK_TO_LAST_LINK_IN_SCHEDULE = "changeStartLinkToLastLinkInSchedule";
 
@@ -58,6 +59,7 @@ public class TaxiConfigGroup extends ReflectiveConfigGroup {
 	private double pickupDuration = Double.NaN;// seconds
 	private double dropoffDuration = Double.NaN;// seconds
 	private double AStarEuclideanOverdoFactor = 1.;
+	private int pathCacheMemoryBudget = 0;// MB
 	private boolean onlineVehicleTracker = false;
 	private boolean changeStartLinkToLastLinkInSchedule = false;
 
@@ -85,6 +87,10 @@ public class TaxiConfigGroup extends ReflectiveConfigGroup {
 				"Used in AStarEuclidean for shortest path search for occupied drives. Default value is 1.0. "
 						+ "Values above 1.0 (typically, 1.5 to 3.0) speed up search, "
 						+ "but at the cost of obtaining longer paths");
+		map.put(PATH_CACHE_MEMORY_BUDGET,
+				"If positive, the paths calculated by the scheduler (e.g. for occupied drives) are cached for 15-minute "
+						+ "time bins, using at most approx. this amount of memory (in MB); the least recently used "
+						+ "paths are evicted first. 0 (no caching) by default.");
 		map.put(ONLINE_VEHICLE_TRACKER,
 				"If true, vehicles are (GPS-like) monitored while moving. This helps in getting more accurate "
 						+ "estimates on the time of arrival. Online tracking is necessary for vehicle diversion. "
@@ -158,6 +164,16 @@ public class TaxiConfigGroup extends ReflectiveConfigGroup {
 		AStarEuclideanOverdoFactor = aStarEuclideanOverdoFactor;
 	}
 
+	@StringGetter(PATH_CACHE_MEMORY_BUDGET)
+	public int getPathCacheMemoryBudget() {
+		return pathCacheMemoryBudget;
+	}
+
+	@StringSetter(PATH_CACHE_MEMORY_BUDGET)
+	public void setPathCacheMemoryBudget(int pathCacheMemoryBudget) {
+		this.pathCacheMemoryBudget = pathCacheMemoryBudget;
+	}
+
 	@StringGetter(ONLINE_VEHICLE_TRACKER)
 	public boolean isOnlineVehicleTracker() {
 		return onlineVehicleTracker;
@@ -19,10 +19,12 @@
 
 package org.matsim.contrib.taxi.run;
 
+import org.apache.commons.configuration.*;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.data.file.VehicleReader;
 import org.matsim.contrib.dvrp.optimizer.VrpOptimizer;
+import org.matsim.contrib.dvrp.optimizer.rebalancing.*;
 import org.matsim.contrib.dvrp.passenger.PassengerRequestCreator;
 import org.matsim.contrib.dvrp.run.DvrpModule;
 import org.matsim.contrib.dvrp.vrpagent.VrpAgentLogic.DynActionCreator;
@@ -67,6 +69,16 @@ public final class TaxiModule extends AbstractModule {
 	@Override
 	public void install() {
 		bind(Fleet.class).toProvider(DefaultTaxiFleetProvider.class).asEagerSingleton();
+
+		Configuration optimizerConfig = new MapConfiguration(
+				TaxiConfigGroup.get(getConfig()).getOptimizerConfigGroup().getParams());
+		if (optimizerConfig.getInt(AbstractTaxiOptimizerParams.REBALANCING_INTERVAL, 0) > 0) {
+			double cellSize = optimizerConfig.getDouble(AbstractTaxiOptimizerParams.REBALANCING_CELL_SIZE, 1000);
+			bind(ZonalDemandAggregator.class).toProvider(new ZonalDemandAggregatorProvider(TAXI_MODE, cellSize))
+					.asEagerSingleton();
+			addEventHandlerBinding().to(ZonalDemandAggregator.class);
+		}
+
 		install(dvrpModule);
 	}
 
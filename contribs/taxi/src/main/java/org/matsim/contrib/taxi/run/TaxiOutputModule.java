@@ -38,6 +38,8 @@ public class TaxiOutputModule extends AbstractModule {
 		addControlerListenerBinding().to(TaxiStatsDumper.class);
 
 		if (taxiCfg.getTimeProfiles()) {
+			bind(TaxiTaskTypeStatsCollector.class).asEagerSingleton();
+			addEventHandlerBinding().to(TaxiTaskTypeStatsCollector.class);
 			addMobsimListenerBinding().toProvider(TaxiStatusTimeProfileCollectorProvider.class);
 			// add more time profiles if necessary
 		}
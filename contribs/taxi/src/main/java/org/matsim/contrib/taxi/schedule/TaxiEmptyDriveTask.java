@@ -23,8 +23,24 @@ import org.matsim.contrib.dvrp.path.VrpPathWithTravelData;
 import org.matsim.contrib.dvrp.schedule.DriveTaskImpl;
 
 public class TaxiEmptyDriveTask extends DriveTaskImpl implements TaxiTask {
+	private final boolean relocation;
+
 	public TaxiEmptyDriveTask(VrpPathWithTravelData path) {
+		this(path, false);
+	}
+
+	/**
+	 * @param relocation
+	 *            true if the vehicle is sent to another location to wait there (i.e. the drive is followed by a STAY
+	 *            that must not be removed), false if the vehicle is driving to a pickup
+	 */
+	public TaxiEmptyDriveTask(VrpPathWithTravelData path, boolean relocation) {
 		super(path);
+		this.relocation = relocation;
+	}
+
+	public boolean isRelocation() {
+		return relocation;
 	}
 
 	@Override
@@ -24,10 +24,11 @@ import java.util.*;
 import org.matsim.api.core.v01.network.*;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.router.BoundedLeastCostPathCalculatorWithCache;
 import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
 import org.matsim.contrib.dvrp.tracker.*;
-import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.contrib.dvrp.util.*;
 import org.matsim.contrib.taxi.data.TaxiRequest;
 import org.matsim.contrib.taxi.data.TaxiRequest.TaxiRequestStatus;
 import org.matsim.contrib.taxi.run.TaxiConfigGroup;
@@ -60,8 +61,12 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		RoutingNetwork routingNetwork = new ArrayRoutingNetworkFactory(preProcessEuclidean)
 				.createRoutingNetwork(network);
 
-		router = new FastAStarEuclidean(routingNetwork, preProcessEuclidean, travelDisutility, travelTime,
-				params.AStarEuclideanOverdoFactor, fastRouterFactory);
+		LeastCostPathCalculator aStarEuclidean = new FastAStarEuclidean(routingNetwork, preProcessEuclidean,
+				travelDisutility, travelTime, params.AStarEuclideanOverdoFactor, fastRouterFactory);
+
+		long pathCacheMemoryBudget = taxiCfg.getPathCacheMemoryBudget() * 1024L * 1024L;
+		router = pathCacheMemoryBudget > 0 ? new BoundedLeastCostPathCalculatorWithCache(aStarEuclidean,
+				TimeDiscretizer.OPEN_ENDED_15_MIN, network, pathCacheMemoryBudget) : aStarEuclidean;
 
 		initFleet(taxiCfg);
 	}
@@ -234,9 +239,16 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 	}
 
 	protected void scheduleDrive(Schedule schedule, TaxiStayTask lastTask, VrpPathWithTravelData vrpPath) {
+		scheduleDrive(schedule, lastTask, vrpPath, false);
+	}
+
+	private void scheduleDrive(Schedule schedule, TaxiStayTask lastTask, VrpPathWithTravelData vrpPath,
+			boolean relocation) {
 		switch (lastTask.getStatus()) {
 			case PLANNED:
-				if (lastTask.getBeginTime() == vrpPath.getDepartureTime()) { // waiting for 0 seconds!!!
+				// the STAY after a relocation drive is kept, even if 0-second (see countUnremovablePlannedTasks())
+				if (lastTask.getBeginTime() == vrpPath.getDepartureTime() // waiting for 0 seconds!!!
+						&& !isPrecededByRelocationDrive(schedule, lastTask)) {
 					schedule.removeLastTask();// remove WaitTask
 				} else {
 					// actually this WAIT task will not be performed
@@ -254,10 +266,20 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		}
 
 		if (vrpPath.getLinkCount() > 1) {
-			schedule.addTask(new TaxiEmptyDriveTask(vrpPath));
+			schedule.addTask(new TaxiEmptyDriveTask(vrpPath, relocation));
 		}
 	}
 
+	private static boolean isPrecededByRelocationDrive(Schedule schedule, TaxiTask task) {
+		int idx = task.getTaskIdx();
+		if (idx == 0) {
+			return false;
+		}
+
+		TaxiTask prevTask = (TaxiTask)schedule.getTasks().get(idx - 1);
+		return prevTask.getTaxiTaskType() == TaxiTaskType.EMPTY_DRIVE && ((TaxiEmptyDriveTask)prevTask).isRelocation();
+	}
+
 	/**
 	 * If diversion is enabled, this method must be called after scheduling in order to make sure that no vehicle is
 	 * moving aimlessly.
@@ -329,6 +351,24 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 		schedule.addTask(new TaxiDropoffTask(t4, t5, req));
 	}
 
+	/**
+	 * Sends an idle vehicle (its current STAY task is the last one) to toLink, where it stays until the end of service
+	 * (or until it gets dispatched). The relocation drive and the following STAY (even if shortened to 0 seconds) are
+	 * not removed when requests are unscheduled, so the vehicle cannot be diverted; it can be dispatched only from
+	 * toLink (see {@link #getEarliestIdleness(Vehicle)}).
+	 */
+	public void relocateEmptyVehicle(Vehicle vehicle, Link toLink) {
+		Schedule schedule = vehicle.getSchedule();
+		TaxiStayTask stayTask = (TaxiStayTask)schedule.getCurrentTask();
+		if (stayTask.getTaskIdx() != schedule.getTaskCount() - 1) {
+			throw new IllegalStateException("The current STAY task is not last. Not possible without prebooking");
+		}
+
+		VrpPathWithTravelData vrpPath = calcPath(stayTask.getLink(), toLink, timer.getTimeOfDay());
+		scheduleDrive(schedule, stayTask, vrpPath, true);
+		appendStayTask(vehicle);
+	}
+
 	protected VrpPathWithTravelData calcPath(Link fromLink, Link toLink, double departureTime) {
 		return VrpPaths.calcAndCreatePath(fromLink, toLink, departureTime, router, travelTime);
 	}
@@ -396,7 +436,9 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 					// must have been added at time submissionTime <= t
 					double oldEndTime = task.getEndTime();
 					if (oldEndTime <= newBeginTime) {// may happen if the previous task is delayed
-						return Time.UNDEFINED_TIME;// remove the task
+						// the STAY after a relocation drive is kept (see countUnremovablePlannedTasks())
+						return isPrecededByRelocationDrive(vehicle.getSchedule(), task) ? newBeginTime : //
+								Time.UNDEFINED_TIME;// remove the task
 					} else {
 						return oldEndTime;
 					}
@@ -485,6 +527,11 @@ public class TaxiScheduler implements TaxiScheduleInquiry {
 				return 1;
 
 			case EMPTY_DRIVE:
+				if (((TaxiEmptyDriveTask)currentTask).isRelocation()) {
+					// relocation (see relocateEmptyVehicle()): no request to remove, keep driving and stay there
+					return 1;
+				}
+
 				if (params.vehicleDiversion) {
 					return 0;
 				}
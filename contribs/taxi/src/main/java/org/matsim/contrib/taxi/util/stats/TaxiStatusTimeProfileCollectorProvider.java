@@ -28,28 +28,51 @@ import org.matsim.contrib.taxi.data.TaxiRequest.TaxiRequestStatus;
 import org.matsim.contrib.taxi.passenger.SubmittedTaxiRequestsCollector;
 import org.matsim.contrib.taxi.util.stats.TimeProfileCharts.*;
 import org.matsim.contrib.taxi.util.stats.TimeProfileCollector.ProfileCalculator;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
 import org.matsim.core.controler.MatsimServices;
 import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 
 import com.google.inject.*;
 
+/**
+ * The task type counts are read on the mobsim thread. {@link TaxiTaskTypeStatsCollector} is updated by the events
+ * manager, so its counts are used only if events are handled synchronously with the mobsim, i.e. all events thrown
+ * in a sim step are processed before the next one starts (the default). With asynchronous event handling, the counts
+ * are calculated by scanning the fleet.
+ */
 public class TaxiStatusTimeProfileCollectorProvider implements Provider<MobsimListener> {
+	private final TaxiTaskTypeStatsCollector taskTypeStatsCollector;
 	private final Fleet fleet;
 	private final SubmittedTaxiRequestsCollector requestCollector;
 	private final MatsimServices matsimServices;
+	private final boolean synchronousEventHandling;
 
 	@Inject
-	public TaxiStatusTimeProfileCollectorProvider(Fleet fleet, MatsimServices matsimServices,
-			SubmittedTaxiRequestsCollector requestCollector) {
+	public TaxiStatusTimeProfileCollectorProvider(TaxiTaskTypeStatsCollector taskTypeStatsCollector, Fleet fleet,
+			MatsimServices matsimServices, SubmittedTaxiRequestsCollector requestCollector, Config config) {
+		this.taskTypeStatsCollector = taskTypeStatsCollector;
 		this.fleet = fleet;
 		this.requestCollector = requestCollector;
 		this.matsimServices = matsimServices;
+		this.synchronousEventHandling = isSynchronizedOnSimSteps(config.parallelEventHandling());
+	}
+
+	// mirrors the choice of the events manager in EventsManagerModule
+	private static boolean isSynchronizedOnSimSteps(ParallelEventHandlingConfigGroup peh) {
+		if (peh.getOneThreadPerHandler() != null && peh.getOneThreadPerHandler()) {
+			return false;
+		}
+		return peh.getNumberOfThreads() == null
+				|| (peh.getSynchronizeOnSimSteps() != null && peh.getSynchronizeOnSimSteps());
 	}
 
 	@Override
 	public MobsimListener get() {
-		ProfileCalculator calc = TimeProfiles.combineProfileCalculators(
-				TaxiTimeProfiles.createCurrentTaxiTaskOfTypeCounter(fleet), //
+		ProfileCalculator taskTypeCounter = synchronousEventHandling
+				? TaxiTimeProfiles.createCurrentTaxiTaskOfTypeCounter(taskTypeStatsCollector)
+				: TaxiTimeProfiles.createCurrentTaxiTaskOfTypeCounter(fleet);
+		ProfileCalculator calc = TimeProfiles.combineProfileCalculators(taskTypeCounter, //
 				TaxiTimeProfiles.createRequestsWithStatusCounter(requestCollector.getRequests().values(),
 						TaxiRequestStatus.UNPLANNED));
 
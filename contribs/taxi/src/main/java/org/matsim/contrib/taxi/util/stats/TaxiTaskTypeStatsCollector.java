@@ -0,0 +1,37 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.util.stats;
+
+import org.matsim.contrib.dvrp.schedule.Task;
+import org.matsim.contrib.dvrp.util.TaskTypeStatsCollector;
+import org.matsim.contrib.taxi.schedule.TaxiTask;
+import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
+
+public class TaxiTaskTypeStatsCollector extends TaskTypeStatsCollector<TaxiTaskType> {
+	// 5-minute time bins over 30 hours; 1-minute duration bins up to 2 hours
+	public TaxiTaskTypeStatsCollector() {
+		super(TaxiTaskType.class, 300, 30 * 12, 60, 120);
+	}
+
+	@Override
+	protected TaxiTaskType getTaskType(Task task) {
+		return ((TaxiTask)task).getTaxiTaskType();
+	}
+}
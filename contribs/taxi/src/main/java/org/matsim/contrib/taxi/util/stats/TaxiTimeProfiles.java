@@ -22,6 +22,7 @@ package org.matsim.contrib.taxi.util.stats;
 import org.matsim.contrib.dvrp.data.*;
 import org.matsim.contrib.dvrp.schedule.*;
 import org.matsim.contrib.dvrp.schedule.Schedule.ScheduleStatus;
+import org.matsim.contrib.dvrp.util.TaskTypeStatsCollector;
 import org.matsim.contrib.taxi.data.TaxiRequest.TaxiRequestStatus;
 import org.matsim.contrib.taxi.data.TaxiRequests;
 import org.matsim.contrib.taxi.schedule.TaxiTask;
@@ -65,6 +66,25 @@ public class TaxiTimeProfiles {
 		};
 	}
 
+	/**
+	 * Like {@link #createCurrentTaxiTaskOfTypeCounter(Fleet)}, but reads the counts maintained by the collector instead
+	 * of iterating over the fleet.
+	 */
+	public static ProfileCalculator createCurrentTaxiTaskOfTypeCounter(
+			final TaskTypeStatsCollector<TaxiTaskType> statsCollector) {
+		String[] header = TimeProfiles.combineValuesIntoStrings((Object[])TaxiTaskType.values());
+		return new TimeProfiles.MultiValueProfileCalculator(header) {
+			@Override
+			public Long[] calcValues() {
+				Long[] counts = new Long[TaxiTaskType.values().length];
+				for (TaxiTaskType e : TaxiTaskType.values()) {
+					counts[e.ordinal()] = statsCollector.getCurrentCount(e);
+				}
+				return counts;
+			}
+		};
+	}
+
 	public static ProfileCalculator createRequestsWithStatusCounter(final Iterable<? extends Request> requests,
 			final TaxiRequestStatus requestStatus) {
 		return new TimeProfiles.SingleValueProfileCalculator(requestStatus.name()) {
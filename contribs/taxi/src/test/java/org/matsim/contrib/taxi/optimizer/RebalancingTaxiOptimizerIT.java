@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer;
+
+import static org.matsim.contrib.taxi.optimizer.TaxiOptimizerTests.*;
+
+import java.util.*;
+
+import org.junit.Test;
+import org.matsim.contrib.taxi.optimizer.DefaultTaxiOptimizerProvider.OptimizerType;
+import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizer.Goal;
+import org.matsim.contrib.taxi.optimizer.rules.RuleBasedTaxiOptimizerParams;
+
+public class RebalancingTaxiOptimizerIT {
+	@Test
+	public void testFifoWithRebalancing() {
+		// the demand forecast is available from the second iteration on
+		PreloadedBenchmark benchmark = new PreloadedBenchmark("3.0", "25", 2);
+
+		List<TaxiConfigVariant> variants = createDefaultTaxiConfigVariants(true);
+		Map<String, String> params = createAbstractOptimParams(OptimizerType.FIFO);
+		addRebalancingParams(params);
+
+		runBenchmark(variants, params, benchmark);
+	}
+
+	@Test
+	public void testRuleBasedWithRebalancing() {
+		PreloadedBenchmark benchmark = new PreloadedBenchmark("3.0", "25", 2);
+
+		List<TaxiConfigVariant> variants = createDefaultTaxiConfigVariants(false);
+		Map<String, String> params = createAbstractOptimParams(OptimizerType.RULE_BASED);
+		addRebalancingParams(params);
+
+		params.put(RuleBasedTaxiOptimizerParams.GOAL, Goal.DEMAND_SUPPLY_EQUIL.name());
+		params.put(RuleBasedTaxiOptimizerParams.NEAREST_REQUESTS_LIMIT, 10 + "");
+		params.put(RuleBasedTaxiOptimizerParams.NEAREST_VEHICLES_LIMIT, 10 + "");
+		params.put(RuleBasedTaxiOptimizerParams.CELL_SIZE, 1000 + "");
+		runBenchmark(variants, params, benchmark);
+	}
+
+	private static void addRebalancingParams(Map<String, String> params) {
+		params.put(AbstractTaxiOptimizerParams.REBALANCING_INTERVAL, 300 + "");
+		params.put(AbstractTaxiOptimizerParams.REBALANCING_HORIZON, 900 + "");
+		params.put(AbstractTaxiOptimizerParams.REBALANCING_CELL_SIZE, 1000 + "");
+	}
+}
@@ -89,6 +89,10 @@ public class TaxiOptimizerTests {
 		private final Controler controler;
 
 		public PreloadedBenchmark(String plansSuffix, String taxisSuffix) {
+			this(plansSuffix, taxisSuffix, 1);
+		}
+
+		public PreloadedBenchmark(String plansSuffix, String taxisSuffix, int runs) {
 			String dir = "./src/main/resources/mielec_2014_02/";
 			String configFile = dir + "mielec_taxi_benchmark_config.xml";
 
@@ -98,7 +102,7 @@ public class TaxiOptimizerTests {
 			config.plans().setInputFile("plans_only_taxi_mini_benchmark_" + plansSuffix + ".xml.gz");
 			taxiCfg.setTaxisFile("taxis_mini_benchmark-" + taxisSuffix + ".xml");
 
-			controler = RunTaxiBenchmark.createControler(config, 1);
+			controler = RunTaxiBenchmark.createControler(config, runs);
 		}
 	}
 
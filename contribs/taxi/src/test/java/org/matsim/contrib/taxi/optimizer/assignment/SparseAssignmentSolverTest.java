@@ -0,0 +1,175 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.optimizer.assignment;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+public class SparseAssignmentSolverTest {
+	private static final double DELTA = 1e-6;
+	private static final double FORBIDDEN = 1e6;// cost of the pairs that are not in the sparse problem
+
+	@Test
+	public void testReleasedColumn() {
+		SparseAssignmentSolver<String, String> solver = new SparseAssignmentSolver<>();
+		List<String> columns = Arrays.asList("c0");
+
+		// r0 wins c0, whose potential becomes negative
+		int[] assignments = solver.solve(Arrays.asList("r0", "r1"), columns, new int[][] { { 0 }, { 0 } },
+				new double[][] { { -10 }, { -5 } });
+		assertArrayEquals(new int[] { 0, -1 }, assignments);
+
+		// r0 is gone, c0 is free (with a negative potential) and must be released to r1
+		assignments = solver.solve(Arrays.asList("r1"), columns, new int[][] { { 0 } }, new double[][] { { -5 } });
+		assertArrayEquals(new int[] { 0 }, assignments);
+	}
+
+	@Test
+	public void testSolveAgainstHungarian() {
+		Random random = new Random(1234);
+		SparseAssignmentSolver<Integer, Integer> solver = new SparseAssignmentSolver<>();
+		Map<List<Integer>, Double> pairCosts = new HashMap<>();
+
+		// subsequent calls share most rows, columns and costs, so the solver is warm-started
+		for (int call = 0; call < 200; call++) {
+			List<Integer> rows = randomSubset(random, 30);
+			List<Integer> columns = randomSubset(random, 30);
+			int[][] candidateColumns = new int[rows.size()][];
+			double[][] costs = new double[rows.size()][];
+			double[][] costMatrix = new double[rows.size()][columns.size() + rows.size()];
+
+			for (int i = 0; i < rows.size(); i++) {
+				List<Integer> candidates = new ArrayList<>();
+				List<Double> candidateCosts = new ArrayList<>();
+				Arrays.fill(costMatrix[i], FORBIDDEN);
+				costMatrix[i][columns.size() + i] = 0;// unassigned
+
+				for (int j = 0; j < columns.size(); j++) {
+					List<Integer> pair = Arrays.asList(rows.get(i), columns.get(j));
+					Double cost = pairCosts.get(pair);
+					if (cost == null || random.nextDouble() < 0.1) {
+						cost = random.nextDouble() < 0.3 ? -random.nextInt(100) - random.nextDouble() : null;
+						pairCosts.put(pair, cost);
+					}
+
+					if (cost != null) {
+						candidates.add(j);
+						candidateCosts.add(cost);
+						costMatrix[i][j] = cost;
+					}
+				}
+
+				candidateColumns[i] = new int[candidates.size()];
+				costs[i] = new double[candidates.size()];
+				for (int e = 0; e < candidates.size(); e++) {
+					candidateColumns[i][e] = candidates.get(e);
+					costs[i][e] = candidateCosts.get(e);
+				}
+			}
+
+			int[] assignments = solver.solve(rows, columns, candidateColumns, costs);
+			int[] expected = rows.isEmpty() ? new int[0] : new HungarianAlgorithm(costMatrix).execute();
+
+			assertValidAssignments(assignments, columns.size(), costMatrix);
+			assertEquals(calcCost(expected, costMatrix), calcCost(assignments, costMatrix), DELTA);
+		}
+	}
+
+	@Test
+	public void testSolveDenseAgainstHungarian() {
+		Random random = new Random(4321);
+		SparseAssignmentSolver<Integer, Integer> solver = new SparseAssignmentSolver<>();
+
+		for (int call = 0; call < 200; call++) {
+			List<Integer> rows = randomSubset(random, 20);
+			List<Integer> columns = randomSubset(random, 20);
+			if (rows.isEmpty() || columns.isEmpty()) {
+				continue;
+			}
+
+			// costs similar to TaxiToRequestAssignmentCostProvider.Mode.ARRIVAL_TIME, with the null-path cost
+			// (here: 1000) for the non-candidate pairs
+			double[][] costMatrix = new double[rows.size()][columns.size()];
+			boolean[][] candidates = new boolean[rows.size()][columns.size()];
+			for (int i = 0; i < rows.size(); i++) {
+				double departureTime = rows.get(i) * 10;
+				for (int j = 0; j < columns.size(); j++) {
+					double requestTime = columns.get(j) * 15;
+					candidates[i][j] = random.nextDouble() < 0.2;
+					double travelTime = candidates[i][j] ? random.nextInt(600) : 1000;
+					costMatrix[i][j] = Math.max(requestTime, departureTime + travelTime);
+				}
+			}
+
+			int[] assignments = solver.solveDense(rows, columns, costMatrix, candidates);
+			int[] expected = new HungarianAlgorithm(costMatrix).execute();
+
+			assertValidAssignments(assignments, columns.size(), costMatrix);
+			assertEquals(Math.min(rows.size(), columns.size()), countAssignments(assignments));
+			assertEquals(calcCost(expected, costMatrix), calcCost(assignments, costMatrix), DELTA);
+		}
+	}
+
+	private static List<Integer> randomSubset(Random random, int size) {
+		List<Integer> subset = new ArrayList<>();
+		for (int k = 0; k < size; k++) {
+			if (random.nextDouble() < 0.7) {
+				subset.add(k);
+			}
+		}
+		return subset;
+	}
+
+	private static void assertValidAssignments(int[] assignments, int colCount, double[][] costMatrix) {
+		Set<Integer> assignedColumns = new HashSet<>();
+		for (int i = 0; i < assignments.length; i++) {
+			int j = assignments[i];
+			if (j != -1) {
+				assertTrue(j < colCount);
+				assertTrue(costMatrix[i][j] < FORBIDDEN);
+				assertTrue(assignedColumns.add(j));
+			}
+		}
+	}
+
+	private static int countAssignments(int[] assignments) {
+		int count = 0;
+		for (int j : assignments) {
+			if (j != -1) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	// for the sparse problem, the "unassigned" columns of costMatrix are not returned, but cost 0 anyway
+	private static double calcCost(int[] assignments, double[][] costMatrix) {
+		double cost = 0;
+		for (int i = 0; i < assignments.length; i++) {
+			if (assignments[i] != -1) {
+				cost += costMatrix[i][assignments[i]];
+			}
+		}
+		return cost;
+	}
+}
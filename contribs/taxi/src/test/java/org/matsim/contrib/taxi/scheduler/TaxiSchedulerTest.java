@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.contrib.taxi.scheduler;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.*;
+import org.matsim.api.core.v01.*;
+import org.matsim.api.core.v01.network.*;
+import org.matsim.contrib.dvrp.data.*;
+import org.matsim.contrib.dvrp.path.*;
+import org.matsim.contrib.dvrp.router.TimeAsTravelDisutility;
+import org.matsim.contrib.dvrp.schedule.*;
+import org.matsim.contrib.dvrp.tracker.OnlineDriveTaskTracker;
+import org.matsim.contrib.dvrp.util.LinkTimePair;
+import org.matsim.contrib.taxi.run.TaxiConfigGroup;
+import org.matsim.contrib.taxi.schedule.*;
+import org.matsim.contrib.taxi.schedule.TaxiTask.TaxiTaskType;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
+
+/**
+ * Relocation drives (see {@link TaxiScheduler#relocateEmptyVehicle(Vehicle, Link)}) keep the following STAY when
+ * requests are unscheduled, while the other empty drives (e.g. stopped by
+ * {@link TaxiScheduler#stopVehicle(Vehicle)}) are handled as before relocation was introduced.
+ */
+public class TaxiSchedulerTest {
+	private static final double SERVICE_END_TIME = 3600;
+
+	private final Network network = NetworkUtils.createNetwork();
+	private final List<Link> links = new ArrayList<>();
+	private final MobsimTimer timer = new MobsimTimer();
+
+	private Vehicle vehicle;
+	private TaxiScheduler scheduler;
+
+	@Before
+	public void init() {
+		// a line of links: 0 -> 1 -> ... -> 4, 10 s each
+		List<Node> nodes = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			nodes.add(NetworkUtils.createAndAddNode(network, Id.createNodeId(i), new Coord(100 * i, 0)));
+		}
+		for (int i = 0; i < 5; i++) {
+			links.add(NetworkUtils.createAndAddLink(network, Id.createLinkId(i), nodes.get(i), nodes.get(i + 1), 100,
+					10, 1000, 1));
+		}
+
+		FleetImpl fleet = new FleetImpl();
+		vehicle = new VehicleImpl(Id.create("taxi", Vehicle.class), links.get(0), 4, 0, SERVICE_END_TIME);
+		fleet.addVehicle(vehicle);
+
+		FreeSpeedTravelTime travelTime = new FreeSpeedTravelTime();
+		scheduler = new TaxiScheduler(new TaxiConfigGroup(), network, fleet, timer,
+				new TaxiSchedulerParams(true, true, 60, 60, 1), travelTime, new TimeAsTravelDisutility(travelTime));
+
+		vehicle.getSchedule().nextTask();// start STAY
+	}
+
+	@Test
+	public void testStoppedVehicleIsDivertableAfterRemovingRequests() {
+		TaxiEmptyDriveTask driveTask = startEmptyDrive();
+
+		// stop on links[1] (e.g. after the request has been reassigned)
+		scheduler.stopVehicle(vehicle);
+		Schedule schedule = vehicle.getSchedule();
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE, TaxiTaskType.STAY);
+		assertNull(scheduler.getImmediateDiversion(vehicle));
+
+		// the STAY appended by stopVehicle() is removed, so the vehicle can be diverted again
+		assertTrue(scheduler.removeAwaitingRequests(vehicle).isEmpty());
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE);
+		assertSame(driveTask, Schedules.getLastTask(schedule));
+
+		LinkTimePair diversion = scheduler.getImmediateDiversion(vehicle);
+		assertSame(links.get(1), diversion.link);
+		assertEquals(120, diversion.time, 0);
+	}
+
+	@Test
+	public void testZeroSecondStayAfterStoppedVehicleIsRemoved() {
+		startEmptyDrive();
+		scheduler.stopVehicle(vehicle);
+		Schedule schedule = vehicle.getSchedule();
+		TaxiStayTask stayTask = (TaxiStayTask)Schedules.getLastTask(schedule);
+
+		// depart from the stop point at the beginning of the STAY
+		scheduler.scheduleDrive(schedule, stayTask, scheduler.calcPath(links.get(1), links.get(4), 120));
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE, TaxiTaskType.EMPTY_DRIVE);
+	}
+
+	@Test
+	public void testRelocationKeepsStay() {
+		timer.setTime(100);
+		scheduler.relocateEmptyVehicle(vehicle, links.get(3));
+		Schedule schedule = vehicle.getSchedule();
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE, TaxiTaskType.STAY);
+		TaxiEmptyDriveTask driveTask = (TaxiEmptyDriveTask)schedule.getTasks().get(1);
+		assertTrue(driveTask.isRelocation());
+		schedule.nextTask();
+
+		// the STAY at the relocation destination is not removed
+		assertTrue(scheduler.removeAwaitingRequests(vehicle).isEmpty());
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE, TaxiTaskType.STAY);
+		assertNull(scheduler.getImmediateDiversion(vehicle));
+		assertSame(links.get(3), scheduler.getEarliestIdleness(vehicle).link);
+
+		// even if shortened to 0 seconds
+		TaxiStayTask stayTask = (TaxiStayTask)Schedules.getLastTask(schedule);
+		scheduler.scheduleDrive(schedule, stayTask,
+				scheduler.calcPath(links.get(3), links.get(4), stayTask.getBeginTime()));
+		assertTaskTypes(schedule, TaxiTaskType.STAY, TaxiTaskType.EMPTY_DRIVE, TaxiTaskType.STAY,
+				TaxiTaskType.EMPTY_DRIVE);
+		assertEquals(stayTask.getBeginTime(), stayTask.getEndTime(), 0);
+	}
+
+	// vehicle departs from links[0] at 100 towards links[4] and is on links[1] at 120
+	private TaxiEmptyDriveTask startEmptyDrive() {
+		timer.setTime(100);
+		Schedule schedule = vehicle.getSchedule();
+		VrpPathWithTravelData path = scheduler.calcPath(links.get(0), links.get(4), 100);
+		scheduler.scheduleDrive(schedule, (TaxiStayTask)schedule.getCurrentTask(), path);
+
+		final TaxiEmptyDriveTask driveTask = (TaxiEmptyDriveTask)schedule.nextTask();
+		assertFalse(driveTask.isRelocation());
+		driveTask.initTaskTracker(new OnlineDriveTaskTracker() {
+			@Override
+			public double predictEndTime() {
+				return driveTask.getEndTime();
+			}
+
+			@Override
+			public LinkTimePair getDiversionPoint() {
+				return new LinkTimePair(links.get(1), 120);
+			}
+
+			@Override
+			public void divertPath(VrpPathWithTravelData newSubPath) {
+				driveTask.pathDiverted(new DivertedVrpPath(driveTask.getPath(), newSubPath, 1),
+						newSubPath.getArrivalTime());
+			}
+
+			@Override
+			public void movedOverNode(Link nextLink) {
+			}
+		});
+
+		timer.setTime(120);
+		return driveTask;
+	}
+
+	private static void assertTaskTypes(Schedule schedule, TaxiTaskType... expectedTypes) {
+		List<TaxiTaskType> types = new ArrayList<>();
+		for (Task t : schedule.getTasks()) {
+			types.add(((TaxiTask)t).getTaxiTaskType());
+		}
+		assertEquals(Arrays.asList(expectedTypes), types);
+	}
+}
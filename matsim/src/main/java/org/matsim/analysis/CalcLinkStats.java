@@ -23,8 +23,10 @@ package org.matsim.analysis;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
@@ -45,23 +47,23 @@ public class CalcLinkStats {
 
 	private final static Logger log = Logger.getLogger(CalcLinkStats.class);
 
-	private static class LinkData {
-		public final double[][] volumes;
-		public final double[][] ttimes;
-
-		public LinkData(final double[][] linksVolumes, final double[][] linksTTimes) {
-			this.volumes = linksVolumes.clone();
-			this.ttimes = linksTTimes.clone();
-		}
-	}
-
 	private double volScaleFactor = 1.0;
 
 	private int count = 0;
-	private final Map<Id<Link>, LinkData> linkData;
 	private final int nofHours;
 	private final Network network;
 
+	/*
+	 * The statistics are stored in dense arrays, indexed by the position of a link in linkIds
+	 * (sorted by id, as in the output file). volumes[stat] has nofHours+1 entries per link, the last
+	 * one being the daily value, ttimes[stat] has nofHours entries per link.
+	 */
+	private Id<Link>[] linkIds;
+	private Link[] links;
+	private final Map<Id<Link>, Integer> linkIndices = new HashMap<>();
+	private double[][] volumes;
+	private double[][] ttimes;
+
 	private static final int MIN = 0;
 	private static final int MAX = 1;
 	private static final int SUM = 2;
@@ -70,7 +72,6 @@ public class CalcLinkStats {
 	@Inject
 	public CalcLinkStats(final Network network) {
 		this.network = network;
-		this.linkData = new TreeMap<>();
 		this.nofHours = 24;
 		reset();
 	}
@@ -90,23 +91,33 @@ public class CalcLinkStats {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
 
+		final int volumesStride = this.nofHours + 1;
+		final double[] volMin = this.volumes[MIN];
+		final double[] volMax = this.volumes[MAX];
+		final double[] volSum = this.volumes[SUM];
+		final double[] ttMin = this.ttimes[MIN];
+		final double[] ttMax = this.ttimes[MAX];
+		final double[] ttSum = this.ttimes[SUM];
+		final double[] volumes = new double[this.nofHours];
+
 		// go through all links
-		for (Id<Link> linkId : this.linkData.keySet()) {
-			
-			// retrieve link from link ID
-			Link link = this.network.getLinks().get(linkId);
+		for (int l = 0; l < this.linkIds.length; l++) {
+			Link link = this.links[l];
 			
-			// get the volumes for the link ID from the analyzier
-			double[] volumes = analyzer.getVolumesPerHourForLink(linkId);
-			
-			// get the destination container for the data from link data (could have gotten this through iterator right away)
-			LinkData data = this.linkData.get(linkId);
+			// get the volumes for the link from the analyzer
+			Arrays.fill(volumes, 0.0);
+			analyzer.addVolumesPerHourForLink(this.linkIds[l], volumes);
 			
+			int vOffset = l * volumesStride;
+			int tOffset = l * this.nofHours;
+
 			// prepare the sum variables (for volumes);
 			long sumVolumes = 0; // daily (0-24) sum
 			
 			// go through all hours:
 			for (int hour = 0; hour < this.nofHours; hour++) {
+				int v = vOffset + hour;
+				int t = tOffset + hour;
 				
 				// get travel time for hour
 				double ttime = ttimes.getLinkTravelTime(link, hour*3600, null, null);
@@ -117,52 +128,55 @@ public class CalcLinkStats {
 				// the following has something to do with the fact that we are doing this for multiple iterations.  So there are variations.
 				// this collects min and max.  There is, however, no good control over how many iterations this is collected.
 				if (this.count == 1) {
-					data.volumes[MIN][hour] = volumes[hour];
-					data.volumes[MAX][hour] = volumes[hour];
-					data.ttimes[MIN][hour] = ttime;
-					data.ttimes[MAX][hour] = ttime;
+					volMin[v] = volumes[hour];
+					volMax[v] = volumes[hour];
+					ttMin[t] = ttime;
+					ttMax[t] = ttime;
 				} else {
-					if (volumes[hour] < data.volumes[MIN][hour]) data.volumes[MIN][hour] = volumes[hour];
-					if (volumes[hour] > data.volumes[MAX][hour]) data.volumes[MAX][hour] = volumes[hour];
-					if (ttime < data.ttimes[MIN][hour]) data.ttimes[MIN][hour] = ttime;
-					if (ttime > data.ttimes[MAX][hour]) data.ttimes[MAX][hour] = ttime;
+					if (volumes[hour] < volMin[v]) volMin[v] = volumes[hour];
+					if (volumes[hour] > volMax[v]) volMax[v] = volumes[hour];
+					if (ttime < ttMin[t]) ttMin[t] = ttime;
+					if (ttime > ttMax[t]) ttMax[t] = ttime;
 				}
 				
 				// this is the regular summing up for each hour
-				data.volumes[SUM][hour] += volumes[hour];
-				data.ttimes[SUM][hour] += volumes[hour] * ttime;
+				volSum[v] += volumes[hour];
+				ttSum[t] += volumes[hour] * ttime;
 			}
-			// dataVolumes[.][nofHours] are daily (0-24) values
+			// volumes[.][nofHours] are daily (0-24) values
+			int daily = vOffset + this.nofHours;
 			if (this.count == 1) {
-				data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] = sumVolumes;
-				data.volumes[MAX][this.nofHours] = sumVolumes;
+				volMin[daily] = sumVolumes;
+				volSum[daily] = sumVolumes;
+				volMax[daily] = sumVolumes;
 			} else {
-				if (sumVolumes < data.volumes[MIN][this.nofHours]) data.volumes[MIN][this.nofHours] = sumVolumes;
-				data.volumes[SUM][this.nofHours] += sumVolumes;
-				if (sumVolumes > data.volumes[MAX][this.nofHours]) data.volumes[MAX][this.nofHours] = sumVolumes;
+				if (sumVolumes < volMin[daily]) volMin[daily] = sumVolumes;
+				volSum[daily] += sumVolumes;
+				if (sumVolumes > volMax[daily]) volMax[daily] = sumVolumes;
 			}
 		}
 	}
 
+	@SuppressWarnings("unchecked")
 	public void reset() {
-		this.linkData.clear();
 		this.count = 0;
 		log.info( " resetting `count' to zero.  This info is here since we want to check when this" +
 				" is happening during normal simulation runs.  kai, jan'11") ;
 
 		// initialize our data-table
-		for (Link link : this.network.getLinks().values()) {
-			LinkData data = new LinkData(new double[NOF_STATS][this.nofHours + 1], new double[NOF_STATS][this.nofHours]);
-			this.linkData.put(link.getId(), data);
+		this.linkIds = new TreeSet<>(this.network.getLinks().keySet()).toArray(new Id[0]);
+		this.links = new Link[this.linkIds.length];
+		this.linkIndices.clear();
+		for (int l = 0; l < this.linkIds.length; l++) {
+			this.links[l] = this.network.getLinks().get(this.linkIds[l]);
+			this.linkIndices.put(this.linkIds[l], l);
 		}
-
+		this.volumes = new double[NOF_STATS][this.linkIds.length * (this.nofHours + 1)];
+		this.ttimes = new double[NOF_STATS][this.linkIds.length * this.nofHours];
 	}
 
 	public void writeFile(final String filename) {
-		BufferedWriter out = null;
-		try {
-			out = IOUtils.getBufferedWriter(filename);
+		try (BufferedWriter out = IOUtils.getBufferedWriter(filename)) {
 
 			// write header
 			out.write("LINK\tORIG_ID\tFROM\tTO\tLENGTH\tFREESPEED\tCAPACITY");
@@ -181,74 +195,52 @@ public class CalcLinkStats {
 			}
 			out.write("\n");
 
-			// write data
-			for (Map.Entry<Id<Link>, LinkData> entry : this.linkData.entrySet()) {
-				Id<Link> linkId = entry.getKey();
-				LinkData data = entry.getValue();
-				Link link = this.network.getLinks().get(linkId);
-
-				out.write(linkId.toString());
-				out.write("\t"); // origId, no longer supported
-				out.write("\t" + link.getFromNode().getId().toString());
-				out.write("\t" + link.getToNode().getId().toString());
-				out.write("\t" + Double.toString(link.getLength()));
-				out.write("\t" + Double.toString(link.getFreespeed()));
-				out.write("\t" + Double.toString(link.getCapacity()));
-
-				// HRS0-1, HRS1-2, ... HRS23-24
-//				int[] sum = {0, 0, 0};
-				for (int i = 0; i < this.nofHours; i++) {
-					out.write("\t" + Double.toString(data.volumes[MIN][i]));
-//					sum[MIN] = sum[MIN] + data.volumes[MIN][i];
-					out.write("\t" + Double.toString((data.volumes[SUM][i]) / this.count));
-//					sum[SUM] = sum[SUM] + data.volumes[SUM][i];
-					out.write("\t" + Double.toString(data.volumes[MAX][i]));
-//					sum[MAX] = sum[MAX] + data.volumes[MAX][i];
+			// write data, one line per link, built up in a reused buffer
+			final int volumesStride = this.nofHours + 1;
+			final StringBuilder line = new StringBuilder(4096);
+			for (int l = 0; l < this.linkIds.length; l++) {
+				Link link = this.links[l];
+				int vOffset = l * volumesStride;
+				int tOffset = l * this.nofHours;
+
+				line.setLength(0);
+				line.append(this.linkIds[l].toString());
+				line.append('\t'); // origId, no longer supported
+				line.append('\t').append(link.getFromNode().getId().toString());
+				line.append('\t').append(link.getToNode().getId().toString());
+				line.append('\t').append(link.getLength());
+				line.append('\t').append(link.getFreespeed());
+				line.append('\t').append(link.getCapacity());
+
+				// HRS0-1, HRS1-2, ... HRS23-24, followed by HRS0-nofHours
+				for (int i = 0; i <= this.nofHours; i++) {
+					line.append('\t').append(this.volumes[MIN][vOffset + i]);
+					line.append('\t').append((this.volumes[SUM][vOffset + i]) / this.count);
+					line.append('\t').append(this.volumes[MAX][vOffset + i]);
 				}
 
-				// HRS0-nofHours
-				out.write("\t" + Double.toString(data.volumes[MIN][this.nofHours]));
-				out.write("\t" + Double.toString((data.volumes[SUM][this.nofHours]) / this.count));
-				out.write("\t" + Double.toString(data.volumes[MAX][this.nofHours]));
-
 				// TRAVELTIME0-1, TRAVELTIME1-2, ... TRAVELTIME23-24
 				for (int i = 0; i < this.nofHours; i++) {
-					String ttimesMin = Double.toString(data.ttimes[MIN][i]);
-					out.write("\t" + ttimesMin);
-					if (data.volumes[SUM][i] == 0) {
+					double ttimesMin = this.ttimes[MIN][tOffset + i];
+					double ttsum = this.ttimes[SUM][tOffset + i];
+					double volSum = this.volumes[SUM][vOffset + i];
+					line.append('\t').append(ttimesMin);
+					if (volSum == 0) {
 						// nobody traveled along the link in this hour, so we cannot calculate an average
 						// use the value available or the minimum instead (min and max should be the same, =freespeed)
-						double ttsum = data.ttimes[SUM][i];
-						if (ttsum != 0.0) {
-							out.write("\t" + Double.toString(ttsum));
-						} else {
-							out.write("\t" + ttimesMin);
-						}
+						line.append('\t').append(ttsum != 0.0 ? ttsum : ttimesMin);
 					} else {
-						double ttsum = data.ttimes[SUM][i];
-						if (ttsum == 0) {
-							out.write("\t" + ttimesMin);
-						} else {
-							out.write("\t" + Double.toString(ttsum / data.volumes[SUM][i]));
-						}
+						line.append('\t').append(ttsum == 0 ? ttimesMin : ttsum / volSum);
 					}
-					out.write("\t" + Double.toString(data.ttimes[MAX][i]));
+					line.append('\t').append(this.ttimes[MAX][tOffset + i]);
 				}
-				out.write("\n");
+				line.append('\n');
+				out.append(line);
 			}
 
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		finally {
-			if (out != null) {
-				try {
-					out.close();
-				} catch (IOException e) {
-					log.warn("Could not close output-stream.", e);
-				}
-			}
-		}
 	}
 
 	public void readFile(final String filename) {
@@ -274,64 +266,68 @@ public class CalcLinkStats {
 				String[] parts = StringUtils.explode(line, '\t');
 				if (parts.length == 154) {
 					Id<Link> linkId = Id.create(parts[0], Link.class);
-					LinkData data = this.linkData.get(linkId);
-					if (data == null) {
+					Integer index = this.linkIndices.get(linkId);
+					if (index == null) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId.toString());
 					} else {
+						int v = index * (this.nofHours + 1);
+						int t = index * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[7 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[9 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[7 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[9 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 7 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[9 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else if (parts.length == 153) {
 					String linkId = parts[0];
-					LinkData data = this.linkData.get(Id.create(linkId, Link.class));
-					if (data == null) {
+					Integer index = this.linkIndices.get(Id.create(linkId, Link.class));
+					if (index == null) {
 						System.err.println("CalcLinkStats.readFile(); unknown link: " + linkId);
 					} else {
+						int v = index * (this.nofHours + 1);
+						int t = index * this.nofHours;
 						int baseTTimes;
 						for (int i = 0; i < this.nofHours; i++) {
-							data.volumes[MIN][i] = Double.parseDouble(parts[6 + i*3]);
-							data.volumes[MIN][i] *= this.volScaleFactor;
-							data.volumes[SUM][i] = Integer.parseInt(parts[7 + i*3]);
-							data.volumes[SUM][i] *= this.volScaleFactor;
-							data.volumes[MAX][i] = Double.parseDouble(parts[8 + i*3]);
-							data.volumes[MAX][i] *= this.volScaleFactor;
+							this.volumes[MIN][v + i] = Double.parseDouble(parts[6 + i*3]);
+							this.volumes[MIN][v + i] *= this.volScaleFactor;
+							this.volumes[SUM][v + i] = Integer.parseInt(parts[7 + i*3]);
+							this.volumes[SUM][v + i] *= this.volScaleFactor;
+							this.volumes[MAX][v + i] = Double.parseDouble(parts[8 + i*3]);
+							this.volumes[MAX][v + i] *= this.volScaleFactor;
 							baseTTimes = 6 + (this.nofHours+1)*3;
-							data.ttimes[MIN][i] = Double.parseDouble(parts[baseTTimes + i*3]);
-							if (data.volumes[SUM][i] == 0) {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
+							this.ttimes[MIN][t + i] = Double.parseDouble(parts[baseTTimes + i*3]);
+							if (this.volumes[SUM][v + i] == 0) {
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]);
 							} else {
-								data.ttimes[SUM][i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * data.volumes[SUM][i];
+								this.ttimes[SUM][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 1]) * this.volumes[SUM][v + i];
 							}
-							data.ttimes[MAX][i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
+							this.ttimes[MAX][t + i] = Double.parseDouble(parts[baseTTimes + i*3 + 2]);
 						}
-						data.volumes[MIN][this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
-						data.volumes[MIN][this.nofHours] *= this.volScaleFactor;
-						data.volumes[SUM][this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
-						data.volumes[SUM][this.nofHours] *= this.volScaleFactor;
-						data.volumes[MAX][this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
-						data.volumes[MAX][this.nofHours] *= this.volScaleFactor;
+						this.volumes[MIN][v + this.nofHours] = Double.parseDouble(parts[6 + this.nofHours*3]);
+						this.volumes[MIN][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[SUM][v + this.nofHours] = Double.parseDouble(parts[7 + this.nofHours*3]);
+						this.volumes[SUM][v + this.nofHours] *= this.volScaleFactor;
+						this.volumes[MAX][v + this.nofHours] = Double.parseDouble(parts[8 + this.nofHours*3]);
+						this.volumes[MAX][v + this.nofHours] *= this.volScaleFactor;
 					}
 				}
 				else {
@@ -358,16 +354,17 @@ public class CalcLinkStats {
 	 * @return if no data is available, an array with length 0 is returned.
 	 */
 	public double[] getAvgLinkVolumes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		Integer index = this.linkIndices.get(linkId);
+		if (index == null) {
 			return new double[0];
 		}
 		if (this.count == 0) {
 			return new double[0];
 		}
+		int v = index * (this.nofHours + 1);
 		double[] volumes = new double[this.nofHours];
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
 		}
 		return volumes;
 	}
@@ -381,13 +378,15 @@ public class CalcLinkStats {
 	 */
 	@Deprecated
 	protected double[] getAvgTravelTimes(final Id<Link> linkId) {
-		LinkData data = this.linkData.get(linkId);
-		if (data == null) {
+		Integer index = this.linkIndices.get(linkId);
+		if (index == null) {
 			return new double[0];
 		}
 		if (this.count == 0) {
 			return new double[0];
 		}
+		int v = index * (this.nofHours + 1);
+		int t = index * this.nofHours;
 		double[] ttimesMin = new double[this.nofHours];
 		double[] ttimesSum = new double[this.nofHours];
 		double[] volumes = new double[this.nofHours];
@@ -395,9 +394,9 @@ public class CalcLinkStats {
 		double[] avgTTimes = new double[this.nofHours];
 		
 		for (int i = 0; i < this.nofHours; i++) {
-			volumes[i] = (data.volumes[SUM][i]) / (this.count);
-			ttimesMin[i] = (data.ttimes[MIN][i]) / (this.count);
-			ttimesSum[i] = (data.ttimes[SUM][i]) / (this.count);
+			volumes[i] = (this.volumes[SUM][v + i]) / (this.count);
+			ttimesMin[i] = (this.ttimes[MIN][t + i]) / (this.count);
+			ttimesSum[i] = (this.ttimes[SUM][t + i]) / (this.count);
 
 			if (volumes[i] == 0.) {
 				avgTTimes[i] = ttimesMin[i];
@@ -233,6 +233,23 @@ public class LegHistogram implements PersonDepartureEventHandler, PersonArrivalE
         return iteration;
     }
 
+	/**
+	 * @return a copy of the data gathered so far, which is not registered as events handler and thus
+	 * can be written while this instance is already collecting the data of the next iteration.
+	 */
+	LegHistogram copy() {
+		LegHistogram copy = new LegHistogram(this.binSize, this.nofBins);
+		copy.iteration = this.iteration;
+		for (Map.Entry<String, DataFrame> e : this.data.entrySet()) {
+			DataFrame dataFrame = new DataFrame(this.binSize, this.nofBins + 1);
+			System.arraycopy(e.getValue().countsDep, 0, dataFrame.countsDep, 0, dataFrame.countsDep.length);
+			System.arraycopy(e.getValue().countsArr, 0, dataFrame.countsArr, 0, dataFrame.countsArr.length);
+			System.arraycopy(e.getValue().countsStuck, 0, dataFrame.countsStuck, 0, dataFrame.countsStuck.length);
+			copy.data.put(e.getKey(), dataFrame);
+		}
+		return copy;
+	}
+
     DataFrame getAllModesData() {
         DataFrame result = new DataFrame(this.binSize, this.nofBins + 1);
         for (DataFrame byMode : data.values()) {
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.PipelinedIterationTasks;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
 import org.matsim.core.controler.listener.IterationEndsListener;
@@ -43,6 +44,7 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 	@Inject private LegHistogram histogram;
 	@Inject private ControlerConfigGroup controlerConfigGroup;
 	@Inject private OutputDirectoryHierarchy controlerIO;
+	@com.google.inject.Inject(optional = true) private PipelinedIterationTasks pipelinedTasks = PipelinedIterationTasks.SYNCHRONOUS;
 
 	static private final Logger log = Logger.getLogger(LegHistogramListener.class);
 
@@ -53,15 +55,19 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 
 	@Override
 	public void notifyIterationEnds(final IterationEndsEvent event) {
-		this.histogram.write(controlerIO.getIterationFilename(event.getIteration(), "legHistogram.txt"));
 		this.printStats();
-		if (controlerConfigGroup.isCreateGraphs()) {
-			LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_all.png"));
-			for (String legMode : this.histogram.getLegModes()) {
-				LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_" + legMode + ".png"), legMode);
+		final LegHistogram snapshot = this.pipelinedTasks.isPipelined() ? this.histogram.copy() : this.histogram;
+		final int iteration = event.getIteration();
+		final boolean createGraphs = controlerConfigGroup.isCreateGraphs();
+		this.pipelinedTasks.submit("leg histogram", () -> {
+			snapshot.write(controlerIO.getIterationFilename(iteration, "legHistogram.txt"));
+			if (createGraphs) {
+				LegHistogramChart.writeGraphic(snapshot, controlerIO.getIterationFilename(iteration, "legHistogram_all.png"));
+				for (String legMode : snapshot.getLegModes()) {
+					LegHistogramChart.writeGraphic(snapshot, controlerIO.getIterationFilename(iteration, "legHistogram_" + legMode + ".png"), legMode);
+				}
 			}
-		}
-
+		});
 	}
 
 	private void printStats() {
@@ -39,6 +39,7 @@ import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.PipelinedIterationTasks;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.events.StartupEvent;
@@ -74,6 +75,7 @@ ShutdownListener {
 
 	private final boolean createPNG;
 	private final ControlerConfigGroup controlerConfigGroup;
+	@com.google.inject.Inject(optional = true) private PipelinedIterationTasks pipelinedTasks = PipelinedIterationTasks.SYNCHRONOUS;
 
 	Map<String,Map<Integer,Double>> modeHistories = new HashMap<>() ;
 	private int minIteration = 0;
@@ -183,7 +185,9 @@ ShutdownListener {
 				chart.addSeries(mode, history ) ;
 			}
 			chart.addMatsimLogo();
-			chart.saveAsPng(this.modeFileName + ".png", 800, 600);
+			// addSeries copied the histories, so they may already be extended while the png is rendered
+			final String pngFileName = this.modeFileName + ".png";
+			this.pipelinedTasks.submit("mode statistics chart", () -> chart.saveAsPng(pngFileName, 800, 600));
 		}
 	}
 
@@ -0,0 +1,273 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetrics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * A registry for fine grained performance measurements, complementing the coarse
+ * {@link IterationStopWatch}. Code on hot paths (mobsim engines, routing, events handling)
+ * looks up a named {@link Distribution} or {@link Counter} once and then records values into it.
+ * All recording methods are thread-safe and lock-free, so that multi-threaded engines can
+ * share one instance.
+ * <p></p>
+ * The registry is reset at the beginning of every iteration by the {@link PerformanceMetricsControlerListener},
+ * which also writes its content to the iteration directory.
+ */
+public final class PerformanceMetrics {
+
+	private final ConcurrentMap<String, Distribution> distributions = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the distribution registered under the given name, creating it if necessary.
+	 */
+	public Distribution distribution(final String name) {
+		Distribution distribution = this.distributions.get(name);
+		if (distribution == null) {
+			Distribution newDistribution = new Distribution();
+			distribution = this.distributions.putIfAbsent(name, newDistribution);
+			if (distribution == null) {
+				distribution = newDistribution;
+			}
+		}
+		return distribution;
+	}
+
+	/**
+	 * @return the counter registered under the given name, creating it if necessary.
+	 */
+	public Counter counter(final String name) {
+		Counter counter = this.counters.get(name);
+		if (counter == null) {
+			Counter newCounter = new Counter();
+			counter = this.counters.putIfAbsent(name, newCounter);
+			if (counter == null) {
+				counter = newCounter;
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * Resets all registered metrics to zero. The metrics stay registered, so references
+	 * held by instrumented code remain valid.
+	 */
+	public void reset() {
+		for (Distribution distribution : this.distributions.values()) {
+			distribution.reset();
+		}
+		for (Counter counter : this.counters.values()) {
+			counter.reset();
+		}
+	}
+
+	public void writeCsvFile(final String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write("name,type,count,sum,min,max,mean,p50,p90,p99");
+			writer.newLine();
+			for (Map.Entry<String, Counter> e : new TreeMap<>(this.counters).entrySet()) {
+				long value = e.getValue().get();
+				writer.write(e.getKey() + ",counter,1," + value + "," + value + "," + value + "," + value + ",,,");
+				writer.newLine();
+			}
+			for (Map.Entry<String, Distribution> e : new TreeMap<>(this.distributions).entrySet()) {
+				Distribution d = e.getValue();
+				writer.write(e.getKey() + ",distribution," + d.getCount() + "," + d.getSum() + "," + d.getMin() + ","
+						+ d.getMax() + "," + d.getMean() + "," + d.getPercentile(0.5) + "," + d.getPercentile(0.9) + ","
+						+ d.getPercentile(0.99));
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public void writeJsonFile(final String filename) {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(filename)) {
+			writer.write(toJson());
+			writer.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the current state of all metrics as JSON object, with the metric names sorted alphabetically.
+	 */
+	public String toJson() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"counters\": {");
+		boolean first = true;
+		for (Map.Entry<String, Counter> e : new TreeMap<>(this.counters).entrySet()) {
+			sb.append(first ? "\n" : ",\n");
+			sb.append("    \"").append(escape(e.getKey())).append("\": ").append(e.getValue().get());
+			first = false;
+		}
+		sb.append("\n  },\n  \"distributions\": {");
+		first = true;
+		for (Map.Entry<String, Distribution> e : new TreeMap<>(this.distributions).entrySet()) {
+			Distribution d = e.getValue();
+			sb.append(first ? "\n" : ",\n");
+			sb.append("    \"").append(escape(e.getKey())).append("\": {");
+			sb.append("\"count\": ").append(d.getCount());
+			sb.append(", \"sum\": ").append(d.getSum());
+			sb.append(", \"min\": ").append(d.getMin());
+			sb.append(", \"max\": ").append(d.getMax());
+			sb.append(", \"mean\": ").append(d.getMean());
+			sb.append(", \"p50\": ").append(d.getPercentile(0.5));
+			sb.append(", \"p90\": ").append(d.getPercentile(0.9));
+			sb.append(", \"p99\": ").append(d.getPercentile(0.99));
+			sb.append("}");
+			first = false;
+		}
+		sb.append("\n  }\n}");
+		return sb.toString();
+	}
+
+	private static String escape(final String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	/**
+	 * A monotonically increasing value, e.g. a number of calls or allocated bytes.
+	 */
+	public static final class Counter {
+		private final LongAdder value = new LongAdder();
+
+		public void add(final long delta) {
+			this.value.add(delta);
+		}
+
+		public void increment() {
+			this.value.increment();
+		}
+
+		public long get() {
+			return this.value.sum();
+		}
+
+		void reset() {
+			this.value.reset();
+		}
+	}
+
+	/**
+	 * Records a distribution of non-negative long values, typically durations in nanoseconds or
+	 * queue lengths. Besides count, sum, minimum and maximum, the values are kept in a histogram
+	 * with power-of-two bins, from which percentiles are estimated (the upper bound of the bin
+	 * containing the percentile is returned).
+	 */
+	public static final class Distribution {
+		private static final int NUMBER_OF_BINS = 64;
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+		private final AtomicLongArray bins = new AtomicLongArray(NUMBER_OF_BINS);
+
+		public void record(final long value) {
+			long v = value < 0 ? 0 : value;
+			this.count.increment();
+			this.sum.add(v);
+			long current;
+			while (v < (current = this.min.get())) {
+				if (this.min.compareAndSet(current, v)) break;
+			}
+			while (v > (current = this.max.get())) {
+				if (this.max.compareAndSet(current, v)) break;
+			}
+			this.bins.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+		}
+
+		/**
+		 * Convenience method to record the time elapsed since <code>startNanos</code>, which
+		 * must have been obtained from {@link System#nanoTime()}.
+		 */
+		public void recordSince(final long startNanos) {
+			record(System.nanoTime() - startNanos);
+		}
+
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		public long getSum() {
+			return this.sum.sum();
+		}
+
+		public long getMin() {
+			return getCount() == 0 ? 0 : this.min.get();
+		}
+
+		public long getMax() {
+			return getCount() == 0 ? 0 : this.max.get();
+		}
+
+		public double getMean() {
+			long n = getCount();
+			return n == 0 ? 0.0 : ((double) getSum()) / n;
+		}
+
+		public long getPercentile(final double fraction) {
+			long n = 0;
+			for (int i = 0; i < NUMBER_OF_BINS; i++) {
+				n += this.bins.get(i);
+			}
+			if (n == 0) {
+				return 0;
+			}
+			long threshold = (long) Math.ceil(fraction * n);
+			long cumulated = 0;
+			for (int i = 0; i < NUMBER_OF_BINS; i++) {
+				cumulated += this.bins.get(i);
+				if (cumulated >= threshold) {
+					long upperBound = i == 0 ? 0 : (1L << i) - 1;
+					return Math.min(upperBound, getMax());
+				}
+			}
+			return getMax();
+		}
+
+		void reset() {
+			this.count.reset();
+			this.sum.reset();
+			this.min.set(Long.MAX_VALUE);
+			this.max.set(Long.MIN_VALUE);
+			for (int i = 0; i < NUMBER_OF_BINS; i++) {
+				this.bins.set(i, 0);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetricsConfigGroup.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.Map;
+
+import org.matsim.core.config.ReflectiveConfigGroup;
+
+/**
+ * Configures the output of the {@link PerformanceMetricsModule}.
+ */
+public final class PerformanceMetricsConfigGroup extends ReflectiveConfigGroup {
+
+	public static final String GROUP_NAME = "performanceMetrics";
+
+	private static final String WRITE_INTERVAL = "writeInterval";
+	private static final String HTTP_PORT = "httpPort";
+
+	private int writeInterval = 1;
+	private int httpPort = 0;
+
+	public PerformanceMetricsConfigGroup() {
+		super(GROUP_NAME);
+	}
+
+	@Override
+	public Map<String, String> getComments() {
+		Map<String, String> comments = super.getComments();
+		comments.put(WRITE_INTERVAL, "iterationNumber % " + WRITE_INTERVAL + " == 0 defines in which iterations the performance metrics " +
+				"are written to the iteration directory. `0' disables writing them.");
+		comments.put(HTTP_PORT, "If larger than 0, the current performance metrics are served as JSON at http://localhost:<port>/metrics. " +
+				"Default is 0, i.e. no http endpoint.");
+		return comments;
+	}
+
+	@StringGetter( WRITE_INTERVAL )
+	public int getWriteInterval() {
+		return this.writeInterval;
+	}
+
+	@StringSetter( WRITE_INTERVAL )
+	public void setWriteInterval(int writeInterval) {
+		this.writeInterval = writeInterval;
+	}
+
+	@StringGetter( HTTP_PORT )
+	public int getHttpPort() {
+		return this.httpPort;
+	}
+
+	@StringSetter( HTTP_PORT )
+	public void setHttpPort(int httpPort) {
+		this.httpPort = httpPort;
+	}
+}
@@ -0,0 +1,190 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetricsControlerListener.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.inject.Inject;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ReplanningEvent;
+import org.matsim.core.controler.events.ScoringEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.events.StartupEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ReplanningListener;
+import org.matsim.core.controler.listener.ScoringListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.controler.listener.StartupListener;
+
+/**
+ * Resets the {@link PerformanceMetrics} at the beginning of each iteration and writes them
+ * as <code>performanceMetrics.csv</code> and <code>performanceMetrics.json</code> into the
+ * iteration directory at its end.
+ * <p></p>
+ * In addition, wall clock time, garbage collection and the bytes allocated by the controler thread
+ * are recorded per phase of the iteration. The phases are delimited by the controler events, i.e.
+ * "replanning" lasts from the replanning event to the before mobsim event, "mobsim" from the before
+ * mobsim event to the after mobsim event, and so on. As other listeners are notified of the same events,
+ * the boundaries are only precise up to the run time of those listeners.
+ */
+final class PerformanceMetricsControlerListener implements StartupListener, IterationStartsListener, ReplanningListener,
+		BeforeMobsimListener, AfterMobsimListener, ScoringListener, IterationEndsListener, ShutdownListener {
+
+	static final String FILENAME = "performanceMetrics";
+
+	private final PerformanceMetrics metrics;
+	private final PerformanceMetricsConfigGroup config;
+	private final OutputDirectoryHierarchy controlerIO;
+
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+	private PerformanceMetricsHttpServer httpServer = null;
+
+	private String currentPhase = null;
+	private long phaseStartNanos;
+	private long phaseStartGcCount;
+	private long phaseStartGcMillis;
+	private long phaseStartAllocatedBytes;
+
+	@Inject
+	PerformanceMetricsControlerListener(PerformanceMetrics metrics, Config config, OutputDirectoryHierarchy controlerIO) {
+		this.metrics = metrics;
+		this.config = ConfigUtils.addOrGetModule(config, PerformanceMetricsConfigGroup.GROUP_NAME, PerformanceMetricsConfigGroup.class);
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyStartup(final StartupEvent event) {
+		if (this.config.getHttpPort() > 0) {
+			this.httpServer = new PerformanceMetricsHttpServer(this.metrics, this.config.getHttpPort());
+		}
+	}
+
+	@Override
+	public void notifyIterationStarts(final IterationStartsEvent event) {
+		this.metrics.reset();
+		beginPhase("iterationStarts");
+	}
+
+	@Override
+	public void notifyReplanning(final ReplanningEvent event) {
+		beginPhase("replanning");
+	}
+
+	@Override
+	public void notifyBeforeMobsim(final BeforeMobsimEvent event) {
+		beginPhase("mobsim");
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		beginPhase("afterMobsim");
+	}
+
+	@Override
+	public void notifyScoring(final ScoringEvent event) {
+		beginPhase("scoring");
+	}
+
+	@Override
+	public void notifyIterationEnds(final IterationEndsEvent event) {
+		endPhase();
+		int interval = this.config.getWriteInterval();
+		if (interval > 0 && event.getIteration() % interval == 0) {
+			this.metrics.writeCsvFile(this.controlerIO.getIterationFilename(event.getIteration(), FILENAME + ".csv"));
+			this.metrics.writeJsonFile(this.controlerIO.getIterationFilename(event.getIteration(), FILENAME + ".json"));
+		}
+	}
+
+	@Override
+	public void notifyShutdown(final ShutdownEvent event) {
+		if (this.httpServer != null) {
+			this.httpServer.stop();
+			this.httpServer = null;
+		}
+	}
+
+	private void beginPhase(final String phase) {
+		endPhase();
+		this.currentPhase = phase;
+		this.phaseStartGcCount = getGcCount();
+		this.phaseStartGcMillis = getGcMillis();
+		this.phaseStartAllocatedBytes = getAllocatedBytes();
+		this.phaseStartNanos = System.nanoTime();
+	}
+
+	private void endPhase() {
+		if (this.currentPhase == null) {
+			return;
+		}
+		long wallNanos = System.nanoTime() - this.phaseStartNanos;
+		String prefix = "phase." + this.currentPhase + ".";
+		this.metrics.counter(prefix + "wallTimeMillis").add(wallNanos / 1000000);
+		this.metrics.counter(prefix + "gcCount").add(getGcCount() - this.phaseStartGcCount);
+		this.metrics.counter(prefix + "gcTimeMillis").add(getGcMillis() - this.phaseStartGcMillis);
+		long allocatedBytes = getAllocatedBytes();
+		if (allocatedBytes >= 0 && this.phaseStartAllocatedBytes >= 0) {
+			this.metrics.counter(prefix + "allocatedBytesControlerThread").add(allocatedBytes - this.phaseStartAllocatedBytes);
+		}
+		this.currentPhase = null;
+	}
+
+	private static long getGcCount() {
+		long sum = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			sum += Math.max(0, gc.getCollectionCount());
+		}
+		return sum;
+	}
+
+	private static long getGcMillis() {
+		long sum = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			sum += Math.max(0, gc.getCollectionTime());
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or -1 if the JVM does not provide this information.
+	 */
+	private long getAllocatedBytes() {
+		if (this.threadBean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) this.threadBean;
+			if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+				return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+}
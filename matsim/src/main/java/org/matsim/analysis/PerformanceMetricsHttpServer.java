@@ -0,0 +1,73 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetricsHttpServer.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal http endpoint on the loopback interface that serves the current content of the
+ * {@link PerformanceMetrics} as JSON at <code>/metrics</code>, e.g. for scraping by monitoring tools
+ * while the simulation is running. Uses the http server shipped with the JDK, so no additional
+ * dependency is required.
+ */
+final class PerformanceMetricsHttpServer {
+
+	private final static Logger log = Logger.getLogger(PerformanceMetricsHttpServer.class);
+
+	private final HttpServer server;
+
+	PerformanceMetricsHttpServer(final PerformanceMetrics metrics, final int port) {
+		try {
+			this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] response = metrics.toJson().getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(200, response.length);
+				try (OutputStream os = exchange.getResponseBody()) {
+					os.write(response);
+				}
+			}
+		});
+		this.server.start();
+		log.info("serving performance metrics at http://localhost:" + port + "/metrics");
+	}
+
+	void stop() {
+		this.server.stop(0);
+	}
+
+}
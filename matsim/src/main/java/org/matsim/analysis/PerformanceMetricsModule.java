@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetricsModule.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.AbstractModule;
+
+/**
+ * Enables the collection of {@link PerformanceMetrics}. Not installed by default; add it with
+ * <code>controler.addOverridingModule(new PerformanceMetricsModule())</code>. Once a
+ * {@link PerformanceMetrics} instance is bound, the QSim, the {@link org.matsim.core.router.TripRouter}
+ * and the parallel events manager pick it up and record their measurements into it.
+ */
+public final class PerformanceMetricsModule extends AbstractModule {
+
+	@Override
+	public void install() {
+		ConfigUtils.addOrGetModule(getConfig(), PerformanceMetricsConfigGroup.GROUP_NAME, PerformanceMetricsConfigGroup.class);
+		bind(PerformanceMetrics.class).asEagerSingleton();
+		addControlerListenerBinding().to(PerformanceMetricsControlerListener.class);
+	}
+
+}
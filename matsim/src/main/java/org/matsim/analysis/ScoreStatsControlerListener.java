@@ -42,6 +42,7 @@ import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.PipelinedIterationTasks;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.events.StartupEvent;
@@ -85,6 +86,7 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 	
 	private final boolean createPNG;
 	private final ControlerConfigGroup controlerConfigGroup;
+	@com.google.inject.Inject(optional = true) private PipelinedIterationTasks pipelinedTasks = PipelinedIterationTasks.SYNCHRONOUS;
 
 	Map<ScoreItem,Map< Integer, Double>> scoreHistory = new HashMap<>() ;
 	private int minIteration = 0;
@@ -220,7 +222,9 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 			chart.addSeries("avg. of plans' average score", this.scoreHistory.get( ScoreItem.average) );
 			chart.addSeries("avg. executed score", this.scoreHistory.get( ScoreItem.executed ) );
 			chart.addMatsimLogo();
-			chart.saveAsPng(this.fileName + ".png", 800, 600);
+			// the chart holds its own copy of the data, so rendering it can be done in the background
+			final String pngFileName = this.fileName + ".png";
+			this.pipelinedTasks.submit("score statistics chart", () -> chart.saveAsPng(pngFileName, 800, 600));
 		}
 	}
 
@@ -20,7 +20,12 @@
 
 package org.matsim.analysis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -40,6 +45,11 @@ import javax.inject.Inject;
 
 /**
  * Counts the number of vehicles leaving a link, aggregated into time bins of a specified size.
+ * <p></p>
+ * The volumes are stored in one dense matrix (links &times; time bins) per mode, the links being
+ * indexed in the order of the network. Links not contained in the network get an index when they
+ * are first seen. Several instances, e.g. each one fed by its own thread, can be combined with
+ * {@link #addVolumes(VolumesAnalyzer)}.
  *
  * @author mrieser
  */
@@ -49,12 +59,15 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	private final int timeBinSize;
 	private final int maxTime;
 	private final int maxSlotIndex;
-	private final Map<Id<Link>, int[]> links;
+	private final int nofSlots;
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final List<Id<Link>> linkIds;
+	private final VolumesMatrix volumes;
 	
 	// for multi-modal support
 	private final boolean observeModes;
 	private final Map<Id<Vehicle>, String> enRouteModes;
-	private final Map<Id<Link>, Map<String, int[]>> linksPerMode;
+	private final Map<String, VolumesMatrix> volumesPerMode;
 
 	@Inject
 	VolumesAnalyzer(Network network, EventsManager eventsManager) {
@@ -70,15 +83,22 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.nofSlots = this.maxSlotIndex + 1;
+		this.linkIndices = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.linkIds = new ArrayList<>(network.getLinks().size());
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			this.linkIndices.put(linkId, this.linkIds.size());
+			this.linkIds.add(linkId);
+		}
+		this.volumes = new VolumesMatrix(this.linkIds.size(), this.nofSlots);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
 			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.volumesPerMode = new HashMap<>();
 		} else {
 			this.enRouteModes = null;
-			this.linksPerMode = null;
+			this.volumesPerMode = null;
 		}
 	}
 	
@@ -91,27 +111,61 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	
 	@Override
 	public void handleEvent(final LinkLeaveEvent event) {
-		int[] volumes = this.links.get(event.getLinkId());
-		if (volumes == null) {
-			volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-			this.links.put(event.getLinkId(), volumes);
-		}
+		int linkIndex = getOrCreateLinkIndex(event.getLinkId());
 		int timeslot = getTimeSlotIndex(event.getTime());
-		volumes[timeslot]++;
+		this.volumes.increment(linkIndex, timeslot);
 		
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(event.getLinkId());
-			if (modeVolumes == null) {
-				modeVolumes = new HashMap<>();
-				this.linksPerMode.put(event.getLinkId(), modeVolumes);
-			}
 			String mode = enRouteModes.get(event.getVehicleId());
-			volumes = modeVolumes.get(mode);
-			if (volumes == null) {
-				volumes = new int[this.maxSlotIndex + 1]; // initialized to 0 by default, according to JVM specs
-				modeVolumes.put(mode, volumes);
+			getOrCreateModeVolumes(mode).increment(linkIndex, timeslot);
+		}
+	}
+
+	private int getOrCreateLinkIndex(final Id<Link> linkId) {
+		Integer index = this.linkIndices.get(linkId);
+		if (index == null) {
+			// not part of the network, e.g. when events of another network are analyzed
+			index = this.linkIds.size();
+			this.linkIndices.put(linkId, index);
+			this.linkIds.add(linkId);
+			this.volumes.ensureCapacity(this.linkIds.size());
+			if (this.observeModes) {
+				for (VolumesMatrix modeVolumes : this.volumesPerMode.values()) {
+					modeVolumes.ensureCapacity(this.linkIds.size());
+				}
+			}
+		}
+		return index;
+	}
+
+	private VolumesMatrix getOrCreateModeVolumes(final String mode) {
+		VolumesMatrix modeVolumes = this.volumesPerMode.get(mode);
+		if (modeVolumes == null) {
+			modeVolumes = new VolumesMatrix(this.linkIds.size(), this.nofSlots);
+			this.volumesPerMode.put(mode, modeVolumes);
+		}
+		return modeVolumes;
+	}
+
+	/**
+	 * Adds the volumes counted by another analyzer to the volumes of this analyzer, e.g. to combine
+	 * the results of analyzers that were fed by different threads or from different events files.
+	 * Both analyzers must use the same time bins.
+	 */
+	public void addVolumes(final VolumesAnalyzer other) {
+		if (other.timeBinSize != this.timeBinSize || other.maxTime != this.maxTime) {
+			throw new IllegalArgumentException("Cannot add volumes with different time bins.");
+		}
+		int[] indexMapping = new int[other.linkIds.size()];
+		for (int i = 0; i < indexMapping.length; i++) {
+			Id<Link> linkId = other.linkIds.get(i);
+			indexMapping[i] = (i < this.linkIds.size() && this.linkIds.get(i) == linkId) ? i : getOrCreateLinkIndex(linkId);
+		}
+		this.volumes.add(other.volumes, indexMapping);
+		if (this.observeModes && other.observeModes) {
+			for (Map.Entry<String, VolumesMatrix> e : other.volumesPerMode.entrySet()) {
+				getOrCreateModeVolumes(e.getKey()).add(e.getValue(), indexMapping);
 			}
-			volumes[timeslot]++;
 		}
 	}
 
@@ -128,7 +182,8 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * 		starting with time bin 0 from 0 seconds to (timeBinSize-1)seconds.
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId) {
-		return this.links.get(linkId);
+		Integer index = this.linkIndices.get(linkId);
+		return index == null ? null : this.volumes.get(index);
 	}
 	
 	/**
@@ -139,8 +194,9 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 */
 	public int[] getVolumesForLink(final Id<Link> linkId, String mode) {
 		if (observeModes) {
-			Map<String, int[]> modeVolumes = this.linksPerMode.get(linkId);
-			if (modeVolumes != null) return modeVolumes.get(mode);
+			Integer index = this.linkIndices.get(linkId);
+			VolumesMatrix modeVolumes = this.volumesPerMode.get(mode);
+			if (index != null && modeVolumes != null) return modeVolumes.get(index);
 		} 
 		return null;
 	}
@@ -178,19 +234,48 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		if (3600.0 % this.timeBinSize != 0) log.error("Volumes per hour and per link probably not correct!");
 		
 		double[] volumes = new double[24];
-		
-		int[] volumesForLink = this.getVolumesForLink(linkId);
-		if (volumesForLink == null) return volumes;
+		addVolumesPerHourForLink(linkId, volumes);
+		return volumes;
+	}
+
+	/**
+	 * Like {@link #getVolumesPerHourForLink(Id)}, but adds the volumes to the given array of length 24,
+	 * so that no array has to be allocated per link.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final double[] volumesPerHour) {
+		Integer index = this.linkIndices.get(linkId);
+		if (index != null) {
+			addVolumesPerHour(this.volumes, index, volumesPerHour);
+		}
+	}
+
+	/**
+	 * Like {@link #getVolumesPerHourForLink(Id, String)}, but adds the volumes to the given array of length 24.
+	 */
+	public void addVolumesPerHourForLink(final Id<Link> linkId, final String mode, final double[] volumesPerHour) {
+		if (observeModes) {
+			Integer index = this.linkIndices.get(linkId);
+			VolumesMatrix modeVolumes = this.volumesPerMode.get(mode);
+			if (index != null && modeVolumes != null) {
+				addVolumesPerHour(modeVolumes, index, volumesPerHour);
+			}
+		}
+	}
 
+	/**
+	 * Reads the volumes of a link directly from the matrix, without copying them into an array first.
+	 */
+	private void addVolumesPerHour(final VolumesMatrix matrix, final int linkIndex, final double[] volumesPerHour) {
+		if (!matrix.isObserved(linkIndex)) return;
+		int offset = linkIndex * this.nofSlots;
 		int slotsPerHour = (int)(3600.0 / this.timeBinSize);
 		for (int hour = 0; hour < 24; hour++) {
 			double time = hour * 3600.0;
 			for (int i = 0; i < slotsPerHour; i++) {
-				volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
+				volumesPerHour[hour] += matrix.counts[offset + this.getTimeSlotIndex(time)];
 				time += this.timeBinSize;
 			}
 		}
-		return volumes;
 	}
 
 	public double[] getVolumesPerHourForLink(final Id<Link> linkId, String mode) {
@@ -202,16 +287,10 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 				volumes[hour] = 0.0;
 			}
 			
-			int[] volumesForLink = this.getVolumesForLink(linkId, mode);
-			if (volumesForLink == null) return volumes;
-	
-			int slotsPerHour = (int)(3600.0 / this.timeBinSize);
-			for (int hour = 0; hour < 24; hour++) {
-				double time = hour * 3600.0;
-				for (int i = 0; i < slotsPerHour; i++) {
-					volumes[hour] += volumesForLink[this.getTimeSlotIndex(time)];
-					time += this.timeBinSize;
-				}
+			Integer index = this.linkIndices.get(linkId);
+			VolumesMatrix modeVolumes = this.volumesPerMode.get(mode);
+			if (index != null && modeVolumes != null) {
+				addVolumesPerHour(modeVolumes, index, volumes);
 			}
 			return volumes;
 		}
@@ -224,8 +303,10 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	public Set<String> getModes() {
 		Set<String> modes = new TreeSet<>();
 		
-		for (Map<String, int[]> map : this.linksPerMode.values()) {
-			modes.addAll(map.keySet());
+		for (Map.Entry<String, VolumesMatrix> e : this.volumesPerMode.entrySet()) {
+			if (!e.getValue().observed.isEmpty()) {
+				modes.add(e.getKey());
+			}
 		}
 		
 		return modes;
@@ -235,15 +316,81 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	 * @return Set of Strings containing all link ids for which counting-values are available.
 	 */
 	public Set<Id<Link>> getLinkIds() {
-		return this.links.keySet();
+		Set<Id<Link>> linkIds = new LinkedHashSet<>();
+		for (int i = this.volumes.observed.nextSetBit(0); i >= 0; i = this.volumes.observed.nextSetBit(i + 1)) {
+			linkIds.add(this.linkIds.get(i));
+		}
+		return linkIds;
 	}
 
 	@Override
 	public void reset(final int iteration) {
-		this.links.clear();
+		// the matrices are kept, so they do not need to be allocated again in every iteration
+		this.volumes.clear();
 		if (observeModes) {
-			this.linksPerMode.clear();
+			for (VolumesMatrix modeVolumes : this.volumesPerMode.values()) {
+				modeVolumes.clear();
+			}
 			this.enRouteModes.clear();
 		}
 	}
+
+	/**
+	 * Vehicle counts of all links and time slots in one array, the slots of a link being stored next to each other.
+	 * Remembers which links had at least one vehicle, as only those are reported.
+	 */
+	private static final class VolumesMatrix {
+		private final int nofSlots;
+		private int[] counts;
+		private final BitSet observed;
+
+		VolumesMatrix(final int nofLinks, final int nofSlots) {
+			this.nofSlots = nofSlots;
+			this.counts = new int[nofLinks * nofSlots];
+			this.observed = new BitSet(nofLinks);
+		}
+
+		void ensureCapacity(final int nofLinks) {
+			if (this.counts.length < nofLinks * this.nofSlots) {
+				int newNofLinks = Math.max(nofLinks, (this.counts.length / this.nofSlots) * 3 / 2 + 1);
+				this.counts = Arrays.copyOf(this.counts, newNofLinks * this.nofSlots);
+			}
+		}
+
+		void increment(final int linkIndex, final int slot) {
+			ensureCapacity(linkIndex + 1);
+			this.counts[linkIndex * this.nofSlots + slot]++;
+			this.observed.set(linkIndex);
+		}
+
+		boolean isObserved(final int linkIndex) {
+			return this.observed.get(linkIndex);
+		}
+
+		int[] get(final int linkIndex) {
+			if (!this.observed.get(linkIndex)) {
+				return null;
+			}
+			int offset = linkIndex * this.nofSlots;
+			return Arrays.copyOfRange(this.counts, offset, offset + this.nofSlots);
+		}
+
+		void add(final VolumesMatrix other, final int[] indexMapping) {
+			for (int i = other.observed.nextSetBit(0); i >= 0; i = other.observed.nextSetBit(i + 1)) {
+				int linkIndex = indexMapping[i];
+				ensureCapacity(linkIndex + 1);
+				int from = i * this.nofSlots;
+				int to = linkIndex * this.nofSlots;
+				for (int slot = 0; slot < this.nofSlots; slot++) {
+					this.counts[to + slot] += other.counts[from + slot];
+				}
+				this.observed.set(linkIndex);
+			}
+		}
+
+		void clear() {
+			Arrays.fill(this.counts, 0);
+			this.observed.clear();
+		}
+	}
 }
@@ -57,6 +57,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
+	private static final String PIPELINED_ITERATION_OUTPUT = "pipelinedIterationOutput";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim}
@@ -82,6 +83,7 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private int writeSnapshotsInterval = 1;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private boolean pipelinedIterationOutput = false;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
 	public ControlerConfigGroup() {
@@ -117,10 +119,14 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 				"Depending on the chosen mobsim, you'll have to add additional config modules to configure the corresponding mobsim." + IOUtils.NATIVE_NEWLINE + "\t\t" +
 				"For 'qsim', add a module 'qsim' to the config.");
 		
-		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `googleearth', and `otfvis'.");
+		map.put(SNAPSHOT_FORMAT, "Comma-separated list of visualizer output file formats. `transims', `googleearth', `binary', and `otfvis'.");
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(PIPELINED_ITERATION_OUTPUT, "Default=false. If enabled, writing of analysis output "
+				+ "(leg histograms, score and mode statistics) is done in a background thread, overlapping with replanning and the "
+				+ "mobsim of the next iteration. The background work is always completed after the mobsim and at the end of the run. "
+				+ "Plans dumps are always written before the mobsim. Ignored with within-day replanning, since the mobsim then modifies the plans.");
 		return map;
 	}
 
@@ -349,6 +355,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public void setDumpDataAtEnd(boolean dumpDataAtEnd) {
 		this.dumpDataAtEnd = dumpDataAtEnd;
 	}
+	@StringGetter(PIPELINED_ITERATION_OUTPUT)
+	public boolean isPipelinedIterationOutput() {
+		return this.pipelinedIterationOutput;
+	}
+
+	@StringSetter(PIPELINED_ITERATION_OUTPUT)
+	public void setPipelinedIterationOutput(boolean pipelinedIterationOutput) {
+		this.pipelinedIterationOutput = pipelinedIterationOutput;
+	}
 	// ---
 	int writePlansUntilIteration = 1 ;
 	public int getWritePlansUntilIteration() {
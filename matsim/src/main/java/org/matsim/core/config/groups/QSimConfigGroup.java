@@ -262,6 +262,12 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
 		map.put(USE_LANES, "Set this parameter to true if lanes should be used, false if not.");
+		map.put(SKIPPING_IDLE_TIME_STEPS, "If true, the qsim jumps over time steps in which none of its engines and sim step listeners has "
+				+ "anything to do.  Only takes effect if all of them can report their next active time; otherwise, every time step is "
+				+ "simulated as before.  Default is false.") ;
+		map.put(NUMBER_OF_SKETCH_ITERATIONS, "Number of iterations, starting with the first iteration, in which the links are simulated "
+				+ "with a cheap mesoscopic model: exit times are computed from a BPR function when vehicles enter, and there is no "
+				+ "spillback.  Only used without lanes.  Default is 0, i.e. the regular queue model in all iterations.") ;
 		{	
 			StringBuilder stb = new StringBuilder() ;
 			for ( VehiclesSource src : VehiclesSource.values() ) {
@@ -556,6 +562,31 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.isRestrictingSeepage = isRestrictingSeepage;
 	}
 	// ---
+	private static final String SKIPPING_IDLE_TIME_STEPS = "skippingIdleTimeSteps" ;
+	private boolean skippingIdleTimeSteps = false ;
+	@StringGetter(SKIPPING_IDLE_TIME_STEPS)
+	public boolean isSkippingIdleTimeSteps() {
+		return this.skippingIdleTimeSteps ;
+	}
+	@StringSetter(SKIPPING_IDLE_TIME_STEPS)
+	public void setSkippingIdleTimeSteps( boolean val ) {
+		this.skippingIdleTimeSteps = val ;
+	}
+	// ---
+	private static final String NUMBER_OF_SKETCH_ITERATIONS = "numberOfSketchIterations" ;
+	private int numberOfSketchIterations = 0 ;
+	@StringGetter(NUMBER_OF_SKETCH_ITERATIONS)
+	public int getNumberOfSketchIterations() {
+		return this.numberOfSketchIterations ;
+	}
+	@StringSetter(NUMBER_OF_SKETCH_ITERATIONS)
+	public void setNumberOfSketchIterations( int val ) {
+		if ( val < 0 ) {
+			throw new IllegalArgumentException( "Number of sketch iterations must not be negative, got " + val ) ;
+		}
+		this.numberOfSketchIterations = val ;
+	}
+	// ---
 	private boolean usingTravelTimeCheckInTeleportation = false ;
 	public boolean isUsingTravelTimeCheckInTeleportation() {
 		// yyyyyy this should better become a threshold number!  kai, aug'16
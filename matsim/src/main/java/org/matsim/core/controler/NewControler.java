@@ -53,9 +53,10 @@ class NewControler extends AbstractController implements ControlerI {
 	private final Collection<Provider<MobsimListener>> mobsimListeners;
 	private final ControlerConfigGroup controlerConfigGroup;
 	private final OutputDirectoryHierarchy outputDirectoryHierarchy;
+	private final PipelinedIterationTasks pipelinedIterationTasks;
 
 	@Inject
-	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy) {
+	NewControler(Config config, ControlerListenerManagerImpl controlerListenerManager, MatsimServices matsimServices, IterationStopWatch stopWatch, PrepareForSim prepareForSim, EventsHandling eventsHandling, PlansDumping plansDumping, PlansReplanning plansReplanning, Provider<Mobsim> mobsimProvider, PlansScoring plansScoring, TerminationCriterion terminationCriterion, DumpDataAtEnd dumpDataAtEnd, Set<ControlerListener> controlerListenersDeclaredByModules, Collection<Provider<MobsimListener>> mobsimListeners, ControlerConfigGroup controlerConfigGroup, OutputDirectoryHierarchy outputDirectoryHierarchy, PipelinedIterationTasks pipelinedIterationTasks) {
 		super(controlerListenerManager, stopWatch, matsimServices);
 		this.config = config;
 		this.config.addConfigConsistencyChecker(new ConfigConsistencyCheckerImpl());
@@ -71,6 +72,7 @@ class NewControler extends AbstractController implements ControlerI {
 		this.mobsimListeners = mobsimListeners;
 		this.controlerConfigGroup = controlerConfigGroup;
 		this.outputDirectoryHierarchy = outputDirectoryHierarchy;
+		this.pipelinedIterationTasks = pipelinedIterationTasks;
 	}
 
 	@Override
@@ -96,6 +98,9 @@ class NewControler extends AbstractController implements ControlerI {
 		this.addCoreControlerListener(this.plansScoring);
 		this.addCoreControlerListener(this.plansReplanning);
 		this.addCoreControlerListener(this.plansDumping);
+		// output written in the background has to be completed before scores are written into the plans
+		// and before the final dump.
+		this.addCoreControlerListener(this.pipelinedIterationTasks);
 		this.addCoreControlerListener(this.eventsHandling);
 		// must be last being added (=first being executed)
 
@@ -0,0 +1,164 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PipelinedIterationTasks.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+/**
+ * Executes output tasks of an iteration (analysis output such as leg histograms and statistics charts) in the background,
+ * so that they overlap with replanning and the mobsim of the next iteration.
+ * <p></p>
+ * Tasks are executed one after the other in the order they were submitted. A task must not access
+ * data that is modified later on, so listeners submitting tasks have to hand over a snapshot of the
+ * data they want to write. All pending tasks are completed after the mobsim (i.e. before scores
+ * are written into the plans) and at shutdown.
+ * <p></p>
+ * If {@link ControlerConfigGroup#isPipelinedIterationOutput()} is not set or pipelining has been
+ * {@link #disable(String) disabled}, tasks are simply executed at the time they are submitted.
+ */
+@Singleton
+public final class PipelinedIterationTasks implements AfterMobsimListener, ShutdownListener {
+
+	private static final Logger log = Logger.getLogger(PipelinedIterationTasks.class);
+
+	/**
+	 * Executes all tasks immediately. Used by listeners that are not run by the controler.
+	 */
+	public static final PipelinedIterationTasks SYNCHRONOUS = new PipelinedIterationTasks(false);
+
+	private ExecutorService executor;
+	private final List<Future<?>> pending = new ArrayList<>();
+
+	@Inject
+	PipelinedIterationTasks(ControlerConfigGroup config) {
+		this(config.isPipelinedIterationOutput());
+	}
+
+	public PipelinedIterationTasks(boolean pipelined) {
+		if (pipelined) {
+			this.executor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "PipelinedIterationTasks");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.executor = null;
+		}
+	}
+
+	public boolean isPipelined() {
+		return this.executor != null;
+	}
+
+	/**
+	 * Completes the pending tasks and executes all further tasks immediately. To be called at startup by
+	 * modules that modify data while the output may be written, e.g. within-day replanning changes the plans
+	 * during the mobsim.
+	 */
+	public void disable(final String reason) {
+		if (this.executor == null) {
+			return;
+		}
+		log.warn("Pipelined iteration output is disabled: " + reason);
+		try {
+			join();
+		} finally {
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Runs the task in the background if pipelining is enabled, otherwise immediately.
+	 */
+	public void submit(final String description, final Runnable task) {
+		if (this.executor == null) {
+			task.run();
+			return;
+		}
+		synchronized (this.pending) {
+			this.pending.add(this.executor.submit(() -> {
+				long start = System.currentTimeMillis();
+				task.run();
+				log.info(description + " finished in the background after " + (System.currentTimeMillis() - start) + " ms.");
+			}));
+		}
+	}
+
+	/**
+	 * Waits until all tasks submitted so far are completed. If a task failed, its exception is rethrown.
+	 */
+	public void join() {
+		List<Future<?>> futures;
+		synchronized (this.pending) {
+			futures = new ArrayList<>(this.pending);
+			this.pending.clear();
+		}
+		RuntimeException failure = null;
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	@Override
+	public void notifyAfterMobsim(AfterMobsimEvent event) {
+		join();
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+		try {
+			join();
+		} finally {
+			if (this.executor != null) {
+				this.executor.shutdown();
+			}
+		}
+	}
+
+}
@@ -99,10 +99,12 @@ final class EventsHandlingImpl implements EventsHandling, BeforeMobsimListener,
 		/*
 		 * Events that are produced after the Mobsim has ended, e.g. by the RoadProcing 
 		 * module, should also be written to the events file.
+		 * The files are closed right away (not in the background), since other
+		 * IterationEndsListeners may read them in this iteration.
 		 */
 		for (EventWriter writer : this.eventWriters) {
-			writer.closeFile();
 			this.eventsManager.removeHandler(writer);
+			writer.closeFile();
 		}
 		this.eventWriters.clear();
 	}
@@ -42,6 +42,10 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
  * ({@link ControlerConfigGroup#getWritePlansInterval()} as well as in the first
  * iteration, just in case someone might check that the replanning worked
  * correctly in the first iteration.
+ * <p></p>
+ * The plans are written before the mobsim starts, also with
+ * {@link ControlerConfigGroup#isPipelinedIterationOutput()}, since initializing
+ * the mobsim modifies them (e.g. vehicle ids are set in the routes).
  *
  * @author mrieser
  */
@@ -0,0 +1,254 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReplay.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Reads an events file once and hands the events to several independent groups of event handlers,
+ * each group being processed by its own thread. This is useful when running several analyses over
+ * the same events file: the total time is then roughly the time of the slowest group instead of the
+ * sum over all handlers.
+ * <p></p>
+ * The parsing thread collects the events into batches which are passed, unchanged, to all groups.
+ * Every group sees all events in the order of the file. Handlers of different groups must not
+ * share state without synchronization, handlers within a group are called from one thread only.
+ * <p></p>
+ * Usage:
+ * <pre>
+ * ParallelEventsReplay replay = new ParallelEventsReplay();
+ * replay.addHandlerGroup(volumesAnalyzer);
+ * replay.addHandlerGroup(travelTimeCalculator, legHistogram);
+ * replay.readFile("output_events.xml.gz");
+ * </pre>
+ *
+ * @see ParallelEventsManagerImpl for parallel events handling during the mobsim
+ */
+public final class ParallelEventsReplay {
+
+	private static final Logger log = Logger.getLogger(ParallelEventsReplay.class);
+
+	private static final List<Event> END_OF_EVENTS = Collections.unmodifiableList(new ArrayList<Event>());
+
+	private final int batchSize;
+	private final int queueCapacity;
+	private final List<EventsManager> groups = new ArrayList<>();
+
+	public ParallelEventsReplay() {
+		this(4096, 16);
+	}
+
+	/**
+	 * @param batchSize number of events passed to the handler groups at once
+	 * @param queueCapacity number of batches a handler group may lag behind the parser before the parser waits
+	 */
+	public ParallelEventsReplay(final int batchSize, final int queueCapacity) {
+		if (batchSize < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("batchSize and queueCapacity must be positive.");
+		}
+		this.batchSize = batchSize;
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Adds a new group of handlers which is processed by its own thread.
+	 *
+	 * @return the events manager of the group, to which further handlers may be added before the replay starts.
+	 */
+	public EventsManager addHandlerGroup(final EventHandler... handlers) {
+		EventsManager group = EventsUtils.createEventsManager();
+		for (EventHandler handler : handlers) {
+			group.addHandler(handler);
+		}
+		this.groups.add(group);
+		return group;
+	}
+
+	public void readFile(final String filename) {
+		run(events -> new MatsimEventsReader(events).readFile(filename));
+	}
+
+	/**
+	 * Runs the given reader, e.g. an events reader with custom event mappers, and passes all events
+	 * it produces to the handler groups. Returns when all groups have processed all events.
+	 */
+	public void run(final Consumer<EventsManager> reader) {
+		for (EventsManager group : this.groups) {
+			group.initProcessing();
+		}
+		GroupRunner[] runners = new GroupRunner[this.groups.size()];
+		Thread[] threads = new Thread[runners.length];
+		for (int i = 0; i < runners.length; i++) {
+			runners[i] = new GroupRunner(this.groups.get(i), this.queueCapacity);
+			threads[i] = new Thread(runners[i], "EventsReplay-" + i);
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+
+		BatchingEventsManager batcher = new BatchingEventsManager(runners, this.batchSize);
+		try {
+			reader.accept(batcher);
+			batcher.flush();
+		} finally {
+			for (GroupRunner runner : runners) {
+				runner.put(END_OF_EVENTS);
+			}
+			try {
+				for (Thread thread : threads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		for (int i = 0; i < runners.length; i++) {
+			if (runners[i].exception != null) {
+				throw new RuntimeException("Exception while processing events in handler group " + i + ".", runners[i].exception);
+			}
+		}
+		for (EventsManager group : this.groups) {
+			group.finishProcessing();
+		}
+		log.info(batcher.count + " events replayed to " + runners.length + " handler groups.");
+	}
+
+	/**
+	 * Feeds the events of one handler group. After an exception, the remaining batches are
+	 * still taken from the queue, so that the parsing thread is not blocked.
+	 */
+	private static final class GroupRunner implements Runnable {
+		private final EventsManager events;
+		private final BlockingQueue<List<Event>> queue;
+		private volatile Throwable exception = null;
+
+		GroupRunner(final EventsManager events, final int queueCapacity) {
+			this.events = events;
+			this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		}
+
+		void put(final List<Event> batch) {
+			try {
+				this.queue.put(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<Event> batch;
+				while ((batch = this.queue.take()) != END_OF_EVENTS) {
+					if (this.exception != null) {
+						continue;
+					}
+					try {
+						for (Event event : batch) {
+							this.events.processEvent(event);
+						}
+					} catch (RuntimeException | Error e) {
+						log.error("Exception while handling events.", e);
+						this.exception = e;
+					}
+				}
+			} catch (InterruptedException e) {
+				this.exception = e;
+			}
+		}
+	}
+
+	/**
+	 * Collects the events produced by the reader into batches. Handlers are added to the groups, not here.
+	 */
+	private static final class BatchingEventsManager implements EventsManager {
+		private final GroupRunner[] runners;
+		private final int batchSize;
+		private List<Event> batch;
+		private long count = 0;
+
+		BatchingEventsManager(final GroupRunner[] runners, final int batchSize) {
+			this.runners = runners;
+			this.batchSize = batchSize;
+			this.batch = new ArrayList<>(batchSize);
+		}
+
+		@Override
+		public void processEvent(final Event event) {
+			this.batch.add(event);
+			this.count++;
+			if (this.batch.size() >= this.batchSize) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (this.batch.isEmpty()) {
+				return;
+			}
+			// the same batch is shared by all groups, it is never modified after this point
+			List<Event> full = Collections.unmodifiableList(this.batch);
+			for (GroupRunner runner : this.runners) {
+				runner.put(full);
+			}
+			this.batch = new ArrayList<>(this.batchSize);
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException("Add handlers to one of the handler groups of ParallelEventsReplay.");
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException("Remove handlers from one of the handler groups of ParallelEventsReplay.");
+		}
+
+		@Override
+		public void resetHandlers(final int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+}
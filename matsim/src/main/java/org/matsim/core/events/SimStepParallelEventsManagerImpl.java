@@ -21,6 +21,7 @@
 package org.matsim.core.events;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
@@ -65,6 +66,10 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	private AtomicLong counter;
 	private AtomicReference<Throwable> hadException = new AtomicReference<>();
 
+	// for run time analysis; only set if a PerformanceMetrics instance is bound
+	@com.google.inject.Inject(optional = true)
+	private PerformanceMetrics performanceMetrics = null;
+
 	@Inject
 	SimStepParallelEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
 		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1);
@@ -200,6 +205,8 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		
 		delegate.finishProcessing();
 		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+
+		if (this.performanceMetrics != null) this.performanceMetrics.counter("events.processed").add(this.counter.get());
 		
 		/*
 		 * After the simulation Events are processed in
@@ -227,8 +234,15 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		try {
 			Gbl.assertNotNull( this.processedEventsChecker );
 			this.processedEventsChecker.setTime(time);
+			if (this.performanceMetrics != null) {
+				this.performanceMetrics.distribution("events.queueDepthAtSimStepEnd").record(this.runnables[0].eventsQueue.size());
+			}
+			long metricsStartTime = this.performanceMetrics != null ? System.nanoTime() : 0;
 			this.processEvent(new LastEventOfSimStep(time));
 			simStepEndBarrier.await();
+			if (this.performanceMetrics != null) {
+				this.performanceMetrics.distribution("events.simStepEndWait").recordSince(metricsStartTime);
+			}
 		} catch (InterruptedException | BrokenBarrierException e) {
 			throw new RuntimeException(e);
 		}
@@ -50,6 +50,7 @@ import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfoFactory;
+import org.matsim.vis.snapshotwriters.SnapshotDispatcher;
 import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
 import org.matsim.vis.snapshotwriters.SnapshotWriter;
 
@@ -63,7 +64,7 @@ public class SnapshotGenerator implements PersonDepartureEventHandler, PersonArr
 	private final HashMap<Id<Link>, EventLink> eventLinks;
 	private final ArrayList<EventLink> linkList;
 	private final HashMap<Id<Person>, EventAgent> eventAgents;
-	private final List<SnapshotWriter> snapshotWriters = new ArrayList<SnapshotWriter>();
+	private final SnapshotDispatcher dispatcher;
 	private final double capCorrectionFactor;
 	private final double storageCapFactor;
 	private final SnapshotStyle snapshotStyle;
@@ -83,6 +84,7 @@ public class SnapshotGenerator implements PersonDepartureEventHandler, PersonArr
 		this.capCorrectionFactor = config.getFlowCapFactor() / network.getCapacityPeriod();
 		this.storageCapFactor = config.getStorageCapFactor();
 		this.snapshotStyle = config.getSnapshotStyle();
+		this.dispatcher = new SnapshotDispatcher(config.getNumberOfThreads());
 		
 		if (config instanceof QSimConfigGroup  && ! Double.isNaN( ((QSimConfigGroup) config ).getLinkWidthForVis() )  ){
 			this.linkWidthCalculator.setLinkWidthForVis( ((QSimConfigGroup) config ).getLinkWidthForVis() );
@@ -95,11 +97,11 @@ public class SnapshotGenerator implements PersonDepartureEventHandler, PersonArr
 	}
 
 	public final void addSnapshotWriter(final SnapshotWriter writer) {
-		this.snapshotWriters.add(writer);
+		this.dispatcher.addSnapshotWriter(writer);
 	}
 
 	public final boolean removeSnapshotWriter(final SnapshotWriter writer) {
-		return this.snapshotWriters.remove(writer);
+		return this.dispatcher.removeSnapshotWriter(writer);
 	}
 
 	@Override
@@ -186,42 +188,40 @@ public class SnapshotGenerator implements PersonDepartureEventHandler, PersonArr
 
 	private void doSnapshot(final double time) {
 		if (time >= skipUntil) {
-			if (!this.snapshotWriters.isEmpty()) {
-				Collection<AgentSnapshotInfo> positions = getVehiclePositions(time);
-				for (SnapshotWriter writer : this.snapshotWriters) {
-					writer.beginSnapshot(time);
-					for (AgentSnapshotInfo position : positions) {
-						writer.addAgent(position);
-					}
-					writer.endSnapshot();
-				}
+			if (this.dispatcher.hasSnapshotWriters()) {
+				this.dispatcher.doSnapshot(time, this.linkList, getPositionCollector(time));
 			}
 		}
 	}
 
-	private Collection<AgentSnapshotInfo> getVehiclePositions(final double time) {
-		Collection<AgentSnapshotInfo> positions = new ArrayList<AgentSnapshotInfo>();
+	/**
+	 * Each link only touches the agents on it, so the dispatcher may handle the links in parallel.
+	 */
+	private SnapshotDispatcher.PositionCollector<EventLink> getPositionCollector(final double time) {
 		if (this.snapshotStyle == SnapshotStyle.queue) {
-			for (EventLink link : this.linkList) {
-				link.getVehiclePositionsQueue(positions, time, this.snapshotInfoFactory);
-			}
+			return new SnapshotDispatcher.PositionCollector<EventLink>() {
+				@Override
+				public void addPositions(EventLink link, Collection<AgentSnapshotInfo> positions) {
+					link.getVehiclePositionsQueue(positions, time, snapshotInfoFactory);
+				}
+			};
 		} else if (this.snapshotStyle == SnapshotStyle.equiDist) {
-			for (EventLink link : this.linkList) {
-				link.getVehiclePositionsEquil(positions, time, this.snapshotInfoFactory);
-			}
+			return new SnapshotDispatcher.PositionCollector<EventLink>() {
+				@Override
+				public void addPositions(EventLink link, Collection<AgentSnapshotInfo> positions) {
+					link.getVehiclePositionsEquil(positions, time, snapshotInfoFactory);
+				}
+			};
 		} else {
 			// log statement to clarify: why only two snapshot styles. Amit Mar'17
 			log.warn("Cannot generate snapshots offline (e.g., from events) for "+this.snapshotStyle
 					+ ". This snapshot style is supported during simulation only.");
 			throw new RuntimeException("The snapshotStyle \"" + this.snapshotStyle + "\" is not supported.");
 		}
-		return positions;
 	}
 
 	public final void finish() {
-		for (SnapshotWriter writer : this.snapshotWriters) {
-			writer.finish();
-		}
+		this.dispatcher.finish();
 	}
 
 	/**
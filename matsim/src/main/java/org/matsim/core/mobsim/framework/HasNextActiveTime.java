@@ -0,0 +1,42 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HasNextActiveTime.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.framework;
+
+/**
+ * Implemented by mobsim engines and sim step listeners that can tell when they will next have something to do.
+ * <p></p>
+ * If the mobsim is configured to skip idle time steps, it asks every engine and every before/after sim step
+ * listener for this time after each time step and jumps directly to the earliest one.  Components that do
+ * not implement this interface are assumed to need every single time step, so a single such component
+ * switches skipping off.
+ */
+public interface HasNextActiveTime {
+
+	/**
+	 * Called after the time step at <code>now</code> has been completely simulated.
+	 *
+	 * @return the earliest time at which this component needs a time step.  Any value not larger than
+	 * <code>now</code> plus the time step size means "the next time step"; {@link Double#POSITIVE_INFINITY}
+	 * means that nothing is scheduled.  The value does not need to be aligned with the time step grid.
+	 */
+	public double getNextActiveTime(double now);
+
+}
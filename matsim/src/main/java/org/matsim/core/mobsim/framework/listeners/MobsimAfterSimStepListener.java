@@ -25,6 +25,10 @@ import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
 /**
  * This interface can be implemented when a notification is needed after the
  * QueueSimulation has performed a simulation step.
+ * <p></p>
+ * If the mobsim skips idle time steps, a listener is called only for the time steps that are actually
+ * simulated, and only if it implements {@link org.matsim.core.mobsim.framework.HasNextActiveTime};
+ * a listener that does not implement it needs every time step and therefore keeps the mobsim from skipping.
  *
  * @author mrieser
  */
@@ -24,6 +24,8 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 /**
  *  Listeners of QueueSimulation should implement this if they want to be
  *  notified after QueueSimulation.beforeSimStep() was invoked.
+ *  <p></p>
+ *  The same rules as for {@link MobsimAfterSimStepListener} apply when the mobsim skips idle time steps.
  *
  * @author dgrether
  */
@@ -19,6 +19,7 @@
 
 package org.matsim.core.mobsim.jdeqsim;
 
+import java.util.Comparator;
 import java.util.PriorityQueue;
 
 /**
@@ -27,9 +28,20 @@ import java.util.PriorityQueue;
  * @author rashid_waraich
  */
 public class MessageQueue {
-	private PriorityQueue<Message> queue1 = new PriorityQueue<Message>();
+	private PriorityQueue<Message> queue1;
 	private int queueSize = 0;
 
+	public MessageQueue() {
+		this.queue1 = new PriorityQueue<Message>();
+	}
+
+	/**
+	 * Orders the messages by the given comparator instead of {@link Message#compareTo(Message)}.
+	 */
+	public MessageQueue(Comparator<? super Message> comparator) {
+		this.queue1 = new PriorityQueue<Message>(comparator);
+	}
+
 	/**
 	 * 
 	 * Putting a message into the queue
@@ -80,6 +92,21 @@ public class MessageQueue {
 		return m;
 	}
 
+	/**
+	 * 
+	 * get the first message in the queue without removing it, or null if there is none
+	 *
+	 * @return
+	 */
+	public Message peekNextMessage() {
+		Message m;
+		// discard dead messages, they have already been subtracted from the queue size
+		while ((m = queue1.peek()) != null && !m.isAlive()) {
+			queue1.poll();
+		}
+		return m;
+	}
+
 	public boolean isEmpty() {
 		return queue1.size() == 0;
 	}
@@ -0,0 +1,647 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelJDEQSimulation.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.PlansConfigGroup;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.jdeqsim.util.Timer;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.TimeDependentNetwork;
+import org.matsim.core.population.routes.NetworkRoute;
+
+/**
+ * A parallel version of the {@link JDEQSimulation}. The roads are split into stripes of the network,
+ * each stripe (partition) is simulated by its own thread with its own message queue.
+ * <p></p>
+ * The partitions are synchronized conservatively: all partitions process the messages of the time
+ * window [T, T + lookahead) in parallel, T being the time of the earliest pending message. Time windows
+ * without messages are thus skipped, which pays off for sparse traffic. Each road has a message delay,
+ * the minimum of its free flow travel time, its gap travel time and half of its inverse flow capacity.
+ * Every message a road exchanges with another partition lies at least one message delay in the future:
+ * <ul>
+ * <li>The end of a road is handled by the partition of the road to be entered next.</li>
+ * <li>The link leave event is created by the partition of the road granting the entry, the road
+ * which was left releases the space of the vehicle one message delay later.</li>
+ * <li>Legs not using the network (teleported legs, empty car routes) take at least the message delay
+ * of the arrival road.</li>
+ * </ul>
+ * The lookahead is the minimum message delay of the roads from which the selected plans lead to a road
+ * of another partition. Links with a high flow capacity or a short length thus only shorten the time
+ * windows if they lie on a partition boundary.
+ * <p></p>
+ * Messages with the same time and priority are ordered by vehicle. Because of this, the simulated
+ * traffic does not depend on the number of threads. It differs slightly from the one of the
+ * {@link JDEQSimulation} due to the points listed above. The events are passed to the events manager
+ * from one thread, ordered by time.
+ *
+ * @see JDEQSimConfigGroup#getNumberOfThreads()
+ */
+public class ParallelJDEQSimulation implements Mobsim {
+
+	private final static Logger log = Logger.getLogger(ParallelJDEQSimulation.class);
+
+	/**
+	 * as {@link Message#compareTo(Message)}, but independent of the insertion order
+	 */
+	private static final Comparator<Message> MESSAGE_ORDER = new Comparator<Message>() {
+		@Override
+		public int compare(Message m1, Message m2) {
+			int result = Double.compare(m1.getMessageArrivalTime(), m2.getMessageArrivalTime());
+			if (result != 0) {
+				return result;
+			}
+			result = Integer.compare(m2.getPriority(), m1.getPriority());
+			if (result != 0) {
+				return result;
+			}
+			return Integer.compare(getVehicleIndex(m1), getVehicleIndex(m2));
+		}
+	};
+
+	private final JDEQSimConfigGroup config;
+	private final Scenario scenario;
+	private final EventsManager events;
+	private final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation;
+
+	private double windowLength;
+	private Partition[] partitions;
+	private boolean initializing;
+	// the following are only modified by the main thread while all partitions wait
+	private double windowEnd;
+	private int parity = 0;
+	private volatile boolean finished = false;
+
+	@Inject
+	public ParallelJDEQSimulation(final JDEQSimConfigGroup config, final Scenario scenario, final EventsManager events) {
+		this.config = config;
+		this.scenario = scenario;
+		this.events = events;
+		this.activityDurationInterpretation = this.scenario.getConfig().plans().getActivityDurationInterpretation();
+	}
+
+	@Override
+	public void run() {
+		events.initProcessing();
+		Timer t = new Timer();
+		t.startTimer();
+
+		Road.setConfig(config);
+		Message.setEventsManager(new PartitionEventsBuffer());
+		// the message pools are not thread safe, they must stay empty
+		MessageFactory.GC_ALL_MESSAGES();
+		try {
+			simulate();
+		} finally {
+			Message.setEventsManager(events);
+		}
+
+		t.endTimer();
+		log.info("Time needed for one iteration (only ParallelJDEQSimulation part): " + t.getMeasuredTime() + "[ms]");
+		events.finishProcessing();
+	}
+
+	private void simulate() {
+		Network network = this.scenario.getNetwork();
+		Map<Id<Link>, Double> messageDelays = computeMessageDelays(network);
+
+		// stripes along the x axis, to keep most vehicles moving within one partition
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		links.sort(Comparator.comparingDouble((Link link) -> link.getCoord().getX()).thenComparing(link -> link.getId().toString()));
+		int nofPartitions = Math.max(1, Math.min(config.getNumberOfThreads(), links.size()));
+		createPartitions(nofPartitions, links, messageDelays);
+
+		double lookahead = computeLookahead();
+		if (!(lookahead > 0)) {
+			log.warn("Links with zero travel time lie on a partition boundary, the simulation runs in one thread.");
+			nofPartitions = 1;
+			createPartitions(nofPartitions, links, messageDelays);
+			lookahead = Double.POSITIVE_INFINITY;
+		}
+		// without messages between partitions, the window length only determines how often events are passed on
+		this.windowLength = Double.isInfinite(lookahead) ? 3600 : lookahead;
+		log.info("Simulating with " + nofPartitions + " partitions, lookahead: " + lookahead + "[s]");
+
+		// the vehicles schedule their first message in the constructor, before their index is known
+		RoutingScheduler routingScheduler = new RoutingScheduler();
+		this.initializing = true;
+		int index = 0;
+		for (Person person : this.scenario.getPopulation().getPersons().values()) {
+			new PartitionedVehicle(routingScheduler, person, this.activityDurationInterpretation, index++);
+		}
+		for (Message m : routingScheduler.pending) {
+			((PartitionScheduler) m.getReceivingUnit().getScheduler()).schedule(m);
+		}
+		routingScheduler.pending.clear();
+		this.initializing = false;
+
+		CyclicBarrier barrier = new CyclicBarrier(nofPartitions + 1);
+		for (Partition partition : this.partitions) {
+			PartitionThread thread = new PartitionThread(partition, barrier);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		long simulationStartTime = System.currentTimeMillis();
+		double hourlyLogTime = 3600;
+		try {
+			while (true) {
+				double windowStart = Double.POSITIVE_INFINITY;
+				for (Partition partition : this.partitions) {
+					windowStart = Math.min(windowStart, partition.getNextMessageTime());
+				}
+				if (windowStart >= config.getSimulationEndTime()) {
+					break;
+				}
+				this.windowEnd = Math.min(windowStart + this.windowLength, config.getSimulationEndTime());
+				barrier.await(); // start of the time window
+				barrier.await(); // all partitions are done
+				this.parity = 1 - this.parity;
+
+				for (Partition partition : this.partitions) {
+					if (partition.exception != null) {
+						throw new RuntimeException("Exception in partition " + partition.index + ".", partition.exception);
+					}
+				}
+				flushEvents();
+
+				if (windowStart > hourlyLogTime) {
+					hourlyLogTime = windowStart + 3600;
+					log.info("Simulation at " + windowStart / 3600 + "[h]; s/r:" + windowStart / (System.currentTimeMillis() - simulationStartTime) * 1000);
+				}
+			}
+		} catch (InterruptedException | BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		} finally {
+			// all partitions wait for the next time window at this point
+			this.finished = true;
+			try {
+				barrier.await();
+			} catch (InterruptedException | BrokenBarrierException e) {
+				barrier.reset();
+			}
+		}
+	}
+
+	/**
+	 * Passes the events of the last time window to the events manager, ordered by time. The events of
+	 * one partition keep their order.
+	 */
+	private void flushEvents() {
+		int[] positions = new int[this.partitions.length];
+		while (true) {
+			Partition next = null;
+			Event nextEvent = null;
+			for (Partition partition : this.partitions) {
+				if (positions[partition.index] < partition.events.size()) {
+					Event event = partition.events.get(positions[partition.index]);
+					if (nextEvent == null || event.getTime() < nextEvent.getTime()) {
+						next = partition;
+						nextEvent = event;
+					}
+				}
+			}
+			if (next == null) {
+				break;
+			}
+			positions[next.index]++;
+			this.events.processEvent(nextEvent);
+		}
+		for (Partition partition : this.partitions) {
+			partition.events.clear();
+		}
+	}
+
+	private void createPartitions(final int nofPartitions, final List<Link> links, final Map<Id<Link>, Double> messageDelays) {
+		this.partitions = new Partition[nofPartitions];
+		for (int i = 0; i < nofPartitions; i++) {
+			this.partitions[i] = new Partition(i, nofPartitions);
+		}
+
+		Road.setAllRoads(new HashMap<Id<Link>, Road>());
+		for (int i = 0; i < links.size(); i++) {
+			Partition partition = this.partitions[(int) ((long) i * nofPartitions / links.size())];
+			Link link = links.get(i);
+			Road.getAllRoads().put(link.getId(), new PartitionRoad(partition, link, messageDelays.get(link.getId())));
+		}
+	}
+
+	/**
+	 * The lookahead is the minimum delay of the messages between the partitions. A vehicle moving from one road to
+	 * the next causes messages between the two roads in both directions, delayed by the message delay of the first
+	 * road. A leg not using the network ends with a message to the arrival road, delayed by its message delay.
+	 */
+	private double computeLookahead() {
+		double minimum = Double.POSITIVE_INFINITY;
+		for (Person person : this.scenario.getPopulation().getPersons().values()) {
+			Activity previousAct = null;
+			Leg leg = null;
+			for (PlanElement pe : person.getSelectedPlan().getPlanElements()) {
+				if (pe instanceof Leg) {
+					leg = (Leg) pe;
+					continue;
+				}
+				Activity act = (Activity) pe;
+				if (leg != null) {
+					PartitionRoad departureRoad = (PartitionRoad) Road.getRoad(previousAct.getLinkId());
+					PartitionRoad arrivalRoad = (PartitionRoad) Road.getRoad(act.getLinkId());
+					if (leg.getMode().equals(TransportMode.car) && leg.getRoute() instanceof NetworkRoute
+							&& !((NetworkRoute) leg.getRoute()).getLinkIds().isEmpty()) {
+						PartitionRoad road = departureRoad;
+						for (Id<Link> linkId : ((NetworkRoute) leg.getRoute()).getLinkIds()) {
+							PartitionRoad nextRoad = (PartitionRoad) Road.getRoad(linkId);
+							minimum = Math.min(minimum, getBoundaryDelay(road, nextRoad, road.messageDelay));
+							road = nextRoad;
+						}
+						minimum = Math.min(minimum, getBoundaryDelay(road, arrivalRoad, road.messageDelay));
+					} else {
+						minimum = Math.min(minimum, getBoundaryDelay(departureRoad, arrivalRoad, arrivalRoad.messageDelay));
+					}
+				}
+				previousAct = act;
+				leg = null;
+			}
+		}
+		return minimum;
+	}
+
+	private static double getBoundaryDelay(final PartitionRoad road, final PartitionRoad nextRoad, final double delay) {
+		return road.partition == nextRoad.partition ? Double.POSITIVE_INFINITY : delay;
+	}
+
+	private Map<Id<Link>, Double> computeMessageDelays(final Network network) {
+		Map<Id<Link>, Double> maxFreespeeds = new HashMap<>();
+		if (network instanceof TimeDependentNetwork) {
+			Collection<NetworkChangeEvent> changeEvents = ((TimeDependentNetwork) network).getNetworkChangeEvents();
+			if (changeEvents != null) {
+				for (NetworkChangeEvent changeEvent : changeEvents) {
+					for (Link link : changeEvent.getLinks()) {
+						double freespeed = link.getFreespeed(changeEvent.getStartTime());
+						Double maxFreespeed = maxFreespeeds.get(link.getId());
+						if (maxFreespeed == null || freespeed > maxFreespeed) {
+							maxFreespeeds.put(link.getId(), freespeed);
+						}
+					}
+				}
+			}
+		}
+
+		Map<Id<Link>, Double> messageDelays = new HashMap<>();
+		for (Link link : network.getLinks().values()) {
+			double freespeed = link.getFreespeed();
+			Double maxFreespeed = maxFreespeeds.get(link.getId());
+			if (maxFreespeed != null) {
+				freespeed = Math.max(freespeed, maxFreespeed);
+			}
+			double delay = link.getLength() / freespeed;
+			// see Road.leaveRoad(): a road releases the space one message delay late, then lets the gap travel back
+			// and tells the next vehicle about its end of the road
+			delay = Math.min(delay, link.getLength() / config.getGapTravelSpeed());
+			delay = Math.min(delay, 0.5 / (link.getFlowCapacityPerSec() * config.getFlowCapacityFactor()));
+			messageDelays.put(link.getId(), delay);
+		}
+		return messageDelays;
+	}
+
+	/**
+	 * @return the length of the time windows, i.e. the lookahead if several partitions exchange messages
+	 */
+	double getWindowLength() {
+		return this.windowLength;
+	}
+
+	private static int getVehicleIndex(final Message m) {
+		if (m instanceof EventMessage && ((EventMessage) m).vehicle instanceof PartitionedVehicle) {
+			return ((PartitionedVehicle) ((EventMessage) m).vehicle).index;
+		}
+		return -1;
+	}
+
+	private static Partition getCurrentPartition() {
+		return ((PartitionThread) Thread.currentThread()).partition;
+	}
+
+	private final class Partition {
+		private final int index;
+		private final PartitionScheduler scheduler = new PartitionScheduler(this);
+		private final List<Event> events = new ArrayList<>();
+		/**
+		 * messages to other partitions, by parity of the time window and receiving partition
+		 */
+		private final List<List<List<Message>>> outboxes = new ArrayList<>(2);
+		private double minSentTime = Double.POSITIVE_INFINITY;
+		private volatile Throwable exception = null;
+
+		Partition(final int index, final int nofPartitions) {
+			this.index = index;
+			for (int i = 0; i < 2; i++) {
+				List<List<Message>> outbox = new ArrayList<>(nofPartitions);
+				for (int j = 0; j < nofPartitions; j++) {
+					outbox.add(new ArrayList<Message>());
+				}
+				this.outboxes.add(outbox);
+			}
+		}
+
+		void send(final Message m, final Partition target) {
+			if (m.getMessageArrivalTime() < windowEnd) {
+				throw new IllegalStateException("A message to another partition lies within the current time window, the lookahead is violated: "
+						+ m.getClass().getSimpleName() + " at " + m.getMessageArrivalTime() + ", window end " + windowEnd);
+			}
+			this.outboxes.get(parity).get(target.index).add(m);
+			this.minSentTime = Math.min(this.minSentTime, m.getMessageArrivalTime());
+		}
+
+		void processWindow() {
+			// messages sent to this partition during the previous time window
+			for (Partition sender : partitions) {
+				List<Message> inbox = sender.outboxes.get(1 - parity).get(this.index);
+				for (Message m : inbox) {
+					this.scheduler.schedule(m);
+				}
+				inbox.clear();
+			}
+			this.minSentTime = Double.POSITIVE_INFINITY;
+			this.scheduler.processUntil(windowEnd);
+		}
+
+		double getNextMessageTime() {
+			return Math.min(this.scheduler.getNextMessageTime(), this.minSentTime);
+		}
+	}
+
+	private static final class PartitionRoad extends Road {
+		private final Partition partition;
+		private final double messageDelay;
+
+		PartitionRoad(final Partition partition, final Link link, final double messageDelay) {
+			super(partition.scheduler, link);
+			this.partition = partition;
+			this.messageDelay = messageDelay;
+		}
+	}
+
+	private static final class PartitionScheduler extends Scheduler {
+		private final Partition partition;
+		private double simTime = 0;
+
+		PartitionScheduler(final Partition partition) {
+			super(new MessageQueue(MESSAGE_ORDER));
+			this.partition = partition;
+		}
+
+		void processUntil(final double windowEnd) {
+			Message m;
+			while ((m = this.queue.peekNextMessage()) != null && m.getMessageArrivalTime() < windowEnd) {
+				this.queue.getNextMessage();
+				this.simTime = m.getMessageArrivalTime();
+				m.processEvent();
+				m.handleMessage();
+			}
+		}
+
+		double getNextMessageTime() {
+			Message m = this.queue.peekNextMessage();
+			return m == null ? Double.POSITIVE_INFINITY : m.getMessageArrivalTime();
+		}
+
+		@Override
+		public double getSimTime() {
+			return this.simTime;
+		}
+
+		@Override
+		public void startSimulation() {
+			throw new UnsupportedOperationException("The partitions are run by the ParallelJDEQSimulation.");
+		}
+	}
+
+	/**
+	 * The scheduler of the vehicles, passes each message to the partition of the receiving road.
+	 */
+	private final class RoutingScheduler extends Scheduler {
+		private final List<Message> pending = new ArrayList<>();
+
+		RoutingScheduler() {
+			super(null);
+		}
+
+		@Override
+		public void schedule(final Message m) {
+			if (initializing) {
+				this.pending.add(m);
+				return;
+			}
+			Partition target = ((PartitionScheduler) m.getReceivingUnit().getScheduler()).partition;
+			Partition current = getCurrentPartition();
+			if (target == current) {
+				target.scheduler.schedule(m);
+			} else {
+				current.send(m, target);
+			}
+		}
+
+		@Override
+		public void unschedule(final Message m) {
+			m.getReceivingUnit().getScheduler().unschedule(m);
+		}
+
+		@Override
+		public void startSimulation() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private final class PartitionedVehicle extends Vehicle {
+		private final int index;
+
+		PartitionedVehicle(final Scheduler scheduler, final Person ownerPerson,
+				final PlansConfigGroup.ActivityDurationInterpretation activityDurationInterpretation, final int index) {
+			super(scheduler, ownerPerson, activityDurationInterpretation);
+			this.index = index;
+		}
+
+		@Override
+		public void scheduleEndRoadMessage(double scheduleTime, Road road) {
+			// the end of the road is handled by the road to be entered next
+			Road nextRoad;
+			if (isCurrentLegFinished()) {
+				Activity nextAct = (Activity) getOwnerPerson().getSelectedPlan().getPlanElements().get(getLegIndex() + 1);
+				nextRoad = Road.getRoad(nextAct.getLinkId());
+			} else {
+				nextRoad = Road.getRoad(getCurrentLinkRoute()[getLinkIndex() + 1]);
+			}
+			sendMessage(MessageFactory.getEndRoadMessage(nextRoad.getScheduler(), this), nextRoad, scheduleTime);
+		}
+
+		@Override
+		public void scheduleLeaveRoadMessage(double scheduleTime, Road road) {
+			// created by the road granting the entry, the road which is left is informed later
+			PartitionScheduler scheduler = getCurrentPartition().scheduler;
+			LinkLeaveMessage m = new LinkLeaveMessage(scheduler, this);
+			m.setSendingUnit(this);
+			m.setReceivingUnit(road);
+			m.setMessageArrivalTime(scheduleTime);
+			scheduler.schedule(m);
+		}
+
+		@Override
+		public void scheduleEndLegMessage(double scheduleTime, Road road) {
+			if (getLinkIndex() == -1) {
+				// the leg did not use the network, the arrival may be on a road of another partition
+				scheduleTime = Math.max(scheduleTime, getCurrentPartition().scheduler.getSimTime() + ((PartitionRoad) road).messageDelay);
+			}
+			super.scheduleEndLegMessage(scheduleTime, road);
+		}
+	}
+
+	/**
+	 * Creates the link leave event and tells the road which was left, one message delay of that road later.
+	 */
+	private final class LinkLeaveMessage extends LeaveRoadMessage {
+
+		LinkLeaveMessage(final Scheduler scheduler, final Vehicle vehicle) {
+			super(scheduler, vehicle);
+		}
+
+		@Override
+		public void handleMessage() {
+			PartitionRoad road = (PartitionRoad) getReceivingUnit();
+			this.vehicle.sendMessage(new VacateRoadMessage(road.getScheduler(), this.vehicle, getMessageArrivalTime()), road,
+					getMessageArrivalTime() + road.messageDelay);
+		}
+	}
+
+	private static final class VacateRoadMessage extends EventMessage {
+		private final double leaveTime;
+
+		VacateRoadMessage(final Scheduler scheduler, final Vehicle vehicle, final double leaveTime) {
+			super(scheduler, vehicle);
+			this.leaveTime = leaveTime;
+			this.priority = JDEQSimConfigGroup.PRIORITY_LEAVE_ROAD_MESSAGE;
+		}
+
+		@Override
+		public void handleMessage() {
+			((Road) getReceivingUnit()).leaveRoad(this.vehicle, this.leaveTime);
+		}
+
+		@Override
+		public void processEvent() {
+			// the link leave event has already been created by the LinkLeaveMessage
+		}
+	}
+
+	private final class PartitionThread extends Thread {
+		private final Partition partition;
+		private final CyclicBarrier barrier;
+
+		PartitionThread(final Partition partition, final CyclicBarrier barrier) {
+			super("ParallelJDEQSim-" + partition.index);
+			this.partition = partition;
+			this.barrier = barrier;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					this.barrier.await();
+					if (finished) {
+						return;
+					}
+					if (this.partition.exception == null) {
+						try {
+							this.partition.processWindow();
+						} catch (RuntimeException | Error e) {
+							log.error("Exception while simulating partition " + this.partition.index + ".", e);
+							this.partition.exception = e;
+						}
+					}
+					this.barrier.await();
+				}
+			} catch (InterruptedException | BrokenBarrierException e) {
+				// the simulation was aborted
+			}
+		}
+	}
+
+	/**
+	 * Collects the events of the partition whose thread creates them.
+	 */
+	private static final class PartitionEventsBuffer implements EventsManager {
+
+		@Override
+		public void processEvent(final Event event) {
+			getCurrentPartition().events.add(event);
+		}
+
+		@Override
+		public void addHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void removeHandler(final EventHandler handler) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void resetHandlers(final int iteration) {
+		}
+
+		@Override
+		public void initProcessing() {
+		}
+
+		@Override
+		public void afterSimStep(final double time) {
+		}
+
+		@Override
+		public void finishProcessing() {
+		}
+	}
+
+}
@@ -32,6 +32,11 @@ import org.matsim.core.utils.misc.ClassUtils;
 
 import javax.swing.event.EventListenerList;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 class MobsimListenerManager implements MatsimManager {
 
 	private final static Logger log = Logger.getLogger(MobsimListenerManager.class);
@@ -64,6 +69,16 @@ class MobsimListenerManager implements MatsimManager {
 		}
 	}
 
+	/**
+	 * @return all listeners that are notified before or after every sim step, each listener only once
+	 */
+	public Collection<MobsimListener> getSimStepListeners() {
+		Set<MobsimListener> listeners = new LinkedHashSet<>();
+		listeners.addAll(Arrays.asList(this.listenerList.getListeners(MobsimBeforeSimStepListener.class)));
+		listeners.addAll(Arrays.asList(this.listenerList.getListeners(MobsimAfterSimStepListener.class)));
+		return listeners;
+	}
+
 	/**
 	 * Creates the event and notifies all listeners
 	 */
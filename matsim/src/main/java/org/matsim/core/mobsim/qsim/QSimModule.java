@@ -15,6 +15,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.DefaultQNetworkFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QLanesNetworkFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEnginePlugin;
 import org.matsim.core.mobsim.qsim.qnetsimengine.QNetworkFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.SketchIterationsQNetworkFactoryProvider;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
@@ -36,7 +37,11 @@ public class QSimModule extends AbstractModule {
 				case queue:
 				case withHoles:
 				case kinematicWaves:
-					bind(QNetworkFactory.class).to( DefaultQNetworkFactory.class ) ;
+					if ( config.qsim().getNumberOfSketchIterations() > 0 ) {
+						bind(QNetworkFactory.class).toProvider( SketchIterationsQNetworkFactoryProvider.class ) ;
+					} else {
+						bind(QNetworkFactory.class).to( DefaultQNetworkFactory.class ) ;
+					}
 					break;
 				default:
 					throw new RuntimeException("not implemented") ;
@@ -174,6 +174,10 @@ public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent
 		return transitAgentDelegate.getDesiredAccessStopId();
 	}
 	@Override
+	public final Id<TransitLine> getDesiredLineId() {
+		return transitAgentDelegate.getDesiredLineId();
+	}
+	@Override
 	public final Id<TransitStopFacility> getDesiredDestinationStopId() {
 		return transitAgentDelegate.getDesiredDestinationStopId();
 	}
@@ -103,6 +103,15 @@ public final class TransitAgentImpl implements PTPassengerAgent {
 		ExperimentalTransitRoute route = (ExperimentalTransitRoute) basicAgentDelegate.getCurrentLeg().getRoute();
 		return route.getEgressStopId();
 	}
+
+	@Override
+	public final Id<TransitLine> getDesiredLineId() {
+		Leg leg = basicAgentDelegate.getCurrentLeg();
+		if (leg.getRoute() instanceof ExperimentalTransitRoute) {
+			return ((ExperimentalTransitRoute) leg.getRoute()).getLineId();
+		}
+		return null;
+	}
 	@Override
 	public Id<Link> getCurrentLinkId() {
 		return basicAgentDelegate.getCurrentLinkId() ;
@@ -54,7 +54,9 @@ public class NetworkChangeEventsEngine implements MobsimEngine {
 
 	@Override
 	public void onPrepareSim() {
-		Collection<NetworkChangeEvent> changeEvents = NetworkUtils.getNetworkChangeEvents(((Network)this.mobsim.getScenario().getNetwork()));
+		Network network = this.mobsim.getScenario().getNetwork();
+		NetworkUtils.precomputeTimeVariantAttributes(network, this.mobsim.getScenario().getConfig().qsim().getNumberOfThreads());
+		Collection<NetworkChangeEvent> changeEvents = NetworkUtils.getNetworkChangeEvents(network);
 		if ((changeEvents != null) && (changeEvents.size() > 0)) {
 			this.networkChangeEventsQueue = new PriorityQueue<>(changeEvents.size(), new NetworkChangeEvent.StartTimeComparator());
 			this.networkChangeEventsQueue.addAll(changeEvents);
@@ -2,6 +2,8 @@ package org.matsim.core.mobsim.qsim.changeeventsengine;
 
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.mobsim.framework.HasNextActiveTime;
 import org.matsim.core.mobsim.jdeqsim.Message;
 import org.matsim.core.mobsim.jdeqsim.MessageQueue;
 import org.matsim.core.mobsim.qsim.InternalInterface;
@@ -13,23 +15,44 @@ import org.matsim.core.network.NetworkUtils;
 
 import javax.inject.Inject;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
-class NewNetworkChangeEventsEngine implements MobsimEngine {
+class NewNetworkChangeEventsEngine implements MobsimEngine, HasNextActiveTime {
 
 	private final MessageQueue messageQueue;
 	private final Network network;
+	private final int numberOfThreads;
 	private InternalInterface internalInterface;
 
 	@Inject
-	NewNetworkChangeEventsEngine(Network network, MessageQueue messageQueue) {
+	NewNetworkChangeEventsEngine(Network network, MessageQueue messageQueue, Config config) {
 		this.network = network;
 		this.messageQueue = messageQueue;
+		this.numberOfThreads = config.qsim().getNumberOfThreads();
 	}
 
 	@Override
 	public void onPrepareSim() {
+		// compile the time-dependent attributes of the links now, not when they are first read during the simulation:
+		NetworkUtils.precomputeTimeVariantAttributes(network, numberOfThreads);
+
+		// a link reads all its attributes when it is recalculated, so one message per point in time is enough, and every
+		// link needs to be recalculated only once then:
 		Collection<NetworkChangeEvent> changeEvents = NetworkUtils.getNetworkChangeEvents(((Network) network));
-		for (final NetworkChangeEvent changeEvent : changeEvents) {
+		Map<Double, Set<Link>> linksByTime = new TreeMap<>();
+		for (NetworkChangeEvent changeEvent : changeEvents) {
+			Set<Link> links = linksByTime.get(changeEvent.getStartTime());
+			if (links == null) {
+				links = new LinkedHashSet<>();
+				linksByTime.put(changeEvent.getStartTime(), links);
+			}
+			links.addAll(changeEvent.getLinks());
+		}
+		for (Map.Entry<Double, Set<Link>> entry : linksByTime.entrySet()) {
+			final Set<Link> links = entry.getValue();
 			Message m = new Message() {
 				@Override
 				public void processEvent() {
@@ -38,7 +61,7 @@ class NewNetworkChangeEventsEngine implements MobsimEngine {
 
 				@Override
 				public void handleMessage() {
-					for (Link link : changeEvent.getLinks()) {
+					for (Link link : links) {
 						final NetsimLink netsimLink = internalInterface.getMobsim().getNetsimNetwork().getNetsimLink(link.getId());
 						if ( netsimLink instanceof TimeVariantLink ) {
 							final double now = internalInterface.getMobsim().getSimTimer().getTimeOfDay();
@@ -49,7 +72,7 @@ class NewNetworkChangeEventsEngine implements MobsimEngine {
 					}
 				}
 			};
-			m.setMessageArrivalTime(changeEvent.getStartTime());
+			m.setMessageArrivalTime(entry.getKey());
 			messageQueue.putMessage(m);
 		}
 	}
@@ -64,6 +87,12 @@ class NewNetworkChangeEventsEngine implements MobsimEngine {
 		this.internalInterface = internalInterface;
 	}
 
+	@Override
+	public double getNextActiveTime(double now) {
+		// the change events are handled through the message queue
+		return Double.POSITIVE_INFINITY;
+	}
+
 	@Override
 	public void doSimStep(double time) {
 
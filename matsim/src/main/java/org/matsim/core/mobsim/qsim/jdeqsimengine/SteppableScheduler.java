@@ -41,6 +41,14 @@ public class SteppableScheduler extends Scheduler implements Steppable {
         finished = true; // queue has run dry.
     }
 
+    /**
+     * @return the arrival time of the next message that will be handled, or infinity if there is none.
+     */
+    public double getNextMessageArrivalTime() {
+        Message next = lookahead != null ? lookahead : queue.peekNextMessage();
+        return next == null ? Double.POSITIVE_INFINITY : next.getMessageArrivalTime();
+    }
+
     public boolean isFinished() {
         return finished;
     }
@@ -1,12 +1,13 @@
 package org.matsim.core.mobsim.qsim.messagequeueengine;
 
+import org.matsim.core.mobsim.framework.HasNextActiveTime;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.listeners.MobsimBeforeSimStepListener;
 import org.matsim.core.mobsim.qsim.jdeqsimengine.SteppableScheduler;
 
 import javax.inject.Inject;
 
-class MessageQueueEngine implements MobsimBeforeSimStepListener {
+class MessageQueueEngine implements MobsimBeforeSimStepListener, HasNextActiveTime {
 
 	private final SteppableScheduler scheduler;
 
@@ -20,4 +21,9 @@ class MessageQueueEngine implements MobsimBeforeSimStepListener {
 		scheduler.doSimStep(e.getSimulationTime());
 	}
 
+	@Override
+	public double getNextActiveTime(double now) {
+		return scheduler.getNextMessageArrivalTime();
+	}
+
 }
@@ -67,6 +67,23 @@ public interface PTPassengerAgent extends PassengerAgent {
 	
 	public Id<TransitStopFacility> getDesiredDestinationStopId();
 
+	/**
+	 * Asks a passenger which starts to wait at a stop for the transit line it wants to enter. If a line is
+	 * returned, {@link #getEnterTransitRoute(TransitLine, TransitRoute, List, TransitVehicle)} must return
+	 * <code>false</code> for all other lines, since the passenger is then only asked when a vehicle of this
+	 * line arrives.
+	 * <p></p>
+	 * The line is read once, when the passenger starts to wait (see
+	 * {@link TransitStopAgentTracker#addAgentToStop(double, PTPassengerAgent, Id)}). Code that changes it
+	 * while the passenger is waiting must remove the passenger from the stop and add it again; otherwise the
+	 * passenger is never offered vehicles of the new line.
+	 *
+	 * @return The transit line id, or <code>null</code> if the passenger may enter different lines.
+	 */
+	public default Id<TransitLine> getDesiredLineId() {
+		return null;
+	}
+
 	/**
 	 * @return a statistical weight, how many "real" agents this agent represents, e.g. "5.0" if you simulate a 20%-sample.
 	 */
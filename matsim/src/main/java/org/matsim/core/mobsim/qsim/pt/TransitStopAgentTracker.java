@@ -20,19 +20,30 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
+ * Keeps track of the agents waiting at transit stops.
+ * <p></p>
+ * At every stop, the agents are additionally grouped by the line they want to enter (see
+ * {@link PTPassengerAgent#getDesiredLineId()}), so that a vehicle arriving at a busy stop
+ * only needs to look at the agents waiting for its line, and not at all agents waiting
+ * at the stop.
+ *
  * @author mrieser
  */
 public class TransitStopAgentTracker {
@@ -40,7 +51,7 @@ public class TransitStopAgentTracker {
 	private final static Logger log = Logger.getLogger(TransitStopAgentTracker.class);
 	
 	private final EventsManager events;
-	private final Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStops = new ConcurrentHashMap<>();
+	private final Map<Id<TransitStopFacility>, AgentsAtStop> agentsAtStops = new ConcurrentHashMap<>();
 
 	public TransitStopAgentTracker(final EventsManager events) {
 		this.events = events;
@@ -50,12 +61,15 @@ public class TransitStopAgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stop must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		AgentsAtStop agents = this.agentsAtStops.get(stopId);
 		if (agents == null) {
-			agents = new CopyOnWriteArrayList<>();// TODO check again. this might turn out to be slow, but we likely need something thread safe here. marcel/oct2014 
-			this.agentsAtStops.put(stopId, agents);
+			AgentsAtStop newAgents = new AgentsAtStop();
+			agents = this.agentsAtStops.putIfAbsent(stopId, newAgents);
+			if (agents == null) {
+				agents = newAgents;
+			}
 		}
-		if ( !agents.add(agent) ) {
+		if ( !agents.add(agent, agent.getDesiredLineId()) ) {
 			log.error("did NOT add agent " + agent.getId() + " since it was already there.");
 		}
 		Id<TransitStopFacility> destinationStopId = agent.getDesiredDestinationStopId();
@@ -66,7 +80,7 @@ public class TransitStopAgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stopId must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		AgentsAtStop agents = this.agentsAtStops.get(stopId);
 		if (agents != null) {
 			if (!agents.remove(agent)) {
 				log.error("Agent " + agent.getId() + " could not be removed from waiting at stop " + stopId);
@@ -76,15 +90,122 @@ public class TransitStopAgentTracker {
 		}
 	}
 
+	/**
+	 * @return all agents waiting at the stop, in the order they arrived.
+	 */
 	public List<PTPassengerAgent> getAgentsAtStop(final Id<TransitStopFacility> stopId) {
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		AgentsAtStop agents = this.agentsAtStops.get(stopId);
+		if (agents == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(agents.getAgents());
+	}
+
+	/**
+	 * @return the agents waiting at the stop which may want to enter the given line, in the order
+	 * they arrived: those waiting for this line, and those which did not specify a line.
+	 */
+	public List<PTPassengerAgent> getAgentsAtStop(final Id<TransitStopFacility> stopId, final Id<TransitLine> lineId) {
+		if (lineId == null) {
+			throw new NullPointerException("lineId must not be null.");
+		}
+		AgentsAtStop agents = this.agentsAtStops.get(stopId);
 		if (agents == null) {
 			return Collections.emptyList();
 		}
-		return Collections.unmodifiableList(agents);
+		return Collections.unmodifiableList(agents.getAgents(lineId));
 	}
 
+	/**
+	 * @return a snapshot of the agents waiting at all stops, in the order they arrived.
+	 */
 	public Map<Id<TransitStopFacility>, List<PTPassengerAgent>> getAgentsAtStop() {
-		return this.agentsAtStops;
+		Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStops = new HashMap<>();
+		for (Map.Entry<Id<TransitStopFacility>, AgentsAtStop> e : this.agentsAtStops.entrySet()) {
+			List<PTPassengerAgent> agents = e.getValue().getAgents();
+			if (!agents.isEmpty()) {
+				agentsAtStops.put(e.getKey(), Collections.unmodifiableList(agents));
+			}
+		}
+		return Collections.unmodifiableMap(agentsAtStops);
+	}
+
+	/*
+	 * The agents waiting at one stop, grouped by their desired line. Agents without a desired
+	 * line are stored with the line id null. Each agent gets a sequence number when it arrives,
+	 * which allows to merge the groups in the order of arrival. Agents may arrive at and leave
+	 * the stop from different threads, therefore all methods synchronize on this object.
+	 */
+	private static final class AgentsAtStop {
+		private final Map<PTPassengerAgent, WaitingAgent> agents = new LinkedHashMap<>();
+		private final Map<Id<TransitLine>, Map<PTPassengerAgent, WaitingAgent>> agentsByLine = new HashMap<>();
+		private long nextSequenceNumber = 0;
+
+		synchronized boolean add(final PTPassengerAgent agent, final Id<TransitLine> lineId) {
+			if (this.agents.containsKey(agent)) {
+				return false;
+			}
+			WaitingAgent waitingAgent = new WaitingAgent(agent, lineId, this.nextSequenceNumber++);
+			this.agents.put(agent, waitingAgent);
+			Map<PTPassengerAgent, WaitingAgent> lineAgents = this.agentsByLine.get(lineId);
+			if (lineAgents == null) {
+				lineAgents = new LinkedHashMap<>();
+				this.agentsByLine.put(lineId, lineAgents);
+			}
+			lineAgents.put(agent, waitingAgent);
+			return true;
+		}
+
+		synchronized boolean remove(final PTPassengerAgent agent) {
+			WaitingAgent waitingAgent = this.agents.remove(agent);
+			if (waitingAgent == null) {
+				return false;
+			}
+			this.agentsByLine.get(waitingAgent.lineId).remove(agent);
+			return true;
+		}
+
+		synchronized List<PTPassengerAgent> getAgents() {
+			return new ArrayList<>(this.agents.keySet());
+		}
+
+		synchronized List<PTPassengerAgent> getAgents(final Id<TransitLine> lineId) {
+			Map<PTPassengerAgent, WaitingAgent> lineAgents = this.agentsByLine.get(lineId);
+			Map<PTPassengerAgent, WaitingAgent> anyLineAgents = this.agentsByLine.get(null);
+			if (lineAgents == null || lineAgents.isEmpty()) {
+				return anyLineAgents == null ? new ArrayList<PTPassengerAgent>() : new ArrayList<>(anyLineAgents.keySet());
+			}
+			if (anyLineAgents == null || anyLineAgents.isEmpty()) {
+				return new ArrayList<>(lineAgents.keySet());
+			}
+			// merge both groups by sequence number
+			List<PTPassengerAgent> merged = new ArrayList<>(lineAgents.size() + anyLineAgents.size());
+			Iterator<WaitingAgent> iter1 = lineAgents.values().iterator();
+			Iterator<WaitingAgent> iter2 = anyLineAgents.values().iterator();
+			WaitingAgent next1 = iter1.next();
+			WaitingAgent next2 = iter2.next();
+			while (next1 != null || next2 != null) {
+				if (next2 == null || (next1 != null && next1.sequenceNumber < next2.sequenceNumber)) {
+					merged.add(next1.agent);
+					next1 = iter1.hasNext() ? iter1.next() : null;
+				} else {
+					merged.add(next2.agent);
+					next2 = iter2.hasNext() ? iter2.next() : null;
+				}
+			}
+			return merged;
+		}
+	}
+
+	private static final class WaitingAgent {
+		private final PTPassengerAgent agent;
+		private final Id<TransitLine> lineId;
+		private final long sequenceNumber;
+
+		WaitingAgent(final PTPassengerAgent agent, final Id<TransitLine> lineId, final long sequenceNumber) {
+			this.agent = agent;
+			this.lineId = lineId;
+			this.sequenceNumber = sequenceNumber;
+		}
 	}
 }
@@ -172,19 +172,34 @@ abstract class AbstractQLink extends QLinkI {
 		this.activateLink();
 	}
 
+	/*
+	 * Transit passengers are (un)registered while they board or alight, i.e. from the thread
+	 * that handles this link, but also from other threads. Synchronizing per link avoids a
+	 * global lock for every boarding passenger.
+	 */
 	@Override
 	/*package*/ void registerAdditionalAgentOnLink(MobsimAgent planAgent) {
-		this.additionalAgentsOnLink.put(planAgent.getId(), planAgent);
+		synchronized (this.additionalAgentsOnLink) {
+			this.additionalAgentsOnLink.put(planAgent.getId(), planAgent);
+		}
 	}
 
 	@Override
 	/*package*/ MobsimAgent unregisterAdditionalAgentOnLink(Id<Person> mobsimAgentId) {
-		return this.additionalAgentsOnLink.remove(mobsimAgentId);
+		synchronized (this.additionalAgentsOnLink) {
+			return this.additionalAgentsOnLink.remove(mobsimAgentId);
+		}
 	}
 
+	/*
+	 * Returns a snapshot (taken under the same lock) since other threads may (un)register
+	 * agents while the caller iterates over the collection.
+	 */
 	@Override
 	/*package*/ Collection<MobsimAgent> getAdditionalAgentsOnLink() {
-		return Collections.unmodifiableCollection( this.additionalAgentsOnLink.values());
+		synchronized (this.additionalAgentsOnLink) {
+			return Collections.unmodifiableCollection( new ArrayList<>( this.additionalAgentsOnLink.values() ) );
+		}
 	}
 
 	@Override
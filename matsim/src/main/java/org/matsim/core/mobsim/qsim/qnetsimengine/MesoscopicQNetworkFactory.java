@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MesoscopicQNetworkFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import javax.inject.Inject;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.mobsim.framework.MobsimTimer;
+import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QNetsimEngine.NetsimInternalInterface;
+import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
+import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
+
+/**
+ * Like {@link ConfigurableQNetworkFactory}, but the links are {@link MesoscopicQueue}s: link exit times are computed
+ * when vehicles enter, from a BPR link performance function, and there is no spillback.  Several times faster than
+ * the regular queue model, and meant for "sketch" iterations at the beginning of a run; see
+ * {@link QSimConfigGroup#getNumberOfSketchIterations()}.
+ *
+ * @see ConfigurableQNetworkFactory
+ */
+public final class MesoscopicQNetworkFactory extends QNetworkFactory {
+	private QSimConfigGroup qsimConfig ;
+	private EventsManager events ;
+	private Network network ;
+	private Scenario scenario ;
+	private NetsimEngineContext context;
+	private NetsimInternalInterface netsimEngine ;
+	private LinkSpeedCalculator linkSpeedCalculator = new DefaultLinkSpeedCalculator() ;
+	private TurnAcceptanceLogic turnAcceptanceLogic = new DefaultTurnAcceptanceLogic() ;
+	private double alpha = MesoscopicQueue.DEFAULT_ALPHA ;
+	private double beta = MesoscopicQueue.DEFAULT_BETA ;
+	private double bucketSize = MesoscopicQueue.DEFAULT_BUCKET_SIZE ;
+
+	@Inject
+	public MesoscopicQNetworkFactory( EventsManager events, Scenario scenario ) {
+		this.events = events;
+		this.scenario = scenario;
+		this.network = scenario.getNetwork() ;
+		this.qsimConfig = scenario.getConfig().qsim() ;
+	}
+	@Override
+	void initializeFactory( AgentCounter agentCounter, MobsimTimer mobsimTimer, NetsimInternalInterface netsimEngine1 ) {
+		this.netsimEngine = netsimEngine1;
+		double effectiveCellSize = network.getEffectiveCellSize() ;
+		SnapshotLinkWidthCalculator linkWidthCalculator = new SnapshotLinkWidthCalculator();
+		linkWidthCalculator.setLinkWidthForVis( qsimConfig.getLinkWidthForVis() );
+		if (! Double.isNaN(network.getEffectiveLaneWidth())){
+			linkWidthCalculator.setLaneWidth( network.getEffectiveLaneWidth() );
+		}
+		AbstractAgentSnapshotInfoBuilder agentSnapshotInfoBuilder = QNetsimEngine.createAgentSnapshotInfoBuilder( scenario, linkWidthCalculator );
+		context = new NetsimEngineContext( events, effectiveCellSize, agentCounter, agentSnapshotInfoBuilder, qsimConfig, mobsimTimer, linkWidthCalculator );
+	}
+	@Override
+	QLinkI createNetsimLink(final Link link, final QNodeI toQueueNode) {
+		MesoscopicQueue.Builder laneFactory = new MesoscopicQueue.Builder(context) ;
+		laneFactory.setLinkSpeedCalculator( linkSpeedCalculator );
+		laneFactory.setAlpha( alpha );
+		laneFactory.setBeta( beta );
+		laneFactory.setBucketSize( bucketSize );
+
+		QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine) ;
+		linkBuilder.setLaneFactory(laneFactory);
+
+		return linkBuilder.build(link, toQueueNode) ;
+	}
+	@Override
+	QNodeI createNetsimNode(final Node node) {
+		QNodeImpl.Builder builder = new QNodeImpl.Builder( netsimEngine, context ) ;
+
+		builder.setTurnAcceptanceLogic( this.turnAcceptanceLogic ) ;
+
+		return builder.build( node ) ;
+	}
+	public final void setLinkSpeedCalculator(LinkSpeedCalculator linkSpeedCalculator) {
+		this.linkSpeedCalculator = linkSpeedCalculator;
+	}
+	public final void setTurnAcceptanceLogic( TurnAcceptanceLogic turnAcceptanceLogic ) {
+		this.turnAcceptanceLogic = turnAcceptanceLogic;
+	}
+	/**
+	 * The parameters of the link performance function <code>t = t0 * (1 + alpha * (v/c)^beta)</code>.  Defaults are
+	 * the classic BPR values, 0.15 and 4.
+	 */
+	public final void setLinkPerformanceFunction( double alpha, double beta ) {
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+	/**
+	 * Link exit times are rounded to multiples of this many seconds.  Default is 5.
+	 */
+	public final void setBucketSize( double bucketSize ) {
+		if ( bucketSize <= 0. ) {
+			throw new IllegalArgumentException( "bucket size must be strictly positive, got " + bucketSize ) ;
+		}
+		this.bucketSize = bucketSize;
+	}
+}
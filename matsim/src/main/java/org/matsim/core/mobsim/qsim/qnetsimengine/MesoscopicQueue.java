@@ -0,0 +1,384 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MesoscopicQueue.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.VehicleAbortsEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.gbl.Gbl;
+import org.matsim.core.mobsim.framework.MobsimDriverAgent;
+import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
+import org.matsim.core.mobsim.qsim.pt.TransitDriverAgent;
+import org.matsim.core.mobsim.qsim.qnetsimengine.AbstractQLink.HandleTransitStopResult;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QLinkImpl.LaneFactory;
+import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.lanes.data.Lane;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
+
+/**
+ * A cheap replacement for {@link QueueWithBuffer}, meant for the first iterations, when the plans are still far
+ * from equilibrium.
+ * <p></p>
+ * The link exit time of a vehicle is computed once, when it enters the link: the free speed travel time is increased
+ * by a BPR link performance function, <code>t = t0 * (1 + alpha * (v/c)^beta)</code>, and the exit is delayed until
+ * all vehicles that entered before have been discharged at flow capacity.  The volume-to-capacity ratio is estimated
+ * from the number of vehicles on the link, which in steady state is the inflow times the travel time.  Exit times are
+ * rounded up to buckets of a few seconds, so vehicles leave the link in groups, but never before their BPR travel
+ * time has passed.
+ * <p></p>
+ * There is no storage constraint, i.e. no spillback, and no flow accumulation in every time step.  Signals are
+ * not supported.
+ *
+ * @see MesoscopicQNetworkFactory
+ */
+final class MesoscopicQueue extends QLaneI {
+
+	static final double DEFAULT_ALPHA = 0.15;
+	static final double DEFAULT_BETA = 4.0;
+	static final double DEFAULT_BUCKET_SIZE = 5.0;
+
+	static final class Builder implements LaneFactory {
+		private LinkSpeedCalculator linkSpeedCalculator = new DefaultLinkSpeedCalculator() ;
+		private double alpha = DEFAULT_ALPHA ;
+		private double beta = DEFAULT_BETA ;
+		private double bucketSize = DEFAULT_BUCKET_SIZE ;
+		private final NetsimEngineContext context;
+		Builder( final NetsimEngineContext context ) {
+			this.context = context ;
+		}
+		@Override public MesoscopicQueue createLane( AbstractQLink qLink ) {
+			return new MesoscopicQueue( qLink, context, linkSpeedCalculator, alpha, beta, bucketSize ) ;
+		}
+		void setLinkSpeedCalculator(LinkSpeedCalculator linkSpeedCalculator) { this.linkSpeedCalculator = linkSpeedCalculator; }
+		void setAlpha(double alpha) { this.alpha = alpha; }
+		void setBeta(double beta) { this.beta = beta; }
+		void setBucketSize(double bucketSize) { this.bucketSize = bucketSize; }
+	}
+
+	private final AbstractQLink qLink;
+	private final Id<Lane> id;
+	private final NetsimEngineContext context;
+	private final LinkSpeedCalculator linkSpeedCalculator;
+	private final double alpha;
+	private final double beta;
+	private final double bucketSize;
+
+	private final double length;
+	private double unscaledFlowCapacity_s;
+	private double effectiveNumberOfLanes;
+	/** the flow capacity per second, scaled by the flow capacity factor */
+	private double flowCapacity_s;
+	/** only used for the visualization; the link has no storage constraint */
+	private double storageCapacity;
+
+	/** the vehicles which have not yet reached the end of the link, ordered by their link exit time */
+	private final LinkedList<QVehicle> vehQueue = new LinkedList<>();
+	private final Queue<QVehicle> buffer = new LinkedList<>();
+	/** the sum of the sizes of the vehicles in vehQueue */
+	private double load = 0.;
+	/** the time at which the vehicle that entered last is discharged, before rounding to the bucket */
+	private double lastDischargeTime = Double.NEGATIVE_INFINITY;
+	private double bufferLastMovedTime = Time.UNDEFINED_TIME;
+
+	private final VisDataImpl visData = new VisDataImpl();
+
+	private MesoscopicQueue(final AbstractQLink qLink, final NetsimEngineContext context, final LinkSpeedCalculator linkSpeedCalculator,
+			final double alpha, final double beta, final double bucketSize) {
+		this.qLink = qLink;
+		this.id = Id.create(qLink.getLink().getId(), Lane.class);
+		this.context = context;
+		this.linkSpeedCalculator = linkSpeedCalculator;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.bucketSize = bucketSize;
+		this.length = qLink.getLink().getLength();
+		this.unscaledFlowCapacity_s = ((Link) qLink.getLink()).getFlowCapacityPerSec();
+		this.effectiveNumberOfLanes = qLink.getLink().getNumberOfLanes();
+		calculateCapacities();
+	}
+
+	private void calculateCapacities() {
+		this.flowCapacity_s = this.unscaledFlowCapacity_s * context.qsimConfig.getFlowCapFactor();
+		this.storageCapacity = Math.max(1., this.length * this.effectiveNumberOfLanes / context.effectiveCellSize * context.qsimConfig.getStorageCapFactor());
+	}
+
+	@Override
+	void addFromUpstream(final QVehicle veh) {
+		double now = context.getSimTimer().getTimeOfDay();
+
+		qLink.activateLink();
+
+		double freespeedTravelTime = this.length / this.linkSpeedCalculator.getMaximumVelocity(veh, qLink.getLink(), now);
+		double volumeCapacityRatio = this.load / (this.flowCapacity_s * freespeedTravelTime);
+		double travelTime = freespeedTravelTime * (1. + this.alpha * Math.pow(volumeCapacityRatio, this.beta));
+
+		this.lastDischargeTime = Math.max(now + travelTime,
+				this.lastDischargeTime + veh.getFlowCapacityConsumptionInEquivalents() / this.flowCapacity_s);
+		// (vehicles are discharged in the order in which they entered, so vehQueue stays sorted by exit time)
+		veh.setEarliestLinkExitTime(Math.max(now, this.bucketSize * Math.ceil(this.lastDischargeTime / this.bucketSize)));
+
+		veh.setCurrentLink(qLink.getLink());
+		this.vehQueue.add(veh);
+		this.load += veh.getSizeInEquivalents();
+	}
+
+	@Override
+	boolean doSimStep() {
+		double now = context.getSimTimer().getTimeOfDay();
+
+		QVehicle veh;
+		while ((veh = this.vehQueue.peek()) != null) {
+			if (veh.getEarliestLinkExitTime() > now) {
+				break;
+			}
+
+			MobsimDriverAgent driver = veh.getDriver();
+
+			if (driver instanceof TransitDriverAgent) {
+				HandleTransitStopResult handleTransitStop = qLink.getTransitQLink().handleTransitStop(now, veh, (TransitDriverAgent) driver, this.qLink.getLink().getId());
+				if (handleTransitStop == HandleTransitStopResult.accepted) {
+					removeFirstVehicleFromQueue();
+					continue;
+				} else if (handleTransitStop == HandleTransitStopResult.rehandle) {
+					// the stop has increased the link exit time of the vehicle
+					continue;
+				}
+			}
+
+			if (driver.isWantingToArriveOnCurrentLink()) {
+				qLink.addParkedVehicle(veh);
+				qLink.letVehicleArrive(veh);
+				qLink.makeVehicleAvailableToNextDriver(veh);
+				// remove _after_ processing the arrival to keep link active:
+				removeFirstVehicleFromQueue();
+				continue;
+			}
+
+			removeFirstVehicleFromQueue();
+			addToBuffer(veh);
+		}
+		return true;
+	}
+
+	private void removeFirstVehicleFromQueue() {
+		QVehicle veh = this.vehQueue.poll();
+		this.load -= veh.getSizeInEquivalents();
+		if (this.vehQueue.isEmpty()) {
+			this.load = 0.; // do not accumulate rounding errors
+		}
+	}
+
+	private void addToBuffer(final QVehicle veh) {
+		double now = context.getSimTimer().getTimeOfDay();
+		this.buffer.add(veh);
+		if (this.buffer.size() == 1) {
+			this.bufferLastMovedTime = now;
+		}
+		final QNodeI toNode = qLink.getToNode();
+		if (toNode instanceof QNodeImpl) {
+			((QNodeImpl) toNode).activateNode();
+		}
+	}
+
+	@Override
+	void addFromWait(final QVehicle veh) {
+		addToBuffer(veh);
+	}
+
+	@Override
+	boolean isAcceptingFromWait(final QVehicle veh) {
+		return true;
+	}
+
+	@Override
+	boolean isAcceptingFromUpstream() {
+		return true;
+	}
+
+	@Override
+	boolean isActive() {
+		return !this.vehQueue.isEmpty() || !this.buffer.isEmpty();
+	}
+
+	@Override
+	void initBeforeSimStep() {
+		// nothing to accumulate
+	}
+
+	@Override
+	double getSimulatedFlowCapacityPerTimeStep() {
+		return this.flowCapacity_s * context.qsimConfig.getTimeStepSize();
+	}
+
+	@Override
+	QVehicle getVehicle(final Id<Vehicle> vehicleId) {
+		for (QVehicle veh : this.vehQueue) {
+			if (veh.getId().equals(vehicleId))
+				return veh;
+		}
+		for (QVehicle veh : this.buffer) {
+			if (veh.getId().equals(vehicleId))
+				return veh;
+		}
+		return null;
+	}
+
+	@Override
+	double getStorageCapacity() {
+		return this.storageCapacity;
+	}
+
+	@Override
+	QLaneI.VisData getVisData() {
+		return this.visData;
+	}
+
+	@Override
+	void addTransitSlightlyUpstreamOfStop(final QVehicle veh) {
+		this.vehQueue.addFirst(veh);
+		this.load += veh.getSizeInEquivalents();
+	}
+
+	@Override
+	void changeUnscaledFlowCapacityPerSecond(final double val) {
+		this.unscaledFlowCapacity_s = val;
+		calculateCapacities();
+	}
+
+	@Override
+	void changeEffectiveNumberOfLanes(final double val) {
+		this.effectiveNumberOfLanes = val;
+		calculateCapacities();
+	}
+
+	@Override
+	void changeSpeedMetersPerSecond(final double val) {
+		// the speed is taken from the link speed calculator whenever a vehicle enters
+	}
+
+	@Override
+	void clearVehicles() {
+		double now = context.getSimTimer().getTimeOfDay();
+
+		for (QVehicle veh : this.vehQueue) {
+			context.getEventsManager().processEvent(new VehicleAbortsEvent(now, veh.getId(), veh.getCurrentLink().getId()));
+			context.getEventsManager().processEvent(new PersonStuckEvent(now, veh.getDriver().getId(), veh.getCurrentLink().getId(), veh.getDriver().getMode()));
+
+			context.getAgentCounter().incLost();
+			context.getAgentCounter().decLiving();
+		}
+		this.vehQueue.clear();
+		this.load = 0.;
+
+		for (QVehicle veh : this.buffer) {
+			context.getEventsManager().processEvent(new VehicleAbortsEvent(now, veh.getId(), veh.getCurrentLink().getId()));
+			context.getEventsManager().processEvent(new PersonStuckEvent(now, veh.getDriver().getId(), veh.getCurrentLink().getId(), veh.getDriver().getMode()));
+
+			context.getAgentCounter().incLost();
+			context.getAgentCounter().decLiving();
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	Collection<MobsimVehicle> getAllVehicles() {
+		Collection<MobsimVehicle> vehicles = new ArrayList<>();
+		vehicles.addAll(this.buffer);
+		vehicles.addAll(this.vehQueue);
+		return vehicles;
+	}
+
+	@Override
+	boolean isNotOfferingVehicle() {
+		return this.buffer.isEmpty();
+	}
+
+	@Override
+	QVehicle popFirstVehicle() {
+		this.bufferLastMovedTime = context.getSimTimer().getTimeOfDay();
+		return this.buffer.poll();
+	}
+
+	@Override
+	QVehicle getFirstVehicle() {
+		return this.buffer.peek();
+	}
+
+	@Override
+	double getLastMovementTimeOfFirstVehicle() {
+		return this.bufferLastMovedTime;
+	}
+
+	@Override
+	boolean hasGreenForToLink(final Id<Link> toLinkId) {
+		return true;
+	}
+
+	@Override
+	double getLoadIndicator() {
+		return this.load;
+	}
+
+	@Override
+	public Id<Lane> getId() {
+		return this.id;
+	}
+
+	private class VisDataImpl implements QLaneI.VisData {
+		private final Queue<QueueWithBuffer.Hole> noHoles = new LinkedList<>();
+
+		@Override
+		public Collection<AgentSnapshotInfo> addAgentSnapshotInfo(Collection<AgentSnapshotInfo> positions, double now) {
+			if (!buffer.isEmpty() || !vehQueue.isEmpty()) {
+				Gbl.assertNotNull(positions);
+				Gbl.assertNotNull(context.snapshotInfoBuilder);
+				Coord upstreamCoord = qLink.getLink().getFromNode().getCoord();
+				Coord downstreamCoord = qLink.getLink().getToNode().getCoord();
+				positions = context.snapshotInfoBuilder.positionVehiclesAlongLine(
+						positions,
+						now,
+						getAllVehicles(),
+						length,
+						storageCapacity,
+						upstreamCoord,
+						downstreamCoord,
+						1. / getSimulatedFlowCapacityPerTimeStep(),
+						qLink.getLink().getFreespeed(now),
+						NetworkUtils.getNumberOfLanesAsInt(now, qLink.getLink()),
+						this.noHoles
+						);
+			}
+			return positions;
+		}
+	}
+
+}
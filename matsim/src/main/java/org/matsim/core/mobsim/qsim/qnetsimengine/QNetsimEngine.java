@@ -37,6 +37,7 @@ import java.util.concurrent.ThreadFactory;
 import javax.inject.Inject;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
@@ -51,6 +52,7 @@ import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
 import org.matsim.core.gbl.Gbl;
+import org.matsim.core.mobsim.framework.HasNextActiveTime;
 import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.framework.MobsimDriverAgent;
 import org.matsim.core.mobsim.framework.MobsimTimer;
@@ -71,7 +73,7 @@ import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine {
+public class QNetsimEngine implements MobsimEngine, HasNextActiveTime {
 	public interface NetsimInternalInterface {
 
 		QNetwork getNetsimNetwork();
@@ -133,6 +135,10 @@ public class QNetsimEngine implements MobsimEngine {
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
 	public static boolean printRunTimesPerTimeStep = false;
+
+	// for run time analysis across iterations; only set if a PerformanceMetrics instance is bound
+	@com.google.inject.Inject(optional = true)
+	private PerformanceMetrics performanceMetrics = null;
 	
 	@Override
 	public void setInternalInterface( InternalInterface internalInterface) {
@@ -361,6 +367,20 @@ public class QNetsimEngine implements MobsimEngine {
 		}
 	}
 
+	/**
+	 * Links and nodes stay active as long as there is a vehicle on them, so the engine is either busy in the
+	 * next time step or idle until some other engine inserts a vehicle.
+	 */
+	@Override
+	public double getNextActiveTime(double now) {
+		for (QNetsimEngineRunner engine : this.engines) {
+			if (engine.hasActiveLinksOrNodes()) {
+				return now;
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	public int getNumberOfSimulatedLinks() {
 
 		int numLinks = 0;
@@ -456,6 +476,10 @@ public class QNetsimEngine implements MobsimEngine {
 				thread.setDaemon(true);	// make the Thread Daemons so they will terminate automatically
 				thread.start();
 			}
+			if (this.performanceMetrics != null) {
+				engine.setPerformanceMetrics(this.performanceMetrics.distribution("qsim.netsimEngineRunner." + i + ".simStep"),
+						this.performanceMetrics.distribution("qsim.netsimEngineRunner." + i + ".activeLinks"));
+			}
 			this.engines.add(engine);
 		}
 
@@ -20,6 +20,7 @@
 
 package org.matsim.core.mobsim.qsim.qnetsimengine;
 
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
 
@@ -83,6 +84,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		else runTimes = null;
 	}
 	
+	// for run time analysis across iterations; null if not requested
+	private PerformanceMetrics.Distribution simStepDistribution = null;
+	private PerformanceMetrics.Distribution activeLinksDistribution = null;
+	
 	/*package*/ QNetsimEngineRunner(Phaser startBarrier, Phaser separationBarrier, Phaser endBarrier) {
 		this.startBarrier = startBarrier;
 		this.separationBarrier = separationBarrier;
@@ -96,6 +101,11 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		this.endBarrier = null;
 	}
 
+	/*package*/ void setPerformanceMetrics(PerformanceMetrics.Distribution simStepDistribution, PerformanceMetrics.Distribution activeLinksDistribution) {
+		this.simStepDistribution = simStepDistribution;
+		this.activeLinksDistribution = activeLinksDistribution;
+	}
+
 	/*package*/ void setTime(final double t) {
 		time = t;
 	}
@@ -116,11 +126,16 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			return false;
 		}
 
+		long metricsStartTime = this.simStepDistribution != null ? System.nanoTime() : 0;
+
 		if (this.movingNodes) {
 			moveNodes();
 		} else {
 			moveLinks();
+			if (this.activeLinksDistribution != null) this.activeLinksDistribution.record(this.linksList.size());
 		}
+
+		if (this.simStepDistribution != null) this.simStepDistribution.recordSince(metricsStartTime);
 		return true ;
 	}
 
@@ -137,6 +152,7 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 			startBarrier.arriveAndAwaitAdvance();
 
 			if (QSim.analyzeRunTimes) this.startTime = System.nanoTime();
+			long metricsStartTime = this.simStepDistribution != null ? System.nanoTime() : 0;
 			
 			// Check if Simulation is still running. Otherwise print CPU usage and end thread.
 			if (!this.simulationRunning) {
@@ -151,6 +167,11 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 			moveLinks();
 
+			if (this.simStepDistribution != null) {
+				this.simStepDistribution.recordSince(metricsStartTime);
+				this.activeLinksDistribution.record(this.linksList.size());
+			}
+
 			if (QSim.analyzeRunTimes) {
 				long end = System.nanoTime();
 				int bin = (int) this.time;
@@ -229,6 +250,14 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		return this.nodesQueue.size();
 	}
 
+	/*
+	 * O(1) alternative to the above methods, called in every time step
+	 * (see QNetsimEngine.getNextActiveTime()).
+	 */
+	/*package*/ boolean hasActiveLinksOrNodes() {
+		return !this.linksList.isEmpty() || !this.nodesQueue.isEmpty();
+	}
+
 	public void setMovingNodes(boolean movingNodes) {
 		this.movingNodes = movingNodes;
 	}
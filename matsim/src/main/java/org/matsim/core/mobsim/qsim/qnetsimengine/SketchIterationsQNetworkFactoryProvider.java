@@ -0,0 +1,64 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SketchIterationsQNetworkFactoryProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.QSimConfigGroup;
+import org.matsim.core.replanning.ReplanningContext;
+
+/**
+ * Provides a {@link MesoscopicQNetworkFactory} in the first
+ * {@link QSimConfigGroup#getNumberOfSketchIterations()} iterations, and a {@link DefaultQNetworkFactory} afterwards.
+ * Outside of a controler, i.e. when there is no iteration, always the {@link DefaultQNetworkFactory} is used.
+ */
+public final class SketchIterationsQNetworkFactoryProvider implements Provider<QNetworkFactory> {
+	private static final Logger log = Logger.getLogger( SketchIterationsQNetworkFactoryProvider.class ) ;
+
+	private final EventsManager events ;
+	private final Scenario scenario ;
+	@com.google.inject.Inject(optional = true)
+	private ReplanningContext replanningContext = null ;
+
+	@Inject
+	SketchIterationsQNetworkFactoryProvider( EventsManager events, Scenario scenario ) {
+		this.events = events ;
+		this.scenario = scenario ;
+	}
+
+	@Override
+	public QNetworkFactory get() {
+		if ( replanningContext != null ) {
+			int iteration = replanningContext.getIteration() ;
+			int lastSketchIteration = scenario.getConfig().controler().getFirstIteration()
+					+ scenario.getConfig().qsim().getNumberOfSketchIterations() - 1 ;
+			if ( iteration <= lastSketchIteration ) {
+				log.info( "iteration " + iteration + " is a sketch iteration; links are simulated with the mesoscopic link model." ) ;
+				return new MesoscopicQNetworkFactory( events, scenario ) ;
+			}
+		}
+		return new DefaultQNetworkFactory( events, scenario ) ;
+	}
+}
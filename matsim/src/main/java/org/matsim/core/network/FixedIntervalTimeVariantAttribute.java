@@ -36,11 +36,12 @@ import org.matsim.core.utils.misc.Time;
     private final int timeSlice;
     private final int numSlots;
 
-    private double baseValue;
-    private double[] values;
+    // volatile, so that the values can be read without locking after a recalc:
+    private volatile double baseValue;
+    private volatile double[] values;
 
-    private int eventsCount = 0;
-    private int eventsCountWhenLastRecalc = -1;
+    private volatile int eventsCount = 0;
+    private volatile int eventsCountWhenLastRecalc = -1;
 
 
     public FixedIntervalTimeVariantAttribute(int timeSlice, int maxTime)
@@ -71,9 +72,8 @@ import org.matsim.core.utils.misc.Time;
         //To save memory, the array is constructed only if there is at least one ChangeEvent.
         //This saves a lot of memory in cases when only one attribute is time variant, while
         //the remaining two are invariant.
-        if (values == null) {
-            values = new double[numSlots];
-        }
+        //A new array is filled and then published, so that readers never see a half-filled array.
+        double[] values = new double[numSlots];
 
         int numEvent = 0;
         int fromBin = 0;//inclusive
@@ -98,6 +98,7 @@ import org.matsim.core.utils.misc.Time;
             }
         }
         Arrays.fill(values, fromBin, values.length, currentValue);
+        this.values = values;
         eventsCountWhenLastRecalc = eventsCount;
 
         if (numEvent != this.eventsCount) {
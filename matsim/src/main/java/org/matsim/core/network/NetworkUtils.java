@@ -24,10 +24,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
@@ -739,6 +744,55 @@ public final class NetworkUtils {
 	}
 
 
+	/**
+	 * Compiles the time-dependent attributes of all links affected by network change events, distributed over the given
+	 * number of threads.  Otherwise, this happens lazily when an attribute of a link is first read, e.g. by the mobsim or
+	 * a router.  After this, the attributes can be read from several threads without locking.
+	 */
+	public static void precomputeTimeVariantAttributes( Network network, int numberOfThreads ) {
+		Set<Link> links = new LinkedHashSet<>() ;
+		for ( NetworkChangeEvent event : getNetworkChangeEvents( network ) ) {
+			links.addAll( event.getLinks() ) ;
+		}
+		final List<TimeVariantLinkImpl> timeVariantLinks = new ArrayList<>( links.size() ) ;
+		for ( Link link : links ) {
+			if ( link instanceof TimeVariantLinkImpl ) {
+				timeVariantLinks.add( (TimeVariantLinkImpl) link ) ;
+			}
+		}
+
+		final int nOfThreads = Math.max( 1, Math.min( numberOfThreads, timeVariantLinks.size() / 1000 ) ) ;
+		if ( nOfThreads == 1 ) {
+			for ( TimeVariantLinkImpl link : timeVariantLinks ) {
+				link.recalcTimeVariantAttributes();
+			}
+			return ;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool( nOfThreads ) ;
+		List<Future<?>> futures = new ArrayList<>() ;
+		for ( int i = 0; i < nOfThreads; i++ ) {
+			final int thread = i ;
+			futures.add( executor.submit( new Runnable() {
+				@Override public void run() {
+					for ( int j = thread; j < timeVariantLinks.size(); j += nOfThreads ) {
+						timeVariantLinks.get( j ).recalcTimeVariantAttributes();
+					}
+				}
+			} ) ) ;
+		}
+		executor.shutdown();
+		try {
+			for ( Future<?> future : futures ) {
+				future.get() ;
+			}
+		} catch ( InterruptedException e ) {
+			throw new RuntimeException( e ) ;
+		} catch ( ExecutionException e ) {
+			throw new RuntimeException( e.getCause() ) ;
+		}
+	}
+
+
 	public static Link getNearestLinkExactly(Network network, Coord coord) {
 		if ( network instanceof SearchableNetwork ) {
 			return ((SearchableNetwork) network).getNearestLinkExactly(coord) ;
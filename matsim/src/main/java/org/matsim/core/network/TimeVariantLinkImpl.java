@@ -115,13 +115,29 @@ import org.matsim.api.core.v01.network.*;
 		variableLanes.clearEvents();
 	}
 
+	/**
+	 * Compiles the timelines of all attributes which have changed since they were last compiled.  Otherwise, this
+	 * happens lazily when an attribute is first read.  Once compiled, the attributes can be read without locking.
+	 */
+	synchronized void recalcTimeVariantAttributes() {
+		if (variableFreespeed.isRecalcRequired()) {
+			recalcFreespeed();
+		}
+		if (variableFlowCapacity.isRecalcRequired()) {
+			recalcFlowCapacity();
+		}
+		if (variableLanes.isRecalcRequired()) {
+			recalcLanes();
+		}
+	}
+
 	/**
 	 *
 	 * @param time - the time in seconds.
 	 * @return the freespeed at time <tt>time</tt>.
 	 */
 	@Override
-	public synchronized double getFreespeed(final double time) {
+	public double getFreespeed(final double time) {
 
 		if (variableFreespeed.isRecalcRequired()) {
 			recalcFreespeed();
@@ -147,7 +163,7 @@ import org.matsim.api.core.v01.network.*;
 	 * @return the flow capacity at time <tt>time</tt>.
 	 */
 	@Override
-	public synchronized double getFlowCapacityPerSec(final double time) {
+	public double getFlowCapacityPerSec(final double time) {
 
 		if (variableFlowCapacity.isRecalcRequired()) {
 			recalcFlowCapacity();
@@ -171,7 +187,7 @@ import org.matsim.api.core.v01.network.*;
 	 * @return the capacity per network's capperiod timestep
 	 */
 	@Override
-	public synchronized double getCapacity(final double time) {
+	public double getCapacity(final double time) {
 		return getFlowCapacityPerSec(time) * getCapacityPeriod();
 	}
 
@@ -193,7 +209,7 @@ import org.matsim.api.core.v01.network.*;
 	 * encode the (min) width of the link to calculate the flow capacity - [GL] 13may08
 	 */
 	@Override
-	public synchronized double getNumberOfLanes(final double time) {
+	public double getNumberOfLanes(final double time) {
 		if (variableLanes.isRecalcRequired()) {
 			recalcLanes();
 		}
@@ -24,18 +24,29 @@ import java.util.*;
 import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
 
 
+/**
+ * Stores the values of the attribute as a piecewise constant timeline that is compiled by {@link #recalc} and not
+ * modified afterwards.  Reading is thus possible from several threads without locking.  For timelines with many
+ * changes, an index of fixed width time bins points to the first change in every bin, so that a lookup only needs to
+ * search within one bin.
+ */
 final class VariableIntervalTimeVariantAttribute
 implements TimeVariantAttribute
 {
-	private int aEvents = 1;
-	private double[] aValues;
-	private double[] aTimes;
+	/**
+	 * Below this number of changes, a binary search over the whole timeline is as fast as going through the bins.
+	 */
+	static final int MIN_CHANGES_FOR_BIN_INDEX = 16;
+
+	private volatile int aEvents = 1;
+	private volatile Timeline timeline = null;
 
 
 	@Override
 	public boolean isRecalcRequired()
 	{
-		return (this.aTimes == null) || (this.aTimes.length != this.aEvents);
+		Timeline current = this.timeline;
+		return (current == null) || (current.times.length != this.aEvents);
 		// The first condition just says if there is no material, we don't need to do anything.
 		// yyyy The second condition is a bit weird.  It essentially checks if the cached data structure (aTimes) has
 		// as many entries as it should have (given by aEvents).  This does need, however, an honest calling of
@@ -52,10 +63,11 @@ implements TimeVariantAttribute
 	public void recalc(TreeMap<Double, NetworkChangeEvent> changeEvents,
 			ChangeValueGetter valueGetter, double baseValue)
 	{
-		this.aTimes = new double[this.aEvents];
-		this.aValues = new double[this.aEvents];
-		this.aTimes[0] = Double.NEGATIVE_INFINITY;
-		this.aValues[0] = baseValue;
+		int events = this.aEvents;
+		double[] aTimes = new double[events];
+		double[] aValues = new double[events];
+		aTimes[0] = Double.NEGATIVE_INFINITY;
+		aValues[0] = baseValue;
 
 		int numEvent = 0;
 		if (changeEvents != null) {
@@ -63,35 +75,39 @@ implements TimeVariantAttribute
 			for (NetworkChangeEvent event : changeEvents.values()) {
 				ChangeValue value = valueGetter.getChangeValue(event);
 				if (value != null) {
+					if (numEvent + 1 >= events) {
+						// there are more events than announced; report below
+						numEvent++;
+						continue;
+					}
 					if (value.getType() == NetworkChangeEvent.ChangeType.FACTOR) {
 						// there, the change event multiplies what we have so far:
-						double currentValue = this.aValues[numEvent];
-						this.aValues[++numEvent] = currentValue * value.getValue();
-						this.aTimes[numEvent] = event.getStartTime();
+						double currentValue = aValues[numEvent];
+						aValues[++numEvent] = currentValue * value.getValue();
+						aTimes[numEvent] = event.getStartTime();
 					}
 					else {
 						// otherwise, we just need to replace the value:
-						this.aValues[++numEvent] = value.getValue();
-						this.aTimes[numEvent] = event.getStartTime();
+						aValues[++numEvent] = value.getValue();
+						aTimes[numEvent] = event.getStartTime();
 					}
 				}
 			}
 		}
 
-		if (numEvent != this.aEvents - 1) {
-			throw new RuntimeException("Expected number of change events (" + (this.aEvents - 1)
+		if (numEvent != events - 1) {
+			throw new RuntimeException("Expected number of change events (" + (events - 1)
 					+ ") differs from the number of events found (" + numEvent + ")!");
 		}
+
+		this.timeline = new Timeline(aTimes, aValues);
 	}
 
 
 	@Override
 	public double getValue(final double time)
 	{
-		// after we have put everything into an array by recalc, we just need a binary search:
-		int key = Arrays.binarySearch(this.aTimes, time);
-		key = key >= 0 ? key : -key - 2;
-		return this.aValues[key];
+		return this.timeline.getValue(time);
 	}
 
 
@@ -105,8 +121,67 @@ implements TimeVariantAttribute
 	@Override
 	public void clearEvents()
 	{
-		aTimes = null;
-		aValues = null;
+		timeline = null;
 		aEvents = 1;
 	}
+
+
+	private static final class Timeline {
+		private final double[] times;
+		private final double[] values;
+
+		/** for every bin, the index of the last change before or at the start of the bin; null if there are only few changes */
+		private final int[] binStarts;
+		private final double firstChangeTime;
+		private final double binSize;
+
+		private Timeline(double[] times, double[] values) {
+			this.times = times;
+			this.values = values;
+
+			int numberOfChanges = times.length - 1;
+			if (numberOfChanges < MIN_CHANGES_FOR_BIN_INDEX) {
+				this.binStarts = null;
+				this.firstChangeTime = Double.NaN;
+				this.binSize = Double.NaN;
+				return;
+			}
+
+			// on average one change per bin:
+			this.firstChangeTime = times[1];
+			double span = times[numberOfChanges] - this.firstChangeTime;
+			this.binSize = span > 0. ? span / numberOfChanges : 1.;
+			int numberOfBins = (int) (span / this.binSize) + 1;
+			this.binStarts = new int[numberOfBins + 1];
+			int index = 1;
+			for (int bin = 0; bin <= numberOfBins; bin++) {
+				double binStartTime = this.firstChangeTime + bin * this.binSize;
+				while (index < numberOfChanges && times[index + 1] <= binStartTime) {
+					index++;
+				}
+				this.binStarts[bin] = index;
+			}
+		}
+
+		private double getValue(final double time) {
+			int from = 0;
+			int to = this.times.length;
+			if (this.binStarts != null) {
+				if (time < this.firstChangeTime) {
+					return this.values[0];
+				}
+				int bin = (int) ((time - this.firstChangeTime) / this.binSize);
+				if (bin >= this.binStarts.length - 1) {
+					from = this.binStarts[this.binStarts.length - 1];
+				} else {
+					from = this.binStarts[bin];
+					to = this.binStarts[bin + 1] + 1;
+				}
+			}
+			// after we have put everything into an array by recalc, we just need a binary search:
+			int key = Arrays.binarySearch(this.times, from, to, time);
+			key = key >= 0 ? key : -key - 2;
+			return this.values[key];
+		}
+	}
 }
@@ -25,8 +25,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Leg;
 import org.matsim.api.core.v01.population.Person;
@@ -64,6 +66,11 @@ public final class TripRouter implements MatsimExtensionPoint {
 
 	private MainModeIdentifier mainModeIdentifier = new MainModeIdentifierImpl();
 
+	// for run time analysis; only set if a PerformanceMetrics instance is bound
+	@com.google.inject.Inject(optional = true)
+	private PerformanceMetrics performanceMetrics = null;
+	private final Map<String, PerformanceMetrics.Distribution> routingTimes = new ConcurrentHashMap<>();
+
 	public TripRouter() {}
 	// yyyyyy I guess this is meant as a way to create the trip router without injection, and to set its internals afterwards.  But
 	// is it so sensible to have this in this way?  The injection stuff states that the material is immutable after injection; here we introduce a
@@ -179,6 +186,8 @@ public final class TripRouter implements MatsimExtensionPoint {
 		RoutingModule module = routingModules.get( mainMode );
 		
 		if (module != null) {
+			final long metricsStartTime = this.performanceMetrics != null ? System.nanoTime() : 0;
+
 			final List<? extends PlanElement> trip =
 					module.calcRoute(
 						fromFacility,
@@ -186,6 +195,15 @@ public final class TripRouter implements MatsimExtensionPoint {
 						departureTime,
 						person);
 
+			if ( this.performanceMetrics != null ) {
+				PerformanceMetrics.Distribution routingTime = this.routingTimes.get( mainMode );
+				if ( routingTime == null ) {
+					routingTime = this.performanceMetrics.distribution( "routing." + mainMode );
+					this.routingTimes.put( mainMode, routingTime );
+				}
+				routingTime.recordSince( metricsStartTime );
+			}
+
 			if ( trip == null ) {
 				throw new NullPointerException( "Routing module "+module+" returned a null Trip for main mode "+mainMode );
 			}
@@ -31,6 +31,10 @@ public interface LeastCostPathCalculator {
 
 	public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, final Person person, final Vehicle vehicle);
 	
+	/**
+	 * The node and link lists must not be modified once the path has been returned: they may be shared, e.g. by
+	 * calculators caching their results or by paths created from them (as in DVRP).
+	 */
 	public class Path {
 		public final List<Node> nodes;
 		public final List<Link> links;
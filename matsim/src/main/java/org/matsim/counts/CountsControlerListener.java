@@ -43,12 +43,21 @@ import org.matsim.counts.algorithms.graphs.CountsErrorGraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsLoadCurveGraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsSimReal24GraphCreator;
 import org.matsim.counts.algorithms.graphs.CountsSimRealPerHourGraphCreator;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author dgrether
@@ -72,7 +81,12 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
     @com.google.inject.Inject(optional=true)
     private Counts<Link> counts = null;
 
-    private final Map<Id<Link>, double[]> linkStats = new HashMap<>();
+    /*
+     * Summed up volumes of the counting stations, 24 hours per station in one dense array.
+     */
+    private final Map<Id<Link>, Integer> stationIndices = new HashMap<>();
+    private final List<Id<Link>> stationIds = new ArrayList<>();
+    private double[] stationVolumes = new double[0];
     private int iterationsUsed = 0;
 
     @Inject
@@ -91,8 +105,10 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 	public void notifyStartup(final StartupEvent controlerStartupEvent) {
         if (counts != null) {
             for (Id<Link> linkId : counts.getCounts().keySet()) {
-                this.linkStats.put(linkId, new double[24]);
+                this.stationIndices.put(linkId, this.stationIds.size());
+                this.stationIds.add(linkId);
             }
+            this.stationVolumes = new double[this.stationIds.size() * 24];
         }
 	}
 
@@ -105,72 +121,121 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
             if (createCountsInIteration(event.getIteration())) {
                 iterationStopwatch.beginOperation(OPERATION_COMPARECOUNTS);
-                Map<Id<Link>, double[]> averages;
-                if (this.iterationsUsed > 1) {
-                    averages = new HashMap<>();
-                    for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-                        Id<Link> linkId = e.getKey();
-                        double[] totalVolumesPerHour = e.getValue();
-                        double[] averageVolumesPerHour = new double[totalVolumesPerHour.length];
-                        for (int i = 0; i < totalVolumesPerHour.length; i++) {
-                            averageVolumesPerHour[i] = totalVolumesPerHour[i] / this.iterationsUsed;
+                final double averagingFactor = this.iterationsUsed > 1 ? 1.0 / this.iterationsUsed : 1.0;
+                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(new CountsComparisonAlgorithm.VolumesForId() {
+                    @Override
+                    public double[] getVolumesForStop(Id<TransitStopFacility> locationId) {
+                        Integer index = stationIndices.get(Id.create(locationId, Link.class));
+                        if (index == null) {
+                            return null;
                         }
-                        averages.put(linkId, averageVolumesPerHour);
+                        double[] volumes = Arrays.copyOfRange(stationVolumes, index * 24, index * 24 + 24);
+                        if (averagingFactor != 1.0) {
+                            for (int i = 0; i < 24; i++) {
+                                volumes[i] *= averagingFactor;
+                            }
+                        }
+                        return volumes;
                     }
-                } else {
-                    averages = this.linkStats;
-                }
-                CountsComparisonAlgorithm cca = new CountsComparisonAlgorithm(averages, counts, network, config.getCountsScaleFactor());
+                }, counts, network, config.getCountsScaleFactor());
                 if ((this.config.getDistanceFilter() != null) && (this.config.getDistanceFilterCenterNode() != null)) {
                     cca.setDistanceFilter(this.config.getDistanceFilter(), this.config.getDistanceFilterCenterNode());
                 }
                 cca.setCountsScaleFactor(this.config.getCountsScaleFactor());
+                cca.setNumberOfThreads(this.globalConfigGroup.getNumberOfThreads());
                 cca.run();
 
-                if (this.config.getOutputFormat().contains("html") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    CountsHtmlAndGraphsWriter cgw = new CountsHtmlAndGraphsWriter(controlerIO.getIterationPath(event.getIteration()), cca.getComparison(), event.getIteration());
-                    cgw.addGraphsCreator(new CountsSimRealPerHourGraphCreator("sim and real volumes"));
-                    cgw.addGraphsCreator(new CountsErrorGraphCreator("errors"));
-                    cgw.addGraphsCreator(new CountsLoadCurveGraphCreator("link volumes"));
-                    cgw.addGraphsCreator(new CountsSimReal24GraphCreator("average working day sim and count volumes"));
-                    cgw.createHtmlAndGraphs();
-                }
-                if (this.config.getOutputFormat().contains("kml") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.kmz");
-                    CountSimComparisonKMLWriter kmlWriter = new CountSimComparisonKMLWriter(
-                            cca.getComparison(), network, TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84));
-                    kmlWriter.setIterationNumber(event.getIteration());
-                    kmlWriter.writeFile(filename);
-                }
-                if (this.config.getOutputFormat().contains("txt") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "countscompare.txt");
-                    CountSimComparisonTableWriter ctw = new CountSimComparisonTableWriter(cca.getComparison(), Locale.ENGLISH);
-                    ctw.writeFile(filename);
-                }
-                if (this.config.getOutputFormat().contains("xml") ||
-                        this.config.getOutputFormat().contains("all")) {
-                    String filename = controlerIO.getIterationFilename(event.getIteration(), "simulatedCounts.xml.gz");
-                    Counts<Link> simCounts = new Counts<>();
-                    simCounts.setDescription("sim values from iteration " + event.getIteration()); simCounts.setName("sim values from iteration " + event.getIteration()); simCounts.setYear(event.getIteration());
-                    for (CountSimComparison countSimComparison : cca.getComparison()) {
-						if (simCounts.getCount(countSimComparison.getId()) == null) {
-							simCounts.createAndAddCount(countSimComparison.getId(), counts.getCount(countSimComparison.getId()).getCsLabel());
-							simCounts.getCount(countSimComparison.getId()).setCoord(counts.getCount(countSimComparison.getId()).getCoord());
-						}
-						simCounts.getCount(countSimComparison.getId()).createVolume(countSimComparison.getHour(), countSimComparison.getSimulationValue());
-					}
-                    CountsWriter countsWriter = new CountsWriter(TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84), simCounts);
-                    countsWriter.write(filename);
-                }
+                writeOutput(event.getIteration(), Collections.unmodifiableList(cca.getComparison()));
                 reset();
                 iterationStopwatch.endOperation(OPERATION_COMPARECOUNTS);
             }
         }
 	}
 
+	/**
+	 * Writes the configured output formats. The writers only read the comparison, so the kml, txt and xml
+	 * writers are run concurrently, using at most global.numberOfThreads threads. The html writer, which
+	 * renders the graph pages with its own threads, is run afterwards, so that the thread pools are not nested.
+	 */
+	private void writeOutput(final int iteration, final List<CountSimComparison> comparison) {
+		List<Runnable> writers = new ArrayList<>();
+		if (this.config.getOutputFormat().contains("kml") ||
+				this.config.getOutputFormat().contains("all")) {
+			writers.add(() -> {
+				String filename = controlerIO.getIterationFilename(iteration, "countscompare.kmz");
+				CountSimComparisonKMLWriter kmlWriter = new CountSimComparisonKMLWriter(
+						comparison, network, TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84));
+				kmlWriter.setIterationNumber(iteration);
+				kmlWriter.writeFile(filename);
+			});
+		}
+		if (this.config.getOutputFormat().contains("txt") ||
+				this.config.getOutputFormat().contains("all")) {
+			writers.add(() -> {
+				String filename = controlerIO.getIterationFilename(iteration, "countscompare.txt");
+				CountSimComparisonTableWriter ctw = new CountSimComparisonTableWriter(comparison, Locale.ENGLISH);
+				ctw.writeFile(filename);
+			});
+		}
+		if (this.config.getOutputFormat().contains("xml") ||
+				this.config.getOutputFormat().contains("all")) {
+			writers.add(() -> {
+				String filename = controlerIO.getIterationFilename(iteration, "simulatedCounts.xml.gz");
+				Counts<Link> simCounts = new Counts<>();
+				simCounts.setDescription("sim values from iteration " + iteration); simCounts.setName("sim values from iteration " + iteration); simCounts.setYear(iteration);
+				for (CountSimComparison countSimComparison : comparison) {
+					if (simCounts.getCount(countSimComparison.getId()) == null) {
+						simCounts.createAndAddCount(countSimComparison.getId(), counts.getCount(countSimComparison.getId()).getCsLabel());
+						simCounts.getCount(countSimComparison.getId()).setCoord(counts.getCount(countSimComparison.getId()).getCoord());
+					}
+					simCounts.getCount(countSimComparison.getId()).createVolume(countSimComparison.getHour(), countSimComparison.getSimulationValue());
+				}
+				CountsWriter countsWriter = new CountsWriter(TransformationFactory.getCoordinateTransformation(globalConfigGroup.getCoordinateSystem(), TransformationFactory.WGS84), simCounts);
+				countsWriter.write(filename);
+			});
+		}
+
+		runWriters(writers);
+
+		if (this.config.getOutputFormat().contains("html") ||
+				this.config.getOutputFormat().contains("all")) {
+			CountsHtmlAndGraphsWriter cgw = new CountsHtmlAndGraphsWriter(controlerIO.getIterationPath(iteration), comparison, iteration);
+			cgw.getOutput().setNumberOfThreads(this.globalConfigGroup.getNumberOfThreads());
+			cgw.addGraphsCreator(new CountsSimRealPerHourGraphCreator("sim and real volumes"));
+			cgw.addGraphsCreator(new CountsErrorGraphCreator("errors"));
+			cgw.addGraphsCreator(new CountsLoadCurveGraphCreator("link volumes"));
+			cgw.addGraphsCreator(new CountsSimReal24GraphCreator("average working day sim and count volumes"));
+			cgw.createHtmlAndGraphs();
+		}
+	}
+
+	private void runWriters(final List<Runnable> writers) {
+		int nofThreads = Math.min(this.globalConfigGroup.getNumberOfThreads(), writers.size());
+		if (nofThreads <= 1) {
+			for (Runnable writer : writers) {
+				writer.run();
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(nofThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Runnable writer : writers) {
+				futures.add(executor.submit(writer));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Exception while writing counts comparison.", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/*package*/ boolean useVolumesOfIteration(final int iteration, final int firstIteration) {
 		int iterationMod = iteration % this.config.getWriteCountsInterval();
 		int effectiveIteration = iteration - firstIteration;
@@ -189,39 +254,27 @@ class CountsControlerListener implements StartupListener, IterationEndsListener
 
 	private void addVolumes(final VolumesAnalyzer volumes) {
 		this.iterationsUsed++;
-		for (Map.Entry<Id<Link>, double[]> e : this.linkStats.entrySet()) {
-			Id<Link> linkId = e.getKey();
-			double[] volumesPerHour = e.getValue(); 
-			double[] newVolume = getVolumesPerHourForLink(volumes, linkId); 
-			for (int i = 0; i < 24; i++) {
-				volumesPerHour[i] += newVolume[i];
-			}
-		}
-	}
-	
-	private double[] getVolumesPerHourForLink(final VolumesAnalyzer volumes, final Id<Link> linkId) {
-		if (this.config.isFilterModes()) {
-			double[] newVolume = new double[24];
-			for (String mode : this.analyzedModes) {
-				double[] volumesForMode = volumes.getVolumesPerHourForLink(linkId, mode);
-				if (volumesForMode == null) continue;
-				for (int i = 0; i < 24; i++) {
-					newVolume[i] += volumesForMode[i];
+		double[] newVolume = new double[24];
+		for (int station = 0; station < this.stationIds.size(); station++) {
+			Id<Link> linkId = this.stationIds.get(station);
+			Arrays.fill(newVolume, 0.0);
+			if (this.config.isFilterModes()) {
+				for (String mode : this.analyzedModes) {
+					volumes.addVolumesPerHourForLink(linkId, mode, newVolume);
 				}
+			} else {
+				volumes.addVolumesPerHourForLink(linkId, newVolume);
+			}
+			int offset = station * 24;
+			for (int i = 0; i < 24; i++) {
+				this.stationVolumes[offset + i] += newVolume[i];
 			}
-			return newVolume;
-		} else {
-			return volumes.getVolumesPerHourForLink(linkId);
 		}
 	}
 	
 	private void reset() {
 		this.iterationsUsed = 0;
-		for (double[] hours : this.linkStats.values()) {
-			for (int i = 0; i < hours.length; i++) {
-				hours[i] = 0.0;
-			}
-		}
+		Arrays.fill(this.stationVolumes, 0.0);
 	}
 
 }
@@ -23,6 +23,10 @@ package org.matsim.counts.algorithms;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 import org.matsim.analysis.VolumesAnalyzer;
@@ -75,6 +79,8 @@ public class CountsComparisonAlgorithm {
 
 	private double countsScaleFactor;
 
+	private int numberOfThreads = 1;
+
 	private final static Logger log = Logger.getLogger(CountsComparisonAlgorithm.class);
 
 	public CountsComparisonAlgorithm(final VolumesAnalyzer volumes, final Counts counts, final Network network, final double countsScaleFactor) {
@@ -120,7 +126,39 @@ public class CountsComparisonAlgorithm {
 	 * countAttribute Attribute of this class.
 	 */
 	private void compare() {
-		for (Count count : this.counts.getCounts().values()) {
+		final List<Count> countList = new ArrayList<>(this.counts.getCounts().values());
+		int chunks = Math.min(this.numberOfThreads, countList.size());
+		if (chunks <= 1) {
+			compare(countList, this.result);
+			return;
+		}
+		// the stations are split into consecutive chunks, the results are concatenated in the original order
+		ExecutorService executor = Executors.newFixedThreadPool(chunks);
+		try {
+			List<Future<List<CountSimComparison>>> futures = new ArrayList<>();
+			for (int i = 0; i < chunks; i++) {
+				final List<Count> chunk = countList.subList(i * countList.size() / chunks, (i + 1) * countList.size() / chunks);
+				futures.add(executor.submit(() -> {
+					List<CountSimComparison> chunkResult = new ArrayList<>(chunk.size() * 24);
+					compare(chunk, chunkResult);
+					return chunkResult;
+				}));
+			}
+			for (Future<List<CountSimComparison>> future : futures) {
+				this.result.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private void compare(final List<Count> countList, final List<CountSimComparison> comparisons) {
+		for (Count count : countList) {
 			if (!distanceFilter.isInRange(count)) {
 				continue;
 			}
@@ -135,7 +173,7 @@ public class CountsComparisonAlgorithm {
 					double countValue = volume.getValue();
 					double simValue=volumes[hour-1];
 					simValue *= this.countsScaleFactor;
-					this.result.add(new CountSimComparisonImpl(count.getId(), hour, countValue, simValue));
+					comparisons.add(new CountSimComparisonImpl(count.getId(), hour, countValue, simValue));
 				}
 			}
 		}
@@ -196,5 +234,14 @@ public class CountsComparisonAlgorithm {
 	public void setCountsScaleFactor(final double countsScaleFactor) {
 		this.countsScaleFactor = countsScaleFactor;
 	}
+
+	/**
+	 * Compares the counting stations in the given number of threads. The volumes and the distance
+	 * filter must then be safe for concurrent reading. The order of the result does not depend on
+	 * the number of threads.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
 	
 }
@@ -30,12 +30,17 @@ import org.matsim.counts.algorithms.graphs.CountsGraph;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class OutputDelegate {
 
 	private final List<Section> sections_;
 	private final List<CountsGraph> cg_list_;
 	private final String iterPath_;
+	private int numberOfThreads = 1;
 
 	public OutputDelegate(final String iterPath) {
 		this.iterPath_ = iterPath;
@@ -51,15 +56,21 @@ public class OutputDelegate {
 		this.cg_list_.add(cg);
 	}
 
+	/**
+	 * Sets the number of threads used for writing the graph pages (typically global.numberOfThreads).
+	 * Default is 1, i.e. the pages are written by the calling thread.
+	 */
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+	}
+
 	public List<CountsGraph> getGraphs() {
 		return this.cg_list_;
 	}
 
 	public void outputHtml(){
 		new File(this.iterPath_+"/png").mkdir();
-        for (CountsGraph cg : this.cg_list_) {
-            writeHtml(cg, this.iterPath_, false);
-        }
+		writeGraphPages();
 		writeHtml(null, this.iterPath_, true);
 		try {
 			new File(this.iterPath_+"/div").mkdir();
@@ -73,6 +84,37 @@ public class OutputDelegate {
 		}
 	}
 
+	/**
+	 * Rendering the charts takes most of the time, the pages are independent of each other and are thus
+	 * written in parallel.
+	 */
+	private void writeGraphPages() {
+		int nofThreads = Math.min(this.numberOfThreads, this.cg_list_.size());
+		if (nofThreads <= 1) {
+			for (CountsGraph cg : this.cg_list_) {
+				writeHtml(cg, this.iterPath_, false);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(nofThreads);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final CountsGraph cg : this.cg_list_) {
+				futures.add(executor.submit(() -> writeHtml(cg, this.iterPath_, false)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	private void copyResourceToFile(final String resourceFilename, final String destinationFilename) throws IOException {
 		InputStream inStream = null;
 		OutputStream outStream = null;
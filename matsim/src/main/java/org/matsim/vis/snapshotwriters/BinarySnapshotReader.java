@@ -0,0 +1,201 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Reads the files written by {@link BinarySnapshotWriter}.  Only the index and the agent ids are read when
+ * opening the file; a query then reads only the tiles of the requested snapshots that overlap the requested
+ * bounding box.
+ */
+public class BinarySnapshotReader implements Closeable {
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final double tileSize;
+	private final List<Id<Person>> agentIds;
+	private final double[] snapshotTimes;
+	private final long[] snapshotOffsets;
+	private final AgentSnapshotInfoFactory snapshotInfoFactory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+	private final AgentSnapshotInfo.AgentState[] agentStates = AgentSnapshotInfo.AgentState.values();
+
+	public BinarySnapshotReader(final String filename) {
+		try {
+			this.file = new RandomAccessFile(filename, "r");
+			this.channel = this.file.getChannel();
+
+			ByteBuffer header = read(0, 4 + 4 + 8);
+			checkMagic(header.getInt());
+			int version = header.getInt();
+			if (version != BinarySnapshotWriter.VERSION) {
+				throw new UncheckedIOException("unsupported version " + version + " of binary snapshot file " + filename);
+			}
+			this.tileSize = header.getDouble();
+
+			long length = this.channel.size();
+			ByteBuffer trailer = read(length - BinarySnapshotWriter.TRAILER_SIZE, BinarySnapshotWriter.TRAILER_SIZE);
+			long idsOffset = trailer.getLong();
+			long indexOffset = trailer.getLong();
+			checkMagic(trailer.getInt());
+
+			ByteBuffer ids = read(idsOffset, (int) (indexOffset - idsOffset));
+			DataInputStream idsIn = new DataInputStream(new ByteArrayInputStream(ids.array()));
+			int numberOfAgents = idsIn.readInt();
+			List<Id<Person>> agentIds = new ArrayList<>(numberOfAgents);
+			for (int i = 0; i < numberOfAgents; i++) {
+				agentIds.add(Id.create(idsIn.readUTF(), Person.class));
+			}
+			this.agentIds = agentIds;
+
+			ByteBuffer index = read(indexOffset, (int) (length - BinarySnapshotWriter.TRAILER_SIZE - indexOffset));
+			int numberOfSnapshots = index.getInt();
+			this.snapshotTimes = new double[numberOfSnapshots];
+			this.snapshotOffsets = new long[numberOfSnapshots];
+			for (int i = 0; i < numberOfSnapshots; i++) {
+				this.snapshotTimes[i] = index.getDouble();
+				this.snapshotOffsets[i] = index.getLong();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public double getTileSize() {
+		return this.tileSize;
+	}
+
+	public List<Double> getSnapshotTimes() {
+		List<Double> times = new ArrayList<>(this.snapshotTimes.length);
+		for (double time : this.snapshotTimes) {
+			times.add(time);
+		}
+		return Collections.unmodifiableList(times);
+	}
+
+	/**
+	 * Passes all positions within the bounding box of all snapshots between <code>fromTime</code> and
+	 * <code>toTime</code> (both inclusive) to the given writer, one snapshot after the other.  Does not call
+	 * {@link SnapshotWriter#finish()}, so several queries can go to the same writer.
+	 */
+	public void read(final double fromTime, final double toTime, final double minX, final double minY,
+			final double maxX, final double maxY, final SnapshotWriter writer) {
+		int minTileX = (int) Math.floor(minX / this.tileSize);
+		int minTileY = (int) Math.floor(minY / this.tileSize);
+		int maxTileX = (int) Math.floor(maxX / this.tileSize);
+		int maxTileY = (int) Math.floor(maxY / this.tileSize);
+
+		int first = Arrays.binarySearch(this.snapshotTimes, fromTime);
+		if (first < 0) {
+			first = -first - 1;
+		} else {
+			// there may be several snapshots at the same time
+			while (first > 0 && this.snapshotTimes[first - 1] == fromTime) first--;
+		}
+		try {
+			for (int i = first; i < this.snapshotTimes.length && this.snapshotTimes[i] <= toTime; i++) {
+				long offset = this.snapshotOffsets[i];
+				ByteBuffer snapshotHeader = read(offset, 8 + 4);
+				double time = snapshotHeader.getDouble();
+				int numberOfTiles = snapshotHeader.getInt();
+				ByteBuffer tiles = read(offset + 8 + 4, numberOfTiles * 12);
+				long recordsOffset = offset + 8 + 4 + numberOfTiles * 12L;
+
+				writer.beginSnapshot(time);
+				for (int t = 0; t < numberOfTiles; t++) {
+					int tileX = tiles.getInt();
+					int tileY = tiles.getInt();
+					int size = tiles.getInt();
+					if (tileX >= minTileX && tileX <= maxTileX && tileY >= minTileY && tileY <= maxTileY) {
+						readTile(recordsOffset, tileX, tileY, size, minX, minY, maxX, maxY, writer);
+					}
+					recordsOffset += (long) size * BinarySnapshotWriter.RECORD_SIZE;
+				}
+				writer.endSnapshot();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void readTile(final long offset, final int tileX, final int tileY, final int size, final double minX, final double minY,
+			final double maxX, final double maxY, final SnapshotWriter writer) throws IOException {
+		ByteBuffer records = read(offset, size * BinarySnapshotWriter.RECORD_SIZE);
+		double originX = tileX * this.tileSize;
+		double originY = tileY * this.tileSize;
+		for (int r = 0; r < size; r++) {
+			int agentIndex = records.getInt();
+			double easting = originX + records.getFloat();
+			double northing = originY + records.getFloat();
+			float azimuth = records.getFloat();
+			float color = records.getFloat();
+			byte state = records.get();
+			if (easting < minX || easting > maxX || northing < minY || northing > maxY) {
+				continue;
+			}
+			AgentSnapshotInfo position = this.snapshotInfoFactory.createAgentSnapshotInfo(this.agentIds.get(agentIndex), easting, northing, 0., azimuth);
+			position.setColorValueBetweenZeroAndOne(color);
+			position.setAgentState(state < 0 ? null : this.agentStates[state]);
+			writer.addAgent(position);
+		}
+	}
+
+	private ByteBuffer read(final long offset, final int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new UncheckedIOException("unexpected end of binary snapshot file");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void checkMagic(final int magic) {
+		if (magic != BinarySnapshotWriter.MAGIC) {
+			throw new UncheckedIOException("not a binary snapshot file, or the file was not finished");
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.file.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
@@ -0,0 +1,257 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes the positions of all agents into a compact binary file that can be queried by time window and
+ * bounding box with {@link BinarySnapshotReader}, without reading the whole file.
+ * <p></p>
+ * The plane is divided into square tiles.  Within a snapshot, the positions are grouped by tile, and every
+ * snapshot starts with a directory of its tiles.  At the end of the file, there is a table of all agent ids
+ * and an index with the file offset of every snapshot.  The layout, all numbers big-endian:
+ * <pre>
+ * header:    int MAGIC, int VERSION, double tileSize
+ * snapshot:  double time, int numberOfTiles,
+ *            numberOfTiles x (int tileX, int tileY, int numberOfPositions),
+ *            then the positions of each tile in the same order, RECORD_SIZE bytes each:
+ *            int agentIndex, float easting, float northing (both relative to the tile's lower left corner),
+ *            float azimuth, float colorValue, byte agentState
+ * ids:       int numberOfAgents, numberOfAgents x UTF string
+ * index:     int numberOfSnapshots, numberOfSnapshots x (double time, long offset)
+ * trailer:   long offset of ids, long offset of index, int MAGIC
+ * </pre>
+ * Unlike {@link TransimsSnapshotWriter}, agents at activities are kept; the agent state allows to filter them.
+ */
+public class BinarySnapshotWriter implements SnapshotWriter {
+
+	static final int MAGIC = 0x4d534e50; // "MSNP"
+	static final int VERSION = 1;
+	static final int RECORD_SIZE = 4 + 4 * 4 + 1;
+	static final int TRAILER_SIZE = 8 + 8 + 4;
+
+	public static final double DEFAULT_TILE_SIZE = 1000.0;
+
+	private final DataOutputStream out;
+	private final double tileSize;
+	private long offset = 0;
+
+	private final Map<Id<Person>, Integer> agentIndices = new HashMap<>();
+	private final List<Id<Person>> agentIds = new ArrayList<>();
+
+	private final List<Double> snapshotTimes = new ArrayList<>();
+	private final List<Long> snapshotOffsets = new ArrayList<>();
+
+	private double currentTime = -1;
+	private final Map<Long, Tile> currentTiles = new LinkedHashMap<>();
+
+	public BinarySnapshotWriter(final String filename) {
+		this(filename, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * @param tileSize the side length of the tiles, in the units of the network coordinates.  Should be somewhat
+	 * smaller than the typical area queried, but not so small that the tile directories dominate the file.
+	 */
+	public BinarySnapshotWriter(final String filename, final double tileSize) {
+		this.tileSize = tileSize;
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+			this.out.writeDouble(tileSize);
+			this.offset += 4 + 4 + 8;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void beginSnapshot(final double time) {
+		this.currentTime = time;
+		for (Tile tile : this.currentTiles.values()) {
+			tile.clear();
+		}
+	}
+
+	@Override
+	public void addAgent(final AgentSnapshotInfo position) {
+		int tileX = (int) Math.floor(position.getEasting() / this.tileSize);
+		int tileY = (int) Math.floor(position.getNorthing() / this.tileSize);
+		long key = ((long) tileX << 32) | (tileY & 0xffffffffL);
+		Tile tile = this.currentTiles.get(key);
+		if (tile == null) {
+			tile = new Tile(tileX, tileY);
+			this.currentTiles.put(key, tile);
+		}
+		tile.add(getAgentIndex(position.getId()),
+				(float) (position.getEasting() - tileX * this.tileSize),
+				(float) (position.getNorthing() - tileY * this.tileSize),
+				(float) position.getAzimuth(),
+				(float) position.getColorValueBetweenZeroAndOne(),
+				position.getAgentState() == null ? -1 : position.getAgentState().ordinal());
+	}
+
+	@Override
+	public void endSnapshot() {
+		try {
+			this.snapshotTimes.add(this.currentTime);
+			this.snapshotOffsets.add(this.offset);
+			int numberOfTiles = 0;
+			for (Tile tile : this.currentTiles.values()) {
+				if (tile.size > 0) numberOfTiles++;
+			}
+			this.out.writeDouble(this.currentTime);
+			this.out.writeInt(numberOfTiles);
+			this.offset += 8 + 4;
+			for (Tile tile : this.currentTiles.values()) {
+				if (tile.size > 0) {
+					this.out.writeInt(tile.tileX);
+					this.out.writeInt(tile.tileY);
+					this.out.writeInt(tile.size);
+					this.offset += 4 + 4 + 4;
+				}
+			}
+			for (Tile tile : this.currentTiles.values()) {
+				if (tile.size > 0) {
+					this.out.write(tile.records, 0, tile.size * RECORD_SIZE);
+					this.offset += (long) tile.size * RECORD_SIZE;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.currentTime = -1;
+	}
+
+	@Override
+	public void finish() {
+		try {
+			long idsOffset = this.offset;
+			this.out.writeInt(this.agentIds.size());
+			this.offset += 4;
+			for (Id<Person> id : this.agentIds) {
+				String idString = id.toString();
+				this.out.writeUTF(idString);
+				this.offset += 2 + modifiedUtf8Length(idString);
+			}
+			long indexOffset = this.offset;
+			this.out.writeInt(this.snapshotTimes.size());
+			for (int i = 0; i < this.snapshotTimes.size(); i++) {
+				this.out.writeDouble(this.snapshotTimes.get(i));
+				this.out.writeLong(this.snapshotOffsets.get(i));
+			}
+			this.out.writeLong(idsOffset);
+			this.out.writeLong(indexOffset);
+			this.out.writeInt(MAGIC);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private int getAgentIndex(final Id<Person> id) {
+		Integer index = this.agentIndices.get(id);
+		if (index == null) {
+			index = this.agentIds.size();
+			this.agentIndices.put(id, index);
+			this.agentIds.add(id);
+		}
+		return index;
+	}
+
+	/**
+	 * The number of bytes {@link DataOutputStream#writeUTF(String)} writes after the length prefix.  Needed
+	 * since {@link DataOutputStream#size()} overflows for files larger than 2 GB.
+	 */
+	private static int modifiedUtf8Length(final String s) {
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007f) {
+				length += 1;
+			} else if (c > 0x07ff) {
+				length += 3;
+			} else {
+				length += 2;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * The positions of one tile in the current snapshot, already in their binary form.  Kept across
+	 * snapshots so that the buffers can be reused.
+	 */
+	private static final class Tile {
+		private final int tileX;
+		private final int tileY;
+		private byte[] records = new byte[16 * RECORD_SIZE];
+		private int size = 0;
+
+		private Tile(final int tileX, final int tileY) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+		}
+
+		private void clear() {
+			this.size = 0;
+		}
+
+		private void add(final int agentIndex, final float x, final float y, final float azimuth, final float color, final int state) {
+			if ((this.size + 1) * RECORD_SIZE > this.records.length) {
+				byte[] grown = new byte[this.records.length * 2];
+				System.arraycopy(this.records, 0, grown, 0, this.size * RECORD_SIZE);
+				this.records = grown;
+			}
+			int pos = this.size * RECORD_SIZE;
+			pos = putInt(this.records, pos, agentIndex);
+			pos = putInt(this.records, pos, Float.floatToIntBits(x));
+			pos = putInt(this.records, pos, Float.floatToIntBits(y));
+			pos = putInt(this.records, pos, Float.floatToIntBits(azimuth));
+			pos = putInt(this.records, pos, Float.floatToIntBits(color));
+			this.records[pos] = (byte) state;
+			this.size++;
+		}
+
+		private static int putInt(final byte[] bytes, final int pos, final int value) {
+			bytes[pos] = (byte) (value >>> 24);
+			bytes[pos + 1] = (byte) (value >>> 16);
+			bytes[pos + 2] = (byte) (value >>> 8);
+			bytes[pos + 3] = (byte) value;
+			return pos + 4;
+		}
+	}
+
+}
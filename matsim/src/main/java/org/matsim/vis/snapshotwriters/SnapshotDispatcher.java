@@ -0,0 +1,238 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SnapshotDispatcher.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Collects the agent positions of a snapshot and hands them to the snapshot writers.
+ * <p></p>
+ * The positions are collected by several threads, each one handling a contiguous part of the links,
+ * and are passed to the writers in the same order as if they had been collected by a single thread.
+ * Every writer gets its own thread, so writing a snapshot overlaps with whatever the caller does next.
+ * Each writer is still called by one thread at a time and sees the snapshots in order.
+ * <p></p>
+ * There are two sets of position buffers which are used alternately, so collecting the next snapshot
+ * only has to wait if the writers are still busy with the snapshot before the previous one.
+ * Call {@link #finish()} at the end to wait for all pending snapshots and to finish the writers.
+ */
+public final class SnapshotDispatcher {
+
+	/**
+	 * Adds the positions of the agents on one item (typically a link) to the given collection.
+	 */
+	public interface PositionCollector<T> {
+		public void addPositions(T item, Collection<AgentSnapshotInfo> positions);
+	}
+
+	private static final int NUMBER_OF_BUFFERS = 2;
+
+	private final List<SnapshotWriter> snapshotWriters = new ArrayList<>();
+	private final int numberOfThreads;
+	private final Buffer[] buffers = new Buffer[NUMBER_OF_BUFFERS];
+	private int nextBuffer = 0;
+
+	private ExecutorService collectingPool = null;
+	private final List<ExecutorService> writingThreads = new ArrayList<>();
+
+	public SnapshotDispatcher(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+		for (int i = 0; i < NUMBER_OF_BUFFERS; i++) {
+			this.buffers[i] = new Buffer();
+		}
+	}
+
+	public void addSnapshotWriter(final SnapshotWriter writer) {
+		awaitPendingWrites();
+		shutdownWritingThreads();
+		this.snapshotWriters.add(writer);
+	}
+
+	public boolean removeSnapshotWriter(final SnapshotWriter writer) {
+		awaitPendingWrites();
+		shutdownWritingThreads();
+		return this.snapshotWriters.remove(writer);
+	}
+
+	public boolean hasSnapshotWriters() {
+		return !this.snapshotWriters.isEmpty();
+	}
+
+	/**
+	 * Collects the positions from all items and passes them to the snapshot writers.  Returns as soon as the
+	 * positions are collected; the writers work in the background.
+	 */
+	public <T> void doSnapshot(final double time, final List<T> items, final PositionCollector<? super T> collector) {
+		if (this.snapshotWriters.isEmpty()) {
+			return;
+		}
+		final Buffer buffer = this.buffers[this.nextBuffer];
+		this.nextBuffer = (this.nextBuffer + 1) % NUMBER_OF_BUFFERS;
+		buffer.awaitWrites();
+
+		final int numberOfPartitions = Math.max(1, Math.min(this.numberOfThreads, items.size()));
+		buffer.clear(numberOfPartitions);
+		if (numberOfPartitions == 1) {
+			collect(items, collector, buffer.partitions.get(0));
+		} else {
+			if (this.collectingPool == null) {
+				this.collectingPool = Executors.newFixedThreadPool(this.numberOfThreads - 1, new NamedThreadFactory("SnapshotCollector_"));
+			}
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 1; i < numberOfPartitions; i++) {
+				final List<T> part = items.subList(i * items.size() / numberOfPartitions, (i + 1) * items.size() / numberOfPartitions);
+				final List<AgentSnapshotInfo> positions = buffer.partitions.get(i);
+				futures.add(this.collectingPool.submit(new Runnable() {
+					@Override
+					public void run() {
+						collect(part, collector, positions);
+					}
+				}));
+			}
+			collect(items.subList(0, items.size() / numberOfPartitions), collector, buffer.partitions.get(0));
+			for (Future<?> future : futures) {
+				get(future);
+			}
+		}
+
+		if (this.writingThreads.isEmpty()) {
+			for (int i = 0; i < this.snapshotWriters.size(); i++) {
+				this.writingThreads.add(Executors.newSingleThreadExecutor(new NamedThreadFactory("SnapshotWriter_" + i + "_")));
+			}
+		}
+		for (int i = 0; i < this.snapshotWriters.size(); i++) {
+			final SnapshotWriter writer = this.snapshotWriters.get(i);
+			buffer.pendingWrites.add(this.writingThreads.get(i).submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					writer.beginSnapshot(time);
+					for (List<AgentSnapshotInfo> partition : buffer.partitions) {
+						for (AgentSnapshotInfo position : partition) {
+							writer.addAgent(position);
+						}
+					}
+					writer.endSnapshot();
+					return null;
+				}
+			}));
+		}
+	}
+
+	/**
+	 * Waits until all snapshots are written and then finishes the snapshot writers.
+	 */
+	public void finish() {
+		try {
+			awaitPendingWrites();
+		} finally {
+			shutdownWritingThreads();
+			if (this.collectingPool != null) {
+				this.collectingPool.shutdown();
+				this.collectingPool = null;
+			}
+		}
+		for (SnapshotWriter writer : this.snapshotWriters) {
+			writer.finish();
+		}
+	}
+
+	private void awaitPendingWrites() {
+		// oldest snapshot first
+		for (int i = 0; i < NUMBER_OF_BUFFERS; i++) {
+			this.buffers[(this.nextBuffer + i) % NUMBER_OF_BUFFERS].awaitWrites();
+		}
+	}
+
+	private void shutdownWritingThreads() {
+		for (ExecutorService thread : this.writingThreads) {
+			thread.shutdown();
+		}
+		this.writingThreads.clear();
+	}
+
+	private static <T> void collect(final List<T> items, final PositionCollector<? super T> collector, final List<AgentSnapshotInfo> positions) {
+		for (T item : items) {
+			collector.addPositions(item, positions);
+		}
+	}
+
+	private static void get(final Future<?> future) {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	private static final class Buffer {
+		private final List<List<AgentSnapshotInfo>> partitions = new ArrayList<>();
+		private final List<Future<?>> pendingWrites = new ArrayList<>();
+
+		private void clear(final int numberOfPartitions) {
+			while (this.partitions.size() < numberOfPartitions) {
+				this.partitions.add(new ArrayList<AgentSnapshotInfo>());
+			}
+			while (this.partitions.size() > numberOfPartitions) {
+				this.partitions.remove(this.partitions.size() - 1);
+			}
+			for (List<AgentSnapshotInfo> partition : this.partitions) {
+				partition.clear();
+			}
+		}
+
+		private void awaitWrites() {
+			try {
+				for (Future<?> future : this.pendingWrites) {
+					get(future);
+				}
+			} finally {
+				this.pendingWrites.clear();
+			}
+		}
+	}
+
+	private static final class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private int count = 0;
+
+		NamedThreadFactory(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			Thread thread = new Thread(r, this.prefix + this.count++);
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
@@ -22,6 +22,7 @@ package org.matsim.vis.snapshotwriters;
 
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ExternalMobimConfigGroup;
+import org.matsim.core.mobsim.framework.HasNextActiveTime;
 import org.matsim.core.mobsim.framework.ObservableMobsim;
 import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
@@ -35,9 +36,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-public class SnapshotWriterManager implements MobsimBeforeCleanupListener, MobsimAfterSimStepListener, MobsimInitializedListener {
+public class SnapshotWriterManager implements MobsimBeforeCleanupListener, MobsimAfterSimStepListener, MobsimInitializedListener, HasNextActiveTime {
 	
-	private final List<SnapshotWriter> snapshotWriters = new ArrayList<SnapshotWriter>();
+	private final SnapshotDispatcher dispatcher;
+
+	private List<VisLink> visLinks = null;
 	
 	/** time since last snapshot */
 	private double snapshotTime = 0.0;
@@ -46,6 +49,8 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 
 	public SnapshotWriterManager(Config config) {
 		snapshotPeriod = findSnapshotPeriod(config);
+		// positions are collected while the qsim threads wait for the next time step
+		dispatcher = new SnapshotDispatcher(config.qsim() != null ? config.qsim().getNumberOfThreads() : 1);
 	}
 
 	// yuck
@@ -76,9 +81,7 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 	}
 
 	private void closeSnapshotWriters() {
-		for (SnapshotWriter writer : this.snapshotWriters) {
-			writer.finish();
-		}
+		this.dispatcher.finish();
 	}
 
 	@Override
@@ -90,28 +93,35 @@ public class SnapshotWriterManager implements MobsimBeforeCleanupListener, Mobsi
 		}
 	}
 	
+	@Override
+	public double getNextActiveTime(double now) {
+		if (this.snapshotPeriod <= 0 || !this.dispatcher.hasSnapshotWriters()) {
+			// no snapshots are written, so there is no reason to wake up the mobsim
+			return Double.POSITIVE_INFINITY;
+		}
+		return this.snapshotTime;
+	}
+
 	private void doSnapshot(final double time, VisMobsim visMobsim) {
-		if (!this.snapshotWriters.isEmpty()) {
-			Collection<AgentSnapshotInfo> positions = new ArrayList<AgentSnapshotInfo>();
-			for (VisLink link : visMobsim.getVisNetwork().getVisLinks().values()) {
-				link.getVisData().addAgentSnapshotInfo(positions);
+		if (this.dispatcher.hasSnapshotWriters()) {
+			if (this.visLinks == null) {
+				this.visLinks = new ArrayList<>(visMobsim.getVisNetwork().getVisLinks().values());
 			}
 			
 			// We do not put non-network agents in movies.
 			// Otherwise, we would add snapshots from visMobsim.getNonNetworkAgentSnapshots() here.
 			
-			for (SnapshotWriter writer : this.snapshotWriters) {
-				writer.beginSnapshot(time);
-				for (AgentSnapshotInfo position : positions) {
-					writer.addAgent(position);
+			this.dispatcher.doSnapshot(time, this.visLinks, new SnapshotDispatcher.PositionCollector<VisLink>() {
+				@Override
+				public void addPositions(VisLink link, Collection<AgentSnapshotInfo> positions) {
+					link.getVisData().addAgentSnapshotInfo(positions);
 				}
-				writer.endSnapshot();
-			}
+			});
 		}
 	}
 
 	public final void addSnapshotWriter(SnapshotWriter snapshotWriter) {
-		this.snapshotWriters.add(snapshotWriter);
+		this.dispatcher.addSnapshotWriter(snapshotWriter);
 	}
 
 }
@@ -23,6 +23,7 @@ package org.matsim.withinday.controller;
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.controler.PipelinedIterationTasks;
 import org.matsim.core.controler.events.StartupEvent;
 import org.matsim.core.controler.listener.StartupListener;
 import org.matsim.core.mobsim.framework.listeners.FixedOrderSimulationListener;
@@ -70,6 +71,7 @@ public class WithinDayControlerListener implements StartupListener {
 
 	@Inject private WithinDayEngine withinDayEngine;
 	@Inject private FixedOrderSimulationListener fosl;
+	@com.google.inject.Inject(optional = true) private PipelinedIterationTasks pipelinedTasks = PipelinedIterationTasks.SYNCHRONOUS;
 	private final Map<String, TravelTime> multiModalTravelTimes = new HashMap<String, TravelTime>();
 
 	public void setNumberOfReplanningThreads(int threads) {
@@ -136,6 +138,8 @@ public class WithinDayControlerListener implements StartupListener {
 		this.createAndInitMobsimDataProvider();
 		this.createAndInitActivityReplanningMap();
 		this.createAndInitLinkReplanningMap();
+		// no output must be written in the background while the plans are replanned within the mobsim
+		this.pipelinedTasks.disable("within-day replanning modifies the plans during the mobsim");
 	}
 
 	/*
@@ -21,6 +21,7 @@
 package org.matsim.withinday.mobsim;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.GlobalConfigGroup;
 import org.matsim.core.mobsim.qsim.ActivityEndRescheduler;
@@ -78,6 +79,10 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 	
 	private InternalInterface internalInterface;
 
+	// for run time analysis; only set if a PerformanceMetrics instance is bound
+	@com.google.inject.Inject(optional = true)
+	private PerformanceMetrics performanceMetrics = null;
+
 	@Inject
 	public WithinDayEngine(EventsManager eventsManager, GlobalConfigGroup globalConfigGroup) {
 		this.eventsManager = eventsManager;
@@ -187,6 +192,10 @@ public class WithinDayEngine implements MobsimEngine, ActivityEndReschedulerProv
 
 	@Override
 	public void onPrepareSim() {
+		this.parallelInitialReplanner.setPerformanceMetrics(this.performanceMetrics);
+		this.parallelDuringActivityReplanner.setPerformanceMetrics(this.performanceMetrics);
+		this.parallelDuringLegReplanner.setPerformanceMetrics(this.performanceMetrics);
+		
 		this.parallelInitialReplanner.onPrepareSim();
 		this.parallelDuringActivityReplanner.onPrepareSim();
 		this.parallelDuringLegReplanner.onPrepareSim();
@@ -32,6 +32,7 @@ import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.withinday.replanning.identifiers.interfaces.AgentSelector;
 import org.matsim.withinday.replanning.replanners.interfaces.WithinDayReplanner;
@@ -60,6 +61,19 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 	 */
 	private final boolean shareReplannerQueue = true;
 	
+	/*
+	 * Time steps with at most this number of ReplanningTasks are handled by the calling
+	 * thread, which avoids waking up the replanning threads and passing three barriers.
+	 * In many simulations, only a few agents are replanned per time step, and then the
+	 * synchronization of the threads takes longer than the replanning itself.
+	 * Requires a shared replanner queue, since then a single ReplanningRunnable sees all tasks.
+	 */
+	private int maxTasksForSequentialReplanning = 1;
+	
+	// for run time analysis; only set if a PerformanceMetrics instance is bound
+	private PerformanceMetrics.Distribution timeStepDistribution = null;
+	private PerformanceMetrics.Counter sequentialTimeStepsCounter = null;
+	
 	protected final EventsManager eventsManager;
 	protected int numOfThreads;
 	
@@ -165,13 +179,42 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 		}
 	}
 	
+	/**
+	 * Sets the number of ReplanningTasks up to which a time step is replanned by the calling
+	 * thread instead of the replanning threads. Default is 1, i.e. only single tasks are
+	 * handled sequentially. Use 0 to always use the replanning threads.
+	 */
+	public final void setMaxTasksForSequentialReplanning(int maxTasksForSequentialReplanning) {
+		this.maxTasksForSequentialReplanning = maxTasksForSequentialReplanning;
+	}
+	
+	/**
+	 * If not null, the duration of the replanning time steps and the time needed to replan
+	 * each agent (per replanner) are recorded.
+	 */
+	public final void setPerformanceMetrics(PerformanceMetrics performanceMetrics) {
+		String prefix = "withinday." + this.replannerName + ".";
+		for (ReplanningRunnable replanningRunnable : this.replanningRunnables) {
+			replanningRunnable.setPerformanceMetrics(performanceMetrics, prefix);
+		}
+		if (performanceMetrics != null) {
+			this.timeStepDistribution = performanceMetrics.distribution(prefix + "timeStep");
+			this.sequentialTimeStepsCounter = performanceMetrics.counter(prefix + "sequentialTimeSteps");
+		} else {
+			this.timeStepDistribution = null;
+			this.sequentialTimeStepsCounter = null;
+		}
+	}
+	
 	/*
 	 * Typical Implementations should be able to use this Method
 	 * "as it is"...
 	 */
 	public final void run(double time) {
+		int numberOfTasks = roundRobin - lastRoundRobin;
+		
 		// no Agents to Replan
-		if (lastRoundRobin == roundRobin) return;
+		if (numberOfTasks == 0) return;
 		else lastRoundRobin = roundRobin;
 
 		/*
@@ -183,6 +226,24 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 			return;
 		}
 		
+		long start = this.timeStepDistribution == null ? 0 : System.nanoTime();
+		
+		/*
+		 * The replanning threads are waiting at the TimeStepStartBarrier, therefore
+		 * the calling thread can use the replanners of the first ReplanningRunnable.
+		 * With a shared queue, they see all ReplanningTasks of this time step.
+		 */
+		if (shareReplannerQueue && (numOfThreads == 1 || numberOfTasks <= maxTasksForSequentialReplanning)) {
+			ReplanningRunnable replanningRunnable = replanningRunnables[0];
+			replanningRunnable.setTime(time);
+			replanningRunnable.doReplanningOnCallingThread();
+			if (this.timeStepDistribution != null) {
+				this.timeStepDistribution.recordSince(start);
+				this.sequentialTimeStepsCounter.increment();
+			}
+			return;
+		}
+		
 		try {
 			// set current time
 			for (ReplanningRunnable replanningRunnable : replanningRunnables) {
@@ -198,6 +259,7 @@ public abstract class ParallelReplanner<T extends WithinDayReplannerFactory<? ex
 		} catch (BrokenBarrierException e) {
 	      	throw new RuntimeException(e);
 		}
+		if (this.timeStepDistribution != null) this.timeStepDistribution.recordSince(start);
 	}
 
 	public final void afterSim() {
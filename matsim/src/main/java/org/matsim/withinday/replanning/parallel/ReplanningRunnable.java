@@ -21,6 +21,7 @@
 package org.matsim.withinday.replanning.parallel;
 
 import org.apache.log4j.Logger;
+import org.matsim.analysis.PerformanceMetrics;
 import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.gbl.Gbl;
@@ -75,6 +76,12 @@ public abstract class ReplanningRunnable implements Runnable {
 	protected CyclicBarrier betweenReplannerBarrier;
 	protected CyclicBarrier timeStepEndBarrier;
 	
+	// for run time analysis; only set if a PerformanceMetrics instance is bound
+	private PerformanceMetrics performanceMetrics = null;
+	private String metricsPrefix = null;
+	// resolved once per replanner, not in every time step
+	private final Map<Id<WithinDayReplanner>, PerformanceMetrics.Distribution> replanningTimeDistributions = new HashMap<>();
+	
 	public ReplanningRunnable(String counterText) {
 		counter = new Counter(counterText);
 	}
@@ -99,6 +106,26 @@ public abstract class ReplanningRunnable implements Runnable {
 		this.timeStepEndBarrier = barrier;
 	}
 
+	/**
+	 * If set, the time needed to replan each agent is recorded in a distribution per replanner,
+	 * named <code>metricsPrefix</code> followed by the replanner's class name and id.
+	 */
+	public final void setPerformanceMetrics(PerformanceMetrics performanceMetrics, String metricsPrefix) {
+		this.performanceMetrics = performanceMetrics;
+		this.metricsPrefix = metricsPrefix;
+		this.replanningTimeDistributions.clear();
+		for (WithinDayReplanner<? extends AgentSelector> withinDayReplanner : this.withinDayReplanners.values()) {
+			addReplanningTimeDistribution(withinDayReplanner);
+		}
+	}
+
+	private void addReplanningTimeDistribution(WithinDayReplanner<? extends AgentSelector> withinDayReplanner) {
+		if (this.performanceMetrics != null) {
+			this.replanningTimeDistributions.put(withinDayReplanner.getId(), this.performanceMetrics.distribution(
+					this.metricsPrefix + withinDayReplanner.getClass().getSimpleName() + "." + withinDayReplanner.getId()));
+		}
+	}
+
 	public final void addReplanningTask(ReplanningTask replanningTask) {
 		Queue<ReplanningTask> queue = this.replanningTasks.get(replanningTask.getWithinDayReplannerId());
 		queue.add(replanningTask);
@@ -107,11 +134,13 @@ public abstract class ReplanningRunnable implements Runnable {
 	public final void addWithinDayReplanner(WithinDayReplanner<? extends AgentSelector> withinDayReplanner, Queue<ReplanningTask> queue) {
 		this.withinDayReplanners.put(withinDayReplanner.getId(), withinDayReplanner);
 		this.replanningTasks.put(withinDayReplanner.getId(), queue);
+		addReplanningTimeDistribution(withinDayReplanner);
 	}
 	
 	public final void removeWithinDayReplanner(Id<WithinDayReplanner> replannerId) {
 		this.withinDayReplanners.remove(replannerId);
 		this.replanningTasks.remove(replannerId);
+		this.replanningTimeDistributions.remove(replannerId);
 	}
 	
 	public final void resetReplanners() {
@@ -129,11 +158,25 @@ public abstract class ReplanningRunnable implements Runnable {
 		this.simulationRunning = false;
 	}
 	
+	/*
+	 * Performs the replanning of the current time step on the calling thread, i.e.
+	 * without waiting for the other replanning threads between the replanners. Only
+	 * valid if the queues are shared by all threads and the other threads are waiting
+	 * at the TimeStepStartBarrier; then this runnable's queues contain all tasks.
+	 */
+	/*package*/ final void doReplanningOnCallingThread() {
+		try {
+			doReplanning(false);
+		} catch (InterruptedException | BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/*
 	 * Typical Replanner Implementations should be able to use 
 	 * this method without any Changes.
 	 */
-	private void doReplanning() throws InterruptedException, BrokenBarrierException {
+	private void doReplanning(boolean synchronizeThreads) throws InterruptedException, BrokenBarrierException {
 
 		for (Entry<Id<WithinDayReplanner>, Queue<ReplanningTask>> entry : this.replanningTasks.entrySet()) {
 			
@@ -153,6 +196,9 @@ public abstract class ReplanningRunnable implements Runnable {
 			// set time once per replanner and time step
 			withinDayReplanner.setTime(time);
 			
+			// null if no PerformanceMetrics instance is set
+			PerformanceMetrics.Distribution replanningTimes = this.replanningTimeDistributions.get(withinDayReplannerId);
+			
 			ReplanningTask replanningTask;
 			while (true) {
 				replanningTask = queue.poll();
@@ -167,7 +213,9 @@ public abstract class ReplanningRunnable implements Runnable {
 					continue;
 				}
 				
+				long start = replanningTimes == null ? 0 : System.nanoTime();
 				boolean replanningSuccessful = withinDayReplanner.doReplanning(withinDayAgent);
+				if (replanningTimes != null) replanningTimes.recordSince(start);
 				
 				if (!replanningSuccessful) {
 					log.error("Replanning was not successful! Replanner " + withinDayReplanner.getClass().toString() + 
@@ -191,7 +239,7 @@ public abstract class ReplanningRunnable implements Runnable {
 			 * Wait here until all Threads have ended the replanning for the
 			 * current WithinDayReplanner.
 			 */
-			this.betweenReplannerBarrier.await();
+			if (synchronizeThreads) this.betweenReplannerBarrier.await();
 		}
 	}
 	
@@ -217,7 +265,7 @@ public abstract class ReplanningRunnable implements Runnable {
 					return;
 				}
 				
-				doReplanning();
+				doReplanning(true);
 			} catch (InterruptedException | BrokenBarrierException e) {
 				throw new RuntimeException(e);
 			}
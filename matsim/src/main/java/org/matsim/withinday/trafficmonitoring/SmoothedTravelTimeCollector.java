@@ -0,0 +1,299 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SmoothedTravelTimeCollector.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.trafficmonitoring;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Alternative to {@link TravelTimeCollector} which keeps an exponentially smoothed travel time per link
+ * instead of the mean over a time window.
+ * <p></p>
+ * Whenever a vehicle leaves a link, its travel time on the link is blended into the link's travel time with
+ * weight <code>smoothingFactor</code>.  If no vehicle leaves a link for a while, its travel time relaxes
+ * towards the free speed travel time, with the time constant <code>relaxationTime</code>.  The travel time
+ * and the time of the last update are packed into a single entry of an atomic array, so the event handlers
+ * update them with a compare-and-set and {@link #getLinkTravelTime(Link, double, Person, Vehicle)} only reads
+ * one array entry.  Thus, any number of threads (e.g. parallel within-day replanners) can query travel times
+ * while the events are processed, without locks, without waiting, and without a periodic update step.
+ * <p></p>
+ * The travel time relaxation is evaluated for the time passed to {@link #getLinkTravelTime(Link, double, Person, Vehicle)},
+ * so routes that are calculated for a later departure see links which are congested now recovering.
+ * <p></p>
+ * To use it instead of the {@link TravelTimeCollector}, bind it as mobsim listener, event handler and network
+ * travel time, as in {@link TravelTimeCollectorModule}.
+ */
+@Singleton
+public class SmoothedTravelTimeCollector implements TravelTime,
+		LinkEnterEventHandler, LinkLeaveEventHandler,
+		VehicleLeavesTrafficEventHandler, VehicleEntersTrafficEventHandler,
+		MobsimAfterSimStepListener {
+
+	public static final double DEFAULT_SMOOTHING_FACTOR = 0.25;
+	public static final double DEFAULT_RELAXATION_TIME = 600.0;
+
+	private final Network network;
+	private final double smoothingFactor;
+	private final double relaxationTime;
+
+	// not modified after construction, therefore safe to be read by several threads
+	private final Map<Id<Link>, Integer> linkIndices;
+	private final Link[] links;
+
+	// per link: travel time and time of its last update, as two floats (see pack(...))
+	private final AtomicLongArray travelTimes;
+	// per link: the free speed travel time, as double bits
+	private final AtomicLongArray freeSpeedTravelTimes;
+
+	// only accessed by the events handling thread
+	private final Map<Id<Vehicle>, Double> linkEnterTimes = new HashMap<>();
+	private final Set<Id<Vehicle>> vehiclesToFilter = new HashSet<>();
+	private final Set<String> analyzedModes;
+	private final boolean filterModes;
+
+	// Links that are changed by network change events
+	private final Map<Double, Collection<Link>> changedLinks = new HashMap<>();
+
+	@Inject
+	SmoothedTravelTimeCollector(Scenario scenario) {
+		this(scenario, null);
+	}
+
+	public SmoothedTravelTimeCollector(Scenario scenario, Set<String> analyzedModes) {
+		this(scenario, analyzedModes, DEFAULT_SMOOTHING_FACTOR, DEFAULT_RELAXATION_TIME);
+	}
+
+	/**
+	 * @param smoothingFactor weight of a new link travel time, in (0, 1].  1 means that the travel time of
+	 * the last vehicle leaving the link is used.
+	 * @param relaxationTime time (in seconds) after which the difference between the collected travel time
+	 * and the free speed travel time of a link without traffic has decreased to 1/e.
+	 */
+	public SmoothedTravelTimeCollector(Scenario scenario, Set<String> analyzedModes, double smoothingFactor, double relaxationTime) {
+		if (smoothingFactor <= 0.0 || smoothingFactor > 1.0) {
+			throw new IllegalArgumentException("smoothingFactor must be in (0, 1], but is " + smoothingFactor);
+		}
+		if (relaxationTime <= 0.0) {
+			throw new IllegalArgumentException("relaxationTime must be positive, but is " + relaxationTime);
+		}
+		this.network = scenario.getNetwork();
+		this.smoothingFactor = smoothingFactor;
+		this.relaxationTime = relaxationTime;
+
+		if (analyzedModes == null || analyzedModes.size() == 0) {
+			this.filterModes = false;
+			this.analyzedModes = null;
+		} else {
+			this.analyzedModes = new HashSet<>(analyzedModes);
+			this.filterModes = true;
+		}
+
+		int numberOfLinks = this.network.getLinks().size();
+		this.linkIndices = new HashMap<>(numberOfLinks * 2);
+		this.links = new Link[numberOfLinks];
+		int index = 0;
+		for (Link link : this.network.getLinks().values()) {
+			this.linkIndices.put(link.getId(), index);
+			this.links[index] = link;
+			index++;
+		}
+		this.travelTimes = new AtomicLongArray(numberOfLinks);
+		this.freeSpeedTravelTimes = new AtomicLongArray(numberOfLinks);
+
+		init();
+	}
+
+	private void init() {
+		this.linkEnterTimes.clear();
+		this.vehiclesToFilter.clear();
+
+		for (int i = 0; i < this.links.length; i++) {
+			double freeSpeedTravelTime = this.links[i].getLength() / this.links[i].getFreespeed(Time.UNDEFINED_TIME);
+			this.freeSpeedTravelTimes.set(i, Double.doubleToRawLongBits(freeSpeedTravelTime));
+			// no measurement yet, i.e. free speed travel time
+			this.travelTimes.set(i, pack(0.0, 0.0));
+		}
+
+		/*
+		 * If the network is time variant, we have to update the free speed travel times
+		 * according to the network change events.
+		 */
+		this.changedLinks.clear();
+		Collection<NetworkChangeEvent> networkChangeEvents = NetworkUtils.getNetworkChangeEvents(this.network);
+		if (networkChangeEvents != null) {
+			for (NetworkChangeEvent networkChangeEvent : networkChangeEvents) {
+				if (networkChangeEvent.getFreespeedChange() != null) {
+					double startTime = networkChangeEvent.getStartTime();
+					Collection<Link> links = this.changedLinks.get(startTime);
+					if (links == null) {
+						links = new HashSet<>();
+						this.changedLinks.put(startTime, links);
+					}
+					links.addAll(networkChangeEvent.getLinks());
+				}
+			}
+		}
+	}
+
+	@Override
+	public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+		Integer index = this.linkIndices.get(link.getId());
+		if (index == null) {
+			return link.getLength() / link.getFreespeed(time);
+		}
+		long packed = this.travelTimes.get(index);
+		double freeSpeedTravelTime = Double.longBitsToDouble(this.freeSpeedTravelTimes.get(index));
+		return relax(unpackTravelTime(packed), unpackTime(packed), time, freeSpeedTravelTime);
+	}
+
+	@Override
+	public void reset(int iteration) {
+		init();
+	}
+
+	@Override
+	public void handleEvent(LinkEnterEvent event) {
+		/*
+		 * If only some modes are analyzed, we check whether the vehicle
+		 * performs a trip with one of those modes. if not, we skip the event.
+		 */
+		if (this.filterModes && this.vehiclesToFilter.contains(event.getVehicleId())) return;
+
+		this.linkEnterTimes.put(event.getVehicleId(), event.getTime());
+	}
+
+	@Override
+	public void handleEvent(LinkLeaveEvent event) {
+		Double enterTime = this.linkEnterTimes.remove(event.getVehicleId());
+		if (enterTime == null) return;
+
+		Integer index = this.linkIndices.get(event.getLinkId());
+		if (index == null) return;
+
+		double time = event.getTime();
+		double tripTime = time - enterTime;
+		double freeSpeedTravelTime = Double.longBitsToDouble(this.freeSpeedTravelTimes.get(index));
+
+		// usually, all events are handled by one thread, but this keeps the update atomic otherwise, too
+		long oldPacked;
+		long newPacked;
+		do {
+			oldPacked = this.travelTimes.get(index);
+			double current = relax(unpackTravelTime(oldPacked), unpackTime(oldPacked), time, freeSpeedTravelTime);
+			double smoothed = current + this.smoothingFactor * (tripTime - current);
+			newPacked = pack(smoothed, time);
+		} while (!this.travelTimes.compareAndSet(index, oldPacked, newPacked));
+	}
+
+	/*
+	 * If a vehicle leaves the traffic we have to remove its current
+	 * trip. Otherwise we would have a trip with the duration of the trip itself
+	 * and the activity.
+	 */
+	@Override
+	public void handleEvent(VehicleLeavesTrafficEvent event) {
+		this.linkEnterTimes.remove(event.getVehicleId());
+
+		// try to remove vehicle from set with filtered vehicles
+		if (this.filterModes) this.vehiclesToFilter.remove(event.getVehicleId());
+	}
+
+	@Override
+	public void handleEvent(VehicleEntersTrafficEvent event) {
+		/*
+		 * If filtering transport modes is enabled and the vehicle
+		 * starts a leg on a non analyzed transport mode, add the vehicle
+		 * to the filtered vehicles set.
+		 */
+		if (this.filterModes && !this.analyzedModes.contains(event.getNetworkMode())) this.vehiclesToFilter.add(event.getVehicleId());
+	}
+
+	// Update free speed travel times if link attributes have changed
+	@Override
+	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+		Collection<Link> links = this.changedLinks.remove(e.getSimulationTime());
+		if (links != null) {
+			for (Link link : links) {
+				Integer index = this.linkIndices.get(link.getId());
+				if (index != null) {
+					double freeSpeedTravelTime = link.getLength() / link.getFreespeed(e.getSimulationTime());
+					this.freeSpeedTravelTimes.set(index, Double.doubleToRawLongBits(freeSpeedTravelTime));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Travel times are never shorter than the free speed travel time. Without new
+	 * measurements, the difference to the free speed travel time decays exponentially.
+	 */
+	private double relax(double travelTime, double lastUpdate, double time, double freeSpeedTravelTime) {
+		if (travelTime <= freeSpeedTravelTime) return freeSpeedTravelTime;
+		double elapsed = time - lastUpdate;
+		if (elapsed <= 0.0) return travelTime; // also for undefined times
+		return freeSpeedTravelTime + (travelTime - freeSpeedTravelTime) * Math.exp(-elapsed / this.relaxationTime);
+	}
+
+	/*
+	 * Floats are precise enough for both values (a few milliseconds for a time of day
+	 * of 30 hours), and allow to update them together with a single compare-and-set.
+	 */
+	private static long pack(double travelTime, double time) {
+		return ((long) Float.floatToRawIntBits((float) travelTime) << 32) | (Float.floatToRawIntBits((float) time) & 0xffffffffL);
+	}
+
+	private static double unpackTravelTime(long packed) {
+		return Float.intBitsToFloat((int) (packed >>> 32));
+	}
+
+	private static double unpackTime(long packed) {
+		return Float.intBitsToFloat((int) packed);
+	}
+
+}
@@ -0,0 +1,110 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PerformanceMetricsTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class PerformanceMetricsTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testDistribution() {
+		PerformanceMetrics metrics = new PerformanceMetrics();
+		PerformanceMetrics.Distribution d = metrics.distribution("test");
+		Assert.assertSame(d, metrics.distribution("test"));
+		Assert.assertEquals(0, d.getCount());
+		Assert.assertEquals(0, d.getMin());
+		Assert.assertEquals(0, d.getMax());
+		Assert.assertEquals(0, d.getPercentile(0.5));
+
+		for (int i = 1; i <= 100; i++) {
+			d.record(i);
+		}
+		Assert.assertEquals(100, d.getCount());
+		Assert.assertEquals(5050, d.getSum());
+		Assert.assertEquals(1, d.getMin());
+		Assert.assertEquals(100, d.getMax());
+		Assert.assertEquals(50.5, d.getMean(), 1e-9);
+		// percentiles are the upper bounds of the power-of-two bins
+		Assert.assertEquals(63, d.getPercentile(0.5));
+		Assert.assertEquals(100, d.getPercentile(0.99));
+		Assert.assertEquals(1, d.getPercentile(0.01));
+
+		metrics.reset();
+		Assert.assertSame(d, metrics.distribution("test"));
+		Assert.assertEquals(0, d.getCount());
+		Assert.assertEquals(0, d.getSum());
+		d.record(7);
+		Assert.assertEquals(7, d.getMin());
+		Assert.assertEquals(7, d.getMax());
+	}
+
+	@Test
+	public void testCounterAndJson() {
+		PerformanceMetrics metrics = new PerformanceMetrics();
+		metrics.counter("b").add(5);
+		metrics.counter("a").increment();
+		metrics.distribution("c").record(3);
+		Assert.assertEquals(5, metrics.counter("b").get());
+
+		String json = metrics.toJson();
+		Assert.assertTrue(json.indexOf("\"a\": 1") < json.indexOf("\"b\": 5"));
+		Assert.assertTrue(json.contains("\"c\": {\"count\": 1, \"sum\": 3, \"min\": 3, \"max\": 3"));
+	}
+
+	@Test
+	public void testMetricsWrittenByControler() throws IOException {
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.controler().setLastIteration(1);
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setCreateGraphs(false);
+
+		Controler controler = new Controler(config);
+		controler.addOverridingModule(new PerformanceMetricsModule());
+		controler.run();
+
+		for (int iteration = 0; iteration <= 1; iteration++) {
+			String prefix = utils.getOutputDirectory() + "ITERS/it." + iteration + "/" + iteration + "." + PerformanceMetricsControlerListener.FILENAME;
+			Assert.assertTrue(new File(prefix + ".json").exists());
+			String csv = new String(Files.readAllBytes(new File(prefix + ".csv").toPath()), StandardCharsets.UTF_8);
+			Assert.assertTrue(csv.contains("qsim.engine.QNetsimEngine,distribution,"));
+			Assert.assertTrue(csv.contains("phase.mobsim.wallTimeMillis,counter,"));
+		}
+		// routes are only computed by replanning from iteration 1 on
+		String csv = new String(Files.readAllBytes(new File(utils.getOutputDirectory() + "ITERS/it.1/1." + PerformanceMetricsControlerListener.FILENAME + ".csv").toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(csv.contains("routing.car,distribution,"));
+	}
+
+}
@@ -0,0 +1,122 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * VolumesAnalyzerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.analysis;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class VolumesAnalyzerTest {
+
+	private final Id<Link> link1 = Id.create("1", Link.class);
+	private final Id<Link> link2 = Id.create("2", Link.class);
+	private final Id<Vehicle> veh1 = Id.create("v1", Vehicle.class);
+	private final Id<Vehicle> veh2 = Id.create("v2", Vehicle.class);
+
+	private Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node n1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node n2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(1000, 0));
+		Node n3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(2000, 0));
+		NetworkUtils.createAndAddLink(network, this.link1, n1, n2, 1000, 10, 3600, 1);
+		NetworkUtils.createAndAddLink(network, this.link2, n2, n3, 1000, 10, 3600, 1);
+		return network;
+	}
+
+	private void enter(VolumesAnalyzer analyzer, Id<Vehicle> vehicleId, String mode) {
+		analyzer.handleEvent(new VehicleEntersTrafficEvent(0, Id.create("p", Person.class), this.link1, vehicleId, mode, 1.0));
+	}
+
+	@Test
+	public void testVolumesPerLinkAndMode() {
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, createNetwork());
+		enter(analyzer, this.veh1, "car");
+		enter(analyzer, this.veh2, "bike");
+		analyzer.handleEvent(new LinkLeaveEvent(100, this.veh1, this.link1));
+		analyzer.handleEvent(new LinkLeaveEvent(200, this.veh2, this.link1));
+		analyzer.handleEvent(new LinkLeaveEvent(7300, this.veh1, this.link1));
+
+		int[] volumes = analyzer.getVolumesForLink(this.link1);
+		Assert.assertEquals(analyzer.getVolumesArraySize(), volumes.length);
+		Assert.assertEquals(2, volumes[0]);
+		Assert.assertEquals(0, volumes[1]);
+		Assert.assertEquals(1, volumes[2]);
+		Assert.assertNull(analyzer.getVolumesForLink(this.link2));
+		Assert.assertEquals(1, analyzer.getLinkIds().size());
+
+		Assert.assertArrayEquals(new int[] {1, 0, 1}, Arrays.copyOf(analyzer.getVolumesForLink(this.link1, "car"), 3));
+		Assert.assertEquals(1, analyzer.getVolumesForLink(this.link1, "bike")[0]);
+		Assert.assertNull(analyzer.getVolumesForLink(this.link2, "car"));
+		Assert.assertNull(analyzer.getVolumesForLink(this.link1, "walk"));
+		Assert.assertEquals(2, analyzer.getModes().size());
+
+		double[] perHour = analyzer.getVolumesPerHourForLink(this.link1);
+		Assert.assertEquals(2.0, perHour[0], 0.0);
+		Assert.assertEquals(1.0, perHour[2], 0.0);
+
+		analyzer.reset(1);
+		Assert.assertNull(analyzer.getVolumesForLink(this.link1));
+		Assert.assertTrue(analyzer.getLinkIds().isEmpty());
+		Assert.assertTrue(analyzer.getModes().isEmpty());
+	}
+
+	@Test
+	public void testLinkNotInNetwork() {
+		VolumesAnalyzer analyzer = new VolumesAnalyzer(3600, 24 * 3600 - 1, createNetwork(), false);
+		Id<Link> unknown = Id.create("unknown", Link.class);
+		for (int i = 0; i < 10; i++) {
+			analyzer.handleEvent(new LinkLeaveEvent(100, this.veh1, unknown));
+		}
+		Assert.assertEquals(10, analyzer.getVolumesForLink(unknown)[0]);
+		Assert.assertTrue(analyzer.getLinkIds().contains(unknown));
+	}
+
+	@Test
+	public void testAddVolumes() {
+		Network network = createNetwork();
+		VolumesAnalyzer analyzer1 = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		VolumesAnalyzer analyzer2 = new VolumesAnalyzer(3600, 24 * 3600 - 1, network);
+		enter(analyzer1, this.veh1, "car");
+		enter(analyzer2, this.veh2, "car");
+		analyzer1.handleEvent(new LinkLeaveEvent(100, this.veh1, this.link1));
+		analyzer2.handleEvent(new LinkLeaveEvent(200, this.veh2, this.link1));
+		analyzer2.handleEvent(new LinkLeaveEvent(300, this.veh2, this.link2));
+
+		analyzer1.addVolumes(analyzer2);
+		Assert.assertEquals(2, analyzer1.getVolumesForLink(this.link1)[0]);
+		Assert.assertEquals(1, analyzer1.getVolumesForLink(this.link2)[0]);
+		Assert.assertEquals(2, analyzer1.getVolumesForLink(this.link1, "car")[0]);
+		// the added analyzer is not changed
+		Assert.assertEquals(1, analyzer2.getVolumesForLink(this.link1)[0]);
+	}
+
+}
@@ -0,0 +1,225 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PipelinedIterationTasksTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.withinday.controller.WithinDayModule;
+
+public class PipelinedIterationTasksTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testTasksRunInOrder() {
+		PipelinedIterationTasks tasks = new PipelinedIterationTasks(true);
+		Assert.assertTrue(tasks.isPipelined());
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		for (int i = 0; i < 100; i++) {
+			final int value = i;
+			tasks.submit("task " + i, () -> executed.add(value));
+		}
+		tasks.join();
+		Assert.assertEquals(100, executed.size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(i, executed.get(i).intValue());
+		}
+		tasks.notifyShutdown(null);
+	}
+
+	@Test
+	public void testNotPipelinedRunsImmediately() {
+		PipelinedIterationTasks tasks = new PipelinedIterationTasks(false);
+		final List<Integer> executed = new ArrayList<>();
+		tasks.submit("task", () -> executed.add(1));
+		Assert.assertEquals(1, executed.size());
+	}
+
+	@Test
+	public void testExceptionIsRethrownOnJoin() {
+		PipelinedIterationTasks tasks = new PipelinedIterationTasks(true);
+		tasks.submit("failing task", () -> {
+			throw new IllegalStateException("expected");
+		});
+		try {
+			tasks.join();
+			Assert.fail("expected exception");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("expected", e.getMessage());
+		}
+		// the failure is only reported once
+		tasks.join();
+		tasks.notifyShutdown(null);
+	}
+
+	@Test
+	public void testDisableCompletesPendingTasks() {
+		PipelinedIterationTasks tasks = new PipelinedIterationTasks(true);
+		final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+		tasks.submit("task 1", () -> executed.add(1));
+		tasks.disable("test");
+		Assert.assertFalse(tasks.isPipelined());
+		Assert.assertEquals(1, executed.size());
+
+		tasks.submit("task 2", () -> executed.add(2));
+		Assert.assertEquals(2, executed.size());
+		tasks.notifyShutdown(null);
+	}
+
+	@Test
+	public void testPipelinedControlerWritesOutput() {
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.controler().setLastIteration(2);
+		config.controler().setWriteEventsInterval(1);
+		config.controler().setWritePlansInterval(1);
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setPipelinedIterationOutput(true);
+
+		Controler controler = new Controler(config);
+		controler.run();
+
+		for (int iteration = 0; iteration <= 2; iteration++) {
+			String prefix = utils.getOutputDirectory() + "ITERS/it." + iteration + "/" + iteration + ".";
+			Assert.assertTrue(new File(prefix + "plans.xml.gz").exists());
+			Assert.assertTrue(new File(prefix + "legHistogram.txt").exists());
+			Assert.assertTrue(new File(prefix + "legHistogram_all.png").exists());
+
+			// the events file must have been closed properly, otherwise it could not be parsed
+			Assert.assertTrue(countEvents(prefix + "events.xml.gz") > 0);
+		}
+		Assert.assertTrue(new File(utils.getOutputDirectory() + "scorestats.png").exists());
+		Assert.assertTrue(new File(utils.getOutputDirectory() + "output_events.xml.gz").exists());
+	}
+
+	@Test
+	public void testEventsFileCompleteAtIterationEnds() {
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.controler().setLastIteration(1);
+		config.controler().setWriteEventsInterval(1);
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setPipelinedIterationOutput(true);
+
+		final EventsFileReader reader = new EventsFileReader();
+		Controler controler = new Controler(config);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				addControlerListenerBinding().toInstance(reader);
+			}
+		});
+		controler.run();
+
+		Assert.assertEquals(2, reader.eventCounts.size());
+		for (int iteration = 0; iteration <= 1; iteration++) {
+			Assert.assertEquals(countEvents(getEventsFilename(iteration)), reader.eventCounts.get(iteration).intValue());
+		}
+	}
+
+	/**
+	 * Keeps the background thread busy with slow output after the mobsim, then reads the events file at the end of
+	 * the iteration (after the core listeners). The file must be complete at that time.
+	 */
+	private class EventsFileReader implements AfterMobsimListener, IterationEndsListener {
+		@Inject private PipelinedIterationTasks pipelinedTasks;
+		private final List<Integer> eventCounts = new ArrayList<>();
+
+		@Override
+		public void notifyAfterMobsim(AfterMobsimEvent event) {
+			pipelinedTasks.submit("slow output", () -> {
+				try {
+					Thread.sleep(2000);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+		}
+
+		@Override
+		public void notifyIterationEnds(IterationEndsEvent event) {
+			eventCounts.add(countEvents(getEventsFilename(event.getIteration())));
+		}
+	}
+
+	@Test
+	public void testDisabledWithWithinDayReplanning() {
+		Config config = utils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		config.controler().setLastIteration(0);
+		config.controler().setWritePlansInterval(1);
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.deleteDirectoryIfExists);
+		config.controler().setPipelinedIterationOutput(true);
+
+		Controler controler = new Controler(config);
+		controler.addOverridingModule(new AbstractModule() {
+			@Override
+			public void install() {
+				install(new WithinDayModule());
+			}
+		});
+		controler.run();
+
+		Assert.assertFalse(controler.getInjector().getInstance(PipelinedIterationTasks.class).isPipelined());
+		Assert.assertTrue(new File(utils.getOutputDirectory() + "ITERS/it.0/0.plans.xml.gz").exists());
+	}
+
+	private String getEventsFilename(int iteration) {
+		return utils.getOutputDirectory() + "ITERS/it." + iteration + "/" + iteration + ".events.xml.gz";
+	}
+
+	private static int countEvents(String filename) {
+		final int[] count = {0};
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void handleEvent(Event event) {
+				count[0]++;
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		new MatsimEventsReader(events).readFile(filename);
+		return count[0];
+	}
+
+}
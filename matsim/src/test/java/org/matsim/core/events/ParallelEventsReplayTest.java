@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelEventsReplayTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class ParallelEventsReplayTest {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private String writeEventsFile(final int numberOfEvents) {
+		String filename = utils.getOutputDirectory() + "events.xml.gz";
+		EventWriterXML writer = new EventWriterXML(filename);
+		for (int i = 0; i < numberOfEvents; i++) {
+			writer.handleEvent(new LinkEnterEvent(i, Id.create(i, Vehicle.class), Id.create(i % 7, Link.class)));
+		}
+		writer.closeFile();
+		return filename;
+	}
+
+	@Test
+	public void testAllGroupsSeeAllEventsInOrder() {
+		String filename = writeEventsFile(1000);
+
+		ParallelEventsReplay replay = new ParallelEventsReplay(64, 2);
+		TimeRecorder recorder1 = new TimeRecorder();
+		TimeRecorder recorder2 = new TimeRecorder();
+		TimeRecorder recorder3 = new TimeRecorder();
+		replay.addHandlerGroup(recorder1, recorder2);
+		replay.addHandlerGroup(recorder3);
+		replay.readFile(filename);
+
+		for (TimeRecorder recorder : new TimeRecorder[] {recorder1, recorder2, recorder3}) {
+			Assert.assertEquals(1000, recorder.times.size());
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertEquals(i, recorder.times.get(i), 0.0);
+			}
+		}
+		Assert.assertNotSame(recorder1.thread, recorder3.thread);
+		Assert.assertSame(recorder1.thread, recorder2.thread);
+	}
+
+	@Test
+	public void testExceptionInHandlerIsReported() {
+		String filename = writeEventsFile(1000);
+
+		ParallelEventsReplay replay = new ParallelEventsReplay(16, 1);
+		TimeRecorder recorder = new TimeRecorder();
+		replay.addHandlerGroup(recorder);
+		replay.addHandlerGroup(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				if (event.getTime() == 100) {
+					throw new IllegalStateException("expected");
+				}
+			}
+
+			@Override
+			public void reset(int iteration) {
+			}
+		});
+		try {
+			replay.readFile(filename);
+			Assert.fail("expected exception");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("expected", e.getCause().getMessage());
+		}
+		// the other group was not affected and the parser did not block
+		Assert.assertEquals(1000, recorder.times.size());
+	}
+
+	private static class TimeRecorder implements LinkEnterEventHandler {
+		final List<Double> times = new ArrayList<>();
+		Thread thread = null;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.thread = Thread.currentThread();
+			this.times.add(event.getTime());
+		}
+
+		@Override
+		public void reset(int iteration) {
+		}
+	}
+
+}
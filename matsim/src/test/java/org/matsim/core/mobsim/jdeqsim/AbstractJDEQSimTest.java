@@ -80,6 +80,14 @@ public abstract class AbstractJDEQSimTest {
 		events.finishProcessing();
 	}
 
+	public void runParallelJDEQSim(Scenario scenario) {
+		EventsManagerImpl events = new EventsManagerImpl();
+		events.addHandler(new PersonEventCollector());
+		events.initProcessing();
+		new ParallelJDEQSimulation(ConfigUtils.addOrGetModule(scenario.getConfig(), JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario, events).run();
+		events.finishProcessing();
+	}
+
 	protected void checkAscendingTimeStamps() {
 		// all events of one agent must have ascending time stamps
 		double lastTimeStamp;
@@ -0,0 +1,237 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ParallelJDEQSimulationTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.jdeqsim;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.jdeqsim.util.EventLibrary;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.Dijkstra;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+
+public class ParallelJDEQSimulationTest extends AbstractJDEQSimTest {
+
+	private static final int GRID_SIZE = 8;
+	private static final double LINK_LENGTH = 500;
+	private static final double CAPACITY = 600;// veh/h
+	private static final double HIGH_CAPACITY = 36000;// veh/h
+
+	private Scenario loadScenario(final int numberOfThreads) {
+		Config config = ConfigUtils.loadConfig(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "config.xml"));
+		MatsimRandom.reset(config.global().getRandomSeed());
+		ConfigUtils.addOrGetModule(config, JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setNumberOfThreads(numberOfThreads);
+		return ScenarioUtils.loadScenario(config);
+	}
+
+	@Test
+	public void testEventsCorrespondToPlans() {
+		Scenario scenario = loadScenario(2);
+		this.runParallelJDEQSim(scenario);
+
+		assertEquals(scenario.getPopulation().getPersons().size(), super.eventsByPerson.size());
+		super.checkAscendingTimeStamps();
+		super.checkEventsCorrespondToPlans(scenario.getPopulation());
+	}
+
+	@Test
+	public void testIndependentOfNumberOfThreads() throws Exception {
+		this.runParallelJDEQSim(loadScenario(1));
+		Map<Id<Person>, List<Event>> singleThreaded = new HashMap<>(super.eventsByPerson);
+
+		super.setUp();
+		this.runParallelJDEQSim(loadScenario(3));
+
+		assertEquals(singleThreaded.size(), super.eventsByPerson.size());
+		for (Map.Entry<Id<Person>, List<Event>> entry : singleThreaded.entrySet()) {
+			assertEquals(entry.getValue().toString(), super.eventsByPerson.get(entry.getKey()).toString());
+		}
+	}
+
+	@Test
+	public void testGridEventsCorrespondToPlans() {
+		Scenario scenario = createGridScenario(4, 2000);
+		this.runParallelJDEQSim(scenario);
+
+		assertEquals(scenario.getPopulation().getPersons().size(), super.eventsByPerson.size());
+		super.checkAscendingTimeStamps();
+		super.checkEventsCorrespondToPlans(scenario.getPopulation());
+	}
+
+	/**
+	 * The parallel simulation delays the release of road space and the messages between partitions by at most
+	 * half of the inverse flow capacity of the roads, so the traffic is close to the one of the serial simulation:
+	 * the same events are created and the sum of the travel times differs by less than 1%.
+	 */
+	@Test
+	public void testCloseToSerialJDEQSimulation() throws Exception {
+		Scenario scenario = createGridScenario(4, 2000);
+
+		this.runJDEQSim(scenario);
+		Map<String, Integer> serialEventCounts = countEventsByType(super.allEvents);
+		double serialTravelTime = EventLibrary.getSumTravelTime(super.allEvents);
+
+		Road.getAllRoads().clear();
+		super.setUp();
+		this.runParallelJDEQSim(scenario);
+		Map<String, Integer> parallelEventCounts = countEventsByType(super.allEvents);
+		double parallelTravelTime = EventLibrary.getSumTravelTime(super.allEvents);
+
+		assertEquals(serialEventCounts, parallelEventCounts);
+		assertEquals(serialTravelTime, parallelTravelTime, 0.01 * serialTravelTime);
+	}
+
+	@Test
+	public void testLookaheadOnlyLimitedByPartitionBoundaries() {
+		// the high capacity link lies in the westmost column, far away from the boundary between the two partitions
+		Scenario scenario = createGridScenario(2, 200);
+		ParallelJDEQSimulation sim = new ParallelJDEQSimulation(ConfigUtils.addOrGetModule(scenario.getConfig(),
+				JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class), scenario, new EventsManagerImpl());
+		sim.run();
+
+		// half of the inverse flow capacity of the links crossing the boundary
+		assertEquals(0.5 * 3600 / CAPACITY, sim.getWindowLength(), 1e-9);
+	}
+
+	/**
+	 * A grid of two-way links with one high capacity link, and a population driving to random destinations and back
+	 * (a few legs are walked), starting in the morning peak.
+	 */
+	private Scenario createGridScenario(final int numberOfThreads, final int numberOfPersons) {
+		Config config = ConfigUtils.createConfig();
+		ConfigUtils.addOrGetModule(config, JDEQSimConfigGroup.NAME, JDEQSimConfigGroup.class).setNumberOfThreads(numberOfThreads);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		Node[][] nodes = new Node[GRID_SIZE][GRID_SIZE];
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * LINK_LENGTH, y * LINK_LENGTH));
+			}
+		}
+		for (int x = 0; x < GRID_SIZE; x++) {
+			for (int y = 0; y < GRID_SIZE; y++) {
+				if (x + 1 < GRID_SIZE) {
+					addLink(network, nodes[x][y], nodes[x + 1][y], CAPACITY);
+					addLink(network, nodes[x + 1][y], nodes[x][y], CAPACITY);
+				}
+				if (y + 1 < GRID_SIZE) {
+					double capacity = x == 0 && y == 0 ? HIGH_CAPACITY : CAPACITY;
+					addLink(network, nodes[x][y], nodes[x][y + 1], capacity);
+					addLink(network, nodes[x][y + 1], nodes[x][y], CAPACITY);
+				}
+			}
+		}
+
+		FreespeedTravelTimeAndDisutility travelTime = new FreespeedTravelTimeAndDisutility(config.planCalcScore());
+		Dijkstra router = new Dijkstra(network, travelTime, travelTime);
+		List<Link> links = new ArrayList<>(network.getLinks().values());
+		Random random = new Random(4711);
+		Population population = scenario.getPopulation();
+		for (int i = 0; i < numberOfPersons; i++) {
+			Link home = links.get(random.nextInt(links.size()));
+			Link work;
+			do {
+				work = links.get(random.nextInt(links.size()));
+			} while (work == home);
+
+			Person person = population.getFactory().createPerson(Id.createPersonId(i));
+			Plan plan = PopulationUtils.createPlan(person);
+			Activity homeMorning = PopulationUtils.createActivityFromLinkId("h", home.getId());
+			homeMorning.setEndTime(7 * 3600 + random.nextInt(3600));
+			plan.addActivity(homeMorning);
+			plan.addLeg(createLeg(router, home, work, random));
+			Activity workAct = PopulationUtils.createActivityFromLinkId("w", work.getId());
+			workAct.setEndTime(16 * 3600 + random.nextInt(3600));
+			plan.addActivity(workAct);
+			plan.addLeg(createLeg(router, work, home, random));
+			plan.addActivity(PopulationUtils.createActivityFromLinkId("h", home.getId()));
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+		return scenario;
+	}
+
+	private static void addLink(final Network network, final Node fromNode, final Node toNode, final double capacity) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(fromNode.getId() + "-" + toNode.getId()), fromNode, toNode,
+				LINK_LENGTH, 15, capacity, 1);
+	}
+
+	private static Leg createLeg(final Dijkstra router, final Link fromLink, final Link toLink, final Random random) {
+		if (random.nextInt(20) == 0) {
+			Leg leg = PopulationUtils.createLeg(TransportMode.walk);
+			leg.setTravelTime(1200);
+			return leg;
+		}
+
+		Path path = router.calcLeastCostPath(fromLink.getToNode(), toLink.getFromNode(), 0, null, null);
+		List<Id<Link>> linkIds = new ArrayList<>();
+		linkIds.add(fromLink.getId());
+		for (Link link : path.links) {
+			linkIds.add(link.getId());
+		}
+		linkIds.add(toLink.getId());
+
+		Leg leg = PopulationUtils.createLeg(TransportMode.car);
+		leg.setRoute(RouteUtils.createNetworkRoute(linkIds, null));
+		return leg;
+	}
+
+	private static Map<String, Integer> countEventsByType(final List<Event> events) {
+		Map<String, Integer> counts = new TreeMap<>();
+		for (Event event : events) {
+			Integer count = counts.get(event.getEventType());
+			counts.put(event.getEventType(), count == null ? 1 : count + 1);
+		}
+		return counts;
+	}
+
+}
@@ -47,6 +47,10 @@ import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.controler.PrepareForSimUtils;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.HasNextActiveTime;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimListener;
 import org.matsim.core.mobsim.qsim.agents.AgentFactory;
 import org.matsim.core.mobsim.qsim.agents.DefaultAgentFactory;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
@@ -73,6 +77,7 @@ import org.matsim.vehicles.Vehicle;
 import org.matsim.vehicles.VehicleImpl;
 import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.VehicleTypeImpl;
+import org.matsim.vis.snapshotwriters.SnapshotWriterManager;
 
 @RunWith(Parameterized.class)
 public class QSimTest {
@@ -249,6 +254,96 @@ public class QSimTest {
 		Assert.assertEquals("wrong time in event.", 6.0*3600 + 15, allEvents.get(3).getTime(), MatsimTestCase.EPSILON);
 	}
 
+	/**
+	 * Tests that skipping idle time steps only leaves out time steps in which nothing happens, i.e. that
+	 * the events are exactly the same as when every time step is simulated.
+	 */
+	@Test
+	public void testSkippingIdleTimeSteps() {
+		StepCounter everyStep = new StepCounter();
+		List<Event> eventsWithEveryStep = runTwoAgentsWithPause(false, everyStep);
+		StepCounter skippingSteps = new StepCounter();
+		List<Event> eventsWithSkipping = runTwoAgentsWithPause(true, skippingSteps);
+
+		Assert.assertEquals("wrong number of events.", 17, eventsWithEveryStep.size());
+		Assert.assertEquals("skipping idle time steps changed the events.", eventsWithEveryStep.toString(), eventsWithSkipping.toString());
+		Assert.assertTrue("every time step should have been simulated.", everyStep.steps > 4 * 3600);
+		Assert.assertTrue("idle time steps should have been skipped.", skippingSteps.steps < 100);
+	}
+
+	/**
+	 * With the default config, the controler adds a snapshot writer manager without writers and with a snapshot
+	 * period of 0.  It must neither stop the simulation early nor prevent skipping.
+	 */
+	@Test
+	public void testSkippingIdleTimeStepsWithDefaultSnapshotConfig() {
+		List<Event> eventsWithEveryStep = runTwoAgentsWithPause(false, new StepCounter());
+		StepCounter skippingSteps = new StepCounter();
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		Assert.assertEquals(0, f.config.qsim().getSnapshotPeriod(), 0);
+		List<Event> eventsWithSkipping = runTwoAgentsWithPause(true, skippingSteps, new SnapshotWriterManager(f.config));
+
+		Assert.assertEquals("skipping idle time steps changed the events.", eventsWithEveryStep.toString(), eventsWithSkipping.toString());
+		Assert.assertTrue("idle time steps should have been skipped.", skippingSteps.steps < 100);
+	}
+
+	private List<Event> runTwoAgentsWithPause(boolean skippingIdleTimeSteps, StepCounter stepCounter, MobsimListener... listeners) {
+		Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		f.config.qsim().setSkippingIdleTimeSteps(skippingIdleTimeSteps);
+
+		// a car trip at 6am and a teleported trip at 10am, nothing in between
+		Person person = PopulationUtils.getFactory().createPerson(Id.create(0, Person.class));
+		Plan plan = PersonUtils.createAndAddPlan(person, true);
+		Activity a1 = PopulationUtils.createAndAddActivityFromLinkId(plan, "h", f.link1.getId());
+		a1.setEndTime(6*3600);
+		Leg leg = PopulationUtils.createAndAddLeg( plan, TransportMode.car );
+		NetworkRoute route = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(NetworkRoute.class, f.link1.getId(), f.link3.getId());
+		route.setLinkIds(f.link1.getId(), f.linkIds2, f.link3.getId());
+		leg.setRoute(route);
+		PopulationUtils.createAndAddActivityFromLinkId(plan, "w", f.link3.getId());
+		f.plans.addPerson(person);
+
+		Person person2 = PopulationUtils.getFactory().createPerson(Id.create(1, Person.class));
+		Plan plan2 = PersonUtils.createAndAddPlan(person2, true);
+		Activity a2 = PopulationUtils.createAndAddActivityFromLinkId(plan2, "h", f.link1.getId());
+		a2.setEndTime(10*3600);
+		Leg leg2 = PopulationUtils.createAndAddLeg( plan2, "other" );
+		Route route2 = f.scenario.getPopulation().getFactory().getRouteFactories().createRoute(Route.class, f.link1.getId(), f.link3.getId());
+		route2.setTravelTime(15.0);
+		leg2.setRoute(route2);
+		PopulationUtils.createAndAddActivityFromLinkId(plan2, "w", f.link3.getId());
+		f.plans.addPerson(person2);
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+
+		QSim sim = createQSim(f, events);
+		sim.addQueueSimulationListeners(stepCounter);
+		for (MobsimListener listener : listeners) {
+			sim.addQueueSimulationListeners(listener);
+		}
+		sim.run();
+		return collector.getEvents();
+	}
+
+	/**
+	 * Counts the simulated time steps.  Does not need any particular time step itself.
+	 */
+	private static final class StepCounter implements MobsimAfterSimStepListener, HasNextActiveTime {
+		int steps = 0;
+
+		@Override
+		public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+			this.steps++;
+		}
+
+		@Override
+		public double getNextActiveTime(double now) {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
 	/**
 	 * This test is mostly useful for manual debugging, because only a single agent is simulated
 	 * on a very simple network.
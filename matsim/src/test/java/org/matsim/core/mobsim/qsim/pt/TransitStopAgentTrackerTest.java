@@ -20,6 +20,8 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.util.Arrays;
+
 import junit.framework.TestCase;
 
 import org.apache.log4j.Logger;
@@ -28,7 +30,9 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.pt.fakes.FakeAgent;
+import org.matsim.pt.fakes.FakePassengerAgent;
 import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -90,6 +94,35 @@ public class TransitStopAgentTrackerTest extends TestCase {
 		assertEquals(1, tracker.getAgentsAtStop(stop1.getId()).size()); // should stay the same
 	}
 
+	public void testGetAgentsAtStopForLine() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
+		TransitScheduleFactory builder = new TransitScheduleFactoryImpl();
+		Id<TransitLine> line1 = Id.create("1", TransitLine.class);
+		Id<TransitLine> line2 = Id.create("2", TransitLine.class);
+		PTPassengerAgent agent1 = new LinePassengerAgent(line1);
+		PTPassengerAgent agent2 = new FakePassengerAgent(null); // any line
+		PTPassengerAgent agent3 = new LinePassengerAgent(line2);
+		PTPassengerAgent agent4 = new LinePassengerAgent(line1);
+		TransitStopFacility stop1 = builder.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord((double) 2, (double) 3), false);
+
+		tracker.addAgentToStop(10, agent1, stop1.getId());
+		tracker.addAgentToStop(10, agent2, stop1.getId());
+		tracker.addAgentToStop(10, agent3, stop1.getId());
+		tracker.addAgentToStop(10, agent4, stop1.getId());
+
+		assertEquals(Arrays.asList(agent1, agent2, agent3, agent4), tracker.getAgentsAtStop(stop1.getId()));
+		assertEquals(Arrays.asList(agent1, agent2, agent4), tracker.getAgentsAtStop(stop1.getId(), line1));
+		assertEquals(Arrays.asList(agent2, agent3), tracker.getAgentsAtStop(stop1.getId(), line2));
+		assertEquals(Arrays.asList(agent2), tracker.getAgentsAtStop(stop1.getId(), Id.create("3", TransitLine.class)));
+
+		tracker.removeAgentFromStop(agent2, stop1.getId());
+		tracker.removeAgentFromStop(agent1, stop1.getId());
+		assertEquals(Arrays.asList(agent4), tracker.getAgentsAtStop(stop1.getId(), line1));
+		assertEquals(Arrays.asList(agent3), tracker.getAgentsAtStop(stop1.getId(), line2));
+		assertEquals(Arrays.asList(agent3, agent4), tracker.getAgentsAtStop(stop1.getId()));
+	}
+
 	public void testGetAgentsAtStopImmutable() {
 		EventsManager events = EventsUtils.createEventsManager();
 		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events);
@@ -114,4 +147,18 @@ public class TransitStopAgentTrackerTest extends TestCase {
 			log.info("catched expected exception.", e);
 		}
 	}
+
+	private static class LinePassengerAgent extends FakePassengerAgent {
+		private final Id<TransitLine> lineId;
+
+		LinePassengerAgent(final Id<TransitLine> lineId) {
+			super(null);
+			this.lineId = lineId;
+		}
+
+		@Override
+		public Id<TransitLine> getDesiredLineId() {
+			return this.lineId;
+		}
+	}
 }
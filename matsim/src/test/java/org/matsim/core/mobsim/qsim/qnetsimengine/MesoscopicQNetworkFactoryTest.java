@@ -0,0 +1,193 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MesoscopicQNetworkFactoryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsManagerModule;
+import org.matsim.core.mobsim.DefaultMobsimModule;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.mobsim.qsim.QSim;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleImpl;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleTypeImpl;
+
+public class MesoscopicQNetworkFactoryTest {
+
+	@Test
+	public void testExitTimesAreComputedAtEntry() {
+		// all vehicles enter link 2 at the same time.  The first one has the free speed travel time of 10 seconds,
+		// plus 1 second in the buffer; the others are discharged at flow capacity.
+		List<Double> travelTimes = runTenVehiclesAndGetTravelTimesOnLink2(1.0);
+		Assert.assertEquals(10, travelTimes.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(11. + 2. * i, travelTimes.get(i), 1e-8);
+		}
+	}
+
+	@Test
+	public void testExitTimesAreRoundedUpToBuckets() {
+		// the vehicles leave in groups, but never earlier than without buckets
+		double bucketSize = 7.0;
+		List<Double> travelTimes = runTenVehiclesAndGetTravelTimesOnLink2(bucketSize);
+		Assert.assertEquals(10, travelTimes.size());
+		for (int i = 0; i < 10; i++) {
+			Assert.assertTrue(travelTimes.get(i) >= 11. + 2. * i - 1e-8);
+			Assert.assertTrue(travelTimes.get(i) < 11. + 2. * i + bucketSize);
+		}
+	}
+
+	@Test
+	public void testLinkWithBufferedVehicleIsActive() {
+		LinkSpeedCalculatorIntegrationTest.Fixture f = new LinkSpeedCalculatorIntegrationTest.Fixture();
+		QSim qsim = new QSim(f.scenario, f.events);
+		QNetsimEngine netsimEngine = new QNetsimEngine(qsim, new MesoscopicQNetworkFactory(f.events, f.scenario));
+		qsim.addMobsimEngine(netsimEngine);
+		netsimEngine.onPrepareSim();
+
+		QLinkImpl qlink = (QLinkImpl) netsimEngine.getNetsimNetwork().getNetsimLink(Id.create(2, Link.class));
+		QLaneI lane = qlink.getAcceptingQLane();
+		Assert.assertFalse(lane.isActive());
+
+		// e.g. a departure: the vehicle goes directly to the buffer
+		QVehicle veh = new QVehicle(new VehicleImpl(Id.create(1, Vehicle.class), new VehicleTypeImpl(Id.create("defaultVehicleType", VehicleType.class))));
+		lane.addFromWait(veh);
+		Assert.assertTrue(lane.isActive());
+		Assert.assertTrue(lane.doSimStep());
+		Assert.assertTrue(lane.isActive());
+
+		Assert.assertSame(veh, lane.popFirstVehicle());
+		Assert.assertFalse(lane.isActive());
+		netsimEngine.afterSim();
+	}
+
+	private static List<Double> runTenVehiclesAndGetTravelTimesOnLink2(final double bucketSize) {
+		final Scenario scenario = new LinkSpeedCalculatorIntegrationTest.Fixture().scenario;
+		// ten vehicles departing at the same time; capacity of the links is 1800 veh/h, i.e. one vehicle every 2 seconds
+		Population population = scenario.getPopulation();
+		Person original = population.getPersons().values().iterator().next();
+		for (int i = 2; i <= 10; i++) {
+			Person person = population.getFactory().createPerson(Id.create(i, Person.class));
+			Plan plan = population.getFactory().createPlan();
+			PopulationUtils.copyFromTo(original.getSelectedPlan(), plan);
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		Collection<AbstractModule> defaultsModules = new ArrayList<>();
+		defaultsModules.add(new ScenarioByInstanceModule(scenario));
+		defaultsModules.add(new EventsManagerModule());
+		defaultsModules.add(new DefaultMobsimModule());
+
+		AbstractModule overrides = new AbstractModule() {
+			@Override public void install() {
+				bind(QNetworkFactory.class).toProvider(new Provider<QNetworkFactory>() {
+					@Inject private EventsManager events;
+					@Override public QNetworkFactory get() {
+						MesoscopicQNetworkFactory factory = new MesoscopicQNetworkFactory(events, scenario);
+						factory.setBucketSize(bucketSize);
+						return factory;
+					}
+				});
+			}
+		};
+
+		com.google.inject.Injector injector = Injector.createInjector(scenario.getConfig(), AbstractModule.override(defaultsModules, overrides));
+		EventsManager eventsManager = injector.getInstance(EventsManager.class);
+		eventsManager.initProcessing();
+		final Id<Link> linkId = Id.create(2, Link.class);
+		final Map<Id<Vehicle>, Double> enterTimes = new HashMap<>();
+		final List<Double> travelTimes = new ArrayList<>();
+		eventsManager.addHandler(new LinkEnterEventHandler() {
+			@Override public void reset(int iteration) {}
+			@Override public void handleEvent(LinkEnterEvent event) {
+				if (event.getLinkId().equals(linkId)) enterTimes.put(event.getVehicleId(), event.getTime());
+			}
+		});
+		eventsManager.addHandler(new LinkLeaveEventHandler() {
+			@Override public void reset(int iteration) {}
+			@Override public void handleEvent(LinkLeaveEvent event) {
+				if (event.getLinkId().equals(linkId)) travelTimes.add(event.getTime() - enterTimes.get(event.getVehicleId()));
+			}
+		});
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario, eventsManager).run();
+		injector.getInstance(Mobsim.class).run();
+		return travelTimes;
+	}
+
+	@Test
+	public void testSketchIterations() {
+		final Scenario scenario = new LinkSpeedCalculatorIntegrationTest.Fixture().scenario;
+		scenario.getConfig().controler().setFirstIteration(10);
+		scenario.getConfig().qsim().setNumberOfSketchIterations(2);
+
+		final int[] iteration = new int[1];
+		com.google.inject.Injector injector = Injector.createInjector(scenario.getConfig(),
+				new ScenarioByInstanceModule(scenario),
+				new EventsManagerModule(),
+				new DefaultMobsimModule(),
+				new AbstractModule() {
+					@Override public void install() {
+						bind(ReplanningContext.class).toInstance(new ReplanningContext() {
+							@Override public int getIteration() {
+								return iteration[0];
+							}
+						});
+					}
+				});
+
+		iteration[0] = 10;
+		Assert.assertTrue(injector.getInstance(QNetworkFactory.class) instanceof MesoscopicQNetworkFactory);
+		iteration[0] = 11;
+		Assert.assertTrue(injector.getInstance(QNetworkFactory.class) instanceof MesoscopicQNetworkFactory);
+		iteration[0] = 12;
+		Assert.assertTrue(injector.getInstance(QNetworkFactory.class) instanceof DefaultQNetworkFactory);
+	}
+
+}
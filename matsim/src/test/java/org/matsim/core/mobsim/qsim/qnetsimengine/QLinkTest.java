@@ -22,6 +22,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import org.apache.log4j.Logger;
 import org.junit.Test;
@@ -44,6 +45,7 @@ import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.controler.PrepareForSimUtils;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.QSimUtils;
 import org.matsim.core.mobsim.qsim.agents.PersonDriverAgentImpl;
@@ -579,6 +581,67 @@ public final class QLinkTest extends MatsimTestCase {
 		assertEquals(3, stuckCnt);
 	}
 
+	/**
+	 * Additional agents are (un)registered from several threads (e.g. boarding transit passengers) while
+	 * other threads may iterate over {@link QLinkI#getAdditionalAgentsOnLink()}.
+	 */
+	@Test
+	public void testAdditionalAgentsOnLink_concurrentAccess() throws InterruptedException {
+		final Fixture f = new Fixture(isUsingFastCapacityUpdate);
+		final int threadCount = 4;
+		final int agentsPerThread = 1000;
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			final List<PersonDriverAgentImpl> agents = new ArrayList<>();
+			for (int i = 0; i < agentsPerThread; i++) {
+				Person p = PopulationUtils.getFactory().createPerson(Id.create(t + "_" + i, Person.class));
+				p.addPlan(PopulationUtils.createPlan());
+				agents.add(new PersonDriverAgentImpl(p.getSelectedPlan(), f.sim));
+			}
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (PersonDriverAgentImpl agent : agents) {
+							f.qlink1.registerAdditionalAgentOnLink(agent);
+						}
+						// unregister every second agent
+						for (int i = 0; i < agents.size(); i += 2) {
+							assertSame(agents.get(i), f.qlink1.unregisterAdditionalAgentOnLink(agents.get(i).getId()));
+						}
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			});
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		boolean running = true;
+		while (running) {
+			// iterating must not fail while the other threads modify the link
+			for (MobsimAgent agent : f.qlink1.getAdditionalAgentsOnLink()) {
+				assertNotNull(agent);
+			}
+			running = false;
+			for (Thread thread : threads) {
+				running |= thread.isAlive();
+			}
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(threadCount * agentsPerThread / 2, f.qlink1.getAdditionalAgentsOnLink().size());
+	}
+
 	/**
 	 * Initializes some commonly used data in the tests.
 	 *
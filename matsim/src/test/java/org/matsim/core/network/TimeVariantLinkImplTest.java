@@ -342,6 +342,43 @@ public class TimeVariantLinkImplTest extends MatsimTestCase {
 	}
 
 
+	/**
+	 * Tests many changes at irregular intervals, which are looked up through the time bin index.
+	 */
+	public void testManyFreespeedChanges() {
+		for (LinkFactory lf : linkFactories(1, 30 * 3600)) {
+			final Network network = NetworkUtils.createNetwork();
+			NetworkFactory nf = network.getFactory();
+			nf.setLinkFactory(lf);
+			((NetworkImpl)network).setFactory(nf);
+
+			Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord((double) 0, (double) 0));
+			Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord((double) 100, (double) 0));
+			Link link = NetworkUtils.createAndAddLink(network,Id.create("1", Link.class), node1, node2, (double) 100, (double) 10, (double) 3600, (double) 1 );
+
+			// 40 changes in consecutive seconds, followed by 40 changes every 10 minutes
+			final double[] changeTimes = new double[80];
+			for (int i = 0; i < changeTimes.length; i++) {
+				changeTimes[i] = i < 40 ? 7*3600 + i : 8*3600 + (i - 40) * 600;
+				NetworkChangeEvent change = new NetworkChangeEvent(changeTimes[i]);
+				change.addLink(link);
+				change.setFreespeedChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 11 + i));
+				NetworkUtils.addNetworkChangeEvent(network, change);
+			}
+			NetworkUtils.precomputeTimeVariantAttributes(network, 2);
+
+			assertEquals(10.0, link.getFreespeed(Time.UNDEFINED_TIME), EPSILON);
+			for (double time = 6*3600; time < 16*3600; time++) {
+				double expected = 10.0;
+				for (int i = 0; i < changeTimes.length && changeTimes[i] <= time; i++) {
+					expected = 11 + i;
+				}
+				assertEquals("time " + time, expected, link.getFreespeed(time), EPSILON);
+			}
+		}
+	}
+
+
     static LinkFactory[] linkFactories(int interval, int maxTime)
     {
         return new LinkFactory[] {
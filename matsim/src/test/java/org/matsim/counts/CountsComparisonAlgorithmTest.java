@@ -22,7 +22,11 @@ package org.matsim.counts;
 
 import java.util.List;
 
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.counts.algorithms.CountsComparisonAlgorithm;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.testcases.MatsimTestCase;
 
 public class CountsComparisonAlgorithmTest extends MatsimTestCase {
@@ -56,4 +60,44 @@ public class CountsComparisonAlgorithmTest extends MatsimTestCase {
 		assertEquals("Distance filter not working", 0, csc_list.size());
 	}
 
+	public void testParallelCompareKeepsOrder() {
+		Counts<Link> counts = new Counts<>();
+		for (int i = 0; i < 37; i++) {
+			Count<Link> count = counts.createAndAddCount(Id.create(i, Link.class), "station " + i);
+			count.setCoord(new Coord(i, 0));
+			for (int hour = 1; hour <= 24; hour++) {
+				if ((hour + i) % 3 != 0) {
+					count.createVolume(hour, hour);
+				}
+			}
+		}
+		CountsComparisonAlgorithm.VolumesForId volumes = new CountsComparisonAlgorithm.VolumesForId() {
+			@Override
+			public double[] getVolumesForStop(Id<TransitStopFacility> locationId) {
+				int station = Integer.parseInt(locationId.toString());
+				double[] result = new double[24];
+				for (int h = 0; h < 24; h++) {
+					result[h] = 100 * station + h;
+				}
+				return result;
+			}
+		};
+
+		CountsComparisonAlgorithm serial = new CountsComparisonAlgorithm(volumes, counts, null, 2.0);
+		serial.run();
+		CountsComparisonAlgorithm parallel = new CountsComparisonAlgorithm(volumes, counts, null, 2.0);
+		parallel.setNumberOfThreads(4);
+		parallel.run();
+
+		List<CountSimComparison> expected = serial.getComparison();
+		List<CountSimComparison> actual = parallel.getComparison();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getId(), actual.get(i).getId());
+			assertEquals(expected.get(i).getHour(), actual.get(i).getHour());
+			assertEquals(expected.get(i).getSimulationValue(), actual.get(i).getSimulationValue(), 0.0);
+			assertEquals(expected.get(i).getCountValue(), actual.get(i).getCountValue(), 0.0);
+		}
+	}
+
 }
@@ -56,4 +56,31 @@ public class OutputDelegateTest extends MatsimTestCase {
 			assertTrue("The png output file " + filename + " doesn't exist", fPng.exists());
 			assertTrue("The png output file " + filename + " is empty", fPng.length()>0.0);
 		}
+
+	public void testOutputHtml_multipleThreads() {
+		List<CountSimComparison> countSimCompList = new Vector<CountSimComparison>();
+		for (int i = 0; i < 24; i++) {
+			countSimCompList.add(new CountSimComparisonImpl(Id.create(i + 1, Link.class), 1, 1.0, 1.0));
+		}
+
+		new File(getOutputDirectory() + "graphs").mkdir();
+		OutputDelegate outputDelegate = new OutputDelegate(getOutputDirectory() + "graphs/");
+		outputDelegate.setNumberOfThreads(2);
+		outputDelegate.addSection(new Section("testOutPutAll"));
+		List<CountsSimRealPerHourGraph> graphs = new Vector<CountsSimRealPerHourGraph>();
+		for (int i = 0; i < 4; i++) {
+			CountsSimRealPerHourGraph sg = new CountsSimRealPerHourGraph(countSimCompList, 1, "testOutPutAll" + i);
+			assertNotNull("No graph was created", sg.createChart(i));
+			outputDelegate.addCountsGraph(sg);
+			graphs.add(sg);
+		}
+		outputDelegate.outputHtml();
+
+		for (CountsSimRealPerHourGraph sg : graphs) {
+			String filename = getOutputDirectory() + "graphs/png/" + sg.getFilename() + ".png";
+			File fPng = new File(filename);
+			assertTrue("The png output file " + filename + " doesn't exist", fPng.exists());
+			assertTrue("The png output file " + filename + " is empty", fPng.length() > 0.0);
+		}
+	}
 }
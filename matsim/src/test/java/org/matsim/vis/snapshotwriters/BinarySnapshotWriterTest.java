@@ -0,0 +1,107 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinarySnapshotWriterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class BinarySnapshotWriterTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testQueryByTimeAndBoundingBox() {
+		String filename = utils.getOutputDirectory() + "snapshots.bin";
+		AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+
+		BinarySnapshotWriter writer = new BinarySnapshotWriter(filename, 100.0);
+		for (int time = 0; time < 10; time++) {
+			writer.beginSnapshot(time * 10.);
+			// agent i is at (i * 50, -i * 50 + time), i.e. in a different tile every second agent
+			for (int i = 0; i < 20; i++) {
+				AgentSnapshotInfo position = factory.createAgentSnapshotInfo(Id.create("agent" + i, Person.class), i * 50., -i * 50. + time, 0., 0.5);
+				position.setColorValueBetweenZeroAndOne(0.25);
+				position.setAgentState(i % 2 == 0 ? AgentSnapshotInfo.AgentState.PERSON_DRIVING_CAR : AgentSnapshotInfo.AgentState.PERSON_AT_ACTIVITY);
+				writer.addAgent(position);
+			}
+			writer.endSnapshot();
+		}
+		writer.finish();
+
+		BinarySnapshotReader reader = new BinarySnapshotReader(filename);
+		Assert.assertEquals(100.0, reader.getTileSize(), 0.0);
+		Assert.assertEquals(10, reader.getSnapshotTimes().size());
+
+		final List<String> read = new ArrayList<>();
+		reader.read(25., 45., 140., -460., 410., -140., new SnapshotWriter() {
+			@Override
+			public void beginSnapshot(double time) {
+				read.add("begin " + time);
+			}
+
+			@Override
+			public void endSnapshot() {
+				read.add("end");
+			}
+
+			@Override
+			public void addAgent(AgentSnapshotInfo position) {
+				Assert.assertEquals(0.5, position.getAzimuth(), 1e-6);
+				Assert.assertEquals(0.25, position.getColorValueBetweenZeroAndOne(), 1e-6);
+				read.add(position.getId() + " " + position.getEasting() + " " + position.getNorthing() + " " + position.getAgentState());
+			}
+
+			@Override
+			public void finish() {
+				read.add("finish");
+			}
+		});
+		reader.close();
+
+		Assert.assertEquals(Arrays.asList(
+				"begin 30.0",
+				"agent3 150.0 -147.0 PERSON_AT_ACTIVITY",
+				"agent4 200.0 -197.0 PERSON_DRIVING_CAR",
+				"agent5 250.0 -247.0 PERSON_AT_ACTIVITY",
+				"agent6 300.0 -297.0 PERSON_DRIVING_CAR",
+				"agent7 350.0 -347.0 PERSON_AT_ACTIVITY",
+				"agent8 400.0 -397.0 PERSON_DRIVING_CAR",
+				"end",
+				"begin 40.0",
+				"agent3 150.0 -146.0 PERSON_AT_ACTIVITY",
+				"agent4 200.0 -196.0 PERSON_DRIVING_CAR",
+				"agent5 250.0 -246.0 PERSON_AT_ACTIVITY",
+				"agent6 300.0 -296.0 PERSON_DRIVING_CAR",
+				"agent7 350.0 -346.0 PERSON_AT_ACTIVITY",
+				"agent8 400.0 -396.0 PERSON_DRIVING_CAR",
+				"end"), read);
+	}
+
+}
@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SnapshotDispatcherTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.vis.snapshotwriters;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+
+public class SnapshotDispatcherTest {
+
+	@Test
+	public void testPositionsKeepOrderWithSeveralThreads() {
+		List<Integer> links = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			links.add(i);
+		}
+		final AgentSnapshotInfoFactory factory = new AgentSnapshotInfoFactory(new SnapshotLinkWidthCalculator());
+		SnapshotDispatcher.PositionCollector<Integer> collector = new SnapshotDispatcher.PositionCollector<Integer>() {
+			@Override
+			public void addPositions(Integer link, Collection<AgentSnapshotInfo> positions) {
+				// two agents per link
+				positions.add(factory.createAgentSnapshotInfo(Id.create(2 * link, Person.class), 0., 0., 0., 0.));
+				positions.add(factory.createAgentSnapshotInfo(Id.create(2 * link + 1, Person.class), 0., 0., 0., 0.));
+			}
+		};
+
+		RecordingWriter writer1 = new RecordingWriter();
+		RecordingWriter writer2 = new RecordingWriter();
+		SnapshotDispatcher dispatcher = new SnapshotDispatcher(4);
+		dispatcher.addSnapshotWriter(writer1);
+		dispatcher.addSnapshotWriter(writer2);
+		for (int time = 0; time < 5; time++) {
+			dispatcher.doSnapshot(time * 10., links, collector);
+		}
+		dispatcher.finish();
+
+		List<String> expected = new ArrayList<>();
+		for (int time = 0; time < 5; time++) {
+			expected.add("begin " + time * 10.);
+			for (int agent = 0; agent < 200; agent++) {
+				expected.add(Integer.toString(agent));
+			}
+			expected.add("end");
+		}
+		expected.add("finish");
+		Assert.assertEquals(expected, writer1.calls);
+		Assert.assertEquals(expected, writer2.calls);
+	}
+
+	private static class RecordingWriter implements SnapshotWriter {
+		private final List<String> calls = new ArrayList<>();
+
+		@Override
+		public void beginSnapshot(double time) {
+			this.calls.add("begin " + time);
+		}
+
+		@Override
+		public void endSnapshot() {
+			this.calls.add("end");
+		}
+
+		@Override
+		public void addAgent(AgentSnapshotInfo position) {
+			this.calls.add(position.getId().toString());
+		}
+
+		@Override
+		public void finish() {
+			this.calls.add("finish");
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+
+package org.matsim.withinday.replanning.parallel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.analysis.PerformanceMetrics;
+import org.matsim.core.mobsim.framework.MobsimAgent;
+import org.matsim.pt.fakes.FakeAgent;
+import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringLegReplanner;
+import org.matsim.withinday.replanning.replanners.interfaces.WithinDayDuringLegReplannerFactory;
+import org.matsim.withinday.replanning.replanners.tools.ReplanningTask;
+
+public class ParallelReplannerTest {
+
+	private static class ThreadRecordingReplannerFactory extends WithinDayDuringLegReplannerFactory {
+		private final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+
+		ThreadRecordingReplannerFactory() {
+			super(null);
+		}
+
+		@Override
+		public WithinDayDuringLegReplanner createReplanner() {
+			return new WithinDayDuringLegReplanner(this.getId(), null, null) {
+				@Override
+				public boolean doReplanning(MobsimAgent withinDayAgent) {
+					threadNames.add(Thread.currentThread().getName());
+					return true;
+				}
+			};
+		}
+	}
+
+	@Test
+	public void testSmallTimeStepsAreReplannedOnCallingThread() {
+		ParallelDuringLegReplanner parallelReplanner = new ParallelDuringLegReplanner(2, null);
+		parallelReplanner.setMaxTasksForSequentialReplanning(2);
+		PerformanceMetrics performanceMetrics = new PerformanceMetrics();
+		parallelReplanner.setPerformanceMetrics(performanceMetrics);
+
+		ThreadRecordingReplannerFactory factory = new ThreadRecordingReplannerFactory();
+		parallelReplanner.addWithinDayReplannerFactory(factory);
+		parallelReplanner.onPrepareSim();
+
+		String callingThread = Thread.currentThread().getName();
+		try {
+			// two tasks: replanned by the calling thread
+			addTasks(parallelReplanner, factory, 2);
+			parallelReplanner.run(0.0);
+			Assert.assertEquals(Collections.nCopies(2, callingThread), factory.threadNames);
+
+			// three tasks: replanned by the replanning threads
+			factory.threadNames.clear();
+			addTasks(parallelReplanner, factory, 3);
+			parallelReplanner.run(1.0);
+			Assert.assertEquals(3, factory.threadNames.size());
+			Assert.assertFalse(factory.threadNames.contains(callingThread));
+		} finally {
+			parallelReplanner.afterSim();
+		}
+
+		Assert.assertEquals(2, performanceMetrics.distribution("withinday.ParallelDuringLegReplanner.timeStep").getCount());
+		Assert.assertEquals(1, performanceMetrics.counter("withinday.ParallelDuringLegReplanner.sequentialTimeSteps").get());
+
+		// the replanners were created in onPrepareSim(), i.e. after setPerformanceMetrics()
+		Assert.assertEquals(5, performanceMetrics
+				.distribution("withinday.ParallelDuringLegReplanner." + getReplannerMetricName(factory)).getCount());
+	}
+
+	private static String getReplannerMetricName(ThreadRecordingReplannerFactory factory) {
+		return factory.createReplanner().getClass().getSimpleName() + "." + factory.getId();
+	}
+
+	private static void addTasks(ParallelReplanner<?> parallelReplanner, ThreadRecordingReplannerFactory factory,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			parallelReplanner.addReplanningTask(new ReplanningTask(new FakeAgent(null, null), factory.getId()));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SmoothedTravelTimeCollectorTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2017 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.withinday.trafficmonitoring;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class SmoothedTravelTimeCollectorTest {
+
+	@Test
+	public void testSmoothingAndRelaxation() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0.0, 0.0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(100.0, 0.0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 100.0, 10.0, 1000.0, 1.0);
+
+		SmoothedTravelTimeCollector travelTime = new SmoothedTravelTimeCollector(scenario, null, 0.25, 600.0);
+		Id<Vehicle> vehicle1 = Id.create("1", Vehicle.class);
+		Id<Vehicle> vehicle2 = Id.create("2", Vehicle.class);
+
+		// free speed travel time as long as nothing is measured
+		Assert.assertEquals(10.0, travelTime.getLinkTravelTime(link, 0.0, null, null), 0.0);
+
+		travelTime.handleEvent(new LinkEnterEvent(0.0, vehicle1, link.getId()));
+		travelTime.handleEvent(new LinkEnterEvent(10.0, vehicle2, link.getId()));
+		travelTime.handleEvent(new LinkLeaveEvent(30.0, vehicle1, link.getId()));
+		Assert.assertEquals(10.0 + 0.25 * 20.0, travelTime.getLinkTravelTime(link, 30.0, null, null), 1e-4);
+
+		travelTime.handleEvent(new LinkLeaveEvent(60.0, vehicle2, link.getId()));
+		double expected = 10.0 + 5.0 * Math.exp(-30.0 / 600.0);
+		expected += 0.25 * (50.0 - expected);
+		Assert.assertEquals(expected, travelTime.getLinkTravelTime(link, 60.0, null, null), 1e-4);
+
+		// without further measurements, the travel time relaxes towards the free speed travel time
+		Assert.assertEquals(10.0 + (expected - 10.0) / Math.E, travelTime.getLinkTravelTime(link, 660.0, null, null), 1e-4);
+		// but not for earlier times
+		Assert.assertEquals(expected, travelTime.getLinkTravelTime(link, 0.0, null, null), 1e-4);
+
+		// trips which end at an activity are not taken into account
+		travelTime.handleEvent(new LinkEnterEvent(100.0, vehicle1, link.getId()));
+		travelTime.handleEvent(new VehicleLeavesTrafficEvent(500.0, Id.create("1", Person.class), link.getId(), vehicle1, "car", 1.0));
+		travelTime.handleEvent(new LinkLeaveEvent(600.0, vehicle1, link.getId()));
+		Assert.assertEquals(10.0 + (expected - 10.0) * Math.exp(-540.0 / 600.0), travelTime.getLinkTravelTime(link, 600.0, null, null), 1e-4);
+
+		// no travel time is below the free speed travel time
+		travelTime.reset(1);
+		travelTime.handleEvent(new LinkEnterEvent(0.0, vehicle1, link.getId()));
+		travelTime.handleEvent(new LinkLeaveEvent(5.0, vehicle1, link.getId()));
+		Assert.assertEquals(10.0, travelTime.getLinkTravelTime(link, 5.0, null, null), 0.0);
+	}
+
+}